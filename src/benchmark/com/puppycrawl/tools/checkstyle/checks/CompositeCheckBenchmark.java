@@ -0,0 +1,232 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+package com.puppycrawl.tools.checkstyle.checks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+/**
+ * Compares the time to audit a set of files with the extension's checks
+ * configured as separate <code>TreeWalker</code> modules and with the same
+ * checks fused into one <code>CompositeCheck</code>.
+ * <pre>
+ * java -cp target/benchmark:target/checkstyle:lib/checkstyle-all.jar \
+ *     com.puppycrawl.tools.checkstyle.checks.CompositeCheckBenchmark
+ *     [-n copies] [-i iterations] file-or-directory...
+ * </pre>
+ * Each check of the extension is configured <code>copies</code> times, to
+ * show how the cost of dispatching grows with the number of checks.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public final class CompositeCheckBenchmark
+{
+    /** audits run before timing */
+    private static final int WARMUP = 3;
+
+    /** nanoseconds per millisecond */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /**
+     * Prevent users from constructing CompositeCheckBenchmark objects.
+     */
+    private CompositeCheckBenchmark()
+    {
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param aArgs the command line arguments.
+     * @throws CheckstyleException if an audit fails.
+     */
+    public static void main(String[] aArgs)
+        throws CheckstyleException
+    {
+        int copies = 1;
+        int iterations = 20;
+        final List<File> files = new ArrayList<File>();
+        for (int i = 0; i < aArgs.length; i++) {
+            if ("-n".equals(aArgs[i]) && i + 1 < aArgs.length) {
+                copies = Integer.parseInt(aArgs[++i]);
+            }
+            else if ("-i".equals(aArgs[i]) && i + 1 < aArgs.length) {
+                iterations = Integer.parseInt(aArgs[++i]);
+            }
+            else {
+                addFiles(new File(aArgs[i]), files);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: CompositeCheckBenchmark [-n copies]"
+                + " [-i iterations] file-or-directory...");
+            return;
+        }
+
+        final StringBuilder names = new StringBuilder();
+        final DefaultConfiguration separate = new DefaultConfiguration(
+            "TreeWalker");
+        for (int i = 0; i < copies; i++) {
+            final String[] checks = CompositeCheck.getExtensionChecks();
+            for (int j = 0; j < checks.length; j++) {
+                final String name = CompositeCheck.class.getPackage()
+                    .getName() + "." + checks[j] + "Check";
+                separate.addChild(new DefaultConfiguration(name));
+                if (names.length() > 0) {
+                    names.append(',');
+                }
+                names.append(name);
+            }
+        }
+        final DefaultConfiguration composite = new DefaultConfiguration(
+            CompositeCheck.class.getName());
+        composite.addAttribute("checks", names.toString());
+        final DefaultConfiguration fused = new DefaultConfiguration(
+            "TreeWalker");
+        fused.addChild(composite);
+
+        final long separateTime = time(separate, files, iterations);
+        final long fusedTime = time(fused, files, iterations);
+        System.out.println(files.size() + " files, " + iterations
+            + " iterations, " + separate.getChildren().length + " checks");
+        System.out.println("separate: "
+            + format(separateTime / iterations) + " ms per audit");
+        System.out.println("fused:    "
+            + format(fusedTime / iterations) + " ms per audit");
+    }
+
+    /**
+     * Audits files repeatedly with a configuration.
+     * @param aTreeWalker configuration of the TreeWalker module.
+     * @param aFiles the files.
+     * @param aIterations number of timed audits.
+     * @return total time of the timed audits (nanoseconds).
+     * @throws CheckstyleException if an audit fails.
+     */
+    private static long time(DefaultConfiguration aTreeWalker,
+        List<File> aFiles, int aIterations)
+        throws CheckstyleException
+    {
+        final DefaultConfiguration config = new DefaultConfiguration("Checker");
+        config.addChild(aTreeWalker);
+        final Checker checker = new Checker();
+        checker.setModuleClassLoader(
+            CompositeCheckBenchmark.class.getClassLoader());
+        checker.configure(config);
+        final Counter counter = new Counter();
+        checker.addListener(counter);
+        try {
+            for (int i = 0; i < WARMUP; i++) {
+                checker.process(aFiles);
+            }
+            counter.mErrors = 0;
+            final long start = System.nanoTime();
+            for (int i = 0; i < aIterations; i++) {
+                checker.process(aFiles);
+            }
+            final long result = System.nanoTime() - start;
+            System.out.println(aTreeWalker.getChildren()[0].getName()
+                + ": " + (counter.mErrors / Math.max(1, aIterations))
+                + " events per audit");
+            return result;
+        }
+        finally {
+            checker.destroy();
+        }
+    }
+
+    /**
+     * Formats a duration.
+     * @param aNanos the duration (nanoseconds).
+     * @return the duration in milliseconds.
+     */
+    private static String format(long aNanos)
+    {
+        return String.format("%.2f", aNanos / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Adds a Java source file, or the Java source files of a directory
+     * tree, to a list.
+     * @param aFile the file or directory.
+     * @param aFiles the list.
+     */
+    private static void addFiles(File aFile, List<File> aFiles)
+    {
+        if (aFile.isDirectory()) {
+            final File[] children = aFile.listFiles();
+            if (children != null) {
+                for (int i = 0; i < children.length; i++) {
+                    addFiles(children[i], aFiles);
+                }
+            }
+        }
+        else if (aFile.getName().endsWith(".java")) {
+            aFiles.add(aFile.getAbsoluteFile());
+        }
+    }
+
+    /**
+     * Counts the events of an audit.
+     */
+    private static final class Counter implements AuditListener
+    {
+        /** number of events */
+        private int mErrors;
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditStarted(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditFinished(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileStarted(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileFinished(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addError(AuditEvent aEvt)
+        {
+            mErrors++;
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addException(AuditEvent aEvt, Throwable aThrowable)
+        {
+        }
+    }
+}
@@ -0,0 +1,294 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+package com.puppycrawl.tools.checkstyle.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+/**
+ * <p>
+ * Runs several of the extension's checks as one check, so that
+ * <code>TreeWalker</code> dispatches each token once and the member checks
+ * are reached through a table indexed by token type. The member checks
+ * report their events under their own names, with the severity of this
+ * check.
+ * </p>
+ * <p>
+ * The property <code>checks</code> lists the member checks by module name
+ * (for example <code>NonlinearFlow</code>) or fully qualified class name;
+ * by default all checks of the extension are members. Member checks are
+ * run with their default properties and tokens.
+ * </p>
+ * <p>
+ * An example of how to configure the check is:
+ * </p>
+ * <pre>
+ * &lt;module name="Composite"&gt;
+ *     &lt;property name="checks" value="NonlinearFlow"/&gt;
+ * &lt;/module&gt;
+ * </pre>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class CompositeCheck
+    extends AbstractCheck
+{
+    /** module names of the checks of the extension */
+    private static final String[] EXTENSION_CHECKS = {
+        "NonlinearFlow",
+    };
+
+    /** package of the checks of the extension */
+    private static final String PACKAGE =
+        CompositeCheck.class.getPackage().getName() + ".";
+
+    /** module names or class names of the member checks */
+    private String[] mCheckNames = EXTENSION_CHECKS.clone();
+
+    /** the member checks */
+    private AbstractCheck[] mChecks = new AbstractCheck[0];
+
+    /** member checks by token type */
+    private AbstractCheck[][] mDispatch = new AbstractCheck[0][];
+
+    /** tokens of all member checks */
+    private int[] mTokens = new int[0];
+
+    /** true if some member check requires comment nodes */
+    private boolean mCommentNodesRequired;
+
+    /**
+     * Sets the member checks.
+     * @param aCheckNames module names or class names of the member checks.
+     */
+    public void setChecks(String... aCheckNames)
+    {
+        mCheckNames = aCheckNames.clone();
+    }
+
+    /**
+     * Returns the module names of the checks of the extension.
+     * @return the module names.
+     */
+    static String[] getExtensionChecks()
+    {
+        return EXTENSION_CHECKS.clone();
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AutomaticBean */
+    protected void finishLocalSetup()
+        throws CheckstyleException
+    {
+        final List<AbstractCheck> checks = new ArrayList<AbstractCheck>();
+        for (int i = 0; i < mCheckNames.length; i++) {
+            final String name = mCheckNames[i].trim();
+            if (name.length() > 0) {
+                checks.add(createCheck(name));
+            }
+        }
+        mChecks = checks.toArray(new AbstractCheck[checks.size()]);
+        buildDispatchTable();
+    }
+
+    /**
+     * Creates and configures a member check.
+     * @param aName module name or class name of the check.
+     * @return the check.
+     * @throws CheckstyleException if the check cannot be created.
+     */
+    private static AbstractCheck createCheck(String aName)
+        throws CheckstyleException
+    {
+        final String[] candidates = {aName, PACKAGE + aName + "Check"};
+        for (int i = 0; i < candidates.length; i++) {
+            final Class<?> type;
+            try {
+                type = Class.forName(candidates[i]);
+            }
+            catch (ClassNotFoundException e) {
+                continue;
+            }
+            if (!AbstractCheck.class.isAssignableFrom(type)
+                || type == CompositeCheck.class)
+            {
+                throw new CheckstyleException(
+                    aName + " cannot be a member of a composite check");
+            }
+            final AbstractCheck result;
+            try {
+                result = (AbstractCheck)
+                    type.getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException e) {
+                throw new CheckstyleException("Unable to create " + aName, e);
+            }
+            result.configure(new DefaultConfiguration(aName));
+            return result;
+        }
+        throw new CheckstyleException("Unable to find check " + aName);
+    }
+
+    /**
+     * Builds the table of member checks by token type from the default
+     * tokens of the member checks.
+     */
+    private void buildDispatchTable()
+    {
+        int max = -1;
+        for (int i = 0; i < mChecks.length; i++) {
+            final int[] tokens = mChecks[i].getDefaultTokens();
+            for (int j = 0; j < tokens.length; j++) {
+                max = Math.max(max, tokens[j]);
+            }
+            mCommentNodesRequired |= mChecks[i].isCommentNodesRequired();
+        }
+        final List<List<AbstractCheck>> table =
+            new ArrayList<List<AbstractCheck>>();
+        for (int type = 0; type <= max; type++) {
+            table.add(null);
+        }
+        int count = 0;
+        for (int i = 0; i < mChecks.length; i++) {
+            final int[] tokens = mChecks[i].getDefaultTokens();
+            for (int j = 0; j < tokens.length; j++) {
+                List<AbstractCheck> list = table.get(tokens[j]);
+                if (list == null) {
+                    list = new ArrayList<AbstractCheck>();
+                    table.set(tokens[j], list);
+                    count++;
+                }
+                if (!list.contains(mChecks[i])) {
+                    list.add(mChecks[i]);
+                }
+            }
+        }
+        mDispatch = new AbstractCheck[max + 1][];
+        mTokens = new int[count];
+        count = 0;
+        for (int type = 0; type <= max; type++) {
+            final List<AbstractCheck> list = table.get(type);
+            if (list != null) {
+                mDispatch[type] = list.toArray(new AbstractCheck[list.size()]);
+                mTokens[count++] = type;
+            }
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public int[] getDefaultTokens()
+    {
+        return mTokens.clone();
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public int[] getAcceptableTokens()
+    {
+        return mTokens.clone();
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public int[] getRequiredTokens()
+    {
+        return new int[0];
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public boolean isCommentNodesRequired()
+    {
+        return mCommentNodesRequired;
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public void init()
+    {
+        for (int i = 0; i < mChecks.length; i++) {
+            mChecks[i].setSeverity(getSeverity());
+            mChecks[i].setTabWidth(getTabWidth());
+            mChecks[i].setClassLoader(getClassLoader());
+            mChecks[i].init();
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public void destroy()
+    {
+        for (int i = 0; i < mChecks.length; i++) {
+            mChecks[i].destroy();
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public void beginTree(DetailAST aRootAST)
+    {
+        for (int i = 0; i < mChecks.length; i++) {
+            mChecks[i].setFileContents(getFileContents());
+            mChecks[i].clearMessages();
+            mChecks[i].beginTree(aRootAST);
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public void visitToken(DetailAST aAST)
+    {
+        final AbstractCheck[] checks = mDispatch[aAST.getType()];
+        for (int i = 0; i < checks.length; i++) {
+            checks[i].visitToken(aAST);
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public void leaveToken(DetailAST aAST)
+    {
+        final AbstractCheck[] checks = mDispatch[aAST.getType()];
+        for (int i = 0; i < checks.length; i++) {
+            checks[i].leaveToken(aAST);
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public void finishTree(DetailAST aRootAST)
+    {
+        for (int i = 0; i < mChecks.length; i++) {
+            mChecks[i].finishTree(aRootAST);
+        }
+    }
+
+    /**
+     * Returns the messages of this check and of the member checks.
+     * @return the messages.
+     * @see com.puppycrawl.tools.checkstyle.api.AbstractCheck
+     */
+    public SortedSet<LocalizedMessage> getMessages()
+    {
+        final SortedSet<LocalizedMessage> result = super.getMessages();
+        for (int i = 0; i < mChecks.length; i++) {
+            result.addAll(mChecks[i].getMessages());
+        }
+        return result;
+    }
+}
@@ -35,26 +35,69 @@ import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
  * </pre>
  * @author Rick Giles
  * @author CS4250 Students (MSU Denver)
- * @version 1.1
+ * @version 1.2
  */
-public abstract class NonlinearFlowCheck
+public class NonlinearFlowCheck
     extends AbstractCheck
 {
+    /** message reported for every nonlinear control flow statement */
+    private static final String MSG_KEY = "Nonlinear control flow";
+
+    /** tokens of nonlinear control flow statements */
+    private static final int[] TOKENS = {
+        TokenTypes.LITERAL_BREAK,
+        TokenTypes.LITERAL_CONTINUE,
+        TokenTypes.LITERAL_SWITCH,
+    };
+
+    /**
+     * offset from the start of each token to its last character, by
+     * token type; the text of these tokens is fixed
+     */
+    private static final int[] END_OFFSETS = new int[maxToken() + 1];
+
+    static {
+        END_OFFSETS[TokenTypes.LITERAL_BREAK] = "break".length() - 1;
+        END_OFFSETS[TokenTypes.LITERAL_CONTINUE] = "continue".length() - 1;
+        END_OFFSETS[TokenTypes.LITERAL_SWITCH] = "switch".length() - 1;
+    }
+
     /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
     public int[] getDefaultTokens()
     {
-        return new int[] {
-            TokenTypes.LITERAL_BREAK,
-            TokenTypes.LITERAL_CONTINUE,
-            TokenTypes.LITERAL_SWITCH,
-            };
+        return TOKENS.clone();
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public int[] getAcceptableTokens()
+    {
+        return TOKENS.clone();
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
+    public int[] getRequiredTokens()
+    {
+        return new int[0];
     }
 
     /** @see com.puppycrawl.tools.checkstyle.api.AbstractCheck */
     public void visitToken(DetailAST aAST)
     {
         log(aAST.getLineNo(),
-            aAST.getColumnNo() + aAST.getText().length() - 1,
-            "Nonlinear control flow");
+            aAST.getColumnNo() + END_OFFSETS[aAST.getType()],
+            MSG_KEY);
+    }
+
+    /**
+     * Returns the largest token type of TOKENS.
+     * @return the largest token type.
+     */
+    private static int maxToken()
+    {
+        int result = 0;
+        for (int i = 0; i < TOKENS.length; i++) {
+            result = Math.max(result, TOKENS[i]);
+        }
+        return result;
     }
 }
@@ -0,0 +1,602 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+import antlr.TokenStreamHiddenTokenFilter;
+
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+import com.puppycrawl.tools.checkstyle.grammars.GeneratedJavaLexer;
+import com.puppycrawl.tools.checkstyle.grammars.GeneratedJavaRecognizer;
+
+/**
+ * Cache of parsed syntax trees shared by all audits, so that auditing an
+ * unchanged file again, for example with another configuration, does not
+ * lex and parse it again. Trees are keyed by file name and a hash of the
+ * file contents. The most recently used trees are held strongly up to a
+ * bound on their estimated size; trees evicted from that bound are held
+ * softly until the garbage collector needs the memory. Parsing stops when
+ * the thread is interrupted, so that an audit that has run out of time
+ * does not parse on. The tree with comment nodes is built when a check
+ * first needs it, and counts towards the size of its entry from then on.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.2
+ */
+public final class AstCache
+{
+    /** default bound on the estimated size of strongly held trees */
+    private static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+
+    /** estimated bytes per tree node */
+    private static final int NODE_BYTES = 128;
+
+    /** estimated bytes per character of the file contents */
+    private static final int CHAR_BYTES = 4;
+
+    /** the shared cache */
+    private static final AstCache INSTANCE = new AstCache(DEFAULT_CAPACITY);
+
+    /** bound on the estimated size of strongly held trees (bytes) */
+    private long mCapacity;
+
+    /** estimated size of strongly held trees (bytes) */
+    private long mSize;
+
+    /** strongly held entries, least recently used first */
+    private final LinkedHashMap<Key, Entry> mEntries =
+        new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /** softly held entries that were evicted from mEntries */
+    private final Map<Key, SoftEntry> mSoftEntries =
+        new HashMap<Key, SoftEntry>();
+
+    /** key of the most recently parsed contents of each file */
+    private final Map<String, Key> mLatest = new HashMap<String, Key>();
+
+    /** queue of soft entries cleared by the garbage collector */
+    private final ReferenceQueue<Entry> mCleared = new ReferenceQueue<Entry>();
+
+    /** number of lookups that found a tree */
+    private long mHits;
+
+    /** number of lookups that had to parse */
+    private long mMisses;
+
+    /**
+     * Constructs an <code>AstCache</code>.
+     * @param aCapacity bound on the estimated size of strongly held trees
+     * (bytes).
+     */
+    private AstCache(long aCapacity)
+    {
+        mCapacity = aCapacity;
+    }
+
+    /**
+     * Returns the shared cache.
+     * @return the shared cache.
+     */
+    public static AstCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the bound on the estimated size of strongly held trees.
+     * @param aCapacity the bound in bytes, 0 to hold trees only softly.
+     */
+    public synchronized void setCapacity(long aCapacity)
+    {
+        mCapacity = aCapacity;
+        evict();
+    }
+
+    /**
+     * Returns the parsed form of a file, parsing it unless a tree of the
+     * same contents is cached.
+     * @param aText the contents of the file.
+     * @return the parsed file.
+     * @throws RecognitionException if the file cannot be parsed.
+     * @throws TokenStreamException if the file cannot be lexed.
+     */
+    public Entry get(FileText aText)
+        throws RecognitionException, TokenStreamException
+    {
+        final Key key = new Key(aText);
+        synchronized (this) {
+            expungeCleared();
+            Entry result = mEntries.get(key);
+            if (result == null) {
+                final SoftEntry soft = mSoftEntries.remove(key);
+                result = (soft == null) ? null : soft.get();
+                if (result != null) {
+                    put(key, result);
+                }
+            }
+            if (result != null) {
+                mHits++;
+                lookedUp(aText, true);
+                return result;
+            }
+            mMisses++;
+        }
+        lookedUp(aText, false);
+        final FlightEvents.Event event = FlightEvents.PARSE.begin();
+        final Entry result = new Entry(this, key, aText);
+        if (event != null) {
+            event.commit(FlightEvents.getProject(aText.getFile()),
+                aText.getFile().getPath(), aText.size());
+        }
+        synchronized (this) {
+            put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Emits the flight event of a lookup.
+     * @param aText the contents of the file looked up.
+     * @param aHit true if the tree was cached.
+     */
+    private static void lookedUp(FileText aText, boolean aHit)
+    {
+        final FlightEvents.Event event = FlightEvents.CACHE_LOOKUP.begin();
+        if (event != null) {
+            event.commit(FlightEvents.getProject(aText.getFile()),
+                aText.getFile().getPath(), aHit);
+        }
+    }
+
+    /**
+     * Removes all trees from this cache.
+     */
+    public synchronized void clear()
+    {
+        mEntries.clear();
+        mSoftEntries.clear();
+        mLatest.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Removes the trees of the files of a directory, for example of a
+     * package that has been closed. Files of subdirectories are kept.
+     * @param aDir the directory.
+     */
+    public synchronized void evict(File aDir)
+    {
+        final File dir = aDir.getAbsoluteFile();
+        final Iterator<Map.Entry<Key, Entry>> it =
+            mEntries.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Key, Entry> entry = it.next();
+            if (entry.getKey().isIn(dir)) {
+                mSize -= entry.getValue().getSize();
+                it.remove();
+            }
+        }
+        final Iterator<Key> soft = mSoftEntries.keySet().iterator();
+        while (soft.hasNext()) {
+            if (soft.next().isIn(dir)) {
+                soft.remove();
+            }
+        }
+        final Iterator<Key> latest = mLatest.values().iterator();
+        while (latest.hasNext()) {
+            if (latest.next().isIn(dir)) {
+                latest.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a cached tree.
+     * @return the number of cache hits.
+     */
+    public synchronized long getHits()
+    {
+        return mHits;
+    }
+
+    /**
+     * Returns the number of lookups that parsed a file.
+     * @return the number of cache misses.
+     */
+    public synchronized long getMisses()
+    {
+        return mMisses;
+    }
+
+    /**
+     * Returns the estimated size of the strongly held trees.
+     * @return the estimated size in bytes.
+     */
+    public synchronized long getSize()
+    {
+        return mSize;
+    }
+
+    /**
+     * Holds an entry strongly, dropping the entry of earlier contents of
+     * the same file and evicting least recently used entries to soft
+     * references as needed.
+     * @param aKey key of the entry.
+     * @param aEntry the entry.
+     */
+    private void put(Key aKey, Entry aEntry)
+    {
+        final Key previous = mLatest.put(aKey.mFileName, aKey);
+        if (previous != null && !previous.equals(aKey)) {
+            final Entry stale = mEntries.remove(previous);
+            if (stale != null) {
+                mSize -= stale.getSize();
+            }
+            mSoftEntries.remove(previous);
+        }
+        final Entry old = mEntries.put(aKey, aEntry);
+        if (old != null) {
+            mSize -= old.getSize();
+        }
+        mSize += aEntry.getSize();
+        evict();
+    }
+
+    /**
+     * Adds to the estimated size of an entry, for example once its tree
+     * with comment nodes has been built, evicting least recently used
+     * entries as needed if the entry is held strongly.
+     * @param aEntry the entry.
+     * @param aGrowth the estimated size added (bytes).
+     */
+    private synchronized void grow(Entry aEntry, long aGrowth)
+    {
+        aEntry.mSize += aGrowth;
+        if (mEntries.get(aEntry.mKey) == aEntry) {
+            mSize += aGrowth;
+            evict();
+        }
+    }
+
+    /**
+     * Moves least recently used entries to soft references until the
+     * strongly held entries fit the capacity.
+     */
+    private void evict()
+    {
+        final Iterator<Map.Entry<Key, Entry>> it =
+            mEntries.entrySet().iterator();
+        while (mSize > mCapacity && it.hasNext()) {
+            final Map.Entry<Key, Entry> eldest = it.next();
+            it.remove();
+            mSize -= eldest.getValue().getSize();
+            mSoftEntries.put(eldest.getKey(),
+                new SoftEntry(eldest.getKey(), eldest.getValue(), mCleared));
+        }
+    }
+
+    /**
+     * Forgets soft entries whose trees have been collected.
+     */
+    private void expungeCleared()
+    {
+        SoftEntry cleared = (SoftEntry) mCleared.poll();
+        while (cleared != null) {
+            if (mSoftEntries.get(cleared.mKey) == cleared) {
+                mSoftEntries.remove(cleared.mKey);
+                if (cleared.mKey.equals(mLatest.get(cleared.mKey.mFileName))) {
+                    mLatest.remove(cleared.mKey.mFileName);
+                }
+            }
+            cleared = (SoftEntry) mCleared.poll();
+        }
+    }
+
+    /**
+     * Parses a file as <code>TreeWalker.parse</code> does, reading its
+     * contents through an {@link InterruptibleReader}.
+     * @param aContents the contents of the file.
+     * @return the syntax tree.
+     * @throws RecognitionException if the file cannot be parsed.
+     * @throws TokenStreamException if the file cannot be lexed, or the
+     * thread is interrupted.
+     */
+    private static DetailAST parse(FileContents aContents)
+        throws RecognitionException, TokenStreamException
+    {
+        final GeneratedJavaLexer lexer = new GeneratedJavaLexer(
+            new InterruptibleReader(
+                aContents.getText().getFullText().toString()));
+        lexer.setCommentListener(aContents);
+        lexer.setTokenObjectClass("antlr.CommonHiddenStreamToken");
+        final TokenStreamHiddenTokenFilter filter =
+            new TokenStreamHiddenTokenFilter(lexer);
+        filter.hide(TokenTypes.SINGLE_LINE_COMMENT);
+        filter.hide(TokenTypes.BLOCK_COMMENT_BEGIN);
+        final GeneratedJavaRecognizer parser =
+            new GeneratedJavaRecognizer(filter);
+        parser.setFilename(aContents.getFileName());
+        parser.setASTNodeClass(DetailAST.class.getName());
+        parser.compilationUnit();
+        return (DetailAST) parser.getAST();
+    }
+
+    /**
+     * The parsed form of one file: its contents with their comments and
+     * its syntax tree, with and without comment nodes.
+     */
+    public static final class Entry
+    {
+        /** contents of the file, with comments reported by the lexer */
+        private final FileContents mContents;
+
+        /** syntax tree without comment nodes */
+        private final DetailAST mTree;
+
+        /** syntax tree with comment nodes, or null until it is needed */
+        private DetailAST mCommentTree;
+
+        /** the cache of this entry */
+        private final AstCache mCache;
+
+        /** key of this entry */
+        private final Key mKey;
+
+        /** estimated size of this entry (bytes), guarded by mCache */
+        private long mSize;
+
+        /**
+         * Parses a file.
+         * @param aCache the cache of the entry.
+         * @param aKey key of the entry.
+         * @param aText contents of the file.
+         * @throws RecognitionException if the file cannot be parsed.
+         * @throws TokenStreamException if the file cannot be lexed.
+         */
+        Entry(AstCache aCache, Key aKey, FileText aText)
+            throws RecognitionException, TokenStreamException
+        {
+            mCache = aCache;
+            mKey = aKey;
+            mContents = new FileContents(aText);
+            mTree = parse(mContents);
+            mSize = (long) countNodes(mTree) * NODE_BYTES
+                + (long) aText.getFullText().length() * CHAR_BYTES;
+        }
+
+        /**
+         * Returns the contents of the file.
+         * @return the contents of the file.
+         */
+        public FileContents getContents()
+        {
+            return mContents;
+        }
+
+        /**
+         * Returns the syntax tree of the file without comment nodes.
+         * Checks must not modify the tree.
+         * @return the syntax tree.
+         */
+        public DetailAST getTree()
+        {
+            return mTree;
+        }
+
+        /**
+         * Returns the syntax tree of the file with comment nodes, parsing
+         * it on first use since adding comment nodes modifies a tree.
+         * @return the syntax tree with comment nodes.
+         * @throws RecognitionException if the file cannot be parsed.
+         * @throws TokenStreamException if the file cannot be lexed.
+         */
+        public synchronized DetailAST getCommentTree()
+            throws RecognitionException, TokenStreamException
+        {
+            if (mCommentTree == null) {
+                mCommentTree = TreeWalker.parseWithComments(
+                    new FileContents(mContents.getText()));
+                mCache.grow(this, (long) countNodes(mCommentTree) * NODE_BYTES);
+            }
+            return mCommentTree;
+        }
+
+        /**
+         * Returns the estimated size of this entry. The cache must be
+         * locked.
+         * @return the estimated size in bytes.
+         */
+        long getSize()
+        {
+            return mSize;
+        }
+
+        /**
+         * Counts the nodes of a tree.
+         * @param aRoot the first root of the tree.
+         * @return the number of nodes.
+         */
+        private static int countNodes(DetailAST aRoot)
+        {
+            int result = 0;
+            DetailAST node = aRoot;
+            while (node != null) {
+                result++;
+                DetailAST next = node.getFirstChild();
+                while (node != null && next == null) {
+                    next = node.getNextSibling();
+                    if (next == null) {
+                        node = node.getParent();
+                    }
+                }
+                node = next;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Identifies the contents of a file: its name and a hash of its text.
+     */
+    private static final class Key
+    {
+        /** name of the file */
+        private final String mFileName;
+
+        /** SHA-256 hash of the text of the file */
+        private final byte[] mHash;
+
+        /** hash code of this key */
+        private final int mHashCode;
+
+        /**
+         * Constructs the key of the contents of a file.
+         * @param aText the contents of the file.
+         */
+        Key(FileText aText)
+        {
+            mFileName = (aText.getFile() == null)
+                ? "" : aText.getFile().getAbsolutePath();
+            final MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            mHash = digest.digest(aText.getFullText().toString()
+                .getBytes(StandardCharsets.UTF_8));
+            mHashCode = 31 * mFileName.hashCode() + Arrays.hashCode(mHash);
+        }
+
+        /**
+         * Determines whether the file of this key is in a directory.
+         * @param aDir the absolute directory.
+         * @return true if the file is in aDir, not in a subdirectory.
+         */
+        boolean isIn(File aDir)
+        {
+            return aDir.equals(new File(mFileName).getParentFile());
+        }
+
+        /** @see java.lang.Object */
+        public boolean equals(Object aObject)
+        {
+            if (!(aObject instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) aObject;
+            return mFileName.equals(other.mFileName)
+                && Arrays.equals(mHash, other.mHash);
+        }
+
+        /** @see java.lang.Object */
+        public int hashCode()
+        {
+            return mHashCode;
+        }
+    }
+
+    /**
+     * Soft reference to an evicted entry that remembers its key.
+     */
+    private static final class SoftEntry extends SoftReference<Entry>
+    {
+        /** key of the entry */
+        private final Key mKey;
+
+        /**
+         * Constructs a <code>SoftEntry</code>.
+         * @param aKey key of the entry.
+         * @param aEntry the entry.
+         * @param aQueue queue notified when the entry is collected.
+         */
+        SoftEntry(Key aKey, Entry aEntry, ReferenceQueue<Entry> aQueue)
+        {
+            super(aEntry, aQueue);
+            mKey = aKey;
+        }
+    }
+
+    /**
+     * Reader of a string that fails once its thread is interrupted.
+     */
+    private static final class InterruptibleReader extends FilterReader
+    {
+        /**
+         * Constructs an <code>InterruptibleReader</code>.
+         * @param aText the text to read.
+         */
+        InterruptibleReader(String aText)
+        {
+            super(new StringReader(aText));
+        }
+
+        /** @see java.io.Reader */
+        public int read()
+            throws IOException
+        {
+            checkInterrupted();
+            return super.read();
+        }
+
+        /** @see java.io.Reader */
+        public int read(char[] aBuffer, int aOffset, int aLength)
+            throws IOException
+        {
+            checkInterrupted();
+            return super.read(aBuffer, aOffset, aLength);
+        }
+
+        /**
+         * Fails if the current thread is interrupted.
+         * @throws InterruptedIOException if it is.
+         */
+        private static void checkInterrupted()
+            throws InterruptedIOException
+        {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Parsing interrupted");
+            }
+        }
+    }
+}
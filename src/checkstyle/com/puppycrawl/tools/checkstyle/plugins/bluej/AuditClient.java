@@ -0,0 +1,393 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * A connection to the {@link AuditDaemon} of this machine, configured for
+ * one configuration. The daemon is found through its port file, which is
+ * used only if it is private to the current user, or to the group named
+ * by the system property <code>checkstyle.daemon.group</code>, and it must
+ * prove that it knows the secret of the port file before anything is
+ * sent, see {@link DaemonEndpoint}. The system property
+ * <code>checkstyle.daemon</code> set to <code>false</code> disables the
+ * daemon, and the system property <code>checkstyle.daemon.portfile</code>
+ * names another port file.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.3
+ */
+final class AuditClient
+{
+    /** time to wait for a connection (milliseconds) */
+    private static final int CONNECT_TIMEOUT = 200;
+
+    /** time not to retry a daemon that could not be reached (ms) */
+    private static final long RETRY_DELAY = 30000;
+
+    /** references to properties in a configuration */
+    private static final Pattern PROPERTY_REFERENCE =
+        Pattern.compile("\\$\\{([^}]*)\\}");
+
+    /** severity levels by ordinal */
+    private static final SeverityLevel[] SEVERITIES = SeverityLevel.values();
+
+    /** time of the last failure to reach the daemon */
+    private static volatile long sLastFailure;
+
+    /** check classes by name */
+    private static final Map<String, Class<?>> CLASSES =
+        new HashMap<String, Class<?>>();
+
+    /** the connection */
+    private final Socket mSocket;
+
+    /** input from the daemon */
+    private final DataInputStream mIn;
+
+    /** output to the daemon */
+    private final DataOutputStream mOut;
+
+    /**
+     * Constructs an <code>AuditClient</code>, authenticates the daemon
+     * and itself, and sends the configuration.
+     * @param aSocket connection to the daemon.
+     * @param aEndpoint port and secret of the daemon.
+     * @param aConfig the configuration file.
+     * @param aProps the properties to expand in the configuration.
+     * @throws IOException if the connection fails or the daemon fails
+     * authentication.
+     * @throws CheckstyleException if the daemon rejects the configuration.
+     */
+    private AuditClient(Socket aSocket, DaemonEndpoint aEndpoint,
+        byte[] aConfig, Properties aProps)
+        throws IOException, CheckstyleException
+    {
+        mSocket = aSocket;
+        mIn = new DataInputStream(
+            new BufferedInputStream(aSocket.getInputStream()));
+        mOut = new DataOutputStream(
+            new BufferedOutputStream(aSocket.getOutputStream()));
+        final byte[] clientNonce = DaemonEndpoint.newNonce();
+        mOut.writeInt(AuditDaemon.MAGIC);
+        mOut.writeByte(AuditDaemon.VERSION);
+        mOut.write(clientNonce);
+        mOut.flush();
+        final byte[] daemonNonce = new byte[DaemonEndpoint.NONCE_LENGTH];
+        mIn.readFully(daemonNonce);
+        aEndpoint.verify(mIn, DaemonEndpoint.DAEMON, clientNonce,
+            daemonNonce);
+        aEndpoint.prove(mOut, DaemonEndpoint.CLIENT, clientNonce,
+            daemonNonce);
+        // loading the configuration may take the daemon a while
+        mSocket.setSoTimeout(0);
+
+        final Map<String, String> used = new LinkedHashMap<String, String>();
+        final Matcher matcher = PROPERTY_REFERENCE.matcher(
+            new String(aConfig, StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            final String value = aProps.getProperty(matcher.group(1));
+            if (value != null) {
+                used.put(matcher.group(1), value);
+            }
+        }
+        mOut.writeByte(AuditDaemon.CONFIGURE);
+        mOut.writeInt(aConfig.length);
+        mOut.write(aConfig);
+        mOut.writeInt(used.size());
+        for (Map.Entry<String, String> entry : used.entrySet()) {
+            mOut.writeUTF(entry.getKey());
+            mOut.writeUTF(entry.getValue());
+        }
+        mOut.writeUTF(new File("").getAbsolutePath());
+        mOut.flush();
+        readStatus();
+    }
+
+    /**
+     * Tells whether a daemon may be tried.
+     * @return false if the daemon is disabled or was recently unreachable.
+     */
+    static boolean isEnabled()
+    {
+        return !"false".equals(System.getProperty("checkstyle.daemon"))
+            && System.currentTimeMillis() - sLastFailure > RETRY_DELAY
+            && getPortFile().isFile();
+    }
+
+    /**
+     * Connects to the daemon and sends a configuration.
+     * @param aConfig the configuration file.
+     * @param aProps the properties to expand in the configuration.
+     * @return the connection, or null if the daemon cannot be reached.
+     * @throws CheckstyleException if the daemon rejects the configuration.
+     */
+    static AuditClient connect(byte[] aConfig, Properties aProps)
+        throws CheckstyleException
+    {
+        if (!isEnabled()) {
+            return null;
+        }
+        Socket socket = null;
+        try {
+            final DaemonEndpoint endpoint =
+                DaemonEndpoint.read(getPortFile(), getGroup());
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), endpoint.getPort()),
+                CONNECT_TIMEOUT);
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            return new AuditClient(socket, endpoint, aConfig, aProps);
+        }
+        catch (IOException e) {
+            failed(socket);
+        }
+        catch (CheckstyleException e) {
+            close(socket);
+            throw e;
+        }
+        return null;
+    }
+
+    /**
+     * Audits a file.
+     * @param aFile the file.
+     * @param aContents the contents of the file.
+     * @param aTimeout time to wait for the events (milliseconds), 0 for
+     * no limit.
+     * @return the events of the file.
+     * @throws IOException if the connection fails or times out.
+     * @throws CheckstyleException if the audit fails.
+     */
+    List<AuditEvent> audit(File aFile, byte[] aContents, long aTimeout)
+        throws IOException, CheckstyleException
+    {
+        final String fileName = aFile.getAbsolutePath();
+        mSocket.setSoTimeout((int) Math.min(aTimeout, Integer.MAX_VALUE));
+        mOut.writeByte(AuditDaemon.AUDIT);
+        mOut.writeUTF(fileName);
+        mOut.writeInt(aContents.length);
+        mOut.write(aContents);
+        mOut.flush();
+        readStatus();
+        final int count = mIn.readInt();
+        final List<AuditEvent> result = new ArrayList<AuditEvent>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(readEvent(mIn, this, fileName));
+        }
+        return result;
+    }
+
+    /**
+     * Reads an event written by {@link AuditDaemon#writeEvent}.
+     * @param aIn the input.
+     * @param aSource source of the event.
+     * @param aFileName file of the event.
+     * @return the event.
+     * @throws IOException if the input fails.
+     */
+    static AuditEvent readEvent(DataInputStream aIn, Object aSource,
+        String aFileName)
+        throws IOException
+    {
+        final int line = aIn.readInt();
+        final int column = aIn.readInt();
+        final int severity = aIn.readByte();
+        final String moduleId = aIn.readUTF();
+        final String sourceName = aIn.readUTF();
+        final String message = aIn.readUTF();
+        return newEvent(aSource, aFileName, line, column, severity,
+            moduleId, sourceName, message);
+    }
+
+    /**
+     * Creates an event from its parts, as written by
+     * {@link AuditDaemon#writeEvent}.
+     * @param aSource source of the event.
+     * @param aFileName file of the event.
+     * @param aLine line of the event.
+     * @param aColumn column of the event.
+     * @param aSeverity ordinal of the severity level of the event.
+     * @param aModuleId module id of the check, null or empty if none.
+     * @param aSourceName class name of the check.
+     * @param aMessage the formatted message.
+     * @return the event.
+     */
+    static AuditEvent newEvent(Object aSource, String aFileName, int aLine,
+        int aColumn, int aSeverity, String aModuleId, String aSourceName,
+        String aMessage)
+    {
+        final LocalizedMessage localized = new LocalizedMessage(
+            aLine, aColumn, null, null, null,
+            (aSeverity >= 0 && aSeverity < SEVERITIES.length)
+                ? SEVERITIES[aSeverity] : SeverityLevel.ERROR,
+            "".equals(aModuleId) ? null : aModuleId,
+            getSourceClass(aSourceName),
+            quote(aMessage));
+        return new AuditEvent(aSource, aFileName, localized);
+    }
+
+    /**
+     * Ends the connection.
+     */
+    void close()
+    {
+        try {
+            mOut.writeByte(AuditDaemon.CLOSE);
+            mOut.flush();
+        }
+        catch (IOException e) {
+            // the daemon has gone already
+        }
+        close(mSocket);
+    }
+
+    /**
+     * Ends a connection that failed, and does not retry the daemon for a
+     * while.
+     */
+    void abort()
+    {
+        failed(mSocket);
+    }
+
+    /**
+     * Reads the status of a command.
+     * @throws IOException if the connection fails.
+     * @throws CheckstyleException if the command failed.
+     */
+    private void readStatus()
+        throws IOException, CheckstyleException
+    {
+        if (mIn.readByte() != AuditDaemon.OK) {
+            throw new CheckstyleException(mIn.readUTF());
+        }
+    }
+
+    /**
+     * Quotes a formatted message, so that LocalizedMessage, which formats
+     * its custom message, returns it unchanged.
+     * @param aMessage the message.
+     * @return the quoted message.
+     */
+    private static String quote(String aMessage)
+    {
+        return "'" + aMessage.replace("'", "''") + "'";
+    }
+
+    /**
+     * Returns the check class of an event, or BlueJChecker if the check
+     * cannot be loaded here.
+     * @param aName the name of the class.
+     * @return the class.
+     */
+    private static Class<?> getSourceClass(String aName)
+    {
+        synchronized (CLASSES) {
+            Class<?> result = CLASSES.get(aName);
+            if (result == null) {
+                try {
+                    result = Class.forName(aName, false,
+                        AuditClient.class.getClassLoader());
+                }
+                catch (ClassNotFoundException e) {
+                    result = BlueJChecker.class;
+                }
+                catch (LinkageError e) {
+                    result = BlueJChecker.class;
+                }
+                CLASSES.put(aName, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the port file of the daemon.
+     * @return the port file.
+     */
+    private static File getPortFile()
+    {
+        final String name = System.getProperty("checkstyle.daemon.portfile");
+        return (name == null) ? DaemonEndpoint.getDefaultFile(getGroup())
+            : new File(name);
+    }
+
+    /**
+     * Returns the group whose daemon is used.
+     * @return the name of the group, or null for the daemon of the
+     * current user.
+     */
+    private static String getGroup()
+    {
+        return System.getProperty("checkstyle.daemon.group");
+    }
+
+    /**
+     * Remembers a failure to reach the daemon.
+     * @param aSocket the socket to close, or null.
+     */
+    private static void failed(Socket aSocket)
+    {
+        sLastFailure = System.currentTimeMillis();
+        close(aSocket);
+    }
+
+    /**
+     * Closes a socket.
+     * @param aSocket the socket, or null.
+     */
+    private static void close(Socket aSocket)
+    {
+        if (aSocket != null) {
+            try {
+                aSocket.close();
+            }
+            catch (IOException e) {
+                // nothing more to do with the socket
+            }
+        }
+    }
+}
@@ -0,0 +1,955 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.xml.sax.InputSource;
+
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+/**
+ * <p>
+ * Serves audits to the BlueJ instances of one user, or of the members of
+ * one group, on the same machine, so that they share warm Checkers,
+ * parsed configurations and a cache of results addressed by the contents
+ * of the configuration and of the audited file.
+ * </p>
+ * <pre>
+ * java com.puppycrawl.tools.checkstyle.plugins.bluej.AuditDaemon
+ *     [-p port] [-f port-file] [-g group]
+ * </pre>
+ * <p>
+ * The daemon listens on the loopback interface only and writes its port
+ * and a random secret to the port file, see {@link DaemonEndpoint}, which
+ * only the user, or with <code>-g</code> only the members of the group,
+ * can read and where {@link AuditClient} finds it. Clients
+ * send the configuration, the properties it refers to and the contents of
+ * each file, so the daemon never reads the files of its clients.
+ * </p>
+ * <p>
+ * The protocol is binary, big-endian, over one connection per client:
+ * the client sends {@link #MAGIC}, {@link #VERSION} and a random
+ * challenge; the daemon answers with its own challenge and its answer to
+ * the client's, and the client with its answer to the daemon's, see
+ * {@link DaemonEndpoint}. Either side closes the connection on a wrong
+ * answer. Then the client sends commands.
+ * {@link #CONFIGURE} is followed by the configuration file (length and
+ * bytes), the properties (count, then key and value strings) and the
+ * working directory of the client (string), against which relative file
+ * properties of the configuration are resolved; {@link #AUDIT} is
+ * followed by the absolute path of a file (string) and its contents
+ * (length and bytes). The contents are audited under that path, so that
+ * checks and filters that depend on the path see the file of the
+ * client, and results are cached by path and contents, and by the
+ * lengths and modification times of the files that the configuration
+ * refers to, such as a header or suppressions file. The daemon answers
+ * each command with {@link #OK} or {@link #FAILED} and a message; an
+ * audit answered with {@link #OK} is followed by the number of events
+ * and, for each event, line, column, severity ordinal (byte), module id,
+ * source name and message. {@link #CLOSE} ends the connection.
+ * </p>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.6
+ */
+public final class AuditDaemon
+{
+    /** first bytes sent by a client ("CSBD") */
+    static final int MAGIC = 0x43534244;
+
+    /** protocol version */
+    static final byte VERSION = 3;
+
+    /** command: end the connection */
+    static final byte CLOSE = 0;
+
+    /** command: set the configuration of the following audits */
+    static final byte CONFIGURE = 1;
+
+    /** command: audit one file */
+    static final byte AUDIT = 2;
+
+    /** answer: command succeeded */
+    static final byte OK = 0;
+
+    /** answer: command failed, a message follows */
+    static final byte FAILED = 1;
+
+    /** maximum number of cached file results */
+    private static final int RESULT_CACHE_SIZE = 10000;
+
+    /** maximum number of configurations with warm Checkers */
+    private static final int CHECKER_CACHE_SIZE = 16;
+
+    /** maximum number of parsed configurations */
+    private static final int CONFIGURATION_CACHE_SIZE = 64;
+
+    /** maximum number of idle Checkers kept for one configuration */
+    private static final int CHECKER_POOL_SIZE =
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** maximum size of a configuration or file sent by a client */
+    private static final int MAX_CONTENT = 64 * 1024 * 1024;
+
+    /** usage message */
+    private static final String USAGE =
+        "Usage: AuditDaemon [-p port] [-f port-file] [-g group]";
+
+    /** pools of warm Checkers by configuration key, least recent first */
+    private final Map<String, WarmChecker> mCheckers =
+        new LinkedHashMap<String, WarmChecker>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, WarmChecker> aEldest)
+            {
+                if (size() > CHECKER_CACHE_SIZE) {
+                    aEldest.getValue().destroy();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    /**
+     * parsed configurations by the bytes, properties and working directory
+     * sent by clients, least recent first
+     */
+    private final Map<String, Configured> mConfigurations =
+        new LinkedHashMap<String, Configured>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Configured> aEldest)
+            {
+                return size() > CONFIGURATION_CACHE_SIZE;
+            }
+        };
+
+    /** results by configuration and file contents, least recent first */
+    private final Map<String, List<Event>> mResults =
+        new LinkedHashMap<String, List<Event>>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, List<Event>> aEldest)
+            {
+                return size() > RESULT_CACHE_SIZE;
+            }
+        };
+
+    /** port and secret of this daemon */
+    private DaemonEndpoint mEndpoint;
+
+    /** number of audits answered from the result cache */
+    private long mHits;
+
+    /** number of audits run */
+    private long mMisses;
+
+    /**
+     * Constructs an <code>AuditDaemon</code>.
+     */
+    private AuditDaemon()
+    {
+    }
+
+    /**
+     * Runs the daemon until it is killed.
+     * @param aArgs the command line arguments.
+     */
+    public static void main(String[] aArgs)
+    {
+        int port = 0;
+        File portFile = null;
+        String group = null;
+        try {
+            for (int i = 0; i < aArgs.length; i++) {
+                if ("-p".equals(aArgs[i]) && i + 1 < aArgs.length) {
+                    port = Integer.parseInt(aArgs[++i]);
+                }
+                else if ("-f".equals(aArgs[i]) && i + 1 < aArgs.length) {
+                    portFile = new File(aArgs[++i]);
+                }
+                else if ("-g".equals(aArgs[i]) && i + 1 < aArgs.length) {
+                    group = aArgs[++i];
+                }
+                else {
+                    throw new IllegalArgumentException(aArgs[i]);
+                }
+            }
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (portFile == null) {
+            portFile = DaemonEndpoint.getDefaultFile(group);
+        }
+        try {
+            new AuditDaemon().serve(port, portFile, group);
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Accepts connections on the loopback interface.
+     * @param aPort the port, 0 for any free port.
+     * @param aPortFile the file to write the endpoint to.
+     * @param aGroup the group of the users of the daemon, or null for the
+     * current user only.
+     * @throws IOException if the daemon cannot listen, or the endpoint
+     * file cannot be written privately.
+     */
+    private void serve(int aPort, final File aPortFile, String aGroup)
+        throws IOException
+    {
+        final ServerSocket server =
+            new ServerSocket(aPort, 0, InetAddress.getLoopbackAddress());
+        mEndpoint = DaemonEndpoint.create(server.getLocalPort());
+        mEndpoint.write(aPortFile, aGroup);
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            public void run()
+            {
+                aPortFile.delete();
+                synchronized (mResults) {
+                    System.out.println("Checkstyle audit daemon: " + mHits
+                        + " cached, " + mMisses + " audited");
+                }
+            }
+        });
+        System.out.println("Checkstyle audit daemon listening on port "
+            + server.getLocalPort());
+
+        final ExecutorService workers = Executors.newCachedThreadPool(
+            new ThreadFactory()
+            {
+                public Thread newThread(Runnable aRunnable)
+                {
+                    final Thread thread =
+                        new Thread(aRunnable, "Checkstyle daemon client");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        while (true) {
+            final Socket socket = server.accept();
+            workers.execute(new Runnable()
+            {
+                public void run()
+                {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+    /**
+     * Serves the commands of one client until it closes the connection.
+     * @param aSocket the connection.
+     */
+    private void serve(Socket aSocket)
+    {
+        try {
+            aSocket.setTcpNoDelay(true);
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(aSocket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(aSocket.getOutputStream()));
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return;
+            }
+            final byte[] clientNonce = new byte[DaemonEndpoint.NONCE_LENGTH];
+            in.readFully(clientNonce);
+            final byte[] daemonNonce = DaemonEndpoint.newNonce();
+            out.write(daemonNonce);
+            mEndpoint.prove(out, DaemonEndpoint.DAEMON, clientNonce,
+                daemonNonce);
+            out.flush();
+            mEndpoint.verify(in, DaemonEndpoint.CLIENT, clientNonce,
+                daemonNonce);
+            Configured configured = null;
+            while (true) {
+                final byte command = in.readByte();
+                if (command == CONFIGURE) {
+                    final byte[] config = readBytes(in);
+                    final Properties props = new Properties();
+                    final int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        props.setProperty(in.readUTF(), in.readUTF());
+                    }
+                    final File workDir = new File(in.readUTF());
+                    try {
+                        configured = getConfigured(config, props, workDir);
+                        getChecker(configured);
+                        out.writeByte(OK);
+                    }
+                    catch (CheckstyleException e) {
+                        configured = null;
+                        writeFailure(out, e);
+                    }
+                }
+                else if (command == AUDIT) {
+                    final String path = in.readUTF();
+                    final byte[] contents = readBytes(in);
+                    if (configured == null) {
+                        writeFailure(out, new CheckstyleException(
+                            "No configuration"));
+                    }
+                    else {
+                        try {
+                            final List<Event> events = audit(
+                                getChecker(configured), path, contents);
+                            out.writeByte(OK);
+                            out.writeInt(events.size());
+                            for (int i = 0; i < events.size(); i++) {
+                                events.get(i).write(out);
+                            }
+                        }
+                        catch (CheckstyleException e) {
+                            writeFailure(out, e);
+                        }
+                    }
+                }
+                else {
+                    return;
+                }
+                out.flush();
+            }
+        }
+        catch (EOFException e) {
+            // client closed the connection
+        }
+        catch (IOException e) {
+            // client went away
+        }
+        finally {
+            try {
+                aSocket.close();
+            }
+            catch (IOException e) {
+                // nothing more to do with this client
+            }
+        }
+    }
+
+    /**
+     * Returns the warm Checker of a configuration, creating it if needed.
+     * The key of the Checker covers the files that the configuration
+     * refers to as they are now, so that a changed header or suppressions
+     * file configures new Checkers and misses the results cached before.
+     * @param aConfigured the configuration.
+     * @return the Checker.
+     * @throws CheckstyleException if the configuration is invalid.
+     */
+    private WarmChecker getChecker(Configured aConfigured)
+        throws CheckstyleException
+    {
+        final String key = aConfigured.mKey
+            + getFilesKey(aConfigured.mFiles);
+        synchronized (mCheckers) {
+            final WarmChecker cached = mCheckers.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final WarmChecker result = new WarmChecker(key, aConfigured.mConfig);
+        synchronized (mCheckers) {
+            final WarmChecker raced = mCheckers.get(key);
+            if (raced != null) {
+                result.destroy();
+                return raced;
+            }
+            mCheckers.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the parsed configuration of the bytes, properties and working
+     * directory sent by a client, parsing it if they have not been sent
+     * before. Relative file properties of the configuration are resolved
+     * against the working directory of the client, and the resolved files
+     * are part of the key of the Checker, so that clients whose files
+     * resolve alike share Checkers.
+     * @param aConfig the configuration file.
+     * @param aProps the properties to expand in the configuration.
+     * @param aWorkDir the working directory of the client.
+     * @return the parsed configuration.
+     * @throws CheckstyleException if the configuration is invalid.
+     */
+    private Configured getConfigured(byte[] aConfig, Properties aProps,
+        File aWorkDir)
+        throws CheckstyleException
+    {
+        final String requestKey = getRequestKey(aConfig, aProps, aWorkDir);
+        synchronized (mConfigurations) {
+            final Configured cached = mConfigurations.get(requestKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final StringBuilder resolved = new StringBuilder();
+        final List<File> files = new ArrayList<File>();
+        final Configuration loaded = resolveFiles(
+            ConfigurationLoader.loadConfiguration(
+                new InputSource(new ByteArrayInputStream(
+                    DtdResolver.localize(aConfig))),
+                new PropertiesExpander(aProps),
+                ConfigurationLoader.IgnoredModulesOptions.OMIT),
+            aWorkDir, resolved, files);
+        final MessageDigest digest = newDigest();
+        update(digest, aConfig, aProps);
+        digest.update(resolved.toString().getBytes(StandardCharsets.UTF_8));
+        final Configured result = new Configured(toHex(digest.digest()),
+            CachingTreeWalker.replaceTreeWalker(loaded), files);
+        synchronized (mConfigurations) {
+            mConfigurations.put(requestKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key of the bytes, properties and working directory of a
+     * configuration sent by a client, which identifies them without
+     * parsing the configuration.
+     * @param aConfig the configuration file.
+     * @param aProps the properties to expand in the configuration.
+     * @param aWorkDir the working directory of the client.
+     * @return the key.
+     */
+    static String getRequestKey(byte[] aConfig, Properties aProps,
+        File aWorkDir)
+    {
+        final MessageDigest digest = newDigest();
+        update(digest, aConfig, aProps);
+        digest.update(("\n\n" + aWorkDir.getAbsolutePath())
+            .getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns a key of the current state of the files that a configuration
+     * refers to: their paths, lengths and times of last modification.
+     * @param aFiles the files.
+     * @return the key, empty if there are no files.
+     */
+    static String getFilesKey(List<File> aFiles)
+    {
+        if (aFiles.isEmpty()) {
+            return "";
+        }
+        final MessageDigest digest = newDigest();
+        for (int i = 0; i < aFiles.size(); i++) {
+            final File file = aFiles.get(i);
+            digest.update((file.getPath() + "\n" + file.length() + "\n"
+                + file.lastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return "-" + toHex(digest.digest());
+    }
+
+    /**
+     * Adds a configuration file and its properties, in the order of their
+     * keys, to a digest.
+     * @param aDigest the digest.
+     * @param aConfig the configuration file.
+     * @param aProps the properties to expand in the configuration.
+     */
+    private static void update(MessageDigest aDigest, byte[] aConfig,
+        Properties aProps)
+    {
+        aDigest.update(aConfig);
+        final Map<Object, Object> sorted = new TreeMap<Object, Object>(aProps);
+        for (Map.Entry<Object, Object> entry : sorted.entrySet()) {
+            aDigest.update(("\n" + entry.getKey() + "=" + entry.getValue())
+                .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns a copy of a configuration in which relative file properties
+     * that name files in the working directory of the client are made
+     * absolute, so that they do not resolve against the working directory
+     * of the daemon. File properties are <code>file</code>,
+     * <code>basedir</code> and properties whose names end in
+     * <code>File</code>, such as <code>headerFile</code>.
+     * @param aConfig the configuration.
+     * @param aWorkDir the working directory of the client.
+     * @param aResolved receives the resolved properties, one per line.
+     * @param aFiles receives the existing files that file properties
+     * other than <code>basedir</code> name.
+     * @return the resolved configuration.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    private static Configuration resolveFiles(Configuration aConfig,
+        File aWorkDir, StringBuilder aResolved, List<File> aFiles)
+        throws CheckstyleException
+    {
+        final DefaultConfiguration result =
+            new DefaultConfiguration(aConfig.getName());
+        final String[] attributes = aConfig.getAttributeNames();
+        for (int i = 0; i < attributes.length; i++) {
+            String value = aConfig.getAttribute(attributes[i]);
+            if ("file".equals(attributes[i])
+                || "basedir".equals(attributes[i])
+                || attributes[i].endsWith("File"))
+            {
+                final File file = new File(value);
+                final File resolved = new File(aWorkDir, value);
+                if (!file.isAbsolute() && resolved.exists()) {
+                    value = resolved.getAbsolutePath();
+                    aResolved.append(aConfig.getName()).append('.')
+                        .append(attributes[i]).append('=').append(value)
+                        .append('\n');
+                }
+                final File named = new File(value).getAbsoluteFile();
+                if (!"basedir".equals(attributes[i]) && named.isFile()) {
+                    aFiles.add(named);
+                }
+            }
+            result.addAttribute(attributes[i], value);
+        }
+        for (Map.Entry<String, String> message
+            : aConfig.getMessages().entrySet())
+        {
+            result.addMessage(message.getKey(), message.getValue());
+        }
+        final Configuration[] children = aConfig.getChildren();
+        for (int i = 0; i < children.length; i++) {
+            result.addChild(
+                resolveFiles(children[i], aWorkDir, aResolved, aFiles));
+        }
+        return result;
+    }
+
+    /**
+     * Audits the contents of a file under its path on the client, or
+     * returns the cached result of the same path and contents.
+     * @param aChecker the Checker of the configuration.
+     * @param aPath the absolute path of the file on the client.
+     * @param aContents the contents of the file.
+     * @return the events of the file.
+     * @throws CheckstyleException if the audit fails.
+     */
+    private List<Event> audit(WarmChecker aChecker, String aPath,
+        byte[] aContents)
+        throws CheckstyleException
+    {
+        final MessageDigest digest = newDigest();
+        digest.update(aChecker.mKey.getBytes(StandardCharsets.UTF_8));
+        digest.update(aPath.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(aContents);
+        final String key = toHex(digest.digest());
+        synchronized (mResults) {
+            final List<Event> cached = mResults.get(key);
+            if (cached != null) {
+                mHits++;
+                return cached;
+            }
+            mMisses++;
+        }
+        final List<Event> result = aChecker.audit(new File(aPath), aContents);
+        synchronized (mResults) {
+            mResults.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a length and that many bytes.
+     * @param aIn the input.
+     * @return the bytes.
+     * @throws IOException if the input fails or the length is invalid.
+     */
+    private static byte[] readBytes(DataInputStream aIn)
+        throws IOException
+    {
+        final int length = aIn.readInt();
+        if (length < 0 || length > MAX_CONTENT) {
+            throw new IOException("Invalid length " + length);
+        }
+        final byte[] result = new byte[length];
+        aIn.readFully(result);
+        return result;
+    }
+
+    /**
+     * Answers a command with a failure.
+     * @param aOut the output.
+     * @param aException the cause of the failure.
+     * @throws IOException if the output fails.
+     */
+    private static void writeFailure(DataOutputStream aOut,
+        CheckstyleException aException)
+        throws IOException
+    {
+        aOut.writeByte(FAILED);
+        aOut.writeUTF(String.valueOf(aException.getMessage()));
+    }
+
+    /**
+     * Writes an event without its file, see
+     * {@link AuditClient#readEvent}: line, column, severity ordinal,
+     * module id (empty if none), source name and message.
+     * @param aOut the output.
+     * @param aEvt the event.
+     * @throws IOException if the output fails.
+     */
+    static void writeEvent(DataOutputStream aOut, AuditEvent aEvt)
+        throws IOException
+    {
+        new Event(aEvt).write(aOut);
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     * @return the digest.
+     */
+    private static MessageDigest newDigest()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Formats bytes as hexadecimal digits.
+     * @param aBytes the bytes.
+     * @return the digits.
+     */
+    private static String toHex(byte[] aBytes)
+    {
+        final StringBuilder result = new StringBuilder(aBytes.length * 2);
+        for (int i = 0; i < aBytes.length; i++) {
+            result.append(Character.forDigit((aBytes[i] >> 4) & 0xF, 16));
+            result.append(Character.forDigit(aBytes[i] & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * A parsed configuration with resolved files, and the key of its
+     * Checkers.
+     */
+    private static final class Configured
+    {
+        /**
+         * key of the Checkers of the configuration, without the state of
+         * the files it refers to
+         */
+        private final String mKey;
+
+        /** the configuration */
+        private final Configuration mConfig;
+
+        /** the files that the configuration refers to */
+        private final List<File> mFiles;
+
+        /**
+         * Constructs a <code>Configured</code>.
+         * @param aKey key of the Checkers of the configuration.
+         * @param aConfig the configuration.
+         * @param aFiles the files that the configuration refers to.
+         */
+        Configured(String aKey, Configuration aConfig, List<File> aFiles)
+        {
+            mKey = aKey;
+            mConfig = aConfig;
+            mFiles = aFiles;
+        }
+    }
+
+    /**
+     * The Checkers of a configuration kept between audits, which audit
+     * sources sent by clients under their paths on the client. Each audit
+     * takes an idle Checker, or configures a new one if all are busy, so
+     * that clients with the same configuration audit in parallel; at most
+     * {@link #CHECKER_POOL_SIZE} idle Checkers are kept.
+     */
+    private static final class WarmChecker
+    {
+        /** key of the configuration */
+        private final String mKey;
+
+        /** the configuration */
+        private final Configuration mConfig;
+
+        /** idle Checkers */
+        private final List<PooledChecker> mIdle =
+            new ArrayList<PooledChecker>();
+
+        /** true if the configuration has been evicted */
+        private boolean mDestroyed;
+
+        /**
+         * Constructs a <code>WarmChecker</code> with one idle Checker.
+         * @param aKey key of the configuration.
+         * @param aConfig the configuration.
+         * @throws CheckstyleException if the configuration is invalid.
+         */
+        WarmChecker(String aKey, Configuration aConfig)
+            throws CheckstyleException
+        {
+            mKey = aKey;
+            mConfig = aConfig;
+            mIdle.add(new PooledChecker(aConfig));
+        }
+
+        /**
+         * Audits the contents of one file.
+         * @param aFile the path of the file on the client.
+         * @param aContents the contents of the file, in the charset of
+         * the configuration.
+         * @return the events of the file.
+         * @throws CheckstyleException if the contents cannot be decoded
+         * or a new Checker cannot be configured.
+         */
+        List<Event> audit(File aFile, byte[] aContents)
+            throws CheckstyleException
+        {
+            PooledChecker checker = null;
+            synchronized (this) {
+                if (!mIdle.isEmpty()) {
+                    checker = mIdle.remove(mIdle.size() - 1);
+                }
+            }
+            if (checker == null) {
+                checker = new PooledChecker(mConfig);
+            }
+            try {
+                return checker.audit(aFile, aContents);
+            }
+            finally {
+                release(checker);
+            }
+        }
+
+        /**
+         * Returns a Checker to the idle Checkers, or destroys it if enough
+         * are idle or the configuration has been evicted.
+         * @param aChecker the Checker.
+         */
+        private void release(PooledChecker aChecker)
+        {
+            synchronized (this) {
+                if (!mDestroyed && mIdle.size() < CHECKER_POOL_SIZE) {
+                    mIdle.add(aChecker);
+                    return;
+                }
+            }
+            aChecker.destroy();
+        }
+
+        /**
+         * Releases the idle Checkers; busy Checkers are released when
+         * their audits finish.
+         */
+        void destroy()
+        {
+            final List<PooledChecker> idle;
+            synchronized (this) {
+                mDestroyed = true;
+                idle = new ArrayList<PooledChecker>(mIdle);
+                mIdle.clear();
+            }
+            for (PooledChecker checker : idle) {
+                checker.destroy();
+            }
+        }
+    }
+
+    /**
+     * One configured Checker of a {@link WarmChecker}, used by one audit at
+     * a time.
+     */
+    private static final class PooledChecker implements AuditListener
+    {
+        /** the Checker */
+        private final SourceChecker mChecker;
+
+        /** events of the current audit */
+        private final List<Event> mEvents = new ArrayList<Event>();
+
+        /**
+         * Constructs a <code>PooledChecker</code>.
+         * @param aConfig the configuration.
+         * @throws CheckstyleException if the configuration is invalid.
+         */
+        PooledChecker(Configuration aConfig)
+            throws CheckstyleException
+        {
+            mChecker = new SourceChecker(aConfig, null);
+            mChecker.addListener(this);
+        }
+
+        /**
+         * Audits the contents of one file.
+         * @param aFile the path of the file on the client.
+         * @param aContents the contents of the file.
+         * @return the events of the file.
+         * @throws CheckstyleException if the contents cannot be decoded.
+         */
+        List<Event> audit(File aFile, byte[] aContents)
+            throws CheckstyleException
+        {
+            final String text;
+            try {
+                text = new String(aContents, mChecker.getCharset());
+            }
+            catch (UnsupportedEncodingException e) {
+                throw new CheckstyleException(e.getMessage(), e);
+            }
+            mEvents.clear();
+            mChecker.process(Collections.singletonMap(aFile, text));
+            return new ArrayList<Event>(mEvents);
+        }
+
+        /**
+         * Releases the Checker.
+         */
+        void destroy()
+        {
+            mChecker.destroy();
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditStarted(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditFinished(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileStarted(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileFinished(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addError(AuditEvent aEvt)
+        {
+            mEvents.add(new Event(aEvt));
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addException(AuditEvent aEvt, Throwable aThrowable)
+        {
+            mEvents.add(new Event(aEvt));
+        }
+    }
+
+    /**
+     * An audit event without its file, as sent to clients.
+     */
+    private static final class Event
+    {
+        /** line of the event */
+        private final int mLine;
+
+        /** column of the event */
+        private final int mColumn;
+
+        /** ordinal of the severity of the event */
+        private final byte mSeverity;
+
+        /** module id of the event, empty if none */
+        private final String mModuleId;
+
+        /** name of the check that reported the event */
+        private final String mSourceName;
+
+        /** message of the event */
+        private final String mMessage;
+
+        /**
+         * Constructs the <code>Event</code> of an audit event.
+         * @param aEvt the audit event.
+         */
+        Event(AuditEvent aEvt)
+        {
+            mLine = aEvt.getLine();
+            mColumn = aEvt.getColumn();
+            mSeverity = (byte) aEvt.getSeverityLevel().ordinal();
+            mModuleId = (aEvt.getModuleId() == null) ? "" : aEvt.getModuleId();
+            mSourceName = String.valueOf(aEvt.getSourceName());
+            mMessage = String.valueOf(aEvt.getMessage());
+        }
+
+        /**
+         * Writes this event.
+         * @param aOut the output.
+         * @throws IOException if the output fails.
+         */
+        void write(DataOutputStream aOut)
+            throws IOException
+        {
+            aOut.writeInt(mLine);
+            aOut.writeInt(mColumn);
+            aOut.writeByte(mSeverity);
+            aOut.writeUTF(mModuleId);
+            aOut.writeUTF(mSourceName);
+            aOut.writeUTF(mMessage);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The change of the audit results of one profile between two updates of
+ * the view, see {@link AuditResultListener}. The results of a file are
+ * changed if its outcome or its events differ. Each file carries the
+ * generation of its source that its results were published at, see
+ * {@link FileGenerations}, so that a consumer can tell whether results are
+ * older than the source it holds. The results are immutable
+ * {@link FileResult}s.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+public final class AuditDelta
+{
+    /** name of the profile */
+    private final String mProfileName;
+
+    /** number of this delta, increasing over the deltas of a listener */
+    private final long mSequence;
+
+    /** true if this delta replaces all earlier results */
+    private final boolean mReset;
+
+    /** results of files that were not shown before */
+    private final List<FileResult> mAdded;
+
+    /** new results of files whose results differ */
+    private final List<FileResult> mChanged;
+
+    /** names of files whose results are no longer shown */
+    private final List<String> mRemoved;
+
+    /** generations of the added and changed files, by file name */
+    private final Map<String, Long> mGenerations;
+
+    /**
+     * Constructs an <code>AuditDelta</code>.
+     * @param aProfileName name of the profile.
+     * @param aSequence number of the delta.
+     * @param aReset true if the delta replaces all earlier results.
+     * @param aAdded results of added files.
+     * @param aChanged results of changed files.
+     * @param aRemoved names of removed files.
+     * @param aGenerations generations of the added and changed files.
+     */
+    AuditDelta(String aProfileName, long aSequence, boolean aReset,
+        List<FileResult> aAdded, List<FileResult> aChanged,
+        List<String> aRemoved, Map<String, Long> aGenerations)
+    {
+        mProfileName = aProfileName;
+        mSequence = aSequence;
+        mReset = aReset;
+        mAdded = Collections.unmodifiableList(aAdded);
+        mChanged = Collections.unmodifiableList(aChanged);
+        mRemoved = Collections.unmodifiableList(aRemoved);
+        mGenerations = aGenerations;
+    }
+
+    /**
+     * Returns the name of the profile whose results changed.
+     * @return the name of the profile.
+     */
+    public String getProfileName()
+    {
+        return mProfileName;
+    }
+
+    /**
+     * Returns the number of this delta, which increases by one with each
+     * delta delivered to a listener.
+     * @return the number of this delta.
+     */
+    public long getSequence()
+    {
+        return mSequence;
+    }
+
+    /**
+     * Determines whether this delta replaces all earlier results of its
+     * profile, because the listener fell behind or has just been added.
+     * All results of the profile are then in {@link #getAdded()}.
+     * @return true if earlier results of the profile should be dropped.
+     */
+    public boolean isReset()
+    {
+        return mReset;
+    }
+
+    /**
+     * Returns the results of files that were not shown before.
+     * @return the results of the added files.
+     */
+    public List<FileResult> getAdded()
+    {
+        return mAdded;
+    }
+
+    /**
+     * Returns the new results of files whose results differ.
+     * @return the results of the changed files.
+     */
+    public List<FileResult> getChanged()
+    {
+        return mChanged;
+    }
+
+    /**
+     * Returns the names of the files whose results are no longer shown,
+     * for example of a closed package.
+     * @return the names of the removed files.
+     */
+    public List<String> getRemoved()
+    {
+        return mRemoved;
+    }
+
+    /**
+     * Returns the generation of the source of an added or changed file
+     * when its results were published.
+     * @param aFileName the name of the file.
+     * @return the generation, 0 if the file had not changed since BlueJ
+     * started or is not in this delta.
+     */
+    public long getGeneration(String aFileName)
+    {
+        final Long result = mGenerations.get(aFileName);
+        return (result == null) ? 0 : result;
+    }
+
+    /**
+     * Determines whether this delta holds no change.
+     * @return true if no file was added, changed or removed.
+     */
+    public boolean isEmpty()
+    {
+        return mAdded.isEmpty() && mChanged.isEmpty() && mRemoved.isEmpty();
+    }
+
+    /** @see java.lang.Object#toString() */
+    public String toString()
+    {
+        return mProfileName + " #" + mSequence + (mReset ? " reset" : "")
+            + ": +" + mAdded.size() + " ~" + mChanged.size()
+            + " -" + mRemoved.size();
+    }
+}
@@ -20,24 +20,47 @@
 
 package com.puppycrawl.tools.checkstyle.plugins.bluej;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.DefaultListCellRenderer;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JList;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.ListCellRenderer;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
 
 import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
 
 /**
  * View for audited files and audit events for each file.
@@ -52,12 +75,24 @@ public class AuditFrame extends JFrame
     /** Column column width */
     private static final int COL_WIDTH = 50;
 
+    /** Severity column width */
+    private static final int SEVERITY_WIDTH = 60;
+
+    /** Check column width */
+    private static final int CHECK_WIDTH = 150;
+
     /** Error column width */
     private static final int ERROR_WIDTH = 300;
 
     /** table height */
     private static final int TABLE_HEIGHT = 300;
 
+    /** number of checks visible in the summary pane */
+    private static final int SUMMARY_ROWS = 4;
+
+    /** suggested name of a new baseline file */
+    private static final String BASELINE_FILE_NAME = "checkstyle-baseline.dat";
+
     /** model for view of file audit events */
     private final ErrorTableModel mModel = new ErrorTableModel();
 
@@ -72,13 +107,136 @@ public class AuditFrame extends JFrame
     private final FileCellRenderer mFileCellRenderer =
         new FileCellRenderer();
 
+    /** results of the profile shown in this view, or null if none */
+    private AuditSnapshot.Profile mProfile;
+
+    /** results of the profiles shown, used on the event-dispatch thread */
+    private AuditSnapshot mSnapshot = AuditSnapshot.EMPTY;
+
+    /** selector of the profile shown in this view */
+    private final JComboBox<String> mProfileBox =
+        new JComboBox<String>();
+
+    /** panel of the profile selector, shown for several profiles */
+    private final JPanel mProfilePanel = new JPanel();
+
+    /** true while the profile selector is being filled */
+    private boolean mUpdatingProfiles;
+
+    /** numbers of events of the shown auditor, by severity */
+    private final JLabel mTotalsLabel = new JLabel(" ");
+
+    /** numbers of events of the shown auditor, by check */
+    private final JList<String> mCheckList = new JList<String>();
+
+    /**
+     * Shows the results of the profile selected in the profile selector.
+     */
+    private class ProfileAction implements ActionListener
+    {
+        /** @see java.awt.event.ActionListener */
+        public void actionPerformed(ActionEvent aEvent)
+        {
+            final AuditSnapshot.Profile profile =
+                mSnapshot.getProfile(mProfileBox.getSelectedItem());
+            if (!mUpdatingProfiles && profile != null) {
+                setProfile(profile);
+            }
+        }
+    }
+
+    /**
+     * Exports the audit results shown in this view to a file. The results
+     * are written on a background thread, as the events of summaries are
+     * materialized by re-auditing their files, and the menu item is
+     * disabled until the export is done.
+     */
+    private class ExportAction implements ActionListener
+    {
+        /** @see java.awt.event.ActionListener */
+        public void actionPerformed(ActionEvent aEvent)
+        {
+            final AuditSnapshot.Profile profile = mProfile;
+            if (profile == null) {
+                return;
+            }
+            final JFileChooser chooser = new JFileChooser();
+            final ResultSink.Format[] formats = ResultSink.Format.values();
+            for (int i = 0; i < formats.length; i++) {
+                chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+                    formats[i].name() + " (*" + formats[i].getExtension()
+                        + ")",
+                    formats[i].getExtension().substring(1)));
+            }
+            chooser.setAcceptAllFileFilterUsed(false);
+            if (chooser.showSaveDialog(AuditFrame.this)
+                != JFileChooser.APPROVE_OPTION)
+            {
+                return;
+            }
+            final ResultSink.Format format = formats[Arrays.asList(
+                chooser.getChoosableFileFilters()).indexOf(
+                    chooser.getFileFilter())];
+            final File file;
+            if (!chooser.getSelectedFile().getName().contains(".")) {
+                file = new File(chooser.getSelectedFile().getPath()
+                    + format.getExtension());
+            }
+            else {
+                file = chooser.getSelectedFile();
+            }
+            final Component item = (Component) aEvent.getSource();
+            item.setEnabled(false);
+            new SwingWorker<Void, Void>()
+            {
+                protected Void doInBackground()
+                    throws IOException, CheckstyleException
+                {
+                    final ResultSink sink = ResultSink.open(file, format);
+                    try {
+                        profile.replay(sink);
+                    }
+                    finally {
+                        sink.close();
+                    }
+                    return null;
+                }
+
+                protected void done()
+                {
+                    item.setEnabled(true);
+                    try {
+                        get();
+                    }
+                    catch (ExecutionException e) {
+                        JOptionPane.showMessageDialog(AuditFrame.this,
+                            "Cannot export to " + file + ":\n"
+                                + e.getCause().getMessage(),
+                            "Checkstyle", JOptionPane.ERROR_MESSAGE);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.execute();
+        }
+    }
+
     /**
-     * Responds to selection from the list of audited files.
+     * Responds to selection from the list of audited files. The events of
+     * a file of a summary are materialized on the background thread of the
+     * extension.
      * @author Rick Giles
      * @version 14-May-2003
      */
     private class ListListener implements ListSelectionListener
     {
+        /**
+         * summarized file whose events are wanted, or null. A waiting
+         * materialization of another file is skipped.
+         */
+        private volatile FileAuditor mWanted;
+
         /** @see javax.swing.event.ListSelectionListener */
         public void valueChanged(ListSelectionEvent aEvent)
         {
@@ -86,23 +244,188 @@ public class AuditFrame extends JFrame
                 return;
             }
             final JList theList = (JList) aEvent.getSource();
+            mWanted = null;
             if (!theList.isSelectionEmpty()) {
                 final FileAuditor fileAuditor =
                     (FileAuditor) theList.getSelectedValue();
-                final AuditEvent[] events =
-                    new AuditEvent[fileAuditor.getEvents().size()];
-                for (int i = fileAuditor.getEvents().size() - 1; i >= 0; i--) {
-                   events[i] = (AuditEvent) fileAuditor.getEvents().get(i);
+                final AuditSnapshot.Profile profile = mProfile;
+                if (!fileAuditor.isSummary() || profile == null) {
+                    showEvents(fileAuditor, fileAuditor.getEvents());
+                    return;
+                }
+                mModel.setEvents(new AuditEvent[] {});
+                mWanted = fileAuditor;
+                final Runnable task = new Runnable()
+                {
+                    public void run()
+                    {
+                        if (mWanted != fileAuditor) {
+                            return;
+                        }
+                        try {
+                            final List<AuditEvent> events =
+                                profile.getEvents(fileAuditor);
+                            SwingUtilities.invokeLater(new Runnable()
+                            {
+                                public void run()
+                                {
+                                    if (mFileList.getSelectedValue()
+                                        == fileAuditor)
+                                    {
+                                        showEvents(fileAuditor, events);
+                                    }
+                                }
+                            });
+                        }
+                        catch (final CheckstyleException e) {
+                            SwingUtilities.invokeLater(new Runnable()
+                            {
+                                public void run()
+                                {
+                                    CheckstyleExtension.getInstance()
+                                        .error(e);
+                                }
+                            });
+                        }
+                    }
+                };
+                CheckstyleExtension.getInstance().runInBackground(task);
+            }
+        }
+
+        /**
+         * Shows the events of the selected file.
+         * @param aFileAuditor the file.
+         * @param aEvents the events.
+         */
+        private void showEvents(FileAuditor aFileAuditor,
+            List<AuditEvent> aEvents)
+        {
+            mModel.setEvents(aFileAuditor,
+                aEvents.toArray(new AuditEvent[aEvents.size()]));
+        }
+    }
+
+    /**
+     * Sorts the audit events by the column whose header is clicked, and
+     * marks the header of the sorted column with the sort direction.
+     */
+    private class HeaderListener extends MouseAdapter
+    {
+        /** table of the audit events */
+        private final JTable mTable;
+
+        /**
+         * Constructs a <code>HeaderListener</code>.
+         * @param aTable table of the audit events.
+         */
+        HeaderListener(JTable aTable)
+        {
+            mTable = aTable;
+        }
+
+        /** @see java.awt.event.MouseListener */
+        public void mouseClicked(MouseEvent aEvent)
+        {
+            final int viewColumn =
+                mTable.getTableHeader().columnAtPoint(aEvent.getPoint());
+            if (viewColumn < 0) {
+                return;
+            }
+            mModel.sortBy(mTable.convertColumnIndexToModel(viewColumn));
+            final TableColumnModel columns = mTable.getColumnModel();
+            for (int i = 0; i < columns.getColumnCount(); i++) {
+                final TableColumn column = columns.getColumn(i);
+                final int index = column.getModelIndex();
+                String name = mModel.getColumnName(index);
+                if (index == mModel.getSortColumn()) {
+                    name += mModel.isAscending() ? " \u25B2" : " \u25BC";
                 }
-                mModel.setEvents(events);
+                column.setHeaderValue(name);
             }
+            mTable.getTableHeader().repaint();
+        }
+    }
+
+    /**
+     * Records the events shown in this view, together with the events of
+     * the current baseline, as the new baseline of the first profile.
+     * Later audits report only events that are not part of the baseline.
+     */
+    private class SaveBaselineAction implements ActionListener
+    {
+        /** @see java.awt.event.ActionListener */
+        public void actionPerformed(ActionEvent aEvent)
+        {
+            final AuditSnapshot.Profile profile = mProfile;
+            if (profile == null) {
+                return;
+            }
+            final Map<String, AuditSnapshot.Profile> profiles =
+                mSnapshot.getProfiles();
+            if (!profiles.isEmpty()
+                && profile != profiles.values().iterator().next())
+            {
+                JOptionPane.showMessageDialog(AuditFrame.this,
+                    "The baseline applies to the profile "
+                        + profiles.keySet().iterator().next() + " only.",
+                    "Checkstyle", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            final BlueJManager manager = BlueJManager.getInstance();
+            final String name = manager.getBaselineFileName();
+            File file;
+            if (name == null || name.equals("")) {
+                final JFileChooser chooser = new JFileChooser();
+                chooser.setSelectedFile(new File(BASELINE_FILE_NAME));
+                if (chooser.showSaveDialog(AuditFrame.this)
+                    != JFileChooser.APPROVE_OPTION)
+                {
+                    return;
+                }
+                file = chooser.getSelectedFile();
+            }
+            else {
+                file = new File(name);
+            }
+            file = file.getAbsoluteFile();
+            try {
+                Baseline previous = null;
+                if (file.exists()) {
+                    previous = Baseline.load(file);
+                }
+                Baseline.snapshot(profile, previous, file.getParentFile())
+                    .save(file);
+            }
+            catch (IOException e) {
+                JOptionPane.showMessageDialog(AuditFrame.this,
+                    "Cannot save baseline " + file + ":\n" + e.getMessage(),
+                    "Checkstyle", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            manager.saveBaselineFileName(file.getPath());
+            CheckstyleExtension.getInstance().refreshView();
+        }
+    }
+
+    /**
+     * Stops filtering audits against the baseline.
+     */
+    private class ClearBaselineAction implements ActionListener
+    {
+        /** @see java.awt.event.ActionListener */
+        public void actionPerformed(ActionEvent aEvent)
+        {
+            BlueJManager.getInstance().saveBaselineFileName("");
+            CheckstyleExtension.getInstance().refreshView();
         }
     }
 
     /**
      * Renders a cell for one file. Draws the name of the file. If the
      * file has audit errors, appends an asterisk after the name and
-     * sets the cell background to yellow.
+     * sets the cell background to yellow. Files that timed out or are
+     * still pending are marked as such.
      * @author Rick Giles
      * @version 24-May-2003
      */
@@ -126,7 +449,13 @@ public class AuditFrame extends JFrame
 
              // text label
              String text = auditor.getBaseClassName();
-             if (auditor.getEvents().size() > 0) {
+             if (auditor.getStatus() == FileAuditor.Status.TIMED_OUT) {
+                 text += " (timed out)";
+             }
+             else if (auditor.getStatus() == FileAuditor.Status.DEFERRED) {
+                 text += " (pending)";
+             }
+             else if (auditor.getEventCount() > 0) {
                  text += "*";
              }
              setText(text);
@@ -140,8 +469,14 @@ public class AuditFrame extends JFrame
               setBackground(aList.getSelectionBackground());
             }
             // otherwise, set cell background color to our custom color
+            else if (auditor.getStatus() == FileAuditor.Status.TIMED_OUT) {
+                setBackground(Color.ORANGE);
+            }
+            else if (auditor.getStatus() == FileAuditor.Status.DEFERRED) {
+                setBackground(Color.LIGHT_GRAY);
+            }
             else {
-                if (auditor.getEvents().size() == 0) {
+                if (auditor.getEventCount() == 0) {
                     setBackground(Color.WHITE);
                 }
                 else {
@@ -160,6 +495,23 @@ public class AuditFrame extends JFrame
     {
         setTitle("Checkstyle");
 
+        // menu
+        final JMenuBar menuBar = new JMenuBar();
+        final JMenu fileMenu = new JMenu("File");
+        final JMenuItem exportItem = new JMenuItem("Export...");
+        exportItem.addActionListener(new ExportAction());
+        fileMenu.add(exportItem);
+        menuBar.add(fileMenu);
+        final JMenu baselineMenu = new JMenu("Baseline");
+        final JMenuItem saveBaselineItem = new JMenuItem("Save Baseline");
+        saveBaselineItem.addActionListener(new SaveBaselineAction());
+        baselineMenu.add(saveBaselineItem);
+        final JMenuItem clearBaselineItem = new JMenuItem("Clear Baseline");
+        clearBaselineItem.addActionListener(new ClearBaselineAction());
+        baselineMenu.add(clearBaselineItem);
+        menuBar.add(baselineMenu);
+        setJMenuBar(menuBar);
+
         // file list
         final JScrollPane listScrollPane = new JScrollPane(mFileList);
         mFileList.addListSelectionListener(new ListListener());
@@ -167,29 +519,127 @@ public class AuditFrame extends JFrame
         // audit events for one file
         final JTable table = new JTable(mModel);
         TableColumnModel columnMode = table.getColumnModel();
-        columnMode.getColumn(0).setPreferredWidth(LINE_WIDTH);
-        columnMode.getColumn(1).setPreferredWidth(COL_WIDTH);
-        columnMode.getColumn(2).setPreferredWidth(ERROR_WIDTH);
+        columnMode.getColumn(ErrorTableModel.LINE_COLUMN)
+            .setPreferredWidth(LINE_WIDTH);
+        columnMode.getColumn(ErrorTableModel.COLUMN_COLUMN)
+            .setPreferredWidth(COL_WIDTH);
+        columnMode.getColumn(ErrorTableModel.SEVERITY_COLUMN)
+            .setPreferredWidth(SEVERITY_WIDTH);
+        columnMode.getColumn(ErrorTableModel.CHECK_COLUMN)
+            .setPreferredWidth(CHECK_WIDTH);
+        columnMode.getColumn(ErrorTableModel.MESSAGE_COLUMN)
+            .setPreferredWidth(ERROR_WIDTH);
+        table.getTableHeader().addMouseListener(new HeaderListener(table));
         table.setPreferredScrollableViewportSize(new Dimension(
-            LINE_WIDTH + COL_WIDTH + ERROR_WIDTH, TABLE_HEIGHT));
+            LINE_WIDTH + COL_WIDTH + SEVERITY_WIDTH + CHECK_WIDTH
+            + ERROR_WIDTH, TABLE_HEIGHT));
         final JScrollPane errorsScrollPane = new JScrollPane(table);
 
         final JSplitPane splitPane =
             new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
                 listScrollPane, errorsScrollPane);
         splitPane.setOneTouchExpandable(true);
-        getContentPane().add(splitPane);
+        getContentPane().add(splitPane, BorderLayout.CENTER);
+
+        // profile selector
+        mProfilePanel.add(new JLabel("Profile"));
+        mProfileBox.addActionListener(new ProfileAction());
+        mProfilePanel.add(mProfileBox);
+        mProfilePanel.setVisible(false);
+        getContentPane().add(mProfilePanel, BorderLayout.NORTH);
+
+        // summary of all files
+        final JPanel summaryPanel = new JPanel(new BorderLayout());
+        summaryPanel.add(mTotalsLabel, BorderLayout.NORTH);
+        mCheckList.setVisibleRowCount(SUMMARY_ROWS);
+        summaryPanel.add(new JScrollPane(mCheckList), BorderLayout.CENTER);
+        getContentPane().add(summaryPanel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Shows the numbers of events of all files of a profile, by
+     * severity and by check, the most frequent check first.
+     * @param aProfile the results of the profile.
+     */
+    private void showSummary(AuditSnapshot.Profile aProfile)
+    {
+        final StringBuilder totals = new StringBuilder();
+        totals.append(aProfile.getEventTotal()).append(" violations in ")
+            .append(aProfile.getFileAuditors().size()).append(" files");
+        final SeverityLevel[] levels = SeverityLevel.values();
+        for (int i = levels.length - 1; i >= 0; i--) {
+            final int count = aProfile.getSeverityTotal(levels[i]);
+            if (count > 0) {
+                totals.append(", ").append(count).append(' ')
+                    .append(levels[i].getName());
+            }
+        }
+        mTotalsLabel.setText(totals.toString());
+        final Map<String, Integer> checks = aProfile.getCheckTotals();
+        final String[] rows = new String[checks.size()];
+        int row = 0;
+        for (Map.Entry<String, Integer> entry : checks.entrySet()) {
+            rows[row++] = entry.getValue() + "  " + entry.getKey();
+        }
+        mCheckList.setListData(rows);
     }
 
     /**
-     * Sets the auditor for this view.
-     * @param aAuditor auditor for this view.
+     * Sets the results of the profiles shown by this view, and shows the
+     * results of the selected profile, or of the first profile if the
+     * selected profile is not in the snapshot. The profile selector is
+     * shown if there are several profiles. Called on the event-dispatch
+     * thread; the snapshot does not change, so it is read without locks.
+     * @param aSnapshot the results of the profiles.
      */
-    public synchronized void setAuditor(Auditor aAuditor)
+    public void setSnapshot(AuditSnapshot aSnapshot)
     {
+        final Map<String, AuditSnapshot.Profile> profiles =
+            aSnapshot.getProfiles();
+        if (aSnapshot == mSnapshot || profiles.isEmpty()) {
+            return;
+        }
+        final Object selected = mProfileBox.getSelectedItem();
+        mSnapshot = aSnapshot;
+        mUpdatingProfiles = true;
+        try {
+            mProfileBox.removeAllItems();
+            final String[] names =
+                profiles.keySet().toArray(new String[profiles.size()]);
+            for (int i = 0; i < names.length; i++) {
+                mProfileBox.addItem(names[i]);
+            }
+            if (profiles.containsKey(selected)) {
+                mProfileBox.setSelectedItem(selected);
+            }
+            else {
+                mProfileBox.setSelectedIndex(0);
+            }
+        }
+        finally {
+            mUpdatingProfiles = false;
+        }
+        final boolean several = profiles.size() > 1;
+        if (mProfilePanel.isVisible() != several) {
+            mProfilePanel.setVisible(several);
+            validate();
+        }
+        setProfile(aSnapshot.getProfile(mProfileBox.getSelectedItem()));
+    }
+
+    /**
+     * Sets the results of the profile shown by this view. Called on the
+     * event-dispatch thread.
+     * @param aProfile the results of the profile.
+     */
+    public void setProfile(AuditSnapshot.Profile aProfile)
+    {
+        final FlightEvents.Event event = FlightEvents.FRAME_UPDATE.begin();
         boolean useSelection = false;
+        mProfile = aProfile;
+        showSummary(aProfile);
 
-        final Object[] auditors = aAuditor.getFileAuditors().toArray();
+        final Object[] auditors = aProfile.getFileAuditors().toArray();
         if (auditors.length == 0) {
             mFileList.setCellRenderer(mDefaultListCellRenderer);
             mFileList.setListData(new String[] {"(No files)"});
@@ -210,5 +660,8 @@ public class AuditFrame extends JFrame
         if (!useSelection) {
             mModel.setEvents(new AuditEvent[] {});
         }
+        if (event != null) {
+            event.commit(auditors.length, aProfile.getEventTotal());
+        }
     }
 }
@@ -0,0 +1,44 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+/**
+ * Listener for the audit results shown by the extension, for other
+ * extensions and tools. Register it with
+ * {@link CheckstyleExtension#addAuditResultListener(AuditResultListener)}.
+ * Each listener is called on a thread of its own, never on the
+ * event-dispatch thread, with the deltas in the order the results were
+ * shown. A listener that falls behind by more than a bounded number of
+ * deltas receives a reset delta with all current results instead of the
+ * deltas it missed, so that it never holds up the audits.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public interface AuditResultListener
+{
+    /**
+     * Reports a change of the results of one profile.
+     * @param aDelta the files whose results were added, changed or
+     * removed.
+     */
+    void resultsChanged(AuditDelta aDelta);
+}
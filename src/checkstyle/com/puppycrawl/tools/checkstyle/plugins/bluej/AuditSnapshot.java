@@ -0,0 +1,678 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Immutable results of the profiles shown by the view. Audit threads
+ * build a new snapshot from the current one and publish it by replacing a
+ * single reference, so the event-dispatch thread reads results without
+ * locks and never sees them change, and no audit thread waits for it.
+ * A new snapshot shares with the previous one the profiles that did not
+ * change and, within a profile, the chunks of the {@link ResultTable} of
+ * the files that did not change; the numbers of events are updated by the
+ * files replaced. File auditors are frozen once their file has been
+ * audited, see {@link FileAuditor#freeze()}. Each profile counts the
+ * files of each auditor it holds, so that the auditors that a new
+ * snapshot no longer holds can be closed, see {@link #getSources()}.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.4
+ */
+public final class AuditSnapshot
+{
+    /** the snapshot without results */
+    static final AuditSnapshot EMPTY = new AuditSnapshot(0, 0,
+        Collections.<String, Profile>emptyMap());
+
+    /** number of this snapshot, increasing with each new snapshot */
+    private final long mVersion;
+
+    /** sequence number of the token of the audit of the results */
+    private final long mSequence;
+
+    /** the results of each profile, by profile name */
+    private final Map<String, Profile> mProfiles;
+
+    /**
+     * Constructs an <code>AuditSnapshot</code>.
+     * @param aVersion number of the snapshot.
+     * @param aSequence sequence number of the token of the audit.
+     * @param aProfiles the results of each profile, not changed later.
+     */
+    private AuditSnapshot(long aVersion, long aSequence,
+        Map<String, Profile> aProfiles)
+    {
+        mVersion = aVersion;
+        mSequence = aSequence;
+        mProfiles = Collections.unmodifiableMap(aProfiles);
+    }
+
+    /**
+     * Returns the number of this snapshot. Each snapshot built from
+     * another has a greater number.
+     * @return the number of this snapshot.
+     */
+    public long getVersion()
+    {
+        return mVersion;
+    }
+
+    /**
+     * Returns the sequence number of the token of the audit whose results
+     * this snapshot holds, see {@link AuditToken#getSequence()}.
+     * @return the sequence number, 0 if not from a cancellable audit.
+     */
+    public long getSequence()
+    {
+        return mSequence;
+    }
+
+    /**
+     * Returns the results of each profile.
+     * @return the results, by profile name, in the order of the profiles.
+     */
+    public Map<String, Profile> getProfiles()
+    {
+        return mProfiles;
+    }
+
+    /**
+     * Returns the results of a profile.
+     * @param aProfileName name of the profile.
+     * @return the results, or null if the profile is not in this snapshot.
+     */
+    public Profile getProfile(Object aProfileName)
+    {
+        return mProfiles.get(aProfileName);
+    }
+
+    /**
+     * Returns the auditors that the results of this snapshot came from.
+     * @return the auditors.
+     */
+    Set<Auditor> getSources()
+    {
+        final Set<Auditor> result = new HashSet<Auditor>();
+        final Iterator<Profile> it = mProfiles.values().iterator();
+        while (it.hasNext()) {
+            result.addAll(it.next().mSources.keySet());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a snapshot with the results of a new audit. The results of
+     * a profile that the audit ran some modules of only are completed with
+     * the events of the other modules in this snapshot, see
+     * {@link Auditor#setModuleKeys(Set)}. The results of stale files, which
+     * changed during the audit, are kept from this snapshot.
+     * @param aAuditors the auditors of the audit, by profile name.
+     * @param aSequence sequence number of the token of the audit.
+     * @param aStale the names of the stale files.
+     * @return the new snapshot.
+     */
+    AuditSnapshot replace(Map<String, Auditor> aAuditors, long aSequence,
+        Set<String> aStale)
+    {
+        final Map<String, Profile> profiles =
+            new LinkedHashMap<String, Profile>();
+        final Iterator<Map.Entry<String, Auditor>> it =
+            aAuditors.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Auditor> entry = it.next();
+            Profile profile = new Profile(entry.getValue());
+            final Set<String> keys = entry.getValue().getModuleKeys();
+            final Profile previous = mProfiles.get(entry.getKey());
+            if (keys != null && previous != null) {
+                profile = profile.complete(previous, keys);
+            }
+            if (!aStale.isEmpty()) {
+                profile = profile.restore(previous, aStale);
+            }
+            profiles.put(entry.getKey(), profile);
+        }
+        return new AuditSnapshot(mVersion + 1, aSequence, profiles);
+    }
+
+    /**
+     * Returns a snapshot in which the results of the files of some
+     * auditors replace those of the same files, see
+     * {@link Profile#merge(Auditor, Set)}. Auditors of profiles that are
+     * not in this snapshot are ignored.
+     * @param aAuditors the auditors, by profile name.
+     * @param aStale the names of the files whose results in the auditors
+     * are stale and are not merged.
+     * @return the new snapshot, or this snapshot if nothing changed.
+     */
+    AuditSnapshot merge(Map<String, Auditor> aAuditors, Set<String> aStale)
+    {
+        final Map<String, Profile> profiles =
+            new LinkedHashMap<String, Profile>(mProfiles);
+        boolean changed = false;
+        final Iterator<Map.Entry<String, Profile>> it =
+            mProfiles.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Profile> entry = it.next();
+            final Auditor auditor = aAuditors.get(entry.getKey());
+            if (auditor != null) {
+                final Profile profile =
+                    entry.getValue().merge(auditor, aStale);
+                changed |= profile != entry.getValue();
+                profiles.put(entry.getKey(), profile);
+            }
+        }
+        return changed
+            ? new AuditSnapshot(mVersion + 1, mSequence, profiles) : this;
+    }
+
+    /**
+     * Returns a snapshot without the results of the files of a directory,
+     * for example of a package that has been closed.
+     * @param aDir the directory.
+     * @return the new snapshot, or this snapshot if it has no results of
+     * the directory.
+     */
+    AuditSnapshot evict(File aDir)
+    {
+        final File dir = aDir.getAbsoluteFile();
+        final Map<String, Profile> profiles =
+            new LinkedHashMap<String, Profile>(mProfiles);
+        boolean changed = false;
+        final Iterator<Map.Entry<String, Profile>> it =
+            mProfiles.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Profile> entry = it.next();
+            final Profile profile = entry.getValue().evict(dir);
+            changed |= profile != entry.getValue();
+            profiles.put(entry.getKey(), profile);
+        }
+        return changed
+            ? new AuditSnapshot(mVersion + 1, mSequence, profiles) : this;
+    }
+
+    /**
+     * Immutable results of one profile.
+     */
+    public static final class Profile
+    {
+        /**
+         * the file auditors, in the order the files were audited, with the
+         * auditor that each file's results came from, which materializes
+         * the events of summaries
+         */
+        private final ResultTable mTable;
+
+        /** number of events of all files */
+        private final int mEventTotal;
+
+        /** number of events of all files, by severity ordinal */
+        private final int[] mSeverityTotals;
+
+        /** number of events of all files by check, most frequent first */
+        private final Map<String, Integer> mCheckTotals;
+
+        /** number of files, by the auditor their results came from */
+        private final Map<Auditor, Integer> mSources;
+
+        /**
+         * Constructs the <code>Profile</code> of the results of an auditor.
+         * @param aAuditor the auditor.
+         */
+        Profile(Auditor aAuditor)
+        {
+            final ResultTable.Edit table =
+                new ResultTable.Edit(ResultTable.EMPTY);
+            synchronized (aAuditor) {
+                final List<FileAuditor> auditors = aAuditor.getFileAuditors();
+                for (int i = 0; i < auditors.size(); i++) {
+                    final FileAuditor auditor = auditors.get(i);
+                    auditor.freeze();
+                    table.put(auditor, aAuditor);
+                }
+                mEventTotal = aAuditor.getEventTotal();
+                final SeverityLevel[] levels = SeverityLevel.values();
+                mSeverityTotals = new int[levels.length];
+                for (int i = 0; i < levels.length; i++) {
+                    mSeverityTotals[i] = aAuditor.getSeverityTotal(levels[i]);
+                }
+                mCheckTotals =
+                    Collections.unmodifiableMap(aAuditor.getCheckTotals());
+                mSources = Collections.singletonMap(aAuditor,
+                    auditors.size());
+            }
+            mTable = table.build();
+        }
+
+        /**
+         * Constructs a <code>Profile</code> from an edit of another.
+         * @param aEdit the edit.
+         */
+        private Profile(Edit aEdit)
+        {
+            mTable = aEdit.mTable.build();
+            mEventTotal = aEdit.mEventTotal;
+            mSeverityTotals = aEdit.mSeverityTotals;
+            mCheckTotals = Collections.unmodifiableMap(
+                sortTotals(aEdit.mCheckTotals));
+            mSources = Collections.unmodifiableMap(aEdit.mSources);
+        }
+
+        /**
+         * Returns the file auditors of the files.
+         * @return the file auditors, in the order the files were audited.
+         */
+        public List<FileAuditor> getFileAuditors()
+        {
+            return mTable.getFileAuditors();
+        }
+
+        /**
+         * Returns the file auditor of a file.
+         * @param aFileName the name of the file.
+         * @return the file auditor, or null if the file has no results.
+         */
+        public FileAuditor getFileAuditor(String aFileName)
+        {
+            return mTable.get(aFileName);
+        }
+
+        /**
+         * Returns the number of events of all files.
+         * @return the number of events.
+         */
+        public int getEventTotal()
+        {
+            return mEventTotal;
+        }
+
+        /**
+         * Returns the number of events of all files of a severity level.
+         * @param aLevel the severity level.
+         * @return the number of events.
+         */
+        public int getSeverityTotal(SeverityLevel aLevel)
+        {
+            return mSeverityTotals[aLevel.ordinal()];
+        }
+
+        /**
+         * Returns the number of events of all files by check, see
+         * {@link FileAuditor#getCheckName(AuditEvent)}.
+         * @return the numbers of events, the most frequent check first.
+         */
+        public Map<String, Integer> getCheckTotals()
+        {
+            return mCheckTotals;
+        }
+
+        /**
+         * Returns the events of a file, materialized by the auditor of its
+         * results if it is a summary, see
+         * {@link Auditor#getEvents(FileAuditor)}.
+         * @param aFileAuditor the file auditor of the file.
+         * @return the events of the file.
+         * @throws CheckstyleException if the file cannot be re-audited.
+         */
+        public List<AuditEvent> getEvents(FileAuditor aFileAuditor)
+            throws CheckstyleException
+        {
+            final Auditor source = mTable.getSource(aFileAuditor.toString());
+            if (source == null) {
+                return aFileAuditor.getEvents();
+            }
+            return source.getEvents(aFileAuditor);
+        }
+
+        /**
+         * Reports these results to a listener as one audit, for example to
+         * export them. The events of a summary are materialized file by
+         * file.
+         * @param aListener the listener.
+         * @throws CheckstyleException if a file of a summary cannot be
+         * re-audited.
+         */
+        public void replay(AuditListener aListener)
+            throws CheckstyleException
+        {
+            aListener.auditStarted(new AuditEvent(this));
+            final List<FileAuditor> auditors = getFileAuditors();
+            for (int i = 0; i < auditors.size(); i++) {
+                final FileAuditor auditor = auditors.get(i);
+                final AuditEvent fileEvent =
+                    new AuditEvent(this, auditor.toString());
+                aListener.fileStarted(fileEvent);
+                final Iterator<AuditEvent> events =
+                    getEvents(auditor).iterator();
+                while (events.hasNext()) {
+                    aListener.addError(events.next());
+                }
+                aListener.fileFinished(fileEvent);
+            }
+            aListener.auditFinished(new AuditEvent(this));
+        }
+
+        /**
+         * Returns these results with the results of the files of an
+         * auditor in place of those of the same files, and the files new
+         * to the auditor added. If the auditor holds the events of some
+         * modules only, the events of the other modules are kept for each
+         * file, see {@link Auditor#combine}; the events of a summary of
+         * both are then materialized by the auditor of the earlier
+         * summary, which ran all modules.
+         * @param aAuditor the auditor.
+         * @param aStale the names of the files whose results in the
+         * auditor are stale and are skipped.
+         * @return the new results, or these results if the auditor has no
+         * files that are not stale.
+         */
+        Profile merge(Auditor aAuditor, Set<String> aStale)
+        {
+            final List<FileAuditor> auditors = new ArrayList<FileAuditor>();
+            synchronized (aAuditor) {
+                final Iterator<FileAuditor> it =
+                    aAuditor.getFileAuditors().iterator();
+                while (it.hasNext()) {
+                    final FileAuditor auditor = it.next();
+                    auditor.freeze();
+                    if (!aStale.contains(auditor.toString())) {
+                        auditors.add(auditor);
+                    }
+                }
+            }
+            if (auditors.isEmpty()) {
+                return this;
+            }
+            final Set<String> keys = aAuditor.getModuleKeys();
+            final Edit edit = new Edit(this);
+            for (int i = 0; i < auditors.size(); i++) {
+                FileAuditor auditor = auditors.get(i);
+                final FileAuditor old = mTable.get(auditor.toString());
+                Auditor source = aAuditor;
+                if (old != null && keys != null) {
+                    auditor = Auditor.combine(old, auditor, keys);
+                    if (old.isSummary()) {
+                        source = mTable.getSource(old.toString());
+                    }
+                }
+                edit.put(auditor, source);
+            }
+            return new Profile(edit);
+        }
+
+        /**
+         * Returns these results of some modules completed with the events
+         * of the other modules in earlier results of the same files.
+         * @param aPrevious the earlier results.
+         * @param aKeys the keys of the modules of these results.
+         * @return the completed results.
+         */
+        Profile complete(Profile aPrevious, Set<String> aKeys)
+        {
+            final Edit edit = new Edit(this);
+            final List<FileAuditor> auditors = getFileAuditors();
+            for (int i = 0; i < auditors.size(); i++) {
+                final FileAuditor auditor = auditors.get(i);
+                final FileAuditor other =
+                    aPrevious.mTable.get(auditor.toString());
+                if (other != null) {
+                    final FileAuditor combined =
+                        Auditor.combine(other, auditor, aKeys);
+                    if (combined != auditor) {
+                        edit.put(combined, other.isSummary()
+                            ? aPrevious.mTable.getSource(other.toString())
+                            : mTable.getSource(auditor.toString()));
+                    }
+                }
+            }
+            return new Profile(edit);
+        }
+
+        /**
+         * Returns these results with the results of some files taken from
+         * earlier results, or without them if the earlier results have
+         * none, for example because the files changed while these results
+         * were audited.
+         * @param aPrevious the earlier results, or null if there are none.
+         * @param aFileNames the names of the files.
+         * @return the new results, or these results if they have no files
+         * to restore.
+         */
+        Profile restore(Profile aPrevious, Set<String> aFileNames)
+        {
+            Edit edit = null;
+            final Iterator<String> it = aFileNames.iterator();
+            while (it.hasNext()) {
+                final String fileName = it.next();
+                final FileAuditor old = (aPrevious == null)
+                    ? null : aPrevious.mTable.get(fileName);
+                if (old == null && mTable.get(fileName) == null) {
+                    continue;
+                }
+                if (edit == null) {
+                    edit = new Edit(this);
+                }
+                if (old == null) {
+                    edit.remove(fileName);
+                }
+                else {
+                    edit.put(old, aPrevious.mTable.getSource(fileName));
+                }
+            }
+            return (edit == null) ? this : new Profile(edit);
+        }
+
+        /**
+         * Returns these results without the files of a directory. Files of
+         * subdirectories are kept.
+         * @param aDir the absolute directory.
+         * @return the new results, or these results if no file is in the
+         * directory.
+         */
+        Profile evict(File aDir)
+        {
+            Edit edit = null;
+            final List<FileAuditor> auditors = getFileAuditors();
+            for (int i = 0; i < auditors.size(); i++) {
+                final String fileName = auditors.get(i).toString();
+                if (aDir.equals(new File(fileName).getAbsoluteFile()
+                    .getParentFile()))
+                {
+                    if (edit == null) {
+                        edit = new Edit(this);
+                    }
+                    edit.remove(fileName);
+                }
+            }
+            return (edit == null) ? this : new Profile(edit);
+        }
+
+        /**
+         * Sorts numbers of events by check, the most frequent check first.
+         * @param aTotals the numbers of events, by check.
+         * @return the sorted numbers.
+         */
+        private static Map<String, Integer> sortTotals(
+            Map<String, Integer> aTotals)
+        {
+            final List<Map.Entry<String, Integer>> entries =
+                new ArrayList<Map.Entry<String, Integer>>(aTotals.entrySet());
+            Collections.sort(entries,
+                new Comparator<Map.Entry<String, Integer>>()
+                {
+                    public int compare(Map.Entry<String, Integer> aFirst,
+                        Map.Entry<String, Integer> aSecond)
+                    {
+                        final int result = aSecond.getValue().compareTo(
+                            aFirst.getValue());
+                        if (result != 0) {
+                            return result;
+                        }
+                        return aFirst.getKey().compareTo(aSecond.getKey());
+                    }
+                });
+            final Map<String, Integer> result =
+                new LinkedHashMap<String, Integer>();
+            for (int i = 0; i < entries.size(); i++) {
+                result.put(entries.get(i).getKey(),
+                    entries.get(i).getValue());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A change of the results of a profile into new results. The file
+     * table is edited in place of copying, see {@link ResultTable.Edit},
+     * and the numbers of events are updated by the files put and removed,
+     * so that an edit costs time in the number of files changed and of
+     * checks, not in the number of files or events.
+     */
+    private static final class Edit
+    {
+        /** the file table */
+        private final ResultTable.Edit mTable;
+
+        /** number of events of all files */
+        private int mEventTotal;
+
+        /** number of events of all files, by severity ordinal */
+        private final int[] mSeverityTotals;
+
+        /** number of events of all files, by check */
+        private final Map<String, Integer> mCheckTotals;
+
+        /** number of files, by the auditor their results came from */
+        private final Map<Auditor, Integer> mSources;
+
+        /**
+         * Constructs an <code>Edit</code> of the results of a profile.
+         * @param aProfile the results.
+         */
+        Edit(Profile aProfile)
+        {
+            mTable = new ResultTable.Edit(aProfile.mTable);
+            mEventTotal = aProfile.mEventTotal;
+            mSeverityTotals = aProfile.mSeverityTotals.clone();
+            mCheckTotals = new HashMap<String, Integer>(aProfile.mCheckTotals);
+            mSources = new HashMap<Auditor, Integer>(aProfile.mSources);
+        }
+
+        /**
+         * Puts the results of a file in place of any earlier results of
+         * the file, or after the other files.
+         * @param aFileAuditor the file auditor of the file.
+         * @param aSource the auditor of the results.
+         */
+        void put(FileAuditor aFileAuditor, Auditor aSource)
+        {
+            final Auditor oldSource =
+                mTable.getSource(aFileAuditor.toString());
+            final FileAuditor old = mTable.put(aFileAuditor, aSource);
+            if (old != null) {
+                count(old, -1);
+                countSource(oldSource, -1);
+            }
+            count(aFileAuditor, 1);
+            countSource(aSource, 1);
+        }
+
+        /**
+         * Removes the results of a file.
+         * @param aFileName the name of the file.
+         */
+        void remove(String aFileName)
+        {
+            final Auditor oldSource = mTable.getSource(aFileName);
+            final FileAuditor old = mTable.remove(aFileName);
+            if (old != null) {
+                count(old, -1);
+                countSource(oldSource, -1);
+            }
+        }
+
+        /**
+         * Adds a file to, or subtracts it from, the files of an auditor.
+         * @param aSource the auditor.
+         * @param aSign 1 to add, -1 to subtract.
+         */
+        private void countSource(Auditor aSource, int aSign)
+        {
+            final Integer files = mSources.get(aSource);
+            final int count = ((files == null) ? 0 : files) + aSign;
+            if (count <= 0) {
+                mSources.remove(aSource);
+            }
+            else {
+                mSources.put(aSource, count);
+            }
+        }
+
+        /**
+         * Adds the numbers of events of a file to, or subtracts them from,
+         * the numbers of events of all files.
+         * @param aFileAuditor the file auditor of the file.
+         * @param aSign 1 to add, -1 to subtract.
+         */
+        private void count(FileAuditor aFileAuditor, int aSign)
+        {
+            if (aFileAuditor.getEventCount() == 0) {
+                return;
+            }
+            mEventTotal += aSign * aFileAuditor.getEventCount();
+            final SeverityLevel[] levels = SeverityLevel.values();
+            for (int i = 0; i < levels.length; i++) {
+                mSeverityTotals[i] +=
+                    aSign * aFileAuditor.getSeverityCount(levels[i]);
+            }
+            final Iterator<Map.Entry<String, Integer>> it =
+                aFileAuditor.getCheckCounts().entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, Integer> entry = it.next();
+                final Integer total = mCheckTotals.get(entry.getKey());
+                final int count = ((total == null) ? 0 : total)
+                    + aSign * entry.getValue();
+                if (count <= 0) {
+                    mCheckTotals.remove(entry.getKey());
+                }
+                else {
+                    mCheckTotals.put(entry.getKey(), count);
+                }
+            }
+        }
+    }
+}
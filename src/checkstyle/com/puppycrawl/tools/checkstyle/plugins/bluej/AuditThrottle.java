@@ -0,0 +1,215 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Keeps a background audit within a budget of CPU time, so that it does
+ * not compete with BlueJ's compiler or with the other sessions of a shared
+ * machine. The audit reports the CPU time of each file, as measured by
+ * {@link #getCurrentThreadCpuTime()} on the thread that audited it, and
+ * the throttle pauses the audit between files until the CPU time is no
+ * more than the budget's share of the time the audit has taken. The audit
+ * pauses while BlueJ compiles, and its budget is cut while the other work
+ * of the machine keeps every processor busy. Pauses end early if the
+ * audit is cancelled.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+final class AuditThrottle
+{
+    /** percentage of one processor that is no limit */
+    private static final long PERCENT = 100;
+
+    /** nanoseconds per millisecond */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** shortest pause, shorter debts are carried to the next file (ms) */
+    private static final long MIN_PAUSE = 10;
+
+    /** longest pause for the budget after one file (ms) */
+    private static final long MAX_PAUSE = 2000;
+
+    /** longest pause for one compilation (ms) */
+    private static final long MAX_COMPILE_PAUSE = 30000;
+
+    /** interval between checks for cancellation while paused (ms) */
+    private static final long PAUSE_SLICE = 50;
+
+    /** interval between samples of the system load average (ms) */
+    private static final long LOAD_INTERVAL = 1000;
+
+    /** divisor of the budget while the machine is busy */
+    private static final long LOAD_BACKOFF = 4;
+
+    /** the CPU times of threads */
+    private static final ThreadMXBean THREADS =
+        ManagementFactory.getThreadMXBean();
+
+    /** the load of the machine */
+    private static final OperatingSystemMXBean SYSTEM =
+        ManagementFactory.getOperatingSystemMXBean();
+
+    /** the budget, in percent of one processor */
+    private final long mBudget;
+
+    /** cancellation token of the audit */
+    private final AuditToken mToken;
+
+    /** CPU time charged since the last pause (nanoseconds) */
+    private long mCpuTime;
+
+    /** time the audit still has to pause for its budget (nanoseconds) */
+    private long mDebt;
+
+    /** time of the last pause (System.nanoTime) */
+    private long mLastPause = System.nanoTime();
+
+    /** time of the last sample of the load average (System.nanoTime) */
+    private long mLoadSampled;
+
+    /** true if the last sample found the machine busy */
+    private boolean mBusy;
+
+    /**
+     * Constructs an <code>AuditThrottle</code>.
+     * @param aBudget the CPU budget in percent of one processor, from 1
+     * to 100.
+     * @param aToken cancellation token of the audit.
+     */
+    AuditThrottle(long aBudget, AuditToken aToken)
+    {
+        mBudget = Math.max(1, Math.min(PERCENT, aBudget));
+        mToken = aToken;
+    }
+
+    /**
+     * Returns the CPU time used by the current thread.
+     * @return the CPU time in nanoseconds, or -1 if the Java virtual
+     * machine does not measure it.
+     */
+    static long getCurrentThreadCpuTime()
+    {
+        try {
+            return THREADS.getCurrentThreadCpuTime();
+        }
+        catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Records the CPU time of auditing a file.
+     * @param aCpuTime the CPU time in nanoseconds.
+     */
+    void charge(long aCpuTime)
+    {
+        mCpuTime += aCpuTime;
+    }
+
+    /**
+     * Pauses the audit as long as the CPU time charged since the last
+     * pause requires, and for as long as BlueJ compiles.
+     */
+    void pause()
+    {
+        final long now = System.nanoTime();
+        final boolean busy = isBusy(now);
+        final long budget = busy ? Math.max(1, mBudget / LOAD_BACKOFF)
+            : mBudget;
+        // time since the last pause, including it, pays off the debt
+        mDebt += mCpuTime * PERCENT / budget - (now - mLastPause);
+        mCpuTime = 0;
+        mDebt = Math.max(0, mDebt);
+        mLastPause = now;
+        if (isCompiling()) {
+            sleep("compile", MAX_COMPILE_PAUSE, true);
+        }
+        if (mDebt >= MIN_PAUSE * NANOS_PER_MILLI) {
+            sleep(busy ? "load" : "budget",
+                Math.min(mDebt / NANOS_PER_MILLI, MAX_PAUSE), false);
+        }
+    }
+
+    /**
+     * Pauses the audit.
+     * @param aReason why the audit pauses, as recorded in its flight event.
+     * @param aMillis the longest pause in milliseconds.
+     * @param aWhileCompiling true if the pause ends when BlueJ no longer
+     * compiles.
+     */
+    private void sleep(String aReason, long aMillis, boolean aWhileCompiling)
+    {
+        final FlightEvents.Event event = FlightEvents.THROTTLE.begin();
+        final long end = System.nanoTime() + aMillis * NANOS_PER_MILLI;
+        try {
+            long remaining = aMillis;
+            while (remaining > 0 && !mToken.isCancelled()
+                && (!aWhileCompiling || isCompiling()))
+            {
+                Thread.sleep(Math.min(remaining, PAUSE_SLICE));
+                remaining = (end - System.nanoTime()) / NANOS_PER_MILLI;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (event != null) {
+            event.commit(aReason, (int) mBudget);
+        }
+    }
+
+    /**
+     * Determines whether other work keeps every processor of the machine
+     * busy. The load average is sampled at most once a second; the audit
+     * itself counts as one runnable thread of it.
+     * @param aNow the current time (System.nanoTime).
+     * @return true if the machine is busy.
+     */
+    private boolean isBusy(long aNow)
+    {
+        if (mLoadSampled == 0
+            || aNow - mLoadSampled >= LOAD_INTERVAL * NANOS_PER_MILLI)
+        {
+            mLoadSampled = aNow;
+            final double load = SYSTEM.getSystemLoadAverage();
+            // negative where the load average is not available
+            mBusy = load >= 0
+                && load - 1 >= SYSTEM.getAvailableProcessors();
+        }
+        return mBusy;
+    }
+
+    /**
+     * Determines whether BlueJ compiles files.
+     * @return true if BlueJ compiles files.
+     */
+    private static boolean isCompiling()
+    {
+        final CheckstyleExtension extension =
+            CheckstyleExtension.getInstance();
+        return extension != null && extension.isCompiling();
+    }
+}
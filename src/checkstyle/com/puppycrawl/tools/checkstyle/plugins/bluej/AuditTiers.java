@@ -0,0 +1,388 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+/**
+ * Splits the modules of a configuration into a fast tier and a full tier.
+ * Audits started by the timer or by editing run only the fast tier;
+ * audits started by compiling or by a refresh run both tiers.
+ * <p>
+ * A module is in the tier named by its <code>tier</code> property,
+ * <code>fast</code> or <code>full</code>, which its child modules inherit;
+ * {@link CachingTreeWalker#replaceTreeWalker(Configuration)} removes the
+ * property before the configuration reaches Checkstyle. A check of a
+ * TreeWalker without that property is in the full tier once its measured
+ * cost per file exceeds FULL_TIER_COST. Until then, and for the other
+ * modules, header, regular expression, Javadoc and translation modules
+ * are in the full tier and the rest in the fast tier. Filters and modules
+ * with children are in both tiers.
+ * </p>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+final class AuditTiers
+{
+    /** name of the property that places a module in a tier */
+    static final String TIER_PROPERTY = "tier";
+
+    /** the fast tier */
+    static final String FAST = "fast";
+
+    /** the full tier */
+    static final String FULL = "full";
+
+    /** key of the events that Checker reports for exceptions */
+    private static final String CHECKER_KEY = "Checker";
+
+    /** cost per file above which a check is in the full tier (ns) */
+    private static final long FULL_TIER_COST = 1000000;
+
+    /**
+     * number of first measurements of a check that are ignored, as they
+     * include loading and compiling its code
+     */
+    private static final int WARMUP_SAMPLES = 4;
+
+    /** number of measurements before the cost of a check is used */
+    private static final int MIN_SAMPLES = WARMUP_SAMPLES + 8;
+
+    /** number of measurements over which the cost of a check is averaged */
+    private static final int COST_WINDOW = 32;
+
+    /** prefixes of the names of modules in the full tier by default */
+    private static final String[] FULL_TIER_PREFIXES = {
+        "Header", "Regexp", "Javadoc", "Translation",
+    };
+
+    /** tier annotations of module configurations */
+    private static final Map<Configuration, String> ANNOTATIONS =
+        Collections.synchronizedMap(new WeakHashMap<Configuration, String>());
+
+    /** mean cost per file and number of measurements, by module key */
+    private static final Map<String, long[]> COSTS =
+        new HashMap<String, long[]>();
+
+    /** fast tier of each configuration */
+    private static final Map<Configuration, Split> SPLITS =
+        Collections.synchronizedMap(new WeakHashMap<Configuration, Split>());
+
+    /**
+     * Prevent users from constructing AuditTiers objects.
+     */
+    private AuditTiers()
+    {
+    }
+
+    /**
+     * Records the tier annotation of a module.
+     * @param aModule the configuration of the module.
+     * @param aTier the value of its <code>tier</code> property.
+     * @throws CheckstyleException if the value is not a tier.
+     */
+    static void annotate(Configuration aModule, String aTier)
+        throws CheckstyleException
+    {
+        if (!FAST.equals(aTier) && !FULL.equals(aTier)) {
+            throw new CheckstyleException("Property '" + TIER_PROPERTY
+                + "' of module " + aModule.getName() + " must be '" + FAST
+                + "' or '" + FULL + "', not '" + aTier + "'");
+        }
+        ANNOTATIONS.put(aModule, aTier);
+    }
+
+    /**
+     * Returns the fast tier of a configuration. The configuration is
+     * copied again only when the modules of the fast tier change, for
+     * example when a check has been measured.
+     * @param aConfig the configuration.
+     * @return the configuration without the modules of the full tier.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    static Configuration getFastConfiguration(Configuration aConfig)
+        throws CheckstyleException
+    {
+        final Set<Configuration> excluded = new HashSet<Configuration>();
+        addFullTier(aConfig, null, excluded);
+        final Split split = SPLITS.get(aConfig);
+        if (split != null && split.mExcluded.equals(excluded)) {
+            return split.mConfig;
+        }
+        final Configuration result = copy(aConfig, excluded);
+        SPLITS.put(aConfig, new Split(excluded, result));
+        return result;
+    }
+
+    /**
+     * Adds the modules of a configuration that are only in the full tier.
+     * @param aConfig the configuration.
+     * @param aInherited the tier annotation of the enclosing module, or
+     * null.
+     * @param aExcluded the modules found so far.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    private static void addFullTier(Configuration aConfig,
+        String aInherited, Set<Configuration> aExcluded)
+        throws CheckstyleException
+    {
+        String tier = ANNOTATIONS.get(aConfig);
+        if (tier == null) {
+            tier = aInherited;
+        }
+        final Configuration[] children = aConfig.getChildren();
+        if (children.length > 0) {
+            for (int i = 0; i < children.length; i++) {
+                addFullTier(children[i], tier, aExcluded);
+            }
+        }
+        else if (!isFilter(aConfig) && isFullTier(aConfig, tier)) {
+            aExcluded.add(aConfig);
+        }
+    }
+
+    /**
+     * Determines whether a module without children is in the full tier.
+     * @param aModule the configuration of the module.
+     * @param aTier the tier annotation of the module, or null.
+     * @return true if the module is only in the full tier.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    private static boolean isFullTier(Configuration aModule, String aTier)
+        throws CheckstyleException
+    {
+        if (aTier != null) {
+            return FULL.equals(aTier);
+        }
+        synchronized (COSTS) {
+            final long[] cost = COSTS.get(getKey(aModule));
+            if (cost != null && cost[1] >= MIN_SAMPLES) {
+                return cost[0] > FULL_TIER_COST;
+            }
+        }
+        final String name = getSimpleName(aModule.getName());
+        for (int i = 0; i < FULL_TIER_PREFIXES.length; i++) {
+            if (name.startsWith(FULL_TIER_PREFIXES[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a module filters the events of other modules,
+     * and so must run with them.
+     * @param aModule the configuration of the module.
+     * @return true if the module is a filter.
+     */
+    private static boolean isFilter(Configuration aModule)
+    {
+        final String name = getSimpleName(aModule.getName());
+        return name.startsWith("Suppress") || name.endsWith("Filter")
+            || name.endsWith("Holder");
+    }
+
+    /**
+     * Copies a configuration without some of its modules.
+     * @param aConfig the configuration.
+     * @param aExcluded the modules to leave out.
+     * @return the copy.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    private static Configuration copy(Configuration aConfig,
+        Set<Configuration> aExcluded)
+        throws CheckstyleException
+    {
+        final DefaultConfiguration result =
+            new DefaultConfiguration(aConfig.getName());
+        final String[] attributes = aConfig.getAttributeNames();
+        for (int i = 0; i < attributes.length; i++) {
+            result.addAttribute(attributes[i],
+                aConfig.getAttribute(attributes[i]));
+        }
+        final Iterator<Map.Entry<String, String>> messages =
+            aConfig.getMessages().entrySet().iterator();
+        while (messages.hasNext()) {
+            final Map.Entry<String, String> message = messages.next();
+            result.addMessage(message.getKey(), message.getValue());
+        }
+        final Configuration[] children = aConfig.getChildren();
+        for (int i = 0; i < children.length; i++) {
+            if (!aExcluded.contains(children[i])) {
+                result.addChild(copy(children[i], aExcluded));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the keys of the modules of a configuration that report
+     * events, see {@link #getKey(AuditEvent)}.
+     * @param aConfig the configuration.
+     * @return the keys.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    static Set<String> getModuleKeys(Configuration aConfig)
+        throws CheckstyleException
+    {
+        final Set<String> result = new HashSet<String>();
+        result.add(CHECKER_KEY);
+        addModuleKeys(aConfig, result);
+        return result;
+    }
+
+    /**
+     * Adds the keys of the modules without children of a configuration.
+     * @param aConfig the configuration.
+     * @param aKeys the keys found so far.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    private static void addModuleKeys(Configuration aConfig, Set<String> aKeys)
+        throws CheckstyleException
+    {
+        final Configuration[] children = aConfig.getChildren();
+        if (children.length == 0) {
+            aKeys.add(getKey(aConfig));
+        }
+        for (int i = 0; i < children.length; i++) {
+            addModuleKeys(children[i], aKeys);
+        }
+    }
+
+    /**
+     * Returns the key of a module: its id if it has one, else its name
+     * without package and <code>Check</code> suffix.
+     * @param aModule the configuration of the module.
+     * @return the key.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    static String getKey(Configuration aModule)
+        throws CheckstyleException
+    {
+        if (Arrays.asList(aModule.getAttributeNames()).contains("id")) {
+            return aModule.getAttribute("id");
+        }
+        return getSimpleName(aModule.getName());
+    }
+
+    /**
+     * Returns the key of the module that reported an event, see
+     * {@link #getKey(Configuration)}.
+     * @param aEvent the event.
+     * @return the key.
+     */
+    static String getKey(AuditEvent aEvent)
+    {
+        if (aEvent.getLocalizedMessage() == null) {
+            return "";
+        }
+        if (aEvent.getModuleId() != null) {
+            return aEvent.getModuleId();
+        }
+        return getSimpleName(aEvent.getSourceName());
+    }
+
+    /**
+     * Determines whether the events counted under a check name, see
+     * {@link FileAuditor#getCheckName(AuditEvent)}, are reported by one of
+     * some modules.
+     * @param aKeys the keys of the modules.
+     * @param aCheckName the check name.
+     * @return true if the events are reported by one of the modules.
+     */
+    static boolean containsCheck(Set<String> aKeys, String aCheckName)
+    {
+        return aKeys.contains(aCheckName)
+            || aKeys.contains(getSimpleName(aCheckName));
+    }
+
+    /**
+     * Returns a module or class name without package and
+     * <code>Check</code> suffix.
+     * @param aName the name.
+     * @return the simple name.
+     */
+    private static String getSimpleName(String aName)
+    {
+        String result = aName.substring(aName.lastIndexOf('.') + 1);
+        if (result.endsWith("Check")) {
+            result = result.substring(0, result.length() - "Check".length());
+        }
+        return result;
+    }
+
+    /**
+     * Records the time a check took for one file.
+     * @param aKey the key of the module of the check.
+     * @param aNanos the time (nanoseconds).
+     */
+    static void recordCost(String aKey, long aNanos)
+    {
+        synchronized (COSTS) {
+            long[] cost = COSTS.get(aKey);
+            if (cost == null) {
+                cost = new long[2];
+                COSTS.put(aKey, cost);
+            }
+            cost[1]++;
+            final long samples = cost[1] - WARMUP_SAMPLES;
+            if (samples > 0) {
+                cost[0] += (aNanos - cost[0]) / Math.min(samples, COST_WINDOW);
+            }
+        }
+    }
+
+    /**
+     * The fast tier of a configuration.
+     */
+    private static final class Split
+    {
+        /** the modules left out of the fast tier */
+        private final Set<Configuration> mExcluded;
+
+        /** the configuration of the fast tier */
+        private final Configuration mConfig;
+
+        /**
+         * Constructs a <code>Split</code>.
+         * @param aExcluded the modules left out of the fast tier.
+         * @param aConfig the configuration of the fast tier.
+         */
+        Split(Set<Configuration> aExcluded, Configuration aConfig)
+        {
+            mExcluded = aExcluded;
+            mConfig = aConfig;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cancellation token for one audit. The audit loop of
+ * <code>BlueJChecker</code> polls the token between files and stops
+ * auditing once the token has been cancelled. The token records the
+ * generation of each file the audit has started, see
+ * {@link FileGenerations}; when one of these files changes, the audit is
+ * superseded and the results of that file are stale, see
+ * {@link #getStaleFiles()}. A superseded audit is not cancelled, so that
+ * the results of its other files can still be shown.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.2
+ */
+public class AuditToken
+{
+    /** source of sequence numbers of tokens */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /** sequence number of this token, later tokens have larger numbers */
+    private final long mSequence = SEQUENCE.incrementAndGet();
+
+    /** generation of each file the audit has started, by absolute file */
+    private final Map<File, Long> mGenerations =
+        new ConcurrentHashMap<File, Long>();
+
+    /** true once the audit has been cancelled */
+    private volatile boolean mCancelled = false;
+
+    /** true once a file of the audit has changed */
+    private volatile boolean mSuperseded = false;
+
+    /**
+     * Constructs an <code>AuditToken</code>.
+     */
+    public AuditToken()
+    {
+        FileGenerations.getInstance().register(this);
+    }
+
+    /**
+     * Requests that the audit of this token stop before its next file.
+     */
+    public void cancel()
+    {
+        mCancelled = true;
+    }
+
+    /**
+     * Determines whether the audit of this token has been cancelled.
+     * @return true if the audit has been cancelled.
+     */
+    public boolean isCancelled()
+    {
+        return mCancelled;
+    }
+
+    /**
+     * Determines whether a file of the audit of this token has changed
+     * since the audit started it, so that the results of that file are
+     * stale.
+     * @return true if the audit has been superseded.
+     */
+    public boolean isSuperseded()
+    {
+        return mSuperseded;
+    }
+
+    /**
+     * Returns the sequence number of this token. A token created later has
+     * a larger sequence number.
+     * @return the sequence number.
+     */
+    public long getSequence()
+    {
+        return mSequence;
+    }
+
+    /**
+     * Records the current generation of a file the audit is starting.
+     * @param aFile the file.
+     */
+    public void fileStarted(File aFile)
+    {
+        final File file = aFile.getAbsoluteFile();
+        mGenerations.put(file, FileGenerations.getInstance().get(file));
+    }
+
+    /**
+     * Returns the files the audit has started that have changed since,
+     * so that their results are stale.
+     * @return the names of the absolute files.
+     */
+    public Set<String> getStaleFiles()
+    {
+        final FileGenerations generations = FileGenerations.getInstance();
+        final Set<String> result = new HashSet<String>();
+        final Iterator<Map.Entry<File, Long>> it =
+            mGenerations.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<File, Long> entry = it.next();
+            if (generations.get(entry.getKey()) > entry.getValue()) {
+                result.add(entry.getKey().getPath());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Supersedes the audit if it has started an older generation of a
+     * changed file.
+     * @param aFile the absolute file.
+     * @param aGeneration the new generation of the file.
+     */
+    void fileChanged(File aFile, long aGeneration)
+    {
+        final Long seen = mGenerations.get(aFile);
+        if (seen != null && seen < aGeneration) {
+            mSuperseded = true;
+        }
+    }
+}
@@ -20,33 +20,172 @@
 
 package com.puppycrawl.tools.checkstyle.plugins.bluej;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.puppycrawl.tools.checkstyle.api.AuditEvent;
 import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
 
 /**
  * Describe class Auditor
  * @author Rick Giles
  * @author CS4250 Students (MSU Denver)
- * @version 1.5
+ * @version 1.18
  */
 public class Auditor implements AuditListener
 {
     /** List of FileAuditors, one for each audited file */
-    private List<FileAuditor> mFileAuditors = null;
+    private final List<FileAuditor> mFileAuditors =
+        new ArrayList<FileAuditor>();
 
+    /** positions of the FileAuditors in mFileAuditors, by file name */
+    private final Map<String, Integer> mFileAuditorIndex =
+        new HashMap<String, Integer>();
 
     /** FileAuditor for currently processed file */
     private FileAuditor mCurrentFileAuditor;
 
+    /** number of events of all files, by check */
+    private final Map<String, int[]> mCheckTotals =
+        new HashMap<String, int[]>();
+
+    /** number of events of all files, by severity ordinal */
+    private final int[] mSeverityTotals =
+        new int[SeverityLevel.values().length];
+
+    /** number of events of all files */
+    private int mEventTotal;
+
+    /** number of files whose materialized events are cached */
+    private static final int DETAIL_CACHE_SIZE = 16;
+
+    /** true if the events of each file are kept */
+    private final boolean mRetainEvents;
+
+    /**
+     * number of events kept in the heap above which the events of further
+     * files are spilled to mStore, 0 for no limit
+     */
+    private long mSpillThreshold;
+
+    /** number of events of all files that are kept in the heap */
+    private long mHeapEventTotal;
+
+    /** store of spilled events, or null until events are spilled */
+    private EventStore mStore;
+
+    /**
+     * keys of the modules whose events this auditor holds, or null if it
+     * holds the events of all modules
+     */
+    private Set<String> mModuleKeys;
+
+    /** re-audits files of a summary, or null if events are not needed */
+    private BlueJChecker mDetailSource;
+
+    /** materialized events of recently selected files, by file name */
+    private final Map<String, List<AuditEvent>> mDetailCache =
+        new LinkedHashMap<String, List<AuditEvent>>(
+            DETAIL_CACHE_SIZE, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, List<AuditEvent>> aEldest)
+            {
+                return size() > DETAIL_CACHE_SIZE;
+            }
+        };
+
+    /**
+     * Constructs an <code>Auditor</code> that keeps all audit events.
+     */
+    public Auditor()
+    {
+        this(true);
+    }
+
+    /**
+     * Constructs an <code>Auditor</code>.
+     * @param aRetainEvents true if the events of each file should be kept,
+     * false if only the numbers of events of each file should be recorded,
+     * for example when the events are streamed to a {@link ResultSink} or
+     * the project is very large.
+     */
+    public Auditor(boolean aRetainEvents)
+    {
+        mRetainEvents = aRetainEvents;
+    }
+
+    /**
+     * Sets the checker that re-audits a file of a summary when its events
+     * are needed, see {@link #getEvents(FileAuditor)}.
+     * @param aChecker the checker, or null.
+     */
+    public void setDetailSource(BlueJChecker aChecker)
+    {
+        mDetailSource = aChecker;
+    }
+
+    /**
+     * Sets the number of events kept in the heap above which the events
+     * of each further file are spilled to a memory-mapped
+     * {@link EventStore} when the file is finished. The events of a
+     * spilled file are read back by {@link FileAuditor#getEvents()}.
+     * @param aThreshold the number of events, 0 for no limit.
+     */
+    public synchronized void setSpillThreshold(long aThreshold)
+    {
+        mSpillThreshold = aThreshold;
+    }
+
+    /**
+     * Records that this auditor holds the events of some modules only,
+     * for example of the fast tier of the {@link AuditTiers}. Merging
+     * such an auditor into shown results replaces only the events of those
+     * modules, see {@link #combine(FileAuditor, FileAuditor, Set)}.
+     * @param aModuleKeys keys of the modules, see
+     * {@link AuditTiers#getKey(AuditEvent)}, or null for all modules.
+     */
+    public synchronized void setModuleKeys(Set<String> aModuleKeys)
+    {
+        mModuleKeys = aModuleKeys;
+    }
+
+    /**
+     * Determines whether this auditor holds the events of some modules
+     * only.
+     * @return true if this auditor holds the events of some modules only.
+     */
+    public synchronized boolean isPartial()
+    {
+        return mModuleKeys != null;
+    }
+
+    /**
+     * Returns the keys of the modules whose events this auditor holds.
+     * @return the keys, or null if this auditor holds the events of all
+     * modules.
+     */
+    synchronized Set<String> getModuleKeys()
+    {
+        return mModuleKeys;
+    }
 
     /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
     public void auditStarted(AuditEvent aEvt)
     {
-        mFileAuditors = new ArrayList<FileAuditor>();
+        // results accumulate over all Checker runs of one audit
     }
 
     /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
@@ -55,48 +194,468 @@ public class Auditor implements AuditListener
         // nothing to do
     }
 
-    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
-    public void fileStarted(AuditEvent aEvt)
+    /**
+     * Starts the results of a file. A further run of the audit over a
+     * file whose results are frozen adds to a copy of them, see
+     * {@link FileAuditor#FileAuditor(FileAuditor)}; the results of a file
+     * that timed out stay frozen and further events of it are dropped.
+     * @see com.puppycrawl.tools.checkstyle.api.AuditListener
+     */
+    public synchronized void fileStarted(AuditEvent aEvt)
     {
-        // use one in list?
-        Iterator it = mFileAuditors.iterator();
-        while (it.hasNext()) {
-            final FileAuditor auditor = (FileAuditor) it.next();
-            if (auditor.toString().equals(aEvt.getFileName())){
-                mCurrentFileAuditor = auditor;
-                return;
+        final FileAuditor auditor = lookup(aEvt.getFileName());
+        if (auditor != null && (!auditor.isFrozen()
+            || auditor.getStatus() == FileAuditor.Status.TIMED_OUT))
+        {
+            mCurrentFileAuditor = auditor;
+            return;
+        }
+        final FileAuditor next;
+        if (auditor != null
+            && auditor.getStatus() == FileAuditor.Status.AUDITED)
+        {
+            next = new FileAuditor(auditor);
+        }
+        else {
+            next = new FileAuditor(aEvt);
+            next.setSummary(!mRetainEvents);
+        }
+        if (auditor != null) {
+            replace(auditor, next);
+        }
+        else {
+            addFileAuditor(next);
+        }
+        mCurrentFileAuditor = next;
+    }
+
+    /**
+     * Finishes the results of a file: spills its events if the heap holds
+     * too many, and freezes the results.
+     * @see com.puppycrawl.tools.checkstyle.api.AuditListener
+     */
+    public synchronized void fileFinished(AuditEvent aEvt)
+    {
+        final FileAuditor auditor = getFileAuditor(aEvt);
+        if (auditor == null) {
+            return;
+        }
+        if (mSpillThreshold > 0
+            && mHeapEventTotal > mSpillThreshold && !auditor.isSpilled()
+            && auditor.getHeapEventCount() > 0)
+        {
+            spill(auditor);
+        }
+        auditor.freeze();
+        if (auditor == mCurrentFileAuditor) {
+            mCurrentFileAuditor = null;
+        }
+    }
+
+    /**
+     * Moves the events of a file from the heap to the store.
+     * @param aAuditor the file auditor of the file.
+     */
+    private void spill(FileAuditor aAuditor)
+    {
+        final int count = aAuditor.getHeapEventCount();
+        try {
+            if (mStore == null) {
+                mStore = new EventStore();
             }
+            aAuditor.spill(mStore);
+            mHeapEventTotal -= count;
+        }
+        catch (IOException e) {
+            // no room for a store, keep all further events in the heap
+            mSpillThreshold = 0;
         }
-        mCurrentFileAuditor = new FileAuditor(aEvt);
-        mFileAuditors.add(mCurrentFileAuditor);
     }
 
     /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
-    public void fileFinished(AuditEvent aEvt)
+    public synchronized void addError(AuditEvent aEvt)
     {
-        // nothing to do
+        final FileAuditor auditor = getFileAuditor(aEvt);
+        if (auditor != null) {
+            auditor.addError(aEvt);
+            count(aEvt);
+            if (!auditor.isSummary()) {
+                mHeapEventTotal++;
+            }
+        }
     }
 
     /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
-    public void addError(AuditEvent aEvt)
+    public synchronized void addException(AuditEvent aEvt, Throwable aThrowable)
     {
-        mCurrentFileAuditor.addError(aEvt);
+        final FileAuditor auditor = getFileAuditor(aEvt);
+        if (auditor != null) {
+            auditor.addException(aEvt, aThrowable);
+            count(aEvt);
+            if (!auditor.isSummary()) {
+                mHeapEventTotal++;
+            }
+        }
     }
 
-    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
-    public void addException(AuditEvent aEvt, Throwable aThrowable)
+    /**
+     * Finds the file auditor that should receive an event. Events of a
+     * file whose results are frozen, for example because it has timed
+     * out, are dropped.
+     * @param aEvt the event.
+     * @return the file auditor for the event, or null if the event should
+     * be dropped.
+     */
+    private FileAuditor getFileAuditor(AuditEvent aEvt)
+    {
+        FileAuditor auditor = mCurrentFileAuditor;
+        if (auditor == null || !auditor.toString().equals(aEvt.getFileName()))
+        {
+            auditor = lookup(aEvt.getFileName());
+        }
+        if (auditor == null || auditor.isFrozen()) {
+            return null;
+        }
+        return auditor;
+    }
+
+    /**
+     * Returns the file auditor of a file.
+     * @param aFileName the name of the file.
+     * @return the file auditor, or null if the file has no results.
+     */
+    private FileAuditor lookup(String aFileName)
+    {
+        final Integer position = mFileAuditorIndex.get(aFileName);
+        return (position == null) ? null : mFileAuditors.get(position);
+    }
+
+    /**
+     * Adds a file auditor to the list of file auditors.
+     * @param aFileAuditor the file auditor to add.
+     */
+    private void addFileAuditor(FileAuditor aFileAuditor)
+    {
+        mFileAuditorIndex.put(aFileAuditor.toString(), mFileAuditors.size());
+        mFileAuditors.add(aFileAuditor);
+        count(aFileAuditor, 1);
+        mHeapEventTotal += aFileAuditor.getHeapEventCount();
+    }
+
+    /**
+     * Adds an event of a file to the numbers of events of all files.
+     * @param aEvt the event.
+     */
+    private void count(AuditEvent aEvt)
+    {
+        mEventTotal++;
+        mSeverityTotals[aEvt.getSeverityLevel().ordinal()]++;
+        final String check = FileAuditor.getCheckName(aEvt);
+        final int[] total = mCheckTotals.get(check);
+        if (total == null) {
+            mCheckTotals.put(check, new int[] {1});
+        }
+        else {
+            total[0]++;
+        }
+    }
+
+    /**
+     * Adds the numbers of events of a file to, or subtracts them from,
+     * the numbers of events of all files. The cost depends on the number
+     * of checks and severities of the file, not on its number of events.
+     * @param aFileAuditor the file auditor of the file.
+     * @param aSign 1 to add, -1 to subtract.
+     */
+    private void count(FileAuditor aFileAuditor, int aSign)
+    {
+        if (aFileAuditor.getEventCount() == 0) {
+            return;
+        }
+        mEventTotal += aSign * aFileAuditor.getEventCount();
+        final SeverityLevel[] levels = SeverityLevel.values();
+        for (int i = 0; i < levels.length; i++) {
+            mSeverityTotals[i] +=
+                aSign * aFileAuditor.getSeverityCount(levels[i]);
+        }
+        final Iterator<Map.Entry<String, Integer>> it =
+            aFileAuditor.getCheckCounts().entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Integer> entry = it.next();
+            int[] total = mCheckTotals.get(entry.getKey());
+            if (total == null) {
+                total = new int[1];
+                mCheckTotals.put(entry.getKey(), total);
+            }
+            total[0] += aSign * entry.getValue();
+            if (total[0] <= 0) {
+                mCheckTotals.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of events of all files.
+     * @return the number of events.
+     */
+    public synchronized int getEventTotal()
+    {
+        return mEventTotal;
+    }
+
+    /**
+     * Returns the number of events of all files of a severity level.
+     * @param aLevel the severity level.
+     * @return the number of events.
+     */
+    public synchronized int getSeverityTotal(SeverityLevel aLevel)
+    {
+        return mSeverityTotals[aLevel.ordinal()];
+    }
+
+    /**
+     * Returns the number of events of all files by check, see
+     * {@link FileAuditor#getCheckName(AuditEvent)}. The numbers are
+     * maintained as files are audited, replaced and removed, so this
+     * costs only a copy of one number per check.
+     * @return the numbers of events, the most frequent check first.
+     */
+    public synchronized Map<String, Integer> getCheckTotals()
+    {
+        final List<Map.Entry<String, int[]>> entries =
+            new ArrayList<Map.Entry<String, int[]>>(mCheckTotals.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, int[]>>()
+        {
+            public int compare(Map.Entry<String, int[]> aFirst,
+                Map.Entry<String, int[]> aSecond)
+            {
+                final int result =
+                    Integer.compare(aSecond.getValue()[0],
+                        aFirst.getValue()[0]);
+                if (result != 0) {
+                    return result;
+                }
+                return aFirst.getKey().compareTo(aSecond.getKey());
+            }
+        });
+        final Map<String, Integer> result =
+            new LinkedHashMap<String, Integer>();
+        for (int i = 0; i < entries.size(); i++) {
+            result.put(entries.get(i).getKey(), entries.get(i).getValue()[0]);
+        }
+        return result;
+    }
+
+    /**
+     * Records that the audit of a file exceeded its time budget. The
+     * results of the file are replaced by frozen results that hold only
+     * the time out, and any further events of the file are ignored.
+     * @param aFileName the name of the file.
+     * @param aBudget the time budget of the file (milliseconds).
+     * @return the event reporting the time out.
+     */
+    public synchronized AuditEvent fileTimedOut(String aFileName, long aBudget)
+    {
+        final LocalizedMessage message = new LocalizedMessage(
+            0, 0, null, "timedOut", null, SeverityLevel.INFO, null,
+            BlueJChecker.class,
+            "Audit timed out after " + aBudget + " ms");
+        final AuditEvent event = new AuditEvent(this, aFileName, message);
+        final FileAuditor auditor = new FileAuditor(aFileName);
+        auditor.addError(event);
+        auditor.setStatus(FileAuditor.Status.TIMED_OUT);
+        put(auditor);
+        return event;
+    }
+
+    /**
+     * Records that the audit of a file has been deferred to the
+     * background pass for large files.
+     * @param aFileName the name of the file.
+     */
+    public synchronized void fileDeferred(String aFileName)
+    {
+        final FileAuditor auditor = new FileAuditor(aFileName);
+        auditor.setStatus(FileAuditor.Status.DEFERRED);
+        put(auditor);
+    }
+
+    /**
+     * Freezes the results of a file and puts them in place of any earlier
+     * results of the file.
+     * @param aFileAuditor the file auditor of the file.
+     */
+    private void put(FileAuditor aFileAuditor)
+    {
+        aFileAuditor.freeze();
+        final FileAuditor old = lookup(aFileAuditor.toString());
+        if (old == null) {
+            addFileAuditor(aFileAuditor);
+        }
+        else {
+            replace(old, aFileAuditor);
+        }
+        if (mCurrentFileAuditor == aFileAuditor) {
+            mCurrentFileAuditor = null;
+        }
+    }
+
+    /**
+     * Returns the files whose audit has been deferred.
+     * @return the files whose audit has been deferred.
+     */
+    public synchronized List<File> getDeferredFiles()
+    {
+        final List<File> result = new ArrayList<File>();
+        final Iterator<FileAuditor> it = mFileAuditors.iterator();
+        while (it.hasNext()) {
+            final FileAuditor auditor = it.next();
+            if (auditor.getStatus() == FileAuditor.Status.DEFERRED) {
+                result.add(new File(auditor.toString()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces a file auditor with another file auditor of the same file.
+     * @param aOld the file auditor to replace.
+     * @param aNew the replacement.
+     */
+    private void replace(FileAuditor aOld, FileAuditor aNew)
     {
-        mCurrentFileAuditor.addException(aEvt, aThrowable);
+        if (aOld == aNew) {
+            return;
+        }
+        count(aOld, -1);
+        count(aNew, 1);
+        mHeapEventTotal += aNew.getHeapEventCount()
+            - aOld.getHeapEventCount();
+        mFileAuditors.set(mFileAuditorIndex.get(aNew.toString()), aNew);
+        synchronized (mDetailCache) {
+            mDetailCache.remove(aNew.toString());
+        }
+        if (aOld == mCurrentFileAuditor) {
+            mCurrentFileAuditor = aNew;
+        }
     }
 
+    /**
+     * Combines the events of some modules of a file with the events of
+     * the other modules from an earlier audit of the file. The combined
+     * results keep the status of the new results if these were not
+     * audited completely, else the status of the earlier results, so that
+     * a file whose other modules did not complete is still shown as such.
+     * If either results keep only the numbers of events, the combined
+     * results are a summary of the numbers of events of both.
+     * @param aOld the earlier results of the file.
+     * @param aNew the results of the modules.
+     * @param aKeys the keys of the modules.
+     * @return the combined results, sorted by position.
+     */
+    static FileAuditor combine(
+        FileAuditor aOld, FileAuditor aNew, Set<String> aKeys)
+    {
+        final FileAuditor.Status status =
+            (aNew.getStatus() != FileAuditor.Status.AUDITED)
+                ? aNew.getStatus() : aOld.getStatus();
+        if (aOld.isSummary() || aNew.isSummary()) {
+            final FileAuditor result = new FileAuditor(aNew.toString());
+            result.setStatus(status);
+            result.setSummary(true);
+            result.addCounts(aNew, null);
+            result.addCounts(aOld, aKeys);
+            result.freeze();
+            return result;
+        }
+        final List<AuditEvent> events =
+            new ArrayList<AuditEvent>(aNew.getEvents());
+        final Iterator<AuditEvent> it = aOld.getEvents().iterator();
+        while (it.hasNext()) {
+            final AuditEvent event = it.next();
+            if (!aKeys.contains(AuditTiers.getKey(event))) {
+                events.add(event);
+            }
+        }
+        if (events.size() == aNew.getEventCount()
+            && status == aNew.getStatus())
+        {
+            return aNew;
+        }
+        Collections.sort(events, new Comparator<AuditEvent>()
+        {
+            public int compare(AuditEvent aFirst, AuditEvent aSecond)
+            {
+                final int result =
+                    Integer.compare(aFirst.getLine(), aSecond.getLine());
+                if (result != 0) {
+                    return result;
+                }
+                return Integer.compare(aFirst.getColumn(),
+                    aSecond.getColumn());
+            }
+        });
+        final FileAuditor result = new FileAuditor(aNew.toString());
+        result.setStatus(status);
+        for (int i = 0; i < events.size(); i++) {
+            result.addError(events.get(i));
+        }
+        result.freeze();
+        return result;
+    }
+
+    /**
+     * Closes the store of the spilled events of this auditor, once its
+     * results are no longer shown or merged. Spilled events can still be
+     * read, but no more events are spilled.
+     */
+    public synchronized void close()
+    {
+        if (mStore != null) {
+            mStore.close();
+        }
+    }
+
+    /**
+     * Returns the events of a file. The events of a summary are
+     * materialized by re-auditing the file, and cached for the most
+     * recently requested files.
+     * @param aAuditor the file auditor of the file.
+     * @return the events of the file.
+     * @throws CheckstyleException if the file cannot be re-audited.
+     */
+    public List<AuditEvent> getEvents(FileAuditor aAuditor)
+        throws CheckstyleException
+    {
+        if (!aAuditor.isSummary() || aAuditor.getEventCount() == 0
+            || mDetailSource == null)
+        {
+            return aAuditor.getEvents();
+        }
+        final String fileName = aAuditor.toString();
+        synchronized (mDetailCache) {
+            final List<AuditEvent> cached = mDetailCache.get(fileName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final List<AuditEvent> result =
+            mDetailSource.audit(new File(fileName));
+        synchronized (mDetailCache) {
+            mDetailCache.put(fileName, result);
+        }
+        return result;
+    }
 
     /**
-     * Returns the list of file auditors for this auditor.
+     * Returns the list of file auditors for this auditor. The list is a
+     * copy, which the audit does not change.
      * @return the list of file auditors for this auditor.
      */
-    public List<FileAuditor> getFileAuditors()
+    public synchronized List<FileAuditor> getFileAuditors()
     {
-        return mFileAuditors;
+        return Collections.unmodifiableList(
+            new ArrayList<FileAuditor>(mFileAuditors));
     }
 
 }
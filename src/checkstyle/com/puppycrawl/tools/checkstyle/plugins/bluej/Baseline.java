@@ -0,0 +1,422 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+/**
+ * A set of audit event fingerprints recorded at some point in time, so
+ * that later audits can report only new events. A fingerprint combines
+ * the file name relative to the baseline directory, the check, and a hash
+ * of the whitespace-normalized text of the line of the event, so it
+ * survives edits that move the line.
+ * <p>
+ * The file format is a magic number and a count followed by the sorted
+ * distinct fingerprints as 8-byte values.
+ * </p>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+public final class Baseline
+{
+    /** identifies baseline files */
+    private static final int MAGIC = 0x43534231;
+
+    /** FNV-1a 64 bit offset basis */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /** FNV-1a 64 bit prime */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** most recently loaded baseline */
+    private static Baseline sLoaded;
+
+    /** file that most recently failed to load, or null */
+    private static File sFailedFile;
+
+    /** modification time of sFailedFile when it failed to load */
+    private static long sFailedLastModified;
+
+    /** length of sFailedFile when it failed to load */
+    private static long sFailedLength;
+
+    /** why sFailedFile failed to load */
+    private static IOException sFailure;
+
+    /** directory that file names are made relative to */
+    private final File mRoot;
+
+    /** fingerprints of the baseline */
+    private final Set<Long> mFingerprints;
+
+    /** file the baseline was loaded from, or null */
+    private File mFile;
+
+    /** modification time of mFile when it was loaded */
+    private long mLastModified;
+
+    /** length of mFile when it was loaded */
+    private long mLength;
+
+    /**
+     * Constructs an empty <code>Baseline</code>.
+     * @param aRoot directory that file names are made relative to.
+     */
+    public Baseline(File aRoot)
+    {
+        mRoot = aRoot.getAbsoluteFile();
+        mFingerprints = new HashSet<Long>();
+    }
+
+    /**
+     * Loads a baseline file. The directory of the file is the directory
+     * that file names are made relative to. The most recently loaded
+     * baseline is reused while its file keeps its modification time and
+     * length, and so is the failure of the file that most recently failed
+     * to load, so that checkers created on each timer tick do not read
+     * the file again.
+     * @param aFile the baseline file.
+     * @return the baseline.
+     * @throws IOException if the file cannot be read.
+     */
+    public static synchronized Baseline load(File aFile)
+        throws IOException
+    {
+        final File file = aFile.getAbsoluteFile();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        if (sLoaded != null && file.equals(sLoaded.mFile)
+            && lastModified == sLoaded.mLastModified
+            && length == sLoaded.mLength)
+        {
+            return sLoaded;
+        }
+        if (file.equals(sFailedFile) && lastModified == sFailedLastModified
+            && length == sFailedLength)
+        {
+            throw new IOException(sFailure.getMessage(), sFailure);
+        }
+        final Baseline result = new Baseline(file.getParentFile());
+        result.mFile = file;
+        result.mLastModified = lastModified;
+        result.mLength = length;
+        try {
+            result.read(file);
+        }
+        catch (IOException e) {
+            sFailedFile = file;
+            sFailedLastModified = lastModified;
+            sFailedLength = length;
+            sFailure = e;
+            throw e;
+        }
+        sLoaded = result;
+        sFailedFile = null;
+        sFailure = null;
+        return result;
+    }
+
+    /**
+     * Reads the fingerprints of a baseline file into this baseline.
+     * @param aFile the baseline file.
+     * @throws IOException if the file cannot be read.
+     */
+    private void read(File aFile)
+        throws IOException
+    {
+        final DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(aFile)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a Checkstyle baseline: " + aFile);
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                mFingerprints.add(in.readLong());
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Saves this baseline.
+     * @param aFile the baseline file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(File aFile)
+        throws IOException
+    {
+        final long[] sorted = new long[mFingerprints.size()];
+        int i = 0;
+        final Iterator<Long> it = mFingerprints.iterator();
+        while (it.hasNext()) {
+            sorted[i++] = it.next();
+        }
+        Arrays.sort(sorted);
+        final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(aFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(sorted.length);
+            for (i = 0; i < sorted.length; i++) {
+                out.writeLong(sorted[i]);
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Creates a baseline from the results of an audit together with the
+     * fingerprints of an earlier baseline, whose events the audit no
+     * longer reports.
+     * @param aProfile the audit results.
+     * @param aPrevious the earlier baseline, or null.
+     * @param aRoot directory that file names are made relative to.
+     * @return the new baseline.
+     * @throws IOException if an audited file cannot be read or
+     * re-audited.
+     */
+    public static Baseline snapshot(
+        AuditSnapshot.Profile aProfile, Baseline aPrevious, File aRoot)
+        throws IOException
+    {
+        final Baseline result = new Baseline(aRoot);
+        if (aPrevious != null) {
+            result.include(aPrevious);
+        }
+        final Iterator<FileAuditor> it = aProfile.getFileAuditors().iterator();
+        while (it.hasNext()) {
+            final FileAuditor auditor = it.next();
+            if (auditor.getStatus() != FileAuditor.Status.AUDITED
+                || auditor.getEventCount() == 0)
+            {
+                continue;
+            }
+            final String[] lines = readLines(new File(auditor.toString()));
+            final Iterator<AuditEvent> events;
+            try {
+                events = aProfile.getEvents(auditor).iterator();
+            }
+            catch (CheckstyleException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            while (events.hasNext()) {
+                final AuditEvent event = events.next();
+                result.mFingerprints.add(result.fingerprint(event, lines));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Audit listener that adds the fingerprints of the reported events
+     * to a baseline as they arrive, so a baseline can be recorded without
+     * keeping the events.
+     */
+    public static final class Recorder implements AuditListener
+    {
+        /** baseline receiving the fingerprints */
+        private final Baseline mTarget;
+
+        /** filter whose line cache is reused for fingerprinting */
+        private final BaselineFilter mLines;
+
+        /**
+         * Constructs a <code>Recorder</code>.
+         * @param aTarget baseline receiving the fingerprints.
+         */
+        public Recorder(Baseline aTarget)
+        {
+            mTarget = aTarget;
+            mLines = new BaselineFilter(aTarget);
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditStarted(AuditEvent aEvt)
+        {
+            // nothing to do
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditFinished(AuditEvent aEvt)
+        {
+            // nothing to do
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileStarted(AuditEvent aEvt)
+        {
+            // nothing to do
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileFinished(AuditEvent aEvt)
+        {
+            // nothing to do
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void addError(AuditEvent aEvt)
+        {
+            if (aEvt.getLocalizedMessage() != null) {
+                mTarget.mFingerprints.add(mTarget.fingerprint(aEvt,
+                    mLines.getLines(aEvt.getFileName())));
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addException(AuditEvent aEvt, Throwable aThrowable)
+        {
+            // exceptions are not part of a baseline
+        }
+    }
+
+    /**
+     * Adds the fingerprints of another baseline with the same directory
+     * to this baseline.
+     * @param aOther the other baseline.
+     */
+    public void include(Baseline aOther)
+    {
+        if (aOther.mRoot.equals(mRoot)) {
+            mFingerprints.addAll(aOther.mFingerprints);
+        }
+    }
+
+    /**
+     * Determines whether an event is part of this baseline.
+     * @param aEvent the event.
+     * @param aLines the lines of the file of the event.
+     * @return true if the event is part of this baseline.
+     */
+    public boolean contains(AuditEvent aEvent, String[] aLines)
+    {
+        return mFingerprints.contains(fingerprint(aEvent, aLines));
+    }
+
+    /**
+     * Returns the number of fingerprints of this baseline.
+     * @return the number of fingerprints of this baseline.
+     */
+    public int size()
+    {
+        return mFingerprints.size();
+    }
+
+    /**
+     * Computes the fingerprint of an event.
+     * @param aEvent the event.
+     * @param aLines the lines of the file of the event.
+     * @return the fingerprint.
+     */
+    long fingerprint(AuditEvent aEvent, String[] aLines)
+    {
+        long hash = FNV_OFFSET;
+        hash = hash(hash, getRelativeName(aEvent.getFileName()));
+        hash = hash(hash, "\0");
+        final String check = (aEvent.getModuleId() != null)
+            ? aEvent.getModuleId() : aEvent.getSourceName();
+        hash = hash(hash, check);
+        hash = hash(hash, "\0");
+        final int line = aEvent.getLine();
+        if (line > 0 && line <= aLines.length) {
+            hash = hash(hash, aLines[line - 1].trim().replaceAll("\\s+", " "));
+        }
+        return hash;
+    }
+
+    /**
+     * Makes a file name relative to the baseline directory, with
+     * '/' as separator.
+     * @param aFileName the file name.
+     * @return the relative file name, or the absolute file name if the
+     * file is not in the baseline directory.
+     */
+    private String getRelativeName(String aFileName)
+    {
+        String result = new File(aFileName).getAbsolutePath();
+        final String root = mRoot.getPath() + File.separator;
+        if (result.startsWith(root)) {
+            result = result.substring(root.length());
+        }
+        return result.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Adds the characters of a string to an FNV-1a hash.
+     * @param aHash the hash so far.
+     * @param aText the string.
+     * @return the new hash.
+     */
+    private static long hash(long aHash, String aText)
+    {
+        long result = aHash;
+        for (int i = 0; i < aText.length(); i++) {
+            result ^= aText.charAt(i);
+            result *= FNV_PRIME;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the lines of a file.
+     * @param aFile the file.
+     * @return the lines of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    static String[] readLines(File aFile)
+        throws IOException
+    {
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(aFile.toPath(), StandardCharsets.UTF_8);
+        }
+        catch (MalformedInputException e) {
+            return Files.readAllLines(aFile.toPath(),
+                StandardCharsets.ISO_8859_1).toArray(new String[0]);
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+}
@@ -0,0 +1,97 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.Filter;
+
+/**
+ * Filter that rejects audit events recorded in a {@link Baseline}, so
+ * that listeners only see new events. The lines of the file being audited
+ * are read once, when its first event arrives.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class BaselineFilter implements Filter
+{
+    /** baseline of events to reject */
+    private final Baseline mBaseline;
+
+    /** name of the file whose lines are cached */
+    private String mFileName;
+
+    /** cached lines of mFileName */
+    private String[] mLines;
+
+    /**
+     * Constructs a <code>BaselineFilter</code>.
+     * @param aBaseline baseline of events to reject.
+     */
+    public BaselineFilter(Baseline aBaseline)
+    {
+        mBaseline = aBaseline;
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.Filter */
+    public boolean accept(AuditEvent aEvent)
+    {
+        if (aEvent.getFileName() == null || aEvent.getLocalizedMessage() == null)
+        {
+            return true;
+        }
+        return !mBaseline.contains(aEvent, getLines(aEvent.getFileName()));
+    }
+
+    /**
+     * Returns the lines of a file, reading them unless they are cached.
+     * @param aFileName the name of the file.
+     * @return the lines of the file, empty if it cannot be read.
+     */
+    String[] getLines(String aFileName)
+    {
+        if (!aFileName.equals(mFileName)) {
+            mFileName = aFileName;
+            try {
+                mLines = Baseline.readLines(new File(mFileName));
+            }
+            catch (IOException e) {
+                mLines = new String[0];
+            }
+        }
+        return mLines;
+    }
+
+    /**
+     * Sets the lines of a file instead of reading them, for a file whose
+     * contents are held in memory.
+     * @param aFileName the name of the file.
+     * @param aLines the lines of the file.
+     */
+    void setLines(String aFileName, String[] aLines)
+    {
+        mFileName = aFileName;
+        mLines = aLines;
+    }
+}
@@ -0,0 +1,539 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+/**
+ * Audits many projects, for example the submissions of a course, in
+ * several worker JVMs, so that no single heap holds the whole audit.
+ * <pre>
+ * java com.puppycrawl.tools.checkstyle.plugins.bluej.BatchAudit
+ *     -c config.xml [-p checkstyle.properties] [-f xml|jsonl|sarif]
+ *     [-o output] [-t milliseconds] [-j workers] [-s projects-per-shard]
+ *     [-r retries] [-m worker-heap] project...
+ * </pre>
+ * <p>
+ * The projects are split into shards, and each shard is audited by a
+ * worker JVM with the same {@link BlueJChecker} configuration as a
+ * headless audit. A worker streams its results to the coordinator over
+ * its standard output; the coordinator spools each shard to a temporary
+ * file and, once every shard is done, merges the shards in order into one
+ * report. A worker that crashes or runs out of memory has only its own
+ * shard retried.
+ * </p>
+ * The exit status is 0 if no events of severity error were reported,
+ * 1 if some were, and 2 if the audit could not be run or a shard failed
+ * after its retries.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public final class BatchAudit
+{
+    /** exit status for an audit with events of severity error */
+    private static final int STATUS_ERRORS = 1;
+
+    /** exit status for an audit that could not be run */
+    private static final int STATUS_FAILURE = 2;
+
+    /** shards per worker, if the shard size is not given */
+    private static final int SHARDS_PER_WORKER = 4;
+
+    /** size of the buffers of the worker streams (bytes) */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** usage message */
+    private static final String USAGE =
+        "Usage: BatchAudit -c config.xml [-p checkstyle.properties]"
+        + " [-f xml|jsonl|sarif] [-o output] [-t milliseconds]"
+        + " [-j workers] [-s projects-per-shard] [-r retries]"
+        + " [-m worker-heap] project...";
+
+    /** location of the configuration file */
+    private String mConfigLocation;
+
+    /** location of the properties file */
+    private String mPropsLocation;
+
+    /** output format, or null to derive it from the output file */
+    private ResultSink.Format mFormat;
+
+    /** output file, or null for standard output */
+    private File mOutputFile;
+
+    /** time budget per file (milliseconds), or -1 for the default */
+    private long mFileTimeBudget = -1;
+
+    /** number of worker JVMs run at once */
+    private int mWorkers = Runtime.getRuntime().availableProcessors();
+
+    /** number of projects per shard, or 0 to derive it */
+    private int mShardSize;
+
+    /** number of times a failed shard is retried */
+    private int mRetries = 2;
+
+    /** maximum heap of a worker JVM, such as 512m, or null for default */
+    private String mWorkerHeap;
+
+    /** true if this JVM is a worker */
+    private boolean mWorker;
+
+    /** projects to audit, files or directories */
+    private final List<String> mProjects = new ArrayList<String>();
+
+    /**
+     * Prevent users from constructing BatchAudit objects outside main.
+     */
+    private BatchAudit()
+    {
+        // options are set by parseArguments
+    }
+
+    /**
+     * Runs a batch audit, or one shard of it in a worker JVM.
+     * @param aArgs the command line arguments.
+     */
+    public static void main(String[] aArgs)
+    {
+        final BatchAudit audit = new BatchAudit();
+        int status;
+        try {
+            audit.parseArguments(aArgs);
+            status = audit.mWorker ? audit.runWorker() : audit.run();
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            status = STATUS_FAILURE;
+        }
+        catch (CheckstyleException e) {
+            System.err.println(e.getMessage());
+            status = STATUS_FAILURE;
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
+            status = STATUS_FAILURE;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Parses the command line arguments.
+     * @param aArgs the command line arguments.
+     */
+    private void parseArguments(String[] aArgs)
+    {
+        for (int i = 0; i < aArgs.length; i++) {
+            final String arg = aArgs[i];
+            if ("-w".equals(arg)) {
+                mWorker = true;
+            }
+            else if (arg.startsWith("-") && arg.length() == 2) {
+                if (i + 1 >= aArgs.length) {
+                    throw new IllegalArgumentException(
+                        "Missing value for " + arg);
+                }
+                parseOption(arg.charAt(1), aArgs[++i]);
+            }
+            else {
+                mProjects.add(arg);
+            }
+        }
+        if (mConfigLocation == null) {
+            throw new IllegalArgumentException("Missing -c option");
+        }
+    }
+
+    /**
+     * Parses one command line option.
+     * @param aOption the option letter.
+     * @param aValue the value of the option.
+     */
+    private void parseOption(char aOption, String aValue)
+    {
+        switch (aOption) {
+        case 'c':
+            mConfigLocation = aValue;
+            break;
+        case 'p':
+            mPropsLocation = aValue;
+            break;
+        case 'f':
+            try {
+                mFormat = ResultSink.Format.valueOf(aValue.toUpperCase());
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "Unknown format: " + aValue);
+            }
+            break;
+        case 'o':
+            mOutputFile = new File(aValue);
+            break;
+        case 't':
+            mFileTimeBudget = parseNumber(aValue, "time budget");
+            break;
+        case 'j':
+            mWorkers = (int) Math.max(1, parseNumber(aValue, "workers"));
+            break;
+        case 's':
+            mShardSize = (int) parseNumber(aValue, "shard size");
+            break;
+        case 'r':
+            mRetries = (int) parseNumber(aValue, "retries");
+            break;
+        case 'm':
+            mWorkerHeap = aValue;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown option -" + aOption);
+        }
+    }
+
+    /**
+     * Parses the value of a numeric option.
+     * @param aValue the value.
+     * @param aName name of the option, for the error message.
+     * @return the number.
+     */
+    private static long parseNumber(String aValue, String aName)
+    {
+        try {
+            final long result = Long.parseLong(aValue);
+            if (result < 0) {
+                throw new NumberFormatException(aValue);
+            }
+            return result;
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                "Invalid " + aName + ": " + aValue);
+        }
+    }
+
+    /**
+     * Creates the checker of a worker or of the coordinator.
+     * @return the checker.
+     */
+    private BlueJChecker createChecker()
+    {
+        final BlueJChecker result =
+            new BlueJChecker(mConfigLocation, mPropsLocation);
+        result.setMaxFileSize(0);
+        result.setRetainEvents(false);
+        result.setTrigger("batch");
+        if (mFileTimeBudget >= 0) {
+            result.setFileTimeBudget(mFileTimeBudget);
+        }
+        return result;
+    }
+
+    /**
+     * Audits the projects in worker JVMs and merges their results.
+     * @return the exit status.
+     * @throws CheckstyleException if the configuration is invalid.
+     * @throws IOException if the output cannot be written.
+     */
+    private int run()
+        throws CheckstyleException, IOException
+    {
+        // fail once for an invalid configuration, not once per shard
+        createChecker().process(Collections.<File>emptySet());
+
+        final List<List<String>> shards = getShards();
+        final List<File> spools = new ArrayList<File>();
+        final ExecutorService pool = Executors.newFixedThreadPool(mWorkers);
+        final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                final File spool =
+                    File.createTempFile("checkstyle-shard", null);
+                spool.deleteOnExit();
+                spools.add(spool);
+                final List<String> shard = shards.get(i);
+                final int index = i;
+                results.add(pool.submit(new Callable<Boolean>()
+                {
+                    public Boolean call()
+                    {
+                        return runShard(index, shard, spool);
+                    }
+                }));
+            }
+            boolean complete = true;
+            for (int i = 0; i < results.size(); i++) {
+                complete &= waitFor(results.get(i));
+            }
+            final int errors = merge(spools);
+            if (!complete) {
+                return STATUS_FAILURE;
+            }
+            return (errors > 0) ? STATUS_ERRORS : 0;
+        }
+        finally {
+            pool.shutdownNow();
+            for (int i = 0; i < spools.size(); i++) {
+                spools.get(i).delete();
+            }
+        }
+    }
+
+    /**
+     * Splits the projects into shards.
+     * @return the shards.
+     */
+    private List<List<String>> getShards()
+    {
+        int size = mShardSize;
+        if (size <= 0) {
+            final int shards = mWorkers * SHARDS_PER_WORKER;
+            size = Math.max(1, (mProjects.size() + shards - 1) / shards);
+        }
+        final List<List<String>> result = new ArrayList<List<String>>();
+        for (int i = 0; i < mProjects.size(); i += size) {
+            result.add(mProjects.subList(i,
+                Math.min(i + size, mProjects.size())));
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the audit of a shard.
+     * @param aResult the result of the audit.
+     * @return true if the shard was audited completely.
+     */
+    private static boolean waitFor(Future<Boolean> aResult)
+    {
+        try {
+            return aResult.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException e) {
+            System.err.println(e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Audits a shard in a worker JVM, retrying it if the worker fails.
+     * @param aIndex the index of the shard.
+     * @param aShard the projects of the shard.
+     * @param aSpool the file to spool the results of the shard to.
+     * @return true if the shard was audited completely.
+     */
+    private boolean runShard(int aIndex, List<String> aShard, File aSpool)
+    {
+        for (int attempt = 0; attempt <= mRetries; attempt++) {
+            try {
+                final Process process = startWorker(aShard);
+                final InputStream in = process.getInputStream();
+                final OutputStream out = new FileOutputStream(aSpool);
+                try {
+                    final byte[] buffer = new byte[BUFFER_SIZE];
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
+                    }
+                }
+                finally {
+                    out.close();
+                    in.close();
+                }
+                final int status = process.waitFor();
+                if (status != STATUS_FAILURE && ResultRecords.isComplete(aSpool)) {
+                    return true;
+                }
+                System.err.println("Shard " + (aIndex + 1) + " failed"
+                    + " (exit status " + status + ", attempt "
+                    + (attempt + 1) + ")");
+            }
+            catch (IOException e) {
+                System.err.println("Shard " + (aIndex + 1) + " failed: "
+                    + e.getMessage());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        aSpool.delete();
+        System.err.println("Shard " + (aIndex + 1) + " not audited: "
+            + aShard);
+        return false;
+    }
+
+    /**
+     * Starts a worker JVM for a shard, with the class path, configuration
+     * and options of this JVM.
+     * @param aShard the projects of the shard.
+     * @return the worker process.
+     * @throws IOException if the worker cannot be started.
+     */
+    private Process startWorker(List<String> aShard)
+        throws IOException
+    {
+        final List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"),
+            "java").getPath());
+        if (mWorkerHeap != null) {
+            command.add("-Xmx" + mWorkerHeap);
+        }
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BatchAudit.class.getName());
+        command.add("-w");
+        command.add("-c");
+        command.add(mConfigLocation);
+        if (mPropsLocation != null) {
+            command.add("-p");
+            command.add(mPropsLocation);
+        }
+        if (mFileTimeBudget >= 0) {
+            command.add("-t");
+            command.add(Long.toString(mFileTimeBudget));
+        }
+        command.addAll(aShard);
+        final ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    /**
+     * Merges the spooled shards, in order, into one report.
+     * @param aSpools the spooled shards; missing files are skipped.
+     * @return the number of events of severity error.
+     * @throws IOException if a spool cannot be read or the output cannot
+     * be written.
+     */
+    private int merge(List<File> aSpools)
+        throws IOException
+    {
+        final ResultSink.Format format;
+        if (mFormat != null) {
+            format = mFormat;
+        }
+        else if (mOutputFile != null) {
+            format = ResultSink.Format.forFileName(mOutputFile.getName());
+        }
+        else {
+            format = ResultSink.Format.XML;
+        }
+        final ResultSink sink;
+        if (mOutputFile != null) {
+            sink = ResultSink.open(mOutputFile, format);
+        }
+        else {
+            sink = new ResultSink(
+                Channels.newChannel(new FileOutputStream(FileDescriptor.out)),
+                format);
+        }
+        try {
+            sink.auditStarted(new AuditEvent(this));
+            for (int i = 0; i < aSpools.size(); i++) {
+                if (aSpools.get(i).isFile()) {
+                    ResultRecords.replay(aSpools.get(i), sink, this, null);
+                }
+            }
+            sink.auditFinished(new AuditEvent(this));
+        }
+        finally {
+            sink.close();
+        }
+        return sink.getErrorCount();
+    }
+
+    /**
+     * Audits the projects of one shard and streams the results to
+     * standard output. Anything else printed to standard output goes to
+     * standard error instead, so that it cannot corrupt the stream.
+     * @return the exit status.
+     * @throws CheckstyleException if the audit fails.
+     * @throws IOException if the results cannot be written.
+     */
+    private int runWorker()
+        throws CheckstyleException, IOException
+    {
+        final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), BUFFER_SIZE));
+        System.setOut(new PrintStream(
+            new FileOutputStream(FileDescriptor.err), true));
+        final Set<File> files = new TreeSet<File>();
+        for (int i = 0; i < mProjects.size(); i++) {
+            addFiles(new File(mProjects.get(i)), files);
+        }
+        final BlueJChecker checker = createChecker();
+        final ResultRecords.Writer records = new ResultRecords.Writer(out);
+        checker.addListener(records);
+        checker.process(files);
+        records.finish();
+        return 0;
+    }
+
+    /**
+     * Adds a Java source file, or the Java source files of a directory
+     * tree, to a set of files.
+     * @param aFile the file or directory.
+     * @param aFiles the set of files.
+     */
+    private static void addFiles(File aFile, Set<File> aFiles)
+    {
+        if (aFile.isDirectory()) {
+            final File[] children = aFile.listFiles();
+            if (children != null) {
+                for (int i = 0; i < children.length; i++) {
+                    addFiles(children[i], aFiles);
+                }
+            }
+        }
+        else if (aFile.getName().endsWith(".java")) {
+            aFiles.add(aFile.getAbsoluteFile());
+        }
+    }
+}
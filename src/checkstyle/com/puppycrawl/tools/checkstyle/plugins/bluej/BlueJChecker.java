@@ -19,35 +19,341 @@
 ////////////////////////////////////////////////////////////////////////////////
 package com.puppycrawl.tools.checkstyle.plugins.bluej;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-import com.puppycrawl.tools.checkstyle.api.AuditListener;
 import com.puppycrawl.tools.checkstyle.Checker;
 import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
 import com.puppycrawl.tools.checkstyle.PropertiesExpander;
 import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import com.puppycrawl.tools.checkstyle.api.Configuration;
 
 /**
- * This class provides the functionality to check a set of files.
+ * This class provides the functionality to check a set of files, with one
+ * configuration or with several configurations (profiles) at once.
  * @author Rick Giles
  * @version $Id: BlueJChecker.java,v 1.9 2011/10/25 05:27:10 stedwar2 Exp $
  */
 public class BlueJChecker
 {
+    /** name of the profile of the default configuration */
+    public static final String DEFAULT_PROFILE_NAME = "Default";
+
+    /** interval between interrupts of an abandoned worker (milliseconds) */
+    private static final long ABANDON_WAIT = 100;
+
+    /** time budget for auditing one file (milliseconds), 0 for none */
+    private long mFileTimeBudget;
+
+    /** files larger than this are deferred (bytes), 0 for none */
+    private long mMaxFileSize;
+
+    /**
+     * location of the configuration file, or null to use the BlueJ
+     * preferences
+     */
+    private final String mConfigLocation;
+
+    /** location of the properties file, or null for none */
+    private final String mPropsLocation;
+
+    /** name of the profile of this checker's configuration */
+    private final String mProfileName;
+
+    /** checkers of additional profiles, by profile name */
+    private final Map<String, BlueJChecker> mProfiles =
+        new LinkedHashMap<String, BlueJChecker>();
+
+    /** priority of the audit threads */
+    private int mPriority = Thread.NORM_PRIORITY;
+
+    /** what started the audits, as recorded in their flight events */
+    private String mTrigger = "api";
+
+    /** true if only the fast tier of the configuration is run */
+    private boolean mFastTier;
+
+    /** true if the returned Auditor keeps the events of each file */
+    private boolean mRetainEvents = true;
+
+    /**
+     * audits of more files than this keep only the numbers of events of
+     * each file, 0 for no limit
+     */
+    private long mSummaryThreshold;
+
+    /**
+     * number of events kept in memory above which the returned Auditor
+     * spills the events of further files, 0 for no limit
+     */
+    private long mSpillThreshold;
+
+    /**
+     * CPU budget of audits at background priority, in percent of one
+     * processor, 0 for no throttling
+     */
+    private long mCpuBudget;
+
+    /** baseline of events not to report, or null */
+    private Baseline mBaseline;
+
+    /** additional listeners for the audit events */
+    private final List<AuditListener> mListeners =
+        new ArrayList<AuditListener>();
+
+    /** Checker of the audits of sources in memory, or null */
+    private SourceChecker mSourceChecker;
+
+    /** configuration of mSourceChecker */
+    private Configuration mSourceConfig;
+
     /**
-     * Constructs a <code>BlueJChecker</code>.
+     * Constructs a <code>BlueJChecker</code> that uses the configuration
+     * and properties files of the BlueJ preferences, with the additional
+     * profiles of the BlueJ preferences.
      */
     public BlueJChecker()
     {
-        // Nothing to do
+        this(null, null);
+        final BlueJManager manager = BlueJManager.getInstance();
+        final String[] profiles = manager.getProfiles().split(",");
+        for (int i = 0; i < profiles.length; i++) {
+            if (!profiles[i].trim().equals("")) {
+                addProfile(profiles[i].trim(), manager.getPropsFileName());
+            }
+        }
+    }
+
+    /**
+     * Constructs a <code>BlueJChecker</code> that uses given configuration
+     * and properties files, for audits outside of BlueJ.
+     * @param aConfigLocation file name, resource name or URL of the
+     * configuration file, or null to use the BlueJ preferences.
+     * @param aPropsLocation file name, resource name or URL of the
+     * properties file, or null for none.
+     */
+    public BlueJChecker(String aConfigLocation, String aPropsLocation)
+    {
+        mConfigLocation = aConfigLocation;
+        mPropsLocation = aPropsLocation;
+        if (aConfigLocation != null) {
+            mProfileName = getProfileName(aConfigLocation);
+        }
+        else {
+            final String configName =
+                BlueJManager.getInstance().getConfigFileName();
+            mProfileName = (configName == null || configName.equals(""))
+                ? DEFAULT_PROFILE_NAME : getProfileName(configName);
+        }
+        mFileTimeBudget = BlueJManager.getInstance().getFileTimeBudget();
+        mMaxFileSize = BlueJManager.getInstance().getMaxFileSizeBytes();
+        mSummaryThreshold = BlueJManager.getInstance().getSummaryThreshold();
+        mSpillThreshold = BlueJManager.getInstance().getSpillThreshold();
+        mCpuBudget = BlueJManager.getInstance().getCpuBudget();
+        if (aConfigLocation == null) {
+            final String baselineName =
+                BlueJManager.getInstance().getBaselineFileName();
+            if (baselineName != null && !baselineName.equals("")) {
+                try {
+                    // reused while the file is unchanged, no disk read
+                    mBaseline = Baseline.load(new File(baselineName));
+                }
+                catch (IOException e) {
+                    // audit without baseline, all events are reported
+                    mBaseline = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of a profile: the last part of the location of its
+     * configuration file.
+     * @param aConfigLocation location of the configuration file.
+     * @return the name of the profile.
+     */
+    private static String getProfileName(String aConfigLocation)
+    {
+        final int slash = Math.max(aConfigLocation.lastIndexOf('/'),
+            aConfigLocation.lastIndexOf('\\'));
+        return aConfigLocation.substring(slash + 1);
+    }
+
+    /**
+     * Returns the name of the profile of this checker's configuration.
+     * @return the name of the profile.
+     */
+    public String getProfileName()
+    {
+        return mProfileName;
+    }
+
+    /**
+     * Adds a profile that {@link #processProfiles(Set, AuditToken)} audits
+     * in the same pass as this checker's configuration. The profile has no
+     * baseline and reports no events to the additional listeners.
+     * @param aConfigLocation file name, resource name or URL of the
+     * configuration file of the profile.
+     * @param aPropsLocation file name, resource name or URL of the
+     * properties file of the profile, or null for none.
+     */
+    public void addProfile(String aConfigLocation, String aPropsLocation)
+    {
+        final BlueJChecker profile =
+            new BlueJChecker(aConfigLocation, aPropsLocation);
+        String name = profile.getProfileName();
+        if (name.equals(mProfileName) || mProfiles.containsKey(name)) {
+            name = aConfigLocation;
+        }
+        mProfiles.put(name, profile);
+    }
+
+    /**
+     * Sets the baseline of events that audits should not report.
+     * @param aBaseline the baseline, or null to report all events.
+     */
+    public void setBaseline(Baseline aBaseline)
+    {
+        mBaseline = aBaseline;
+    }
+
+    /**
+     * Returns the baseline of events that audits do not report.
+     * @return the baseline, or null if all events are reported.
+     */
+    public Baseline getBaseline()
+    {
+        return mBaseline;
+    }
+
+    /**
+     * Sets the time budget for auditing one file.
+     * @param aBudget the time budget in milliseconds, 0 for none.
+     */
+    public void setFileTimeBudget(long aBudget)
+    {
+        mFileTimeBudget = aBudget;
+    }
+
+    /**
+     * Sets the priority of the threads of audits, except of the audits of
+     * deferred files, which run at the lowest priority.
+     * @param aPriority the priority.
+     */
+    public void setPriority(int aPriority)
+    {
+        mPriority = aPriority;
+    }
+
+    /**
+     * Sets what starts the audits of this checker, for example "timer" or
+     * "compile", as recorded in the flight events of the audits.
+     * @param aTrigger the trigger.
+     */
+    public void setTrigger(String aTrigger)
+    {
+        mTrigger = aTrigger;
+    }
+
+    /**
+     * Sets whether audits run only the fast tier of the configuration,
+     * see {@link AuditTiers}. The returned Auditors then hold the events
+     * of the modules of the fast tier only, see
+     * {@link Auditor#setModuleKeys(Set)}. Fast audits do not use the audit
+     * daemon.
+     * @param aFastTier true to run only the fast tier.
+     */
+    public void setFastTier(boolean aFastTier)
+    {
+        mFastTier = aFastTier;
+    }
+
+    /**
+     * Sets the size above which files are deferred.
+     * @param aSize the size in bytes, 0 to defer no files.
+     */
+    public void setMaxFileSize(long aSize)
+    {
+        mMaxFileSize = aSize;
+    }
+
+    /**
+     * Determines whether the returned Auditor keeps the events of each
+     * file. Listeners added with {@link #addListener(AuditListener)}
+     * receive all events in either case.
+     * @param aRetainEvents true if the events should be kept.
+     */
+    public void setRetainEvents(boolean aRetainEvents)
+    {
+        mRetainEvents = aRetainEvents;
+    }
+
+    /**
+     * Sets the number of files above which the returned Auditor keeps
+     * only the numbers of events of each file. The events of a file are
+     * then materialized when they are needed, see
+     * {@link Auditor#getEvents(FileAuditor)}.
+     * @param aThreshold the number of files, 0 for no limit.
+     */
+    public void setSummaryThreshold(long aThreshold)
+    {
+        mSummaryThreshold = aThreshold;
+    }
+
+    /**
+     * Sets the number of events kept in memory above which the returned
+     * Auditor spills the events of further files to a temporary file,
+     * see {@link Auditor#setSpillThreshold(long)}.
+     * @param aThreshold the number of events, 0 for no limit.
+     */
+    public void setSpillThreshold(long aThreshold)
+    {
+        mSpillThreshold = aThreshold;
+    }
+
+    /**
+     * Sets the CPU budget of the audits that run below normal priority,
+     * such as the audits of deferred files, see {@link AuditThrottle}.
+     * @param aBudget the budget in percent of one processor, 0 for no
+     * throttling.
+     */
+    public void setCpuBudget(long aBudget)
+    {
+        mCpuBudget = aBudget;
+    }
+
+    /**
+     * Adds a listener that receives the events of each audit as they are
+     * reported.
+     * @param aListener the listener.
+     */
+    public void addListener(AuditListener aListener)
+    {
+        mListeners.add(aListener);
     }
 
     /**
@@ -57,6 +363,38 @@ public class BlueJChecker
      */
     public Auditor processAllFiles()
         throws CheckstyleException
+    {
+        return processAllFiles(new AuditToken());
+    }
+
+    /**
+     * Audits all files of the open BlueJ packages.
+     * @param aToken cancellation token of the audit.
+     * @return an Auditor with the audit results.
+     * @throws CheckstyleException if there is an error.
+     */
+    public Auditor processAllFiles(AuditToken aToken)
+        throws CheckstyleException
+    {
+        Set<File> files;
+        try {
+            files = BlueJManager.getInstance().getFiles();
+        }
+        catch (Exception e) {
+            throw new CheckstyleException(e.getMessage());
+        }
+        return process(files, aToken);
+    }
+
+    /**
+     * Audits all files of the open BlueJ packages with every profile.
+     * @param aToken cancellation token of the audit.
+     * @return an Auditor with the audit results of each profile, by
+     * profile name, this checker's profile first.
+     * @throws CheckstyleException if there is an error.
+     */
+    public Map<String, Auditor> processAllProfiles(AuditToken aToken)
+        throws CheckstyleException
     {
         Set<File> files;
         try {
@@ -65,7 +403,87 @@ public class BlueJChecker
         catch (Exception e) {
             throw new CheckstyleException(e.getMessage());
         }
-        return process(files);
+        return processProfiles(files, aToken);
+    }
+
+    /**
+     * Audits a set of files with every profile. Each file is audited by all
+     * profiles before the next file, so that it is parsed once and its
+     * syntax tree is shared through the AstCache.
+     * @param aFiles the set of files to audit.
+     * @param aToken cancellation token of the audit, polled between files.
+     * @return an Auditor with the audit results of each profile, by
+     * profile name, this checker's profile first.
+     * @throws CheckstyleException if there is an error.
+     */
+    public Map<String, Auditor> processProfiles(
+        Set<File> aFiles, AuditToken aToken)
+        throws CheckstyleException
+    {
+        return toMap(process(getProfiles(), aFiles, aToken, true,
+            mPriority));
+    }
+
+    /**
+     * Audits, with every profile, the files that an earlier audit deferred
+     * because of their size. The files are audited at low priority.
+     * @param aAuditors the auditors of the earlier audit, by profile name.
+     * @param aToken cancellation token of the audit, polled between files.
+     * @return an Auditor with the audit results of the deferred files of
+     * each profile, by profile name.
+     * @throws CheckstyleException if there is an error.
+     */
+    public Map<String, Auditor> processDeferred(
+        Map<String, Auditor> aAuditors, AuditToken aToken)
+        throws CheckstyleException
+    {
+        final Auditor auditor = aAuditors.get(mProfileName);
+        if (auditor == null) {
+            return Collections.emptyMap();
+        }
+        return toMap(process(getProfiles(), auditor.getDeferredFiles(),
+            aToken, false, Thread.MIN_PRIORITY));
+    }
+
+    /**
+     * Returns the checkers of all profiles, this checker first, with the
+     * audit settings of this checker.
+     * @return the checkers.
+     */
+    private List<BlueJChecker> getProfiles()
+    {
+        final List<BlueJChecker> result = new ArrayList<BlueJChecker>();
+        result.add(this);
+        final Iterator<BlueJChecker> it = mProfiles.values().iterator();
+        while (it.hasNext()) {
+            final BlueJChecker profile = it.next();
+            profile.mFileTimeBudget = mFileTimeBudget;
+            profile.mMaxFileSize = mMaxFileSize;
+            profile.mRetainEvents = mRetainEvents;
+            profile.mSummaryThreshold = mSummaryThreshold;
+            profile.mSpillThreshold = mSpillThreshold;
+            profile.mFastTier = mFastTier;
+            result.add(profile);
+        }
+        return result;
+    }
+
+    /**
+     * Pairs the auditors of an audit of all profiles with the names of
+     * the profiles.
+     * @param aAuditors the auditors, in the order of the profiles.
+     * @return the auditors by profile name, this checker's profile first.
+     */
+    private Map<String, Auditor> toMap(List<Auditor> aAuditors)
+    {
+        final Map<String, Auditor> result =
+            new LinkedHashMap<String, Auditor>();
+        result.put(mProfileName, aAuditors.get(0));
+        final Iterator<String> it = mProfiles.keySet().iterator();
+        for (int i = 1; it.hasNext(); i++) {
+            result.put(it.next(), aAuditors.get(i));
+        }
+        return result;
     }
 
     /**
@@ -77,39 +495,917 @@ public class BlueJChecker
     public Auditor process(Set<File> files)
         throws CheckstyleException
     {
-        final Properties props =
-            new Properties(BlueJManager.getInstance().properties());
+        return process(files, new AuditToken());
+    }
+
+    /**
+     * Audits a set of files. Files larger than the large file threshold
+     * are not audited but recorded as deferred, see
+     * {@link #processDeferred(Auditor, AuditToken)}.
+     * @param files the set of files to audit.
+     * @param aToken cancellation token of the audit, polled between files.
+     * @return an Auditor with the audit results.
+     * @throws CheckstyleException if there is an error.
+     */
+    public Auditor process(Set<File> files, AuditToken aToken)
+        throws CheckstyleException
+    {
+        return process(files, aToken, true, mPriority);
+    }
+
+    /**
+     * Audits the files that an earlier audit deferred because of their
+     * size. The files are audited at low priority.
+     * @param aAuditor the auditor of the earlier audit.
+     * @param aToken cancellation token of the audit, polled between files.
+     * @return an Auditor with the audit results of the deferred files.
+     * @throws CheckstyleException if there is an error.
+     */
+    public Auditor processDeferred(Auditor aAuditor, AuditToken aToken)
+        throws CheckstyleException
+    {
+        return process(aAuditor.getDeferredFiles(), aToken, false,
+            Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Audits a collection of files with this checker's configuration only.
+     * @param aFiles the files to audit.
+     * @param aToken cancellation token of the audit, polled between files.
+     * @param aDeferLarge true if large files should be deferred.
+     * @param aPriority priority of the audit thread.
+     * @return an Auditor with the audit results.
+     * @throws CheckstyleException if there is an error.
+     */
+    private Auditor process(
+        Collection<File> aFiles,
+        AuditToken aToken,
+        boolean aDeferLarge,
+        int aPriority)
+        throws CheckstyleException
+    {
+        return process(Collections.singletonList(this), aFiles, aToken,
+            aDeferLarge, aPriority).get(0);
+    }
+
+    /**
+     * Audits a collection of files one at a time, each within the time
+     * budget, with the configurations of several checkers. Each file is
+     * audited with every configuration before the next file. Audits below
+     * normal priority pause between files to stay within the CPU budget.
+     * @param aProfiles the checkers, this checker first.
+     * @param aFiles the files to audit.
+     * @param aToken cancellation token of the audit, polled between files.
+     * @param aDeferLarge true if large files should be deferred.
+     * @param aPriority priority of the audit thread.
+     * @return an Auditor with the audit results of each checker.
+     * @throws CheckstyleException if there is an error.
+     */
+    private List<Auditor> process(
+        List<BlueJChecker> aProfiles,
+        Collection<File> aFiles,
+        AuditToken aToken,
+        boolean aDeferLarge,
+        int aPriority)
+        throws CheckstyleException
+    {
+        final boolean summary = mRetainEvents && mSummaryThreshold > 0
+            && aFiles.size() > mSummaryThreshold;
+        final List<Auditor> auditors = new ArrayList<Auditor>();
+        final List<Runner> runners = new ArrayList<Runner>();
+        for (int i = 0; i < aProfiles.size(); i++) {
+            final BlueJChecker profile = aProfiles.get(i);
+            final Auditor auditor = new Auditor(mRetainEvents && !summary);
+            if (summary) {
+                auditor.setDetailSource(profile);
+            }
+            auditor.setSpillThreshold(mSpillThreshold);
+            final List<AuditListener> targets;
+            if (profile == this) {
+                targets = mListeners;
+            }
+            else {
+                targets = Collections.<AuditListener>emptyList();
+            }
+            auditors.add(auditor);
+            runners.add(profile.newRunner(auditor, aPriority, targets));
+        }
+
+        final AuditThrottle throttle;
+        if (aPriority < Thread.NORM_PRIORITY && mCpuBudget > 0) {
+            throttle = new AuditThrottle(mCpuBudget, aToken);
+        }
+        else {
+            throttle = null;
+        }
+        final FlightEvents.Event event = FlightEvents.AUDIT.begin();
+        fireAuditStarted();
         try {
-            InputStream propStream =
-                BlueJManager.getInstance().getPropertyStream();
-            if (propStream != null)
-            {
-                props.load(propStream);
+            final Iterator<File> it = aFiles.iterator();
+            while (it.hasNext() && !aToken.isCancelled()) {
+                final File file = it.next();
+                aToken.fileStarted(file);
+                final boolean defer = aDeferLarge && mMaxFileSize > 0
+                    && file.length() > mMaxFileSize;
+                for (int i = 0; i < runners.size(); i++) {
+                    if (defer) {
+                        auditors.get(i).fileDeferred(file.getAbsolutePath());
+                    }
+                    else {
+                        final long start = System.nanoTime();
+                        final long cpuTime = runners.get(i).audit(file);
+                        if (throttle != null) {
+                            // without a measurement, charge the elapsed time
+                            throttle.charge((cpuTime >= 0)
+                                ? cpuTime : System.nanoTime() - start);
+                        }
+                    }
+                }
+                if (throttle != null) {
+                    throttle.pause();
+                }
             }
         }
+        finally {
+            for (int i = 0; i < runners.size(); i++) {
+                runners.get(i).destroy();
+            }
+            fireAuditFinished();
+            if (event != null) {
+                event.commit(FlightEvents.getProject(aFiles), mTrigger,
+                    aFiles.size(), aProfiles.size(), aToken.isCancelled());
+            }
+        }
+        return auditors;
+    }
+
+    /**
+     * Re-audits one file and returns its events, for example to show the
+     * events of a file of a summary. The additional listeners are not
+     * notified.
+     * @param aFile the file to audit.
+     * @return the events of the file.
+     * @throws CheckstyleException if there is an error.
+     */
+    public List<AuditEvent> audit(File aFile)
+        throws CheckstyleException
+    {
+        final Auditor auditor = new Auditor(true);
+        final Runner runner = newRunner(auditor, Thread.NORM_PRIORITY,
+            Collections.<AuditListener>emptyList());
+        try {
+            runner.audit(aFile);
+        }
+        finally {
+            runner.destroy();
+        }
+        final List<FileAuditor> audited = auditor.getFileAuditors();
+        if (audited.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return audited.get(0).getEvents();
+    }
+
+    /**
+     * Audits sources held in memory, for example the unsaved text of an
+     * editor, with this checker's configuration only. The sources are
+     * audited on the calling thread, without reading or writing their
+     * files and without the audit daemon. The Checker is kept for the next
+     * call until the configuration changes, so that auditing a source
+     * again costs only its parsing and checking. The additional listeners
+     * are not notified.
+     * @param aSources the contents of the files, by file.
+     * @return an Auditor with the audit results.
+     * @throws CheckstyleException if there is an error.
+     */
+    public synchronized Auditor processSources(
+        Map<File, ? extends CharSequence> aSources)
+        throws CheckstyleException
+    {
+        if (mSourceChecker == null || mConfigLocation == null) {
+            final Configuration config = loadConfiguration();
+            if (config != mSourceConfig) {
+                if (mSourceChecker != null) {
+                    mSourceChecker.destroy();
+                }
+                mSourceChecker = new SourceChecker(config, mBaseline);
+                mSourceConfig = config;
+            }
+        }
+        final Auditor result = new Auditor(true);
+        if (mFastTier) {
+            result.setModuleKeys(AuditTiers.getModuleKeys(mSourceConfig));
+        }
+        final FlightEvents.Event event = FlightEvents.AUDIT.begin();
+        mSourceChecker.addListener(result);
+        try {
+            // lock TreeWalker for call to static method parse
+            synchronized (TreeWalker.class) {
+                mSourceChecker.process(aSources);
+            }
+        }
+        finally {
+            mSourceChecker.removeListener(result);
+            if (event != null) {
+                event.commit(FlightEvents.getProject(aSources.keySet()),
+                    mTrigger, aSources.size(), 1, false);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the runner of an audit with this checker's configuration.
+     * The audit is sent to the audit daemon of this machine if there is
+     * one, and run in this process otherwise.
+     * @param aAuditor listener for the audit results.
+     * @param aPriority priority of the audit threads.
+     * @param aTargets additional listeners for the audit events.
+     * @return the runner.
+     * @throws CheckstyleException if there is an error.
+     */
+    private Runner newRunner(Auditor aAuditor, int aPriority,
+        List<AuditListener> aTargets)
+        throws CheckstyleException
+    {
+        final AuditClient client = connectDaemon();
+        if (client != null) {
+            return new RemoteRunner(client, aAuditor, aPriority, aTargets);
+        }
+        final Configuration config = loadConfiguration();
+        if (mFastTier) {
+            aAuditor.setModuleKeys(AuditTiers.getModuleKeys(config));
+        }
+        return new FileRunner(config, aAuditor, aPriority, aTargets);
+    }
+
+    /**
+     * Connects to the audit daemon and sends it this checker's
+     * configuration.
+     * @return the connection, or null if there is no daemon.
+     * @throws CheckstyleException if there is an error.
+     */
+    private AuditClient connectDaemon()
+        throws CheckstyleException
+    {
+        if (mFastTier || !AuditClient.isEnabled()) {
+            return null;
+        }
+        final InputStream configStream;
+        final Properties props;
+        try {
+            if (mConfigLocation == null) {
+                final BlueJManager manager = BlueJManager.getInstance();
+                props = manager.getResolvedProperties();
+                configStream = manager.getConfigStream();
+            }
+            else {
+                props = loadHeadlessProperties();
+                configStream = openResource(mConfigLocation);
+            }
+            return AuditClient.connect(readAll(configStream), props);
+        }
         catch (IOException ex) {
             throw new CheckstyleException(ex.getMessage());
         }
+    }
+
+    /**
+     * Reads and closes a stream.
+     * @param aStream the stream.
+     * @return the bytes of the stream.
+     * @throws IOException if the stream cannot be read.
+     */
+    static byte[] readAll(InputStream aStream)
+        throws IOException
+    {
+        try {
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = aStream.read(buffer)) != -1) {
+                result.write(buffer, 0, count);
+            }
+            return result.toByteArray();
+        }
+        finally {
+            aStream.close();
+        }
+    }
+
+    /**
+     * Notifies the additional listeners that an audit has started.
+     */
+    private void fireAuditStarted()
+    {
+        final AuditEvent event = new AuditEvent(this);
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).auditStarted(event);
+        }
+    }
 
-        // create and configure a Checker
-        final Checker c = new Checker();
-        c.setModuleClassLoader(BlueJChecker.class.getClassLoader());
-        final Configuration config =
-            ConfigurationLoader.loadConfiguration(
-                BlueJManager.getInstance().getConfigStream(),
-                new PropertiesExpander(props),
-                true);
-        c.configure(config);
+    /**
+     * Notifies the additional listeners that an audit has finished.
+     */
+    private void fireAuditFinished()
+    {
+        final AuditEvent event = new AuditEvent(this);
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).auditFinished(event);
+        }
+    }
 
-        final AuditListener auditor = new Auditor();
-        c.addListener(auditor);
+    /**
+     * Notifies listeners that a file timed out.
+     * @param aListeners the listeners.
+     * @param aEvent the event reporting the time out.
+     */
+    private void fireTimedOut(List<AuditListener> aListeners,
+        AuditEvent aEvent)
+    {
+        final AuditEvent fileEvent =
+            new AuditEvent(this, aEvent.getFileName());
+        for (int i = 0; i < aListeners.size(); i++) {
+            final AuditListener listener = aListeners.get(i);
+            listener.fileStarted(fileEvent);
+            listener.addError(aEvent);
+            listener.fileFinished(fileEvent);
+        }
+    }
+
+    /**
+     * Loads the Checkstyle configuration, with its TreeWalker modules
+     * replaced so that parsed files are shared through the AstCache, and
+     * reduced to its fast tier if only that is run. The configuration of
+     * the BlueJ preferences is taken from the ConfigWatcher, which reloads
+     * it when its files change.
+     * @return the configuration.
+     * @throws CheckstyleException if there is an error.
+     */
+    private Configuration loadConfiguration()
+        throws CheckstyleException
+    {
+        final Configuration result = loadFullConfiguration();
+        return mFastTier ? AuditTiers.getFastConfiguration(result) : result;
+    }
+
+    /**
+     * Loads the Checkstyle configuration with all its modules.
+     * @return the configuration.
+     * @throws CheckstyleException if there is an error.
+     */
+    private Configuration loadFullConfiguration()
+        throws CheckstyleException
+    {
+        if (mConfigLocation == null) {
+            return ConfigWatcher.getInstance().getConfiguration();
+        }
+        final Properties props;
+        try {
+            props = loadHeadlessProperties();
+        }
+        catch (IOException ex) {
+            throw new CheckstyleException(ex.getMessage());
+        }
+        return load(mConfigLocation, openResource(mConfigLocation), props);
+    }
+
+    /**
+     * Loads the properties of a headless checker, over the system
+     * properties.
+     * @return the properties.
+     * @throws IOException if the properties file cannot be read.
+     * @throws CheckstyleException if the properties file cannot be found.
+     */
+    private Properties loadHeadlessProperties()
+        throws IOException, CheckstyleException
+    {
+        final Properties result = new Properties(System.getProperties());
+        final InputStream propStream = openResource(mPropsLocation);
+        if (propStream != null)
+        {
+            result.load(propStream);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the Checkstyle configuration of the BlueJ preferences.
+     * @return the configuration.
+     * @throws CheckstyleException if there is an error.
+     */
+    static Configuration loadPreferencesConfiguration()
+        throws CheckstyleException
+    {
+        final BlueJManager manager = BlueJManager.getInstance();
+        final Properties props;
+        try {
+            props = manager.getResolvedProperties();
+        }
+        catch (IOException ex) {
+            throw new CheckstyleException(ex.getMessage());
+        }
+        return load(manager.getConfigFileName(), manager.getConfigStream(),
+            props);
+    }
+
+    /**
+     * Loads a Checkstyle configuration, replacing its TreeWalker modules.
+     * Its DTD is resolved without the network, see {@link DtdResolver}.
+     * @param aLocation location of the configuration file, for the flight
+     * event of the loading.
+     * @param aConfigStream the configuration file.
+     * @param aProps the properties to expand in the configuration.
+     * @return the configuration.
+     * @throws CheckstyleException if there is an error.
+     */
+    private static Configuration load(String aLocation,
+        InputStream aConfigStream, Properties aProps)
+        throws CheckstyleException
+    {
+        final FlightEvents.Event event = FlightEvents.CONFIG_LOAD.begin();
+        try {
+            return CachingTreeWalker.replaceTreeWalker(
+                ConfigurationLoader.loadConfiguration(
+                    DtdResolver.localize(aConfigStream),
+                    new PropertiesExpander(aProps),
+                    true));
+        }
+        catch (IOException e) {
+            throw new CheckstyleException(e.getMessage(), e);
+        }
+        finally {
+            if (event != null) {
+                event.commit(String.valueOf(aLocation));
+            }
+        }
+    }
+
+    /**
+     * Opens a named resource given to a headless checker.
+     * @param aLocation name/location of the resource, or null.
+     * @return An input stream connected to the resource, or null if
+     * aLocation is null.
+     * @throws CheckstyleException if the resource cannot be opened.
+     */
+    private static InputStream openResource(String aLocation)
+        throws CheckstyleException
+    {
+        if (aLocation == null) {
+            return null;
+        }
+        final InputStream result =
+            BlueJManager.getInstance().openResource(aLocation);
+        if (result == null) {
+            throw new CheckstyleException("Cannot find \"" + aLocation
+                + "\" as a file, on the classpath, or as a URL");
+        }
+        return result;
+    }
+
+    /**
+     * Audits files one at a time for one configuration.
+     */
+    private interface Runner
+    {
+        /**
+         * Audits one file.
+         * @param aFile the file to audit.
+         * @return the CPU time of the audit in this process in nanoseconds,
+         * or -1 if it is not known.
+         * @throws CheckstyleException if there is an error.
+         */
+        long audit(File aFile)
+            throws CheckstyleException;
+
+        /**
+         * Releases the resources of the runner.
+         */
+        void destroy();
+    }
+
+    /**
+     * Runs a Checker on one file at a time on a worker thread, so that
+     * a file that exceeds its time budget can be abandoned. The Checker
+     * and worker of an abandoned file are replaced for the next file.
+     */
+    private final class FileRunner implements Runner
+    {
+        /** configuration of the Checkers */
+        private final Configuration mConfig;
+
+        /** listener for the audit results */
+        private final Auditor mAuditor;
+
+        /** priority of worker threads */
+        private final int mPriority;
+
+        /** additional listeners for the audit events */
+        private final List<AuditListener> mTargets;
+
+        /** current Checker, or null if one must be created */
+        private Checker mChecker;
+
+        /** current worker, or null if one must be created */
+        private ExecutorService mWorker;
+
+        /** forwards events of the current Checker to the listeners */
+        private ListenerForwarder mForwarder;
+
+        /**
+         * Constructs a <code>FileRunner</code>.
+         * @param aConfig configuration of the Checkers.
+         * @param aAuditor listener for the audit results.
+         * @param aPriority priority of worker threads.
+         * @param aTargets additional listeners for the audit events.
+         */
+        FileRunner(Configuration aConfig, Auditor aAuditor, int aPriority,
+            List<AuditListener> aTargets)
+        {
+            mConfig = aConfig;
+            mAuditor = aAuditor;
+            mPriority = aPriority;
+            mTargets = aTargets;
+        }
+
+        /** @see Runner */
+        public long audit(final File aFile)
+            throws CheckstyleException
+        {
+            if (mChecker == null) {
+                mChecker = new Checker();
+                mChecker.setModuleClassLoader(
+                    BlueJChecker.class.getClassLoader());
+                mChecker.configure(mConfig);
+                if (mBaseline != null) {
+                    mChecker.addFilter(new BaselineFilter(mBaseline));
+                }
+                mChecker.addListener(mAuditor);
+                if (!mTargets.isEmpty()) {
+                    mForwarder = new ListenerForwarder(mTargets);
+                    mChecker.addListener(mForwarder);
+                }
+                mWorker = Executors.newSingleThreadExecutor(
+                    new WorkerFactory(mPriority));
+            }
+            final Checker checker = mChecker;
+            // lock TreeWalker for call to static method parse
+            synchronized (TreeWalker.class) {
+                return runWithBudget(aFile, checker);
+            }
+        }
+
+        /**
+         * Runs a Checker on one file on the worker, waiting no longer than
+         * the time budget.
+         * @param aFile the file to audit.
+         * @param aChecker the Checker to run.
+         * @return the CPU time of the worker in nanoseconds, or -1 if it is
+         * not known.
+         * @throws CheckstyleException if there is an error.
+         */
+        private long runWithBudget(final File aFile, final Checker aChecker)
+            throws CheckstyleException
+        {
+            final Future<Long> result = mWorker.submit(
+                new Callable<Long>()
+                {
+                    public Long call()
+                        throws CheckstyleException
+                    {
+                        final long start =
+                            AuditThrottle.getCurrentThreadCpuTime();
+                        aChecker.process(Collections.singletonList(aFile));
+                        final long end =
+                            AuditThrottle.getCurrentThreadCpuTime();
+                        return (start < 0 || end < 0) ? -1 : end - start;
+                    }
+                });
+            try {
+                if (mFileTimeBudget > 0) {
+                    return result.get(mFileTimeBudget, TimeUnit.MILLISECONDS);
+                }
+                return result.get();
+            }
+            catch (TimeoutException e) {
+                result.cancel(true);
+                abandon();
+                fireTimedOut(mTargets, mAuditor.fileTimedOut(
+                    aFile.getAbsolutePath(), mFileTimeBudget));
+                return -1;
+            }
+            catch (InterruptedException e) {
+                result.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new CheckstyleException("Audit interrupted", e);
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof CheckstyleException) {
+                    throw (CheckstyleException) e.getCause();
+                }
+                throw new CheckstyleException(
+                    "" + e.getCause(), e.getCause());
+            }
+        }
+
+        /**
+         * Abandons the current Checker and worker. The worker is
+         * interrupted, which stops the walk of the file at its next node,
+         * and the caller waits for it to exit, so that the TreeWalker lock
+         * is held until the abandoned audit has stopped; then the Checker
+         * is destroyed.
+         */
+        private void abandon()
+        {
+            if (mForwarder != null) {
+                mForwarder.detach();
+                mForwarder = null;
+            }
+            final Checker checker = mChecker;
+            final ExecutorService worker = mWorker;
+            mWorker = null;
+            mChecker = null;
+            worker.shutdownNow();
+            try {
+                while (!worker.awaitTermination(
+                    ABANDON_WAIT, TimeUnit.MILLISECONDS))
+                {
+                    worker.shutdownNow();
+                }
+            }
+            catch (InterruptedException e) {
+                // the worker still runs, leave the Checker to it
+                Thread.currentThread().interrupt();
+                return;
+            }
+            checker.destroy();
+        }
+
+        /**
+         * Releases the current Checker and worker.
+         */
+        public void destroy()
+        {
+            if (mChecker != null) {
+                mWorker.shutdown();
+                mChecker.destroy();
+                mChecker = null;
+                mWorker = null;
+            }
+        }
+    }
+
+    /**
+     * Sends files to the audit daemon, waiting no longer than the time
+     * budget for each. A file that times out is recorded as timed out and
+     * the connection is replaced; if the daemon goes away, the remaining
+     * files are audited in this process.
+     */
+    private final class RemoteRunner implements Runner
+    {
+        /** connection to the daemon, or null if one must be made */
+        private AuditClient mClient;
+
+        /** listener for the audit results */
+        private final Auditor mAuditor;
+
+        /** priority of the threads of the fallback runner */
+        private final int mPriority;
+
+        /** additional listeners for the audit events */
+        private final List<AuditListener> mTargets;
+
+        /** filter of the baseline events, or null */
+        private final BaselineFilter mFilter;
+
+        /** runner in this process, or null if not needed yet */
+        private FileRunner mFallback;
+
+        /**
+         * Constructs a <code>RemoteRunner</code>.
+         * @param aClient connection to the daemon.
+         * @param aAuditor listener for the audit results.
+         * @param aPriority priority of the threads of the fallback runner.
+         * @param aTargets additional listeners for the audit events.
+         */
+        RemoteRunner(AuditClient aClient, Auditor aAuditor, int aPriority,
+            List<AuditListener> aTargets)
+        {
+            mClient = aClient;
+            mAuditor = aAuditor;
+            mPriority = aPriority;
+            mTargets = aTargets;
+            mFilter = (mBaseline == null) ? null : new BaselineFilter(mBaseline);
+        }
+
+        /**
+         * Audits one file. The CPU time of the audit daemon is not known.
+         * @see Runner
+         */
+        public long audit(File aFile)
+            throws CheckstyleException
+        {
+            if (mClient == null && mFallback == null) {
+                mClient = connectDaemon();
+            }
+            if (mClient == null) {
+                return getFallback().audit(aFile);
+            }
+            final byte[] contents;
+            try {
+                contents = Files.readAllBytes(aFile.toPath());
+            }
+            catch (IOException e) {
+                // let the Checker report the unreadable file
+                return getFallback().audit(aFile);
+            }
+            final List<AuditEvent> events;
+            try {
+                events = mClient.audit(aFile, contents, mFileTimeBudget);
+            }
+            catch (SocketTimeoutException e) {
+                mClient.close();
+                mClient = null;
+                fireTimedOut(mTargets, mAuditor.fileTimedOut(
+                    aFile.getAbsolutePath(), mFileTimeBudget));
+                return -1;
+            }
+            catch (IOException e) {
+                mClient.abort();
+                mClient = null;
+                return getFallback().audit(aFile);
+            }
+            report(aFile, events);
+            return -1;
+        }
+
+        /**
+         * Reports the events of a file to the auditor and the additional
+         * listeners.
+         * @param aFile the file.
+         * @param aEvents the events of the file.
+         */
+        private void report(File aFile, List<AuditEvent> aEvents)
+        {
+            final AuditEvent fileEvent =
+                new AuditEvent(BlueJChecker.this, aFile.getAbsolutePath());
+            mAuditor.fileStarted(fileEvent);
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).fileStarted(fileEvent);
+            }
+            for (int i = 0; i < aEvents.size(); i++) {
+                final AuditEvent event = aEvents.get(i);
+                if (mFilter == null || mFilter.accept(event)) {
+                    mAuditor.addError(event);
+                    for (int j = 0; j < mTargets.size(); j++) {
+                        mTargets.get(j).addError(event);
+                    }
+                }
+            }
+            mAuditor.fileFinished(fileEvent);
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).fileFinished(fileEvent);
+            }
+        }
+
+        /**
+         * Returns the runner in this process, creating it if needed.
+         * @return the runner.
+         * @throws CheckstyleException if there is an error.
+         */
+        private FileRunner getFallback()
+            throws CheckstyleException
+        {
+            if (mFallback == null) {
+                mFallback = new FileRunner(loadConfiguration(), mAuditor,
+                    mPriority, mTargets);
+            }
+            return mFallback;
+        }
+
+        /** @see Runner */
+        public void destroy()
+        {
+            if (mClient != null) {
+                mClient.close();
+                mClient = null;
+            }
+            if (mFallback != null) {
+                mFallback.destroy();
+            }
+        }
+    }
+
+    /**
+     * Forwards the file events of one Checker to the additional listeners.
+     * The per-file audit start and finish events of the Checker are not
+     * forwarded, since one audit spans many Checker runs.
+     */
+    private static final class ListenerForwarder implements AuditListener
+    {
+        /** listeners receiving the events */
+        private final List<AuditListener> mTargets;
+
+        /** false once the Checker has been abandoned */
+        private boolean mAttached = true;
+
+        /** event of the file started but not yet finished, if any */
+        private AuditEvent mOpenFile;
+
+        /**
+         * Constructs a <code>ListenerForwarder</code>.
+         * @param aTargets listeners receiving the events.
+         */
+        ListenerForwarder(List<AuditListener> aTargets)
+        {
+            mTargets = aTargets;
+        }
+
+        /**
+         * Stops forwarding, finishing a file left open by the Checker.
+         * Returns only after any event being forwarded has been delivered.
+         */
+        synchronized void detach()
+        {
+            if (mOpenFile != null) {
+                fileFinished(mOpenFile);
+            }
+            mAttached = false;
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditStarted(AuditEvent aEvt)
+        {
+            // reported once per audit by BlueJChecker
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditFinished(AuditEvent aEvt)
+        {
+            // reported once per audit by BlueJChecker
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void fileStarted(AuditEvent aEvt)
+        {
+            mOpenFile = aEvt;
+            for (int i = 0; mAttached && i < mTargets.size(); i++) {
+                mTargets.get(i).fileStarted(aEvt);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void fileFinished(AuditEvent aEvt)
+        {
+            mOpenFile = null;
+            for (int i = 0; mAttached && i < mTargets.size(); i++) {
+                mTargets.get(i).fileFinished(aEvt);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void addError(AuditEvent aEvt)
+        {
+            for (int i = 0; mAttached && i < mTargets.size(); i++) {
+                mTargets.get(i).addError(aEvt);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void addException(
+            AuditEvent aEvt, Throwable aThrowable)
+        {
+            for (int i = 0; mAttached && i < mTargets.size(); i++) {
+                mTargets.get(i).addException(aEvt, aThrowable);
+            }
+        }
+    }
+
+    /**
+     * Creates daemon worker threads of a given priority.
+     */
+    private static final class WorkerFactory implements ThreadFactory
+    {
+        /** priority of created threads */
+        private final int mPriority;
+
+        /**
+         * Constructs a <code>WorkerFactory</code>.
+         * @param aPriority priority of created threads.
+         */
+        WorkerFactory(int aPriority)
+        {
+            mPriority = aPriority;
+        }
 
-        // lock TreeWalker for call to static method parse
-        synchronized (TreeWalker.class) {
-            c.process(new ArrayList<File>(files));
+        /** @see java.util.concurrent.ThreadFactory */
+        public Thread newThread(Runnable aRunnable)
+        {
+            final Thread thread = new Thread(aRunnable, "Checkstyle audit");
+            thread.setDaemon(true);
+            thread.setPriority(mPriority);
+            return thread;
         }
-        c.destroy();
-        return (Auditor) auditor;
     }
 }
 
@@ -22,8 +22,10 @@ package com.puppycrawl.tools.checkstyle.plugins.bluej;
 import java.awt.Frame;
 import java.awt.Point;
 import java.io.*;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -62,6 +64,52 @@ public final class BlueJManager
     private static final String FRAME_DIMENSIONS =
         "checkstyle.framedimensions";
 
+    /** baseline file name key */
+    private static final String BASELINE_FILE_NAME_KEY =
+        "checkstyle.baselinefile";
+
+    /** per-file time budget key */
+    private static final String FILE_TIME_BUDGET_KEY =
+        "checkstyle.filetimebudget";
+
+    /** large file threshold key */
+    private static final String MAX_FILE_SIZE_KEY =
+        "checkstyle.maxfilesize";
+
+    /** summary threshold key */
+    private static final String SUMMARY_THRESHOLD_KEY =
+        "checkstyle.summarythreshold";
+
+    /** spill threshold key */
+    private static final String SPILL_THRESHOLD_KEY =
+        "checkstyle.spillthreshold";
+
+    /** CPU budget of background audits key */
+    private static final String CPU_BUDGET_KEY =
+        "checkstyle.cpubudget";
+
+    /** additional profiles key */
+    private static final String PROFILES_KEY =
+        "checkstyle.profiles";
+
+    /** default per-file time budget (milliseconds) */
+    private static final long DEFAULT_FILE_TIME_BUDGET = 10000;
+
+    /** default large file threshold (kilobytes) */
+    private static final long DEFAULT_MAX_FILE_SIZE = 512;
+
+    /** default summary threshold (files) */
+    private static final long DEFAULT_SUMMARY_THRESHOLD = 2000;
+
+    /** default spill threshold (events) */
+    private static final long DEFAULT_SPILL_THRESHOLD = 200000;
+
+    /** default CPU budget of background audits (percent of a processor) */
+    private static final long DEFAULT_CPU_BUDGET = 50;
+
+    /** bytes per kilobyte */
+    private static final long KILOBYTE = 1024;
+
     /** default configuration file */
     private static final String DEFAULT_CONFIG_FILE =
         "default_checks.xml";
@@ -79,6 +127,21 @@ public final class BlueJManager
     /** A properties facade over mBlueJ.  Initialized lazily. */
     private BlueJPropertiesAdapter mBlueJProperties;
 
+    /**
+     * Snapshot of the properties facade merged with the properties file,
+     * or null until needed
+     */
+    private Properties mResolvedProperties;
+
+    /** facade snapshot that mResolvedProperties was built from */
+    private Properties mResolvedBase;
+
+    /** properties file name that mResolvedProperties was built from */
+    private String mResolvedPropsName;
+
+    /** modification time of the properties file, or -1 if not a file */
+    private long mResolvedPropsStamp;
+
     /** offset of corner relative to current frame */
         private static final int FRAME_OFFSET = 20;
 
@@ -147,10 +210,42 @@ public final class BlueJManager
         throws ClassNotFoundException,
                ProjectNotOpenException,
                PackageNotFoundException
+    {
+        return getFiles(getBClasses());
+    }
+
+    /**
+     * Returns the files of a BlueJ package. All package classes must be
+     * compiled.
+     * @param aPackage BlueJ package.
+     * @return the files of aPackage.
+     * @throws ClassNotFoundException if a class is not found.
+     * @throws ProjectNotOpenException if the project is not open.
+     * @throws PackageNotFoundException if the package is not found.
+     */
+    public Set<File> getFiles(BPackage aPackage)
+        throws ClassNotFoundException,
+               ProjectNotOpenException,
+               PackageNotFoundException
+    {
+        return getFiles(getBClasses(aPackage));
+    }
+
+    /**
+     * Returns the source files of a set of classes that exist.
+     * @param aClasses the classes.
+     * @return the source files of aClasses.
+     * @throws ClassNotFoundException if a class is not found.
+     * @throws ProjectNotOpenException if a project is not open.
+     * @throws PackageNotFoundException if a package is not found.
+     */
+    private Set<File> getFiles(Set<BClass> aClasses)
+        throws ClassNotFoundException,
+               ProjectNotOpenException,
+               PackageNotFoundException
     {
         final Set<File> result = new HashSet<File>();
-        final Set<BClass> classes = getBClasses();
-        for (Iterator<BClass> iter = classes.iterator(); iter.hasNext();)
+        for (Iterator<BClass> iter = aClasses.iterator(); iter.hasNext();)
         {
             BClass theClass = iter.next();
             final BPackage thePackage = theClass.getPackage();
@@ -213,6 +308,27 @@ public final class BlueJManager
         return result;
     }
 
+    /**
+     * Returns the class selected in the current package, for example the
+     * class that was opened to be edited.
+     * @return the selected class, or null if no single class is selected.
+     */
+    public BClass getSelectedClass()
+    {
+        try
+        {
+            // getCurrentPackage() may return null, handled like the
+            // declared exceptions of getCurrentClasses()
+            final BClass[] classes =
+                mBlueJ.getCurrentPackage().getCurrentClasses();
+            return (classes.length == 1) ? classes[0] : null;
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
     /**
      * Finds the current frame of the BlueJ application.
      * @return the current frame of the BlueJ application.
@@ -249,6 +365,81 @@ public final class BlueJManager
     }
 
 
+    /**
+     * Returns an immutable snapshot of the resolved Checkstyle properties:
+     * the BlueJ properties overridden by the properties file. The snapshot
+     * is reused until a property is set, the preferences are saved, or
+     * the properties file changes.
+     * @return the resolved properties.
+     * @throws IOException if the properties file cannot be read.
+     */
+    public synchronized Properties getResolvedProperties()
+        throws IOException
+    {
+        final Properties base =
+            ((BlueJPropertiesAdapter) properties()).snapshot();
+        final String propsName = (mBlueJ == null) ? null : getPropsFileName();
+        final long stamp = getModificationTime(propsName);
+        if (mResolvedProperties != null
+            && mResolvedBase == base
+            && stamp == mResolvedPropsStamp
+            && (propsName == null
+                ? mResolvedPropsName == null
+                : propsName.equals(mResolvedPropsName)))
+        {
+            return mResolvedProperties;
+        }
+
+        final Properties props = new Properties(base);
+        final InputStream propStream =
+            (mBlueJ == null) ? null : getPropertyStream();
+        if (propStream != null)
+        {
+            try
+            {
+                props.load(propStream);
+            }
+            finally
+            {
+                propStream.close();
+            }
+        }
+        final Map<String, String> values = new HashMap<String, String>();
+        for (String key : props.stringPropertyNames())
+        {
+            values.put(key, props.getProperty(key));
+        }
+        mResolvedProperties = new BlueJPropertiesAdapter.Snapshot(values);
+        mResolvedBase = base;
+        mResolvedPropsName = propsName;
+        mResolvedPropsStamp = stamp;
+        return mResolvedProperties;
+    }
+
+    /**
+     * Discards the snapshot of the resolved properties, for example
+     * because the preferences have been saved.
+     */
+    public synchronized void invalidateProperties()
+    {
+        if (mBlueJProperties != null)
+        {
+            mBlueJProperties.invalidate();
+        }
+        mResolvedProperties = null;
+    }
+
+    /**
+     * Returns the modification time of a resource that is a file.
+     * @param aLocation the name/location of the resource, or null.
+     * @return the modification time, or -1 if the resource is not a file.
+     */
+    long getModificationTime(String aLocation)
+    {
+        final File file = findFile(aLocation);
+        return (file == null) ? -1 : file.lastModified();
+    }
+
     /**
      * Opens a stream connected to the specified configuration file.
      * @return An input stream connected to the resource, or null if the
@@ -355,6 +546,19 @@ public final class BlueJManager
     }
 
 
+    /**
+     * Opens a stream connected to a named resource without reporting a
+     * missing resource, for use outside of BlueJ.
+     * @param aLocation The name/location of the resource to open.
+     * @return An input stream connected to the resource, or null if the
+     * resource cannot be opened.
+     */
+    public InputStream openResource(String aLocation)
+    {
+        return getResourceStream(aLocation);
+    }
+
+
     /**
      * Tries to resolve a resource name by checking for a file, searching
      * the classpath, or verifying the reachability of a URL.
@@ -372,20 +576,8 @@ public final class BlueJManager
         // Search for a file name first (absolute or relative)
         try
         {
-            File file = new File(resourceLocation);
-            // If absolute or relative to system cwd, try relative to
-            // BlueJ lib dir
-            if (!file.exists())
-            {
-                file = new File(mBlueJ.getSystemLibDir(), resourceLocation);
-            }
-            // or relative to BlueJ lib/extensions
-            if (!file.exists())
-            {
-                file = new File(mBlueJ.getSystemLibDir() + "/extensions",
-                    resourceLocation);
-            }
-            if (file.exists())
+            final File file = findFile(resourceLocation);
+            if (file != null)
             {
                 return new FileInputStream(file);
             }
@@ -419,6 +611,35 @@ public final class BlueJManager
     }
 
 
+    /**
+     * Resolves a resource name to a file, absolute or relative to the
+     * working directory, the BlueJ lib directory or lib/extensions.
+     * @param resourceLocation The name/location of the resource, or null.
+     * @return The file, or null if the resource is not an existing file.
+     */
+    private File findFile(String resourceLocation)
+    {
+        if (resourceLocation == null || resourceLocation.equals(""))
+        {
+            return null;
+        }
+        File file = new File(resourceLocation);
+        // If absolute or relative to system cwd, try relative to
+        // BlueJ lib dir (unless running outside of BlueJ)
+        if (!file.exists() && mBlueJ != null)
+        {
+            file = new File(mBlueJ.getSystemLibDir(), resourceLocation);
+        }
+        // or relative to BlueJ lib/extensions
+        if (!file.exists() && mBlueJ != null)
+        {
+            file = new File(mBlueJ.getSystemLibDir() + "/extensions",
+                resourceLocation);
+        }
+        return file.exists() ? file : null;
+    }
+
+
     /**
      * Retrieves the Checkstyle configuration file property value.
      * @return the name of the Checkstyle configuration file.
@@ -469,6 +690,196 @@ public final class BlueJManager
         mBlueJ.setExtensionPropertyString(PROPS_FILE_NAME_KEY, aName);
     }
 
+    /**
+     * Retrieves the baseline file property value.
+     * @return the name of the baseline file, or null if there is none.
+     */
+    public String getBaselineFileName()
+    {
+        if (mBlueJ == null)
+        {
+            return null;
+        }
+        return mBlueJ.getExtensionPropertyString(
+            BASELINE_FILE_NAME_KEY, null);
+    }
+
+    /**
+     * Saves the name of the baseline file.
+     * @param aName the name of the baseline file, empty for none.
+     */
+    public void saveBaselineFileName(String aName)
+    {
+        mBlueJ.setExtensionPropertyString(BASELINE_FILE_NAME_KEY, aName);
+    }
+
+    /**
+     * Retrieves the time budget for auditing one file.
+     * @return the time budget for auditing one file in milliseconds, or
+     * 0 if audits of a file are not limited.
+     */
+    public long getFileTimeBudget()
+    {
+        return getLongProperty(FILE_TIME_BUDGET_KEY, DEFAULT_FILE_TIME_BUDGET);
+    }
+
+    /**
+     * Saves the time budget for auditing one file.
+     * @param aBudget the time budget in milliseconds.
+     */
+    public void saveFileTimeBudget(String aBudget)
+    {
+        mBlueJ.setExtensionPropertyString(FILE_TIME_BUDGET_KEY, aBudget);
+    }
+
+    /**
+     * Retrieves the size above which files are deferred to the
+     * background pass for large files.
+     * @return the large file threshold in kilobytes, or 0 if no files
+     * are deferred.
+     */
+    public long getMaxFileSize()
+    {
+        return getLongProperty(MAX_FILE_SIZE_KEY, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    /**
+     * Retrieves the size above which files are deferred to the
+     * background pass for large files.
+     * @return the large file threshold in bytes, or 0 if no files
+     * are deferred.
+     */
+    public long getMaxFileSizeBytes()
+    {
+        return getMaxFileSize() * KILOBYTE;
+    }
+
+    /**
+     * Saves the size above which files are deferred to the background
+     * pass for large files.
+     * @param aSize the large file threshold in kilobytes.
+     */
+    public void saveMaxFileSize(String aSize)
+    {
+        mBlueJ.setExtensionPropertyString(MAX_FILE_SIZE_KEY, aSize);
+    }
+
+    /**
+     * Retrieves the number of files above which audits keep only the
+     * numbers of events of each file.
+     * @return the summary threshold in files, or 0 if audits always keep
+     * all events.
+     */
+    public long getSummaryThreshold()
+    {
+        return getLongProperty(SUMMARY_THRESHOLD_KEY,
+            DEFAULT_SUMMARY_THRESHOLD);
+    }
+
+    /**
+     * Saves the number of files above which audits keep only the
+     * numbers of events of each file.
+     * @param aThreshold the summary threshold in files.
+     */
+    public void saveSummaryThreshold(String aThreshold)
+    {
+        mBlueJ.setExtensionPropertyString(SUMMARY_THRESHOLD_KEY, aThreshold);
+    }
+
+    /**
+     * Retrieves the number of events kept in memory above which audits
+     * spill the events of further files to a temporary file.
+     * @return the spill threshold in events, or 0 if audits keep all
+     * events in memory.
+     */
+    public long getSpillThreshold()
+    {
+        return getLongProperty(SPILL_THRESHOLD_KEY, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Saves the number of events kept in memory above which audits
+     * spill the events of further files to a temporary file.
+     * @param aThreshold the spill threshold in events.
+     */
+    public void saveSpillThreshold(String aThreshold)
+    {
+        mBlueJ.setExtensionPropertyString(SPILL_THRESHOLD_KEY, aThreshold);
+    }
+
+    /**
+     * Retrieves the share of one processor that background audits, such
+     * as the audits of newly opened packages, may use.
+     * @return the CPU budget in percent of one processor, or 0 if
+     * background audits are not throttled.
+     */
+    public long getCpuBudget()
+    {
+        return getLongProperty(CPU_BUDGET_KEY, DEFAULT_CPU_BUDGET);
+    }
+
+    /**
+     * Saves the share of one processor that background audits may use.
+     * @param aBudget the CPU budget in percent of one processor.
+     */
+    public void saveCpuBudget(String aBudget)
+    {
+        mBlueJ.setExtensionPropertyString(CPU_BUDGET_KEY, aBudget);
+    }
+
+    /**
+     * Retrieves the configuration files of the additional profiles that
+     * are audited together with the configuration file.
+     * @return the comma-separated names of the configuration files, empty
+     * if there are no additional profiles.
+     */
+    public String getProfiles()
+    {
+        if (mBlueJ == null)
+        {
+            return "";
+        }
+        return mBlueJ.getExtensionPropertyString(PROFILES_KEY, "");
+    }
+
+    /**
+     * Saves the configuration files of the additional profiles.
+     * @param aProfiles the comma-separated names of the configuration
+     * files.
+     */
+    public void saveProfiles(String aProfiles)
+    {
+        mBlueJ.setExtensionPropertyString(PROFILES_KEY, aProfiles);
+    }
+
+    /**
+     * Retrieves a non-negative numeric extension property.
+     * @param aKey the property key.
+     * @param aDefault the value to use if the property is missing or
+     * malformed.
+     * @return the value of the property.
+     */
+    private long getLongProperty(String aKey, long aDefault)
+    {
+        if (mBlueJ == null)
+        {
+            return aDefault;
+        }
+        final String value = mBlueJ.getExtensionPropertyString(aKey, null);
+        if (value == null || value.trim().equals(""))
+        {
+            return aDefault;
+        }
+        try
+        {
+            return Math.max(0, Long.parseLong(value.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            return aDefault;
+        }
+    }
+
     /**
      * Initializes an audit frame from extension properties.
      * @param aFrame the audit frame to initialize.
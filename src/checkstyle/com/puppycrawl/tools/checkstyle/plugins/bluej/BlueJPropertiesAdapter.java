@@ -38,6 +38,15 @@ public class BlueJPropertiesAdapter
 
     private BlueJ bluej;
 
+    /** Resolved values of all properties, or null until needed. */
+    private Snapshot snapshot;
+
+    /** Number of lookups that went through the BlueJ proxy. */
+    private long lookups;
+
+    /** Number of lookups answered by a snapshot instead. */
+    private long lookupsAvoided;
+
 
     //~ Constructors ..........................................................
 
@@ -108,6 +117,10 @@ public class BlueJPropertiesAdapter
             {
                 result = bluej.getBlueJPropertyString(key, null);
             }
+            synchronized (this)
+            {
+                lookups++;
+            }
             if (result != null)
             {
                 return result;
@@ -132,6 +145,7 @@ public class BlueJPropertiesAdapter
     @Override
     public synchronized Object setProperty( String key, String value )
     {
+        invalidate();
         if (bluej == null)
         {
             return super.setProperty(key, value);
@@ -147,6 +161,74 @@ public class BlueJPropertiesAdapter
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Returns an immutable snapshot of the resolved values of all
+     * properties known to this object and its ancestors.  The snapshot
+     * is built on first use and then shared, so that expanding the
+     * properties of a configuration does not go through the BlueJ proxy
+     * for every key.  It is rebuilt after {@link #invalidate()}, which
+     * {@link #setProperty(String, String)} calls.
+     * @return the snapshot
+     */
+    public synchronized Properties snapshot()
+    {
+        if (snapshot == null)
+        {
+            Map<String, String> values = new HashMap<String, String>();
+            Enumeration<?> names = propertyNames();
+            while (names.hasMoreElements())
+            {
+                String key = names.nextElement().toString();
+                String value = getProperty(key);
+                if (value != null)
+                {
+                    values.put(key, value);
+                }
+            }
+            snapshot = new Snapshot(values);
+        }
+        else
+        {
+            lookupsAvoided += snapshot.size();
+        }
+        return snapshot;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Discards the snapshot of resolved values, for example because
+     * the preferences have been saved.
+     */
+    public synchronized void invalidate()
+    {
+        snapshot = null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of lookups that went through the BlueJ proxy.
+     * @return the number of lookups
+     */
+    public synchronized long getLookupCount()
+    {
+        return lookups;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of lookups that reusing a snapshot avoided.
+     * @return the number of lookups avoided
+     */
+    public synchronized long getLookupsAvoided()
+    {
+        return lookupsAvoided;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Get the BlueJ proxy object used to look up property values.
@@ -166,5 +248,64 @@ public class BlueJPropertiesAdapter
     public void setBlueJ(BlueJ bluej)
     {
         this.bluej = bluej;
+        invalidate();
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * A Properties object with fixed contents.  Any attempt to change it
+     * throws an <code>UnsupportedOperationException</code>; use it as the
+     * defaults of another Properties object to add values.
+     */
+    public static final class Snapshot
+        extends Properties
+    {
+        // ----------------------------------------------------------
+        /**
+         * Constructs a snapshot of the given values.
+         * @param values The property values
+         */
+        public Snapshot(Map<String, String> values)
+        {
+            for (Map.Entry<String, String> entry : values.entrySet())
+            {
+                super.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public synchronized Object put(Object key, Object value)
+        {
+            throw new UnsupportedOperationException("snapshot");
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public synchronized Object remove(Object key)
+        {
+            throw new UnsupportedOperationException("snapshot");
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public synchronized void putAll(Map<?, ?> t)
+        {
+            throw new UnsupportedOperationException("snapshot");
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public synchronized void clear()
+        {
+            throw new UnsupportedOperationException("snapshot");
+        }
     }
 }
@@ -0,0 +1,573 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import antlr.RecognitionException;
+import antlr.TokenStreamException;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.DefaultContext;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.TreeWalkerAuditEvent;
+import com.puppycrawl.tools.checkstyle.TreeWalkerFilter;
+import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
+import com.puppycrawl.tools.checkstyle.api.AbstractFileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.AutomaticBean;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.Context;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.filters.SuppressionFilter;
+import com.puppycrawl.tools.checkstyle.utils.TokenUtils;
+
+/**
+ * Replacement for Checkstyle's <code>TreeWalker</code> that takes the
+ * syntax trees of files from the {@link AstCache}, so that a file whose
+ * contents have been parsed before is not lexed and parsed again. Checks
+ * are dispatched through tables indexed by token type. Configurations
+ * loaded by {@link BlueJChecker} use this module in place of
+ * <code>TreeWalker</code>, see {@link #replaceTreeWalker(Configuration)}.
+ * The cost of each check is measured on a sample of the files, to place
+ * the checks in the {@link AuditTiers}. The walk stops when its thread is
+ * interrupted.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.3
+ */
+public final class CachingTreeWalker extends AbstractFileSetCheck
+{
+    /** names under which configurations refer to TreeWalker */
+    private static final String[] TREE_WALKER_NAMES = {
+        "TreeWalker", TreeWalker.class.getName(),
+    };
+
+    /** names under which configurations refer to SuppressionFilter */
+    private static final String[] SUPPRESSION_FILTER_NAMES = {
+        "SuppressionFilter", SuppressionFilter.class.getName(),
+    };
+
+    /** property of SuppressionFilter that names its suppressions file */
+    private static final String SUPPRESSIONS_FILE_PROPERTY = "file";
+
+    /** no checks */
+    private static final AbstractCheck[] NO_CHECKS = new AbstractCheck[0];
+
+    /** default distance between tab stops */
+    private static final int DEFAULT_TAB_WIDTH = 8;
+
+    /** number of files per file whose checks are measured */
+    private static final int COST_SAMPLE_INTERVAL = 8;
+
+    /** number of files processed by all instances */
+    private static final AtomicInteger FILE_COUNT = new AtomicInteger();
+
+    /** checks that walk the tree without comment nodes */
+    private final List<AbstractCheck> mOrdinaryChecks =
+        new ArrayList<AbstractCheck>();
+
+    /** checks that walk the tree with comment nodes */
+    private final List<AbstractCheck> mCommentChecks =
+        new ArrayList<AbstractCheck>();
+
+    /** ordinary checks by token type */
+    private AbstractCheck[][] mOrdinaryDispatch = new AbstractCheck[0][];
+
+    /** comment checks by token type */
+    private AbstractCheck[][] mCommentDispatch = new AbstractCheck[0][];
+
+    /** filters of the messages of the checks */
+    private final List<TreeWalkerFilter> mFilters =
+        new ArrayList<TreeWalkerFilter>();
+
+    /** messages of the current file */
+    private final SortedSet<LocalizedMessage> mMessages =
+        new TreeSet<LocalizedMessage>();
+
+    /** context of the checks and filters */
+    private Context mChildContext;
+
+    /** factory of the checks and filters */
+    private ModuleFactory mModuleFactory;
+
+    /** class loader of the checks */
+    private ClassLoader mClassLoader;
+
+    /** distance between tab stops */
+    private int mTabWidth = DEFAULT_TAB_WIDTH;
+
+    /** keys of the modules of the checks, see AuditTiers */
+    private final Map<AbstractCheck, String> mCheckKeys =
+        new IdentityHashMap<AbstractCheck, String>();
+
+    /**
+     * Constructs a <code>CachingTreeWalker</code> for Java files.
+     */
+    public CachingTreeWalker()
+    {
+        setFileExtensions("java");
+    }
+
+    /**
+     * Returns a copy of a configuration in which the TreeWalker modules
+     * are replaced by <code>CachingTreeWalker</code> modules. The
+     * <code>tier</code> properties of the modules are recorded in the
+     * {@link AuditTiers} and left out of the copy, and suppressions files
+     * are replaced by copies whose DTD resolves locally, see
+     * {@link DtdResolver}.
+     * @param aConfig the configuration.
+     * @return the configuration using <code>CachingTreeWalker</code>.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    public static Configuration replaceTreeWalker(Configuration aConfig)
+        throws CheckstyleException
+    {
+        String name = aConfig.getName();
+        if (Arrays.asList(TREE_WALKER_NAMES).contains(name)) {
+            name = CachingTreeWalker.class.getName();
+        }
+        final DefaultConfiguration result = new DefaultConfiguration(name);
+        final String[] attributes = aConfig.getAttributeNames();
+        for (int i = 0; i < attributes.length; i++) {
+            if (AuditTiers.TIER_PROPERTY.equals(attributes[i])) {
+                AuditTiers.annotate(result,
+                    aConfig.getAttribute(attributes[i]));
+            }
+            else if (SUPPRESSIONS_FILE_PROPERTY.equals(attributes[i])
+                && Arrays.asList(SUPPRESSION_FILTER_NAMES).contains(name))
+            {
+                result.addAttribute(attributes[i], DtdResolver.localizeFile(
+                    aConfig.getAttribute(attributes[i])));
+            }
+            else {
+                result.addAttribute(attributes[i],
+                    aConfig.getAttribute(attributes[i]));
+            }
+        }
+        final Iterator<Map.Entry<String, String>> messages =
+            aConfig.getMessages().entrySet().iterator();
+        while (messages.hasNext()) {
+            final Map.Entry<String, String> message = messages.next();
+            result.addMessage(message.getKey(), message.getValue());
+        }
+        final Configuration[] children = aConfig.getChildren();
+        for (int i = 0; i < children.length; i++) {
+            result.addChild(replaceTreeWalker(children[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Sets the distance between tab stops.
+     * @param aTabWidth the distance between tab stops.
+     */
+    public void setTabWidth(int aTabWidth)
+    {
+        mTabWidth = aTabWidth;
+    }
+
+    /**
+     * Accepts the obsolete cache file property of TreeWalker; the cache
+     * of this module is held in memory.
+     * @param aFileName ignored.
+     */
+    public void setCacheFile(String aFileName)
+    {
+        // the trees are cached by AstCache
+    }
+
+    /**
+     * Sets the class loader of the checks.
+     * @param aClassLoader the class loader.
+     */
+    public void setClassLoader(ClassLoader aClassLoader)
+    {
+        mClassLoader = aClassLoader;
+    }
+
+    /**
+     * Sets the factory of the checks and filters.
+     * @param aModuleFactory the factory.
+     */
+    public void setModuleFactory(ModuleFactory aModuleFactory)
+    {
+        mModuleFactory = aModuleFactory;
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AutomaticBean */
+    protected void finishLocalSetup()
+    {
+        final DefaultContext context = new DefaultContext();
+        context.add("classLoader", mClassLoader);
+        context.add("severity", getSeverity());
+        context.add("tabWidth", String.valueOf(mTabWidth));
+        mChildContext = context;
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AutomaticBean */
+    protected void setupChild(Configuration aChildConf)
+        throws CheckstyleException
+    {
+        final String name = aChildConf.getName();
+        final Object module = mModuleFactory.createModule(name);
+        if (module instanceof AutomaticBean) {
+            final AutomaticBean bean = (AutomaticBean) module;
+            bean.contextualize(mChildContext);
+            bean.configure(aChildConf);
+        }
+        if (module instanceof AbstractCheck) {
+            final AbstractCheck check = (AbstractCheck) module;
+            check.init();
+            registerCheck(check);
+            mCheckKeys.put(check, AuditTiers.getKey(aChildConf));
+        }
+        else if (module instanceof TreeWalkerFilter) {
+            mFilters.add((TreeWalkerFilter) module);
+        }
+        else {
+            throw new CheckstyleException(
+                "TreeWalker is not allowed as a parent of " + name);
+        }
+    }
+
+    /**
+     * Registers a check for its configured or default tokens.
+     * @param aCheck the check.
+     * @throws CheckstyleException if the tokens of the check are invalid.
+     */
+    private void registerCheck(AbstractCheck aCheck)
+        throws CheckstyleException
+    {
+        final int[] defaultTokens = aCheck.getDefaultTokens();
+        final int[] required = aCheck.getRequiredTokens();
+        final int[] sortedDefaults = defaultTokens.clone();
+        Arrays.sort(sortedDefaults);
+        for (int i = 0; i < required.length; i++) {
+            if (Arrays.binarySearch(sortedDefaults, required[i]) < 0) {
+                throw new CheckstyleException(String.format(
+                    "Token \"%s\" from required tokens was not found in"
+                    + " default tokens list in check %s",
+                    required[i], aCheck.getClass().getName()));
+            }
+        }
+
+        final List<Integer> tokens = new ArrayList<Integer>();
+        if (aCheck.getTokenNames().isEmpty()) {
+            for (int i = 0; i < defaultTokens.length; i++) {
+                tokens.add(defaultTokens[i]);
+            }
+        }
+        else {
+            final int[] acceptable = aCheck.getAcceptableTokens().clone();
+            Arrays.sort(acceptable);
+            final Iterator<String> it = aCheck.getTokenNames().iterator();
+            while (it.hasNext()) {
+                final String token = it.next();
+                final int type = TokenUtils.getTokenId(token);
+                if (Arrays.binarySearch(acceptable, type) < 0) {
+                    throw new CheckstyleException(String.format(
+                        "Token \"%s\" was not found in Acceptable tokens list"
+                        + " in check %s",
+                        token, aCheck.getClass().getName()));
+                }
+                tokens.add(type);
+            }
+            for (int i = 0; i < required.length; i++) {
+                tokens.add(required[i]);
+            }
+        }
+
+        final boolean comments = aCheck.isCommentNodesRequired();
+        for (int i = 0; i < tokens.size(); i++) {
+            final int type = tokens.get(i);
+            if (!comments && TokenUtils.isCommentType(type)) {
+                throw new CheckstyleException(String.format(
+                    "Check '%s' waits for comment type token ('%s') and should"
+                    + " override 'isCommentNodesRequired()' method to return"
+                    + " 'true'",
+                    aCheck.getClass().getName(), TokenUtils.getTokenName(type)));
+            }
+            if (comments) {
+                mCommentDispatch = register(mCommentDispatch, type, aCheck);
+            }
+            else {
+                mOrdinaryDispatch = register(mOrdinaryDispatch, type, aCheck);
+            }
+        }
+        if (comments) {
+            mCommentChecks.add(aCheck);
+        }
+        else {
+            mOrdinaryChecks.add(aCheck);
+        }
+    }
+
+    /**
+     * Adds a check to a dispatch table for one token type.
+     * @param aTable the dispatch table.
+     * @param aType the token type.
+     * @param aCheck the check.
+     * @return the dispatch table, grown if needed.
+     */
+    private static AbstractCheck[][] register(
+        AbstractCheck[][] aTable, int aType, AbstractCheck aCheck)
+    {
+        AbstractCheck[][] result = aTable;
+        if (aType >= result.length) {
+            result = Arrays.copyOf(result, aType + 1);
+        }
+        final AbstractCheck[] checks = result[aType];
+        if (checks == null) {
+            result[aType] = new AbstractCheck[] {aCheck};
+        }
+        else if (!Arrays.asList(checks).contains(aCheck)) {
+            result[aType] = Arrays.copyOf(checks, checks.length + 1);
+            result[aType][checks.length] = aCheck;
+        }
+        return result;
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AbstractFileSetCheck */
+    protected void processFiltered(File aFile, FileText aFileText)
+        throws CheckstyleException
+    {
+        if (mOrdinaryChecks.isEmpty() && mCommentChecks.isEmpty()) {
+            return;
+        }
+        final String fileName = aFile.getPath();
+        try {
+            final AstCache.Entry entry =
+                AstCache.getInstance().get(aFileText);
+            final FileContents contents = entry.getContents();
+            final DetailAST root = entry.getTree();
+            final FlightEvents.Event event = FlightEvents.CHECK.begin();
+            final Map<AbstractCheck, long[]> costs;
+            if (FILE_COUNT.incrementAndGet() % COST_SAMPLE_INTERVAL == 0) {
+                costs = new IdentityHashMap<AbstractCheck, long[]>();
+            }
+            else {
+                costs = null;
+            }
+            if (!mOrdinaryChecks.isEmpty()) {
+                walk(root, contents, mOrdinaryChecks, mOrdinaryDispatch,
+                    costs);
+            }
+            if (!mCommentChecks.isEmpty()) {
+                walk(entry.getCommentTree(), contents, mCommentChecks,
+                    mCommentDispatch, costs);
+            }
+            if (costs != null) {
+                recordCosts(costs);
+            }
+            if (event != null) {
+                event.commit(FlightEvents.getProject(aFile), fileName,
+                    mMessages.size());
+            }
+            if (mFilters.isEmpty()) {
+                addMessages(mMessages);
+            }
+            else {
+                addMessages(getFilteredMessages(fileName, contents, root));
+            }
+            mMessages.clear();
+        }
+        catch (RecognitionException e) {
+            throw new CheckstyleException(String.format(
+                "%s occurred during the analysis of file %s.",
+                e.getClass().getSimpleName(), fileName), e);
+        }
+        catch (TokenStreamException e) {
+            throw new CheckstyleException(String.format(
+                "%s occurred during the analysis of file %s.",
+                e.getClass().getSimpleName(), fileName), e);
+        }
+    }
+
+    /**
+     * Returns the messages of the current file accepted by all filters.
+     * @param aFileName the name of the file.
+     * @param aContents the contents of the file.
+     * @param aRoot the syntax tree of the file.
+     * @return the accepted messages.
+     */
+    private SortedSet<LocalizedMessage> getFilteredMessages(
+        String aFileName, FileContents aContents, DetailAST aRoot)
+    {
+        final SortedSet<LocalizedMessage> result =
+            new TreeSet<LocalizedMessage>(mMessages);
+        final Iterator<LocalizedMessage> it = mMessages.iterator();
+        while (it.hasNext()) {
+            final LocalizedMessage message = it.next();
+            final TreeWalkerAuditEvent event = new TreeWalkerAuditEvent(
+                aContents, aFileName, message, aRoot);
+            for (int i = 0; i < mFilters.size(); i++) {
+                if (!mFilters.get(i).accept(event)) {
+                    result.remove(message);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks a syntax tree, notifying checks of the tokens they are
+     * registered for.
+     * @param aRoot the first root of the tree.
+     * @param aContents the contents of the file.
+     * @param aChecks the checks.
+     * @param aDispatch the checks by token type.
+     * @param aCosts time taken by each check so far, to be added to, or
+     * null if the checks are not measured.
+     * @throws CheckstyleException if the thread is interrupted, so that
+     * an audit that has run out of time stops at the next node.
+     */
+    private void walk(DetailAST aRoot, FileContents aContents,
+        List<AbstractCheck> aChecks, AbstractCheck[][] aDispatch,
+        Map<AbstractCheck, long[]> aCosts)
+        throws CheckstyleException
+    {
+        for (int i = 0; i < aChecks.size(); i++) {
+            final AbstractCheck check = aChecks.get(i);
+            final long start = (aCosts == null) ? 0 : System.nanoTime();
+            check.setFileContents(aContents);
+            check.clearMessages();
+            check.beginTree(aRoot);
+            charge(aCosts, check, start);
+        }
+
+        DetailAST node = aRoot;
+        while (node != null) {
+            if (Thread.currentThread().isInterrupted()) {
+                mMessages.clear();
+                throw new CheckstyleException("Audit interrupted");
+            }
+            final AbstractCheck[] visitors = getChecks(aDispatch, node);
+            for (int i = 0; i < visitors.length; i++) {
+                final long start = (aCosts == null) ? 0 : System.nanoTime();
+                visitors[i].visitToken(node);
+                charge(aCosts, visitors[i], start);
+            }
+            DetailAST next = node.getFirstChild();
+            while (node != null && next == null) {
+                final AbstractCheck[] leavers = getChecks(aDispatch, node);
+                for (int i = 0; i < leavers.length; i++) {
+                    final long start =
+                        (aCosts == null) ? 0 : System.nanoTime();
+                    leavers[i].leaveToken(node);
+                    charge(aCosts, leavers[i], start);
+                }
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParent();
+                }
+            }
+            node = next;
+        }
+
+        for (int i = 0; i < aChecks.size(); i++) {
+            final AbstractCheck check = aChecks.get(i);
+            final long start = (aCosts == null) ? 0 : System.nanoTime();
+            check.finishTree(aRoot);
+            charge(aCosts, check, start);
+            mMessages.addAll(check.getMessages());
+        }
+    }
+
+    /**
+     * Adds the time since a start to the time taken by a check.
+     * @param aCosts time taken by each check, or null if the checks are
+     * not measured.
+     * @param aCheck the check.
+     * @param aStart the start (nanoseconds).
+     */
+    private static void charge(Map<AbstractCheck, long[]> aCosts,
+        AbstractCheck aCheck, long aStart)
+    {
+        if (aCosts == null) {
+            return;
+        }
+        final long elapsed = System.nanoTime() - aStart;
+        long[] cost = aCosts.get(aCheck);
+        if (cost == null) {
+            cost = new long[1];
+            aCosts.put(aCheck, cost);
+        }
+        cost[0] += elapsed;
+    }
+
+    /**
+     * Records the time each check took for a file in the AuditTiers.
+     * @param aCosts time taken by each check.
+     */
+    private void recordCosts(Map<AbstractCheck, long[]> aCosts)
+    {
+        final Iterator<Map.Entry<AbstractCheck, long[]>> it =
+            aCosts.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<AbstractCheck, long[]> entry = it.next();
+            AuditTiers.recordCost(mCheckKeys.get(entry.getKey()),
+                entry.getValue()[0]);
+        }
+    }
+
+    /**
+     * Returns the checks registered for the type of a node.
+     * @param aDispatch the checks by token type.
+     * @param aNode the node.
+     * @return the checks.
+     */
+    private static AbstractCheck[] getChecks(
+        AbstractCheck[][] aDispatch, DetailAST aNode)
+    {
+        final int type = aNode.getType();
+        if (type < 0 || type >= aDispatch.length || aDispatch[type] == null) {
+            return NO_CHECKS;
+        }
+        return aDispatch[type];
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.FileSetCheck */
+    public void destroy()
+    {
+        for (int i = 0; i < mOrdinaryChecks.size(); i++) {
+            mOrdinaryChecks.get(i).destroy();
+        }
+        for (int i = 0; i < mCommentChecks.size(); i++) {
+            mCommentChecks.get(i).destroy();
+        }
+        super.destroy();
+    }
+}
@@ -27,8 +27,17 @@ import java.awt.event.WindowEvent;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
@@ -40,6 +49,7 @@ import org.apache.commons.logging.LogFactory;
 
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 
+import bluej.extensions.BPackage;
 import bluej.extensions.BlueJ;
 import bluej.extensions.Extension;
 import bluej.extensions.event.ApplicationEvent;
@@ -53,7 +63,7 @@ import bluej.extensions.event.PackageListener;
  * BlueJ extension for Checkstyle.
  * @author Rick Giles
  * @author CS4250 Students (MSU Denver)
- * @version 1.11
+ * @version 1.20
  */
 public class CheckstyleExtension extends Extension
 {
@@ -66,20 +76,63 @@ public class CheckstyleExtension extends Extension
     /** interval between audit checks (milliseconds) */
     private static final int AUDIT_CHECK_INTERVAL = 2000;
 
+    /** interval between checks of the edited text (milliseconds) */
+    private static final int EDITOR_CHECK_INTERVAL = 100;
+
     /** singleton */
     private static CheckstyleExtension sInstance;
 
     /** Periodically checks for file set changes. */
     private Timer mTimer;
 
+    /** audits the text of the selected class's editor */
+    private final EditorWatcher mEditorWatcher = new EditorWatcher();
+
+    /** Periodically checks for changes of the edited text. */
+    private Timer mEditorTimer;
+
     /** BlueJ tools menu item for Checkstyle */
     private ExtensionMenu mMenu;
 
     /** display audit results */
     private AuditFrame mFrame = null;
 
-    /** files being compiled */
-    private Set<File> mCompilingFiles = new HashSet<File>();
+    /** files being compiled, updated by compile events on any thread */
+    private final Set<File> mCompilingFiles =
+        Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    /**
+     * results shown by the audit frame, replaced as a whole by the audit
+     * threads and read without locks by the event-dispatch thread
+     */
+    private final AtomicReference<AuditSnapshot> mSnapshot =
+        new AtomicReference<AuditSnapshot>(AuditSnapshot.EMPTY);
+
+    /** true while an update of the audit frame waits for the EDT */
+    private final AtomicBoolean mUpdatePending = new AtomicBoolean();
+
+    /** publishes the changes of the shown results to listeners */
+    private final ResultPublisher mResults = new ResultPublisher();
+
+    /** cancellation token of the most recent audit */
+    private AuditToken mAuditToken = new AuditToken();
+
+    /**
+     * thread of the low priority work: prefetches, deferred audits and
+     * the details of summarized files
+     */
+    private final ExecutorService mBackground =
+        Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable aRunnable)
+            {
+                final Thread result =
+                    new Thread(aRunnable, "Checkstyle background");
+                result.setDaemon(true);
+                result.setPriority(Thread.MIN_PRIORITY);
+                return result;
+            }
+        });
 
     /** extension name */
     private static final String NAME = "Checkstyle";
@@ -98,16 +151,22 @@ public class CheckstyleExtension extends Extension
     /** @see bluej.extensions.event.PackageListener */
     private class CheckstylePackageListener implements PackageListener
     {
-        /** @see bluej.extensions.event.PackageListener */
+        /**
+         * Audits the files of the opened package at low priority.
+         * @see bluej.extensions.event.PackageListener
+         */
         public void packageOpened(PackageEvent aEvent)
         {
-            // refreshView();
+            prefetch(aEvent.getPackage());
         }
 
-        /** @see bluej.extensions.event.PackageListener */
+        /**
+         * Evicts the results and cached trees of the closing package.
+         * @see bluej.extensions.event.PackageListener
+         */
         public void packageClosing(PackageEvent aEvent)
         {
-            // refreshView();
+            evict(aEvent.getPackage());
         }
     }
 
@@ -121,13 +180,17 @@ public class CheckstyleExtension extends Extension
         }
 
         /**
-         * Records the start of compilation of a set of files.
+         * Records the start of compilation of a set of files. The files
+         * have been saved, so audits that have seen their previous
+         * contents are superseded.
          * @param aFiles the set of files being compiled.
          */
         private void recordCompileStart(File[] aFiles)
         {
+            final FileGenerations generations = FileGenerations.getInstance();
             for (int i = 0; i < aFiles.length; i++) {
                 mCompilingFiles.add(aFiles[i]);
+                generations.advance(aFiles[i]);
             }
             updateTimer();
         }
@@ -161,7 +224,7 @@ public class CheckstyleExtension extends Extension
         {
             recordCompileEnd(aEvent.getFiles());
             if (mCompilingFiles.isEmpty()) {
-                refreshView();
+                refreshView("compile");
             }
         }
 
@@ -183,7 +246,7 @@ public class CheckstyleExtension extends Extension
         public void blueJReady(ApplicationEvent aEvent)
         {
             buildAuditFrame();
-            refreshView();
+            refreshView("startup");
         }
     }
 
@@ -206,6 +269,7 @@ public class CheckstyleExtension extends Extension
 
         final ActionListener listener = new FilesChangeListener();
         mTimer = new Timer(AUDIT_CHECK_INTERVAL, listener);
+        mEditorTimer = new Timer(EDITOR_CHECK_INTERVAL, mEditorWatcher);
 
         try {
             mLogFactory = LogFactory.getFactory();
@@ -217,6 +281,16 @@ public class CheckstyleExtension extends Extension
         }
     }
 
+    /**
+     * Determines whether BlueJ compiles files, so that background audits
+     * can wait for the compiler.
+     * @return true if compilation of any file has started and not ended.
+     */
+    boolean isCompiling()
+    {
+        return !mCompilingFiles.isEmpty();
+    }
+
     /**
      * Starts or stops timer.
      */
@@ -224,9 +298,11 @@ public class CheckstyleExtension extends Extension
     {
         if (mCompilingFiles.isEmpty() && mFrame.isShowing()) {
             mTimer.start();
+            mEditorTimer.start();
         }
         else {
             mTimer.stop();
+            mEditorTimer.stop();
         }
     }
 
@@ -265,29 +341,162 @@ public class CheckstyleExtension extends Extension
     public void terminate()
     {
         BlueJManager.getInstance().saveAuditFrame(mFrame);
+        mAuditToken.cancel();
         mCompilingFiles.clear();
         mTimer.stop();
+        mEditorTimer.stop();
+        mEditorWatcher.shutdown();
+        mBackground.shutdownNow();
+        mResults.shutdown();
+        ConfigWatcher.getInstance().stop();
     }
 
     /**
      * Refreshes the audit view. If there is an error, report it.
      */
     public void refreshView()
+    {
+        refreshView("refresh");
+    }
+
+    /**
+     * Refreshes the audit view. If there is an error, report it.
+     * @param aTrigger what caused the refresh, as recorded in the flight
+     * events of the audit.
+     */
+    public void refreshView(String aTrigger)
     {
         if (mFrame.isShowing()) {
             final BlueJChecker checker = new BlueJChecker();
-            final Auditor auditor;
+            checker.setTrigger(aTrigger);
+            final AuditToken token = newAuditToken();
+            final Map<String, Auditor> auditors;
             try {
-                auditor = checker.processAllFiles();
+                auditors = checker.processAllProfiles(token);
             }
             catch (CheckstyleException ex) {
                 error(ex);
                 return;
             }
-            viewAudit(auditor);
+            viewAudit(auditors, token);
+            if (token.isSuperseded() && !token.isCancelled()) {
+                // a file changed during the audit, audit again
+                requeue(aTrigger);
+            }
         }
     }
 
+    /**
+     * Refreshes the audit view later on the event-dispatch thread, after
+     * the events waiting there.
+     * @param aTrigger what caused the refresh.
+     */
+    private void requeue(final String aTrigger)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                refreshView(aTrigger);
+            }
+        });
+    }
+
+    /**
+     * Starts a new audit, cancelling the previous one.
+     * @return the cancellation token of the new audit.
+     */
+    public synchronized AuditToken newAuditToken()
+    {
+        mAuditToken.cancel();
+        mAuditToken = new AuditToken();
+        return mAuditToken;
+    }
+
+    /**
+     * Audits the files of a newly opened package on a low priority
+     * background thread, without cancelling the current audit, and merges
+     * the results into the view. The audit also fills the AstCache for
+     * the next full audit.
+     * @param aPackage the package.
+     */
+    private void prefetch(BPackage aPackage)
+    {
+        final Set<File> files;
+        try {
+            files = BlueJManager.getInstance().getFiles(aPackage);
+        }
+        catch (Exception e) {
+            // classes are not compiled yet, the timer audits them later
+            return;
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        final AuditToken token;
+        synchronized (this) {
+            token = mAuditToken;
+        }
+        runInBackground(new Runnable()
+        {
+            public void run()
+            {
+                if (token.isCancelled()) {
+                    return;
+                }
+                final BlueJChecker checker = new BlueJChecker();
+                checker.setPriority(Thread.MIN_PRIORITY);
+                checker.setTrigger("prefetch");
+                final Map<String, Auditor> prefetched;
+                try {
+                    prefetched = checker.processProfiles(files, token);
+                }
+                catch (CheckstyleException ex) {
+                    // speculative, the next full audit reports errors
+                    return;
+                }
+                if (!token.isCancelled()) {
+                    viewMerged(prefetched, token);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the results and cached syntax trees of the files of a
+     * closing package, so that memory follows the open projects.
+     * @param aPackage the package.
+     */
+    private void evict(BPackage aPackage)
+    {
+        final File dir;
+        try {
+            dir = aPackage.getDir().getAbsoluteFile();
+        }
+        catch (Exception e) {
+            return;
+        }
+        AstCache.getInstance().evict(dir);
+        FileGenerations.getInstance().evict(dir);
+        final Iterator<File> files = mCompilingFiles.iterator();
+        while (files.hasNext()) {
+            if (dir.equals(files.next().getAbsoluteFile().getParentFile())) {
+                files.remove();
+            }
+        }
+        AuditSnapshot current;
+        AuditSnapshot next;
+        do {
+            current = mSnapshot.get();
+            next = current.evict(dir);
+            if (next == current) {
+                return;
+            }
+        } while (!mSnapshot.compareAndSet(current, next));
+        retire(current, next, Collections.<Auditor>emptySet());
+        show(next);
+    }
+
     /**
      * Creates and installs an audit frame
      */
@@ -336,28 +545,263 @@ public class CheckstyleExtension extends Extension
     {
         buildAuditFrame();
         mFrame.setVisible(true);
-        refreshView();
+        refreshView("window");
     }
 
     /**
      * Updates view of audit results.
-     * @param aAuditor the auditor with audit results
+     * @param aAuditors the auditors with audit results, by profile name
+     */
+    public synchronized void viewAudit(final Map<String, Auditor> aAuditors)
+    {
+        publish(aAuditors, null);
+    }
+
+    /**
+     * Replaces the results shown by the results of an audit, unless the
+     * view already shows the results of a later audit. The results of the
+     * files that changed during the audit are stale and the results shown
+     * of these files are kept, see {@link AuditToken#getStaleFiles()}.
+     * @param aAuditors the auditors with audit results, by profile name
+     * @param aToken cancellation token of the audit, or null to update
+     * the view unconditionally
+     */
+    private void publish(Map<String, Auditor> aAuditors, AuditToken aToken)
+    {
+        AuditSnapshot current;
+        AuditSnapshot next;
+        do {
+            current = mSnapshot.get();
+            if (aToken != null
+                && aToken.getSequence() < current.getSequence())
+            {
+                final FlightEvents.Event dropped =
+                    FlightEvents.VIEW_HANDOFF.begin();
+                if (dropped != null) {
+                    dropped.commit(aToken.getSequence(), true);
+                }
+                retire(current, current, aAuditors.values());
+                return;
+            }
+            if (aToken == null) {
+                next = current.replace(aAuditors, current.getSequence(),
+                    Collections.<String>emptySet());
+            }
+            else {
+                next = current.replace(aAuditors, aToken.getSequence(),
+                    aToken.getStaleFiles());
+            }
+        } while (!mSnapshot.compareAndSet(current, next));
+        retire(current, next, aAuditors.values());
+        show(next);
+    }
+
+    /**
+     * Closes the auditors of the results replaced by new results, and of
+     * an update of the results, that the new results do not hold, so
+     * that the temporary files of their spilled events are deleted, see
+     * {@link Auditor#close()}.
+     * @param aCurrent the results replaced.
+     * @param aNext the new results, aCurrent if the update was dropped.
+     * @param aAuditors the auditors of the update.
      */
-    public synchronized void viewAudit(final Auditor aAuditor)
+    private static void retire(AuditSnapshot aCurrent, AuditSnapshot aNext,
+        Collection<Auditor> aAuditors)
     {
+        final Set<Auditor> kept = aNext.getSources();
+        final Set<Auditor> retired = aCurrent.getSources();
+        retired.addAll(aAuditors);
+        final Iterator<Auditor> it = retired.iterator();
+        while (it.hasNext()) {
+            final Auditor auditor = it.next();
+            if (!kept.contains(auditor)) {
+                auditor.close();
+            }
+        }
+    }
+
+    /**
+     * Hands a new snapshot of the results to the listeners, and to the
+     * audit frame on the event-dispatch thread. Updates that arrive while
+     * the frame has not yet shown an earlier one are shown together.
+     * @param aSnapshot the snapshot.
+     */
+    private void show(AuditSnapshot aSnapshot)
+    {
+        mResults.publish(aSnapshot);
+        if (!mUpdatePending.compareAndSet(false, true)) {
+            return;
+        }
+        final FlightEvents.Event handoff = FlightEvents.VIEW_HANDOFF.begin();
         // execute on the application's event-dispatch thread
         final Runnable update = new Runnable()
         {
             public void run()
             {
+                mUpdatePending.set(false);
+                final AuditSnapshot snapshot = mSnapshot.get();
+                if (handoff != null) {
+                    handoff.commit(snapshot.getSequence(), false);
+                }
                 if (mFrame != null) {
-                    mFrame.setAuditor(aAuditor);
+                    mFrame.setSnapshot(snapshot);
                 }
             }
         };
         SwingUtilities.invokeLater(update);
     }
 
+    /**
+     * Updates view of audit results unless the audit has been cancelled,
+     * then audits any files the audit deferred because of
+     * their size.
+     * @param aAuditors the auditors with audit results, by profile name
+     * @param aToken cancellation token of the audit
+     */
+    public void viewAudit(Map<String, Auditor> aAuditors, AuditToken aToken)
+    {
+        if (aToken.isCancelled() || aAuditors.isEmpty()) {
+            return;
+        }
+        publish(aAuditors, aToken);
+        if (!aAuditors.values().iterator().next().getDeferredFiles()
+            .isEmpty())
+        {
+            auditDeferred(aAuditors, aToken);
+        }
+    }
+
+    /**
+     * Audits the deferred files of an audit on a low priority background
+     * thread and merges the results into the view.
+     * @param aAuditors the auditors with the deferred files, by profile name
+     * @param aToken cancellation token of the audit
+     */
+    private void auditDeferred(
+        final Map<String, Auditor> aAuditors, final AuditToken aToken)
+    {
+        runInBackground(new Runnable()
+        {
+            public void run()
+            {
+                if (aToken.isCancelled()) {
+                    return;
+                }
+                final Map<String, Auditor> deferred;
+                final BlueJChecker checker = new BlueJChecker();
+                checker.setTrigger("deferred");
+                try {
+                    deferred = checker.processDeferred(aAuditors, aToken);
+                }
+                catch (final CheckstyleException ex) {
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            error(ex);
+                        }
+                    });
+                    return;
+                }
+                if (!aToken.isCancelled()) {
+                    viewMerged(deferred, aToken);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a task on the low priority background thread, after the tasks
+     * already waiting. The thread is stopped when the extension terminates.
+     * @param aTask the task.
+     */
+    void runInBackground(Runnable aTask)
+    {
+        mBackground.execute(aTask);
+    }
+
+    /**
+     * Merges the results of some files into the results shown, unless the
+     * view shows the results of a later audit. The results of the files
+     * that changed during the audit are stale and are not merged.
+     * @param aAuditors the auditors with the results of the files, by
+     * profile name
+     * @param aToken cancellation token of the audit of the files
+     */
+    private void viewMerged(Map<String, Auditor> aAuditors, AuditToken aToken)
+    {
+        AuditSnapshot current;
+        AuditSnapshot next;
+        do {
+            current = mSnapshot.get();
+            if (aToken.getSequence() < current.getSequence()) {
+                retire(current, current, aAuditors.values());
+                return;
+            }
+            next = current.merge(aAuditors, aToken.getStaleFiles());
+            if (next == current) {
+                retire(current, current, aAuditors.values());
+                return;
+            }
+        } while (!mSnapshot.compareAndSet(current, next));
+        retire(current, next, aAuditors.values());
+        show(next);
+    }
+
+    /**
+     * Merges the results of a live audit of an editor's text into the
+     * view, replacing the results of the file for the modules that the
+     * live audit ran. The results are dropped if the view shows the
+     * results of an audit that started after the text was read, or if the
+     * file has been saved since.
+     * @param aProfileName name of the profile of the audit
+     * @param aAuditor the auditor with the results of the file
+     * @param aToken token of the live audit
+     */
+    void viewLive(String aProfileName, Auditor aAuditor, AuditToken aToken)
+    {
+        final Map<String, Auditor> auditors =
+            Collections.singletonMap(aProfileName, aAuditor);
+        AuditSnapshot current;
+        AuditSnapshot next;
+        do {
+            current = mSnapshot.get();
+            if (aToken.getSequence() < current.getSequence()) {
+                retire(current, current, auditors.values());
+                return;
+            }
+            next = current.merge(auditors, aToken.getStaleFiles());
+            if (next == current) {
+                retire(current, current, auditors.values());
+                return;
+            }
+        } while (!mSnapshot.compareAndSet(current, next));
+        retire(current, next, auditors.values());
+        show(next);
+    }
+
+    /**
+     * Registers a listener for the changes of the audit results shown,
+     * for example for another extension. The listener first receives the
+     * results shown now, then a delta with the files whose results changed
+     * after each audit, on a thread of its own.
+     * @param aListener the listener.
+     */
+    public void addAuditResultListener(AuditResultListener aListener)
+    {
+        mResults.addListener(aListener);
+    }
+
+    /**
+     * Removes a listener registered with
+     * {@link #addAuditResultListener(AuditResultListener)}.
+     * @param aListener the listener.
+     */
+    public void removeAuditResultListener(AuditResultListener aListener)
+    {
+        mResults.removeListener(aListener);
+    }
+
     /** @see bluej.extensions.Extension#getName() */
     public String getName()
     {
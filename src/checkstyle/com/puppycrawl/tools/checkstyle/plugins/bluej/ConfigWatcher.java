@@ -0,0 +1,442 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+/**
+ * Holds the Checkstyle configuration of the BlueJ preferences, so that
+ * audits do not load it again, and watches its configuration and
+ * properties files. When a file changes, the configuration is loaded and
+ * validated on a background thread and swapped in atomically; the view
+ * is refreshed only if the effective configuration changed. A
+ * configuration that cannot be loaded leaves the previous one in place
+ * and is reported once.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public final class ConfigWatcher
+{
+    /** interval between checks of the files (milliseconds) */
+    private static final long POLL_INTERVAL = 2000;
+
+    /** the watcher of the BlueJ preferences */
+    private static final ConfigWatcher INSTANCE = new ConfigWatcher();
+
+    /** the current configuration, or null until it is needed */
+    private final AtomicReference<Loaded> mCurrent =
+        new AtomicReference<Loaded>();
+
+    /** state of the files that last failed to load, or null */
+    private Stamp mFailed;
+
+    /** error message last reported, or null */
+    private String mFailedMessage;
+
+    /** thread that checks the files, or null if not started */
+    private ScheduledExecutorService mPoller;
+
+    /**
+     * Prevent users from constructing ConfigWatcher objects.
+     */
+    private ConfigWatcher()
+    {
+    }
+
+    /**
+     * Returns the watcher of the BlueJ preferences.
+     * @return the watcher.
+     */
+    public static ConfigWatcher getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the current configuration. The configuration is loaded
+     * here, rather than by the watcher, the first time and after the
+     * configuration or properties file preference has changed.
+     * @return the configuration.
+     * @throws CheckstyleException if the configuration cannot be loaded.
+     */
+    public Configuration getConfiguration()
+        throws CheckstyleException
+    {
+        final Loaded current = mCurrent.get();
+        final BlueJManager manager = BlueJManager.getInstance();
+        if (current != null && current.mStamp.hasNames(
+            manager.getConfigFileName(), manager.getPropsFileName()))
+        {
+            return current.mConfig;
+        }
+        final Loaded loaded = load();
+        mCurrent.set(loaded);
+        start();
+        return loaded.mConfig;
+    }
+
+    /**
+     * Starts checking the files, unless already started.
+     */
+    private synchronized void start()
+    {
+        if (mPoller != null) {
+            return;
+        }
+        mPoller = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory()
+            {
+                public Thread newThread(Runnable aRunnable)
+                {
+                    final Thread thread =
+                        new Thread(aRunnable, "Checkstyle config watcher");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        mPoller.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                poll();
+            }
+        }, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking the files and forgets the configuration.
+     */
+    public synchronized void stop()
+    {
+        if (mPoller != null) {
+            mPoller.shutdownNow();
+            mPoller = null;
+        }
+        mCurrent.set(null);
+        mFailed = null;
+        mFailedMessage = null;
+    }
+
+    /**
+     * Checks the files and reloads the configuration if they changed.
+     */
+    private void poll()
+    {
+        final Loaded current = mCurrent.get();
+        if (current == null) {
+            return;
+        }
+        final Stamp stamp;
+        final Loaded loaded;
+        try {
+            stamp = Stamp.current();
+            if (stamp.equals(current.mStamp) || stamp.equals(mFailed)) {
+                return;
+            }
+            loaded = load();
+            validate(loaded.mConfig);
+        }
+        catch (IOException e) {
+            failed(null, e.getMessage());
+            return;
+        }
+        catch (CheckstyleException e) {
+            failed(Stamp.currentOrNull(), e.getMessage());
+            return;
+        }
+        mFailed = null;
+        mFailedMessage = null;
+        if (mCurrent.compareAndSet(current, loaded)
+            && !loaded.mFingerprint.equals(current.mFingerprint))
+        {
+            CheckstyleExtension.getInstance().refreshView("config");
+        }
+    }
+
+    /**
+     * Reports a configuration that cannot be loaded, once per error.
+     * @param aStamp state of the files, or null if it cannot be read.
+     * @param aMessage the error message.
+     */
+    private void failed(Stamp aStamp, String aMessage)
+    {
+        mFailed = aStamp;
+        if (String.valueOf(aMessage).equals(mFailedMessage)) {
+            return;
+        }
+        mFailedMessage = String.valueOf(aMessage);
+        CheckstyleExtension.getInstance().error(
+            "The changed Checkstyle configuration cannot be loaded;"
+            + " the previous configuration is still used.\n" + aMessage);
+    }
+
+    /**
+     * Loads the configuration of the BlueJ preferences.
+     * @return the loaded configuration.
+     * @throws CheckstyleException if the configuration cannot be loaded.
+     */
+    private static Loaded load()
+        throws CheckstyleException
+    {
+        final Stamp stamp;
+        try {
+            stamp = Stamp.current();
+        }
+        catch (IOException e) {
+            throw new CheckstyleException(e.getMessage(), e);
+        }
+        final Configuration config =
+            BlueJChecker.loadPreferencesConfiguration();
+        return new Loaded(stamp, config, fingerprint(config));
+    }
+
+    /**
+     * Creates the modules of a configuration, to find errors that loading
+     * it does not find, such as unknown modules and properties.
+     * @param aConfig the configuration.
+     * @throws CheckstyleException if the configuration is invalid.
+     */
+    private static void validate(Configuration aConfig)
+        throws CheckstyleException
+    {
+        final Checker checker = new Checker();
+        try {
+            checker.setModuleClassLoader(ConfigWatcher.class.getClassLoader());
+            checker.configure(aConfig);
+        }
+        finally {
+            checker.destroy();
+        }
+    }
+
+    /**
+     * Returns a canonical description of a configuration, equal for
+     * configurations with the same effect.
+     * @param aConfig the configuration.
+     * @return the description.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    private static String fingerprint(Configuration aConfig)
+        throws CheckstyleException
+    {
+        final StringBuilder result = new StringBuilder();
+        appendFingerprint(aConfig, result);
+        return result.toString();
+    }
+
+    /**
+     * Appends a canonical description of a configuration.
+     * @param aConfig the configuration.
+     * @param aBuilder the description so far.
+     * @throws CheckstyleException if the configuration cannot be read.
+     */
+    private static void appendFingerprint(
+        Configuration aConfig, StringBuilder aBuilder)
+        throws CheckstyleException
+    {
+        appendString(aConfig.getName(), aBuilder);
+        final String[] names = aConfig.getAttributeNames();
+        Arrays.sort(names);
+        aBuilder.append('(');
+        for (int i = 0; i < names.length; i++) {
+            appendString(names[i], aBuilder);
+            appendString(aConfig.getAttribute(names[i]), aBuilder);
+        }
+        final Iterator<Map.Entry<String, String>> messages =
+            new TreeMap<String, String>(aConfig.getMessages())
+                .entrySet().iterator();
+        while (messages.hasNext()) {
+            final Map.Entry<String, String> message = messages.next();
+            appendString(message.getKey(), aBuilder);
+            appendString(message.getValue(), aBuilder);
+        }
+        aBuilder.append('[');
+        final Configuration[] children = aConfig.getChildren();
+        for (int i = 0; i < children.length; i++) {
+            appendFingerprint(children[i], aBuilder);
+        }
+        aBuilder.append("])");
+    }
+
+    /**
+     * Appends a string with its length, so that descriptions cannot be
+     * ambiguous.
+     * @param aString the string.
+     * @param aBuilder the description so far.
+     */
+    private static void appendString(String aString, StringBuilder aBuilder)
+    {
+        aBuilder.append(aString.length()).append(':').append(aString);
+    }
+
+    /**
+     * A loaded configuration with the state of its files.
+     */
+    private static final class Loaded
+    {
+        /** state of the files the configuration was loaded from */
+        private final Stamp mStamp;
+
+        /** the configuration */
+        private final Configuration mConfig;
+
+        /** canonical description of the configuration */
+        private final String mFingerprint;
+
+        /**
+         * Constructs a <code>Loaded</code>.
+         * @param aStamp state of the files.
+         * @param aConfig the configuration.
+         * @param aFingerprint canonical description of the configuration.
+         */
+        Loaded(Stamp aStamp, Configuration aConfig, String aFingerprint)
+        {
+            mStamp = aStamp;
+            mConfig = aConfig;
+            mFingerprint = aFingerprint;
+        }
+    }
+
+    /**
+     * State of the configuration and properties files of the BlueJ
+     * preferences: their names, the modification time of the
+     * configuration file, and the resolved properties, which change with
+     * the properties file and the BlueJ properties.
+     */
+    private static final class Stamp
+    {
+        /** name of the configuration file, or null for the default */
+        private final String mConfigName;
+
+        /** modification time of the configuration file, or -1 */
+        private final long mConfigTime;
+
+        /** name of the properties file, or null for none */
+        private final String mPropsName;
+
+        /** the resolved properties */
+        private final Properties mProps;
+
+        /**
+         * Constructs a <code>Stamp</code>.
+         * @param aConfigName name of the configuration file.
+         * @param aConfigTime modification time of the configuration file.
+         * @param aPropsName name of the properties file.
+         * @param aProps the resolved properties.
+         */
+        private Stamp(String aConfigName, long aConfigTime,
+            String aPropsName, Properties aProps)
+        {
+            mConfigName = aConfigName;
+            mConfigTime = aConfigTime;
+            mPropsName = aPropsName;
+            mProps = aProps;
+        }
+
+        /**
+         * Returns the current state of the files.
+         * @return the state.
+         * @throws IOException if the properties file cannot be read.
+         */
+        static Stamp current()
+            throws IOException
+        {
+            final BlueJManager manager = BlueJManager.getInstance();
+            final String configName = manager.getConfigFileName();
+            return new Stamp(configName,
+                manager.getModificationTime(configName),
+                manager.getPropsFileName(),
+                manager.getResolvedProperties());
+        }
+
+        /**
+         * Returns the current state of the files, or null if the
+         * properties file cannot be read.
+         * @return the state, or null.
+         */
+        static Stamp currentOrNull()
+        {
+            try {
+                return current();
+            }
+            catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Determines whether this state is of given files.
+         * @param aConfigName name of the configuration file.
+         * @param aPropsName name of the properties file.
+         * @return true if this state is of the files.
+         */
+        boolean hasNames(String aConfigName, String aPropsName)
+        {
+            return equal(mConfigName, aConfigName)
+                && equal(mPropsName, aPropsName);
+        }
+
+        /**
+         * Compares two names that may be null.
+         * @param aFirst the first name.
+         * @param aSecond the second name.
+         * @return true if the names are equal.
+         */
+        private static boolean equal(String aFirst, String aSecond)
+        {
+            return (aFirst == null) ? aSecond == null : aFirst.equals(aSecond);
+        }
+
+        /** @see java.lang.Object */
+        public boolean equals(Object aObject)
+        {
+            if (!(aObject instanceof Stamp)) {
+                return false;
+            }
+            final Stamp other = (Stamp) aObject;
+            return hasNames(other.mConfigName, other.mPropsName)
+                && mConfigTime == other.mConfigTime
+                && mProps == other.mProps;
+        }
+
+        /** @see java.lang.Object */
+        public int hashCode()
+        {
+            return (int) mConfigTime ^ System.identityHashCode(mProps);
+        }
+    }
+}
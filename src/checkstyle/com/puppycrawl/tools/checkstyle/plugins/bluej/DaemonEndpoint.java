@@ -0,0 +1,462 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Set;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The endpoint of an {@link AuditDaemon}: its port and a random secret,
+ * kept in a file that only the users of the daemon can read. The daemon
+ * and its clients prove to each other that they know the secret before
+ * any configuration or source is sent, so that neither a listener of
+ * another user on a stale port nor a client of another user can take
+ * part in the audits. The secret itself is never sent: each side answers
+ * a random challenge of the other with an HMAC-SHA256 under the secret.
+ * <p>
+ * A daemon serves either one user or the members of one group, for
+ * example all students of a lab server, who then share its warm Checkers
+ * and caches. The endpoint file of a user is
+ * <code>~/.checkstyle4bluej/daemon/daemon.port</code> by default; clients
+ * use it only if it and its directory are owned by the current user and,
+ * where the file system has POSIX permissions, are not accessible by the
+ * group or others. The endpoint file of a group is
+ * <code>checkstyle4bluej-<i>group</i>/daemon.port</code> in the temporary
+ * directory by default; clients use it only if it and its directory
+ * belong to the group and are not accessible by others, which needs POSIX
+ * permissions. The members of the group trust each other: each of them
+ * can read the secret.
+ * </p>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+final class DaemonEndpoint
+{
+    /** name of the endpoint file */
+    static final String FILE_NAME = "daemon.port";
+
+    /** length of secrets and challenges (bytes) */
+    static final int NONCE_LENGTH = 32;
+
+    /** length of the answers to challenges (bytes) */
+    static final int MAC_LENGTH = 32;
+
+    /** role of the daemon in the answers to challenges */
+    static final String DAEMON = "daemon";
+
+    /** role of a client in the answers to challenges */
+    static final String CLIENT = "client";
+
+    /** permissions of the endpoint directory */
+    private static final Set<PosixFilePermission> DIR_PERMISSIONS =
+        PosixFilePermissions.fromString("rwx------");
+
+    /** permissions of the endpoint file */
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS =
+        PosixFilePermissions.fromString("rw-------");
+
+    /** permissions of the endpoint directory of a group */
+    private static final Set<PosixFilePermission> GROUP_DIR_PERMISSIONS =
+        PosixFilePermissions.fromString("rwxrwx---");
+
+    /** permissions of the endpoint file of a group */
+    private static final Set<PosixFilePermission> GROUP_FILE_PERMISSIONS =
+        PosixFilePermissions.fromString("rw-r-----");
+
+    /** source of secrets and challenges */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** the port of the daemon */
+    private final int mPort;
+
+    /** the secret of the daemon */
+    private final byte[] mSecret;
+
+    /**
+     * Constructs a <code>DaemonEndpoint</code>.
+     * @param aPort the port of the daemon.
+     * @param aSecret the secret of the daemon.
+     */
+    private DaemonEndpoint(int aPort, byte[] aSecret)
+    {
+        mPort = aPort;
+        mSecret = aSecret;
+    }
+
+    /**
+     * Creates the endpoint of a new daemon, with a new secret.
+     * @param aPort the port of the daemon.
+     * @return the endpoint.
+     */
+    static DaemonEndpoint create(int aPort)
+    {
+        return new DaemonEndpoint(aPort, newNonce());
+    }
+
+    /**
+     * Returns the default endpoint file of the current user or of a group.
+     * @param aGroup the name of the group, or null for the current user.
+     * @return the endpoint file.
+     */
+    static File getDefaultFile(String aGroup)
+    {
+        if (aGroup != null) {
+            return new File(System.getProperty("java.io.tmpdir"),
+                "checkstyle4bluej-" + aGroup + File.separator + FILE_NAME);
+        }
+        return new File(System.getProperty("user.home"),
+            ".checkstyle4bluej" + File.separator + "daemon"
+                + File.separator + FILE_NAME);
+    }
+
+    /**
+     * Returns the port of the daemon.
+     * @return the port.
+     */
+    int getPort()
+    {
+        return mPort;
+    }
+
+    /**
+     * Writes this endpoint to a file that only the current user, or only
+     * the members of a group, can access. The directory of the file is
+     * created if needed. The file is replaced atomically, so that clients
+     * never read a partial file.
+     * @param aFile the endpoint file.
+     * @param aGroup the name of the group, or null for the current user.
+     * @throws IOException if the file cannot be written, or its directory
+     * is not private to the current user or the group.
+     */
+    void write(File aFile, String aGroup)
+        throws IOException
+    {
+        final Path dir = aFile.getAbsoluteFile().getParentFile().toPath();
+        final boolean posix = isPosix(dir);
+        final Set<PosixFilePermission> dirPermissions =
+            (aGroup == null) ? DIR_PERMISSIONS : GROUP_DIR_PERMISSIONS;
+        if (!Files.isDirectory(dir)) {
+            if (posix) {
+                Files.createDirectories(dir,
+                    PosixFilePermissions.asFileAttribute(dirPermissions));
+            }
+            else {
+                Files.createDirectories(dir);
+            }
+        }
+        if (posix && isOwnedByUser(dir)) {
+            // createDirectories applies the umask
+            Files.setPosixFilePermissions(dir, dirPermissions);
+            if (aGroup != null) {
+                setGroup(dir, aGroup);
+            }
+        }
+        checkScope(dir, aGroup);
+        final Path temp;
+        if (posix) {
+            temp = Files.createTempFile(dir, FILE_NAME, ".tmp",
+                PosixFilePermissions.asFileAttribute((aGroup == null)
+                    ? FILE_PERMISSIONS : GROUP_FILE_PERMISSIONS));
+        }
+        else {
+            temp = Files.createTempFile(dir, FILE_NAME, ".tmp");
+        }
+        try {
+            if (aGroup != null) {
+                setGroup(temp, aGroup);
+            }
+            Files.write(temp, (mPort + " " + toHex(mSecret))
+                .getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, aFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the endpoint of a daemon, if the endpoint file and its
+     * directory are private to the current user or to a group.
+     * @param aFile the endpoint file.
+     * @param aGroup the name of the group, or null for the current user.
+     * @return the endpoint.
+     * @throws IOException if the file cannot be read, is malformed or is
+     * not private to the current user or the group.
+     */
+    static DaemonEndpoint read(File aFile, String aGroup)
+        throws IOException
+    {
+        final Path file = aFile.getAbsoluteFile().toPath();
+        checkScope(file.getParent(), aGroup);
+        checkScope(file, aGroup);
+        final String[] parts = new String(Files.readAllBytes(file),
+            StandardCharsets.UTF_8).trim().split(" ");
+        if (parts.length != 2 || parts[1].length() != NONCE_LENGTH * 2) {
+            throw new IOException("Malformed endpoint file " + aFile);
+        }
+        try {
+            final byte[] secret = new byte[NONCE_LENGTH];
+            for (int i = 0; i < secret.length; i++) {
+                secret[i] = (byte) Integer.parseInt(
+                    parts[1].substring(2 * i, 2 * i + 2), 16);
+            }
+            return new DaemonEndpoint(Integer.parseInt(parts[0]), secret);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed endpoint file " + aFile, e);
+        }
+    }
+
+    /**
+     * Checks that a file is private to the current user or to a group.
+     * @param aPath the file or directory.
+     * @param aGroup the name of the group, or null for the current user.
+     * @throws IOException if the file is not private to the current user
+     * or the group, or its owner cannot be determined.
+     */
+    private static void checkScope(Path aPath, String aGroup)
+        throws IOException
+    {
+        if (aGroup == null) {
+            checkPrivate(aPath);
+        }
+        else {
+            checkGroup(aPath, aGroup);
+        }
+    }
+
+    /**
+     * Checks that a file belongs to a group and is not accessible by
+     * others. The file system must have POSIX permissions.
+     * @param aPath the file or directory.
+     * @param aGroup the name of the group.
+     * @throws IOException if the file is not private to the group or its
+     * group cannot be determined.
+     */
+    private static void checkGroup(Path aPath, String aGroup)
+        throws IOException
+    {
+        if (!isPosix(aPath)) {
+            throw new IOException("Cannot determine the group of " + aPath);
+        }
+        final PosixFileAttributes attributes = Files.readAttributes(
+            aPath, PosixFileAttributes.class);
+        if (!lookupGroup(aPath, aGroup).equals(attributes.group())) {
+            throw new IOException(aPath + " belongs to group "
+                + attributes.group().getName());
+        }
+        final Set<PosixFilePermission> permissions =
+            attributes.permissions();
+        permissions.removeAll(GROUP_DIR_PERMISSIONS);
+        if (!permissions.isEmpty()) {
+            throw new IOException(aPath + " is accessible by others");
+        }
+    }
+
+    /**
+     * Gives a file to a group.
+     * @param aPath the file or directory.
+     * @param aGroup the name of the group.
+     * @throws IOException if the group does not exist or the current user
+     * may not give the file to it.
+     */
+    private static void setGroup(Path aPath, String aGroup)
+        throws IOException
+    {
+        Files.getFileAttributeView(aPath, PosixFileAttributeView.class)
+            .setGroup(lookupGroup(aPath, aGroup));
+    }
+
+    /**
+     * Finds a group by name.
+     * @param aPath a file of the file system of the group.
+     * @param aGroup the name of the group.
+     * @return the group.
+     * @throws IOException if the group does not exist.
+     */
+    private static GroupPrincipal lookupGroup(Path aPath, String aGroup)
+        throws IOException
+    {
+        return aPath.getFileSystem().getUserPrincipalLookupService()
+            .lookupPrincipalByGroupName(aGroup);
+    }
+
+    /**
+     * Determines whether a file is owned by the current user.
+     * @param aPath the file or directory.
+     * @return true if it is.
+     * @throws IOException if the owner cannot be determined.
+     */
+    private static boolean isOwnedByUser(Path aPath)
+        throws IOException
+    {
+        try {
+            return aPath.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"))
+                .equals(Files.getOwner(aPath));
+        }
+        catch (UnsupportedOperationException e) {
+            throw new IOException("Cannot determine the owner of " + aPath);
+        }
+    }
+
+    /**
+     * Checks that a file is owned by the current user and, on a file
+     * system with POSIX permissions, not accessible by others.
+     * @param aPath the file or directory.
+     * @throws IOException if the file is not private to the current user
+     * or its owner cannot be determined.
+     */
+    private static void checkPrivate(Path aPath)
+        throws IOException
+    {
+        if (!isOwnedByUser(aPath)) {
+            throw new IOException(aPath + " is owned by "
+                + Files.getOwner(aPath).getName());
+        }
+        if (isPosix(aPath)) {
+            final Set<PosixFilePermission> permissions =
+                Files.getPosixFilePermissions(aPath);
+            permissions.removeAll(DIR_PERMISSIONS);
+            if (!permissions.isEmpty()) {
+                throw new IOException(aPath + " is accessible by others");
+            }
+        }
+    }
+
+    /**
+     * Determines whether the file system of a file has POSIX permissions.
+     * @param aPath the file.
+     * @return true if it has.
+     */
+    private static boolean isPosix(Path aPath)
+    {
+        return Files.getFileAttributeView(aPath,
+            PosixFileAttributeView.class) != null;
+    }
+
+    /**
+     * Creates a random challenge.
+     * @return the challenge.
+     */
+    static byte[] newNonce()
+    {
+        final byte[] result = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(result);
+        return result;
+    }
+
+    /**
+     * Answers the challenges of a connection, proving knowledge of the
+     * secret.
+     * @param aRole the role of the answering side, {@link #DAEMON} or
+     * {@link #CLIENT}.
+     * @param aClientNonce the challenge of the client.
+     * @param aDaemonNonce the challenge of the daemon.
+     * @return the answer.
+     */
+    private byte[] answer(String aRole, byte[] aClientNonce, byte[] aDaemonNonce)
+    {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(mSecret, "HmacSHA256"));
+            mac.update(aRole.getBytes(StandardCharsets.UTF_8));
+            mac.update(aClientNonce);
+            mac.update(aDaemonNonce);
+            return mac.doFinal();
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the answer of the other side of a connection and checks it.
+     * @param aIn the input.
+     * @param aRole the role of the other side.
+     * @param aClientNonce the challenge of the client.
+     * @param aDaemonNonce the challenge of the daemon.
+     * @throws IOException if the input fails or the answer is wrong.
+     */
+    void verify(DataInputStream aIn, String aRole, byte[] aClientNonce,
+        byte[] aDaemonNonce)
+        throws IOException
+    {
+        final byte[] answer = new byte[MAC_LENGTH];
+        aIn.readFully(answer);
+        if (!MessageDigest.isEqual(answer,
+            answer(aRole, aClientNonce, aDaemonNonce)))
+        {
+            throw new IOException("The " + aRole + " failed authentication");
+        }
+    }
+
+    /**
+     * Writes the answer of this side of a connection.
+     * @param aOut the output.
+     * @param aRole the role of this side.
+     * @param aClientNonce the challenge of the client.
+     * @param aDaemonNonce the challenge of the daemon.
+     * @throws IOException if the output fails.
+     */
+    void prove(DataOutputStream aOut, String aRole, byte[] aClientNonce,
+        byte[] aDaemonNonce)
+        throws IOException
+    {
+        aOut.write(answer(aRole, aClientNonce, aDaemonNonce));
+    }
+
+    /**
+     * Formats bytes as hexadecimal digits.
+     * @param aBytes the bytes.
+     * @return the digits.
+     */
+    private static String toHex(byte[] aBytes)
+    {
+        final StringBuilder result = new StringBuilder(aBytes.length * 2);
+        for (int i = 0; i < aBytes.length; i++) {
+            result.append(Character.forDigit((aBytes[i] >> 4) & 0xF, 16));
+            result.append(Character.forDigit(aBytes[i] & 0xF, 16));
+        }
+        return result.toString();
+    }
+}
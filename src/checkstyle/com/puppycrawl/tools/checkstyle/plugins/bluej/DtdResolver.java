@@ -0,0 +1,345 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+
+/**
+ * Keeps the loading of configuration and suppressions files off the
+ * network. Checkstyle resolves the DTDs of the public ids it knows from
+ * its jar, but fetches any other DTD, such as that of a configuration
+ * written for a later Checkstyle, from the URL of its DOCTYPE, which can
+ * hang an audit on an isolated network. Before such a file is loaded, the
+ * system id of its DOCTYPE is replaced by a local URL: a DTD of the same
+ * name from the Checkstyle jar, else a copy in the DTD cache, else the
+ * latest bundled DTD for its root element while the DTD is fetched into
+ * the cache in the background for the next load. Each resolution is
+ * recorded as a flight event, which shows its cost.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+final class DtdResolver
+{
+    /** public ids that Checkstyle resolves itself */
+    private static final Set<String> CHECKSTYLE_PUBLIC_IDS =
+        new HashSet<String>(Arrays.asList(
+            "-//Puppy Crawl//DTD Check Configuration 1.0//EN",
+            "-//Puppy Crawl//DTD Check Configuration 1.1//EN",
+            "-//Puppy Crawl//DTD Check Configuration 1.2//EN",
+            "-//Puppy Crawl//DTD Check Configuration 1.3//EN",
+            "-//Puppy Crawl//DTD Suppressions 1.0//EN",
+            "-//Puppy Crawl//DTD Suppressions 1.1//EN"));
+
+    /** DOCTYPE with a system id, in the prolog of a file */
+    private static final Pattern DOCTYPE = Pattern.compile(
+        "<!DOCTYPE\\s+([\\w.:-]+)\\s+(?:PUBLIC\\s+(\"[^\"]*\"|'[^']*')\\s+"
+        + "|SYSTEM\\s+)(\"[^\"]*\"|'[^']*')");
+
+    /** names of the DTDs in the Checkstyle jar */
+    private static final Pattern DTD_NAME =
+        Pattern.compile("[a-z]+(_[a-z0-9]+)*\\.dtd");
+
+    /** bytes of a file searched for its DOCTYPE */
+    private static final int PROLOG_SIZE = 8192;
+
+    /** time to wait for a DTD from the network (milliseconds) */
+    private static final int FETCH_TIMEOUT = 5000;
+
+    /** bundled DTD of configurations whose DTD is not available */
+    private static final String CONFIGURATION_DTD = "configuration_1_3.dtd";
+
+    /** bundled DTD of suppressions whose DTD is not available */
+    private static final String SUPPRESSIONS_DTD = "suppressions_1_1.dtd";
+
+    /** root element of suppressions files */
+    private static final String SUPPRESSIONS_ROOT = "suppressions";
+
+    /** system ids of the DTDs being fetched */
+    private static final Set<String> FETCHING =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** thread of the fetches */
+    private static final ExecutorService FETCHER =
+        Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable aRunnable)
+            {
+                final Thread result =
+                    new Thread(aRunnable, "Checkstyle DTD fetch");
+                result.setDaemon(true);
+                result.setPriority(Thread.MIN_PRIORITY);
+                return result;
+            }
+        });
+
+    /**
+     * Prevent users from constructing DtdResolver objects.
+     */
+    private DtdResolver()
+    {
+    }
+
+    /**
+     * Reads a configuration file, resolving its DTD locally.
+     * @param aStream the file, closed when read.
+     * @return the file, with a local system id if needed.
+     * @throws IOException if the file cannot be read.
+     */
+    static InputStream localize(InputStream aStream)
+        throws IOException
+    {
+        return new ByteArrayInputStream(
+            localize(BlueJChecker.readAll(aStream)));
+    }
+
+    /**
+     * Resolves the DTD of the contents of a file locally.
+     * @param aContents the contents of the file.
+     * @return the contents with a local system id, or aContents if the
+     * DTD is already local or is resolved by Checkstyle.
+     */
+    static byte[] localize(byte[] aContents)
+    {
+        // ISO-8859-1 maps each byte to one char and back unchanged
+        final String prolog = new String(aContents, 0,
+            Math.min(aContents.length, PROLOG_SIZE),
+            StandardCharsets.ISO_8859_1);
+        final Matcher matcher = DOCTYPE.matcher(prolog);
+        if (!matcher.find()) {
+            return aContents;
+        }
+        final String publicId = unquote(matcher.group(2));
+        final String systemId = unquote(matcher.group(3));
+        if (CHECKSTYLE_PUBLIC_IDS.contains(publicId) || !isRemote(systemId)) {
+            return aContents;
+        }
+        final FlightEvents.Event event = FlightEvents.DTD_RESOLVE.begin();
+        final String[] resolved = resolve(systemId, matcher.group(1));
+        if (event != null) {
+            event.commit(String.valueOf(publicId), systemId, resolved[1]);
+        }
+        if (resolved[0] == null) {
+            return aContents;
+        }
+        final String text = new String(aContents, StandardCharsets.ISO_8859_1);
+        return (text.substring(0, matcher.start(3)) + '"' + resolved[0] + '"'
+            + text.substring(matcher.end(3)))
+            .getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns a suppressions file whose DTD resolves locally.
+     * @param aFileName the name of the suppressions file.
+     * @return the name of a local copy of the file with a local system id,
+     * or aFileName if the file needs no copy or it cannot be made.
+     */
+    static String localizeFile(String aFileName)
+    {
+        final File file = new File(aFileName);
+        final File dir = getCacheDir();
+        if (!file.isFile() || dir == null) {
+            return aFileName;
+        }
+        try {
+            final byte[] contents =
+                BlueJChecker.readAll(new FileInputStream(file));
+            final byte[] localized = localize(contents);
+            if (localized == contents) {
+                return aFileName;
+            }
+            final File copy = new File(dir, "suppressions-"
+                + Integer.toHexString(file.getAbsolutePath().hashCode())
+                + ".xml");
+            Files.write(copy.toPath(), localized);
+            return copy.getPath();
+        }
+        catch (IOException e) {
+            // Checkstyle reports the file if it cannot be read either
+            return aFileName;
+        }
+    }
+
+    /**
+     * Finds a local URL of a DTD.
+     * @param aSystemId the remote system id of the DTD.
+     * @param aRoot the root element of the document.
+     * @return the local URL, or null if there is none, and where it was
+     * found: "bundled", "cache" or "fallback".
+     */
+    private static String[] resolve(String aSystemId, String aRoot)
+    {
+        final String name = aSystemId.substring(aSystemId.lastIndexOf('/') + 1);
+        String result = getBundled(name);
+        if (result != null) {
+            return new String[] {result, "bundled"};
+        }
+        final File cached = getCacheFile(aSystemId);
+        if (cached != null && cached.isFile()) {
+            return new String[] {cached.toURI().toASCIIString(), "cache"};
+        }
+        if (cached != null) {
+            fetch(aSystemId, cached);
+        }
+        result = getBundled(SUPPRESSIONS_ROOT.equals(aRoot)
+            ? SUPPRESSIONS_DTD : CONFIGURATION_DTD);
+        return new String[] {result, "fallback"};
+    }
+
+    /**
+     * Returns the URL of a DTD in the Checkstyle jar.
+     * @param aName the file name of the DTD.
+     * @return the URL, or null if there is no such DTD.
+     */
+    private static String getBundled(String aName)
+    {
+        if (!DTD_NAME.matcher(aName).matches()) {
+            return null;
+        }
+        final URL url = ConfigurationLoader.class.getResource(aName);
+        if (url == null) {
+            return null;
+        }
+        try {
+            return url.toURI().toASCIIString();
+        }
+        catch (URISyntaxException e) {
+            return url.toExternalForm();
+        }
+    }
+
+    /**
+     * Fetches a DTD into the cache in the background.
+     * @param aSystemId the system id of the DTD.
+     * @param aFile the cache file.
+     */
+    private static void fetch(final String aSystemId, final File aFile)
+    {
+        if (!FETCHING.add(aSystemId)) {
+            return;
+        }
+        FETCHER.execute(new Runnable()
+        {
+            public void run()
+            {
+                try {
+                    final URLConnection connection =
+                        new URL(aSystemId).openConnection();
+                    connection.setConnectTimeout(FETCH_TIMEOUT);
+                    connection.setReadTimeout(FETCH_TIMEOUT);
+                    final byte[] dtd =
+                        BlueJChecker.readAll(connection.getInputStream());
+                    final File temp = new File(aFile.getPath() + ".tmp");
+                    Files.write(temp.toPath(), dtd);
+                    Files.move(temp.toPath(), aFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+                catch (IOException e) {
+                    // offline, the fallback DTD is used again next time
+                    return;
+                }
+                finally {
+                    FETCHING.remove(aSystemId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the cache file of a DTD.
+     * @param aSystemId the system id of the DTD.
+     * @return the file, or null if there is no cache directory.
+     */
+    private static File getCacheFile(String aSystemId)
+    {
+        final File dir = getCacheDir();
+        if (dir == null) {
+            return null;
+        }
+        final String name = aSystemId.substring(aSystemId.lastIndexOf('/') + 1)
+            .replaceAll("[^\\w.-]", "_");
+        return new File(dir,
+            Integer.toHexString(aSystemId.hashCode()) + "-" + name);
+    }
+
+    /**
+     * Returns the DTD cache directory, creating it if needed.
+     * @return the directory, or null if it cannot be created.
+     */
+    private static File getCacheDir()
+    {
+        final File result = new File(System.getProperty("user.home"),
+            ".checkstyle4bluej" + File.separator + "dtd");
+        if (!result.isDirectory() && !result.mkdirs()) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Determines whether a system id refers to the network.
+     * @param aSystemId the system id.
+     * @return true if the system id is a URL of a network protocol.
+     */
+    private static boolean isRemote(String aSystemId)
+    {
+        final List<String> protocols = Arrays.asList("http", "https", "ftp");
+        final int colon = aSystemId.indexOf(':');
+        return colon > 0
+            && protocols.contains(aSystemId.substring(0, colon).toLowerCase());
+    }
+
+    /**
+     * Removes the quotes of a literal.
+     * @param aLiteral the quoted literal, or null.
+     * @return the literal without quotes, or null.
+     */
+    private static String unquote(String aLiteral)
+    {
+        if (aLiteral == null) {
+            return null;
+        }
+        return aLiteral.substring(1, aLiteral.length() - 1);
+    }
+}
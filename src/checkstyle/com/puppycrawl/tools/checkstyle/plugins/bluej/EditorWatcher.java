@@ -0,0 +1,236 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import bluej.extensions.BClass;
+import bluej.extensions.editor.Editor;
+import bluej.extensions.editor.TextLocation;
+
+/**
+ * Listener for the live audit timer. On each tick, it reads the text of
+ * the editor of the selected class; once the text has stayed the same for
+ * a tick, it audits the text in memory on a background thread and merges
+ * the results of that class into the view, before the text is saved.
+ * Only the fast tier of the configuration is run, see {@link AuditTiers}.
+ * A live audit whose text has been changed again before it finishes is
+ * stale and its results are not shown. Unsaved text does not advance the
+ * generation of the file, see {@link FileGenerations}, so audits of the
+ * saved files go on.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.4
+ */
+public class EditorWatcher implements ActionListener
+{
+    /** file of the text read at the previous tick, or null */
+    private File mFile;
+
+    /** text read at the previous tick, or null */
+    private String mText;
+
+    /** text of mFile that was last audited, or null */
+    private String mAuditedText;
+
+    /** number of changes of the text, counted on the event-dispatch thread */
+    private volatile long mEdits;
+
+    /** most recent text waiting to be audited, or null */
+    private final AtomicReference<Source> mPending =
+        new AtomicReference<Source>();
+
+    /** thread of the live audits */
+    private final ExecutorService mWorker =
+        Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable aRunnable)
+            {
+                final Thread result =
+                    new Thread(aRunnable, "Checkstyle live audit");
+                result.setDaemon(true);
+                return result;
+            }
+        });
+
+    /** checker of the live audits, used on the worker thread only */
+    private BlueJChecker mChecker;
+
+    /**
+     * preferences that mChecker was created with, used on the worker
+     * thread only
+     */
+    private String mCheckerSettings;
+
+    /** @see java.awt.event.ActionListener */
+    public void actionPerformed(ActionEvent aEvent)
+    {
+        final BClass selected = BlueJManager.getInstance().getSelectedClass();
+        File file = null;
+        String text = null;
+        try {
+            final Editor editor =
+                (selected == null) ? null : selected.getEditor();
+            if (editor != null && editor.isVisible()) {
+                file = selected.getJavaFile().getAbsoluteFile();
+                text = editor.getText(new TextLocation(0, 0),
+                    editor.getTextLocationFromOffset(editor.getTextLength()));
+            }
+        }
+        catch (Exception e) {
+            // the class has gone, nothing to audit
+            file = null;
+        }
+        if (file == null || !file.equals(mFile)) {
+            mFile = file;
+            mText = text;
+            mAuditedText = null;
+            return;
+        }
+        if (!text.equals(mText)) {
+            // still being edited
+            mText = text;
+            mEdits++;
+            return;
+        }
+        if (!text.equals(mAuditedText)) {
+            mAuditedText = text;
+            submit(new Source(file, text, mEdits));
+        }
+    }
+
+    /**
+     * Audits a text on the worker thread, unless a later text arrives
+     * first.
+     * @param aSource the file and its text.
+     */
+    private void submit(Source aSource)
+    {
+        if (mPending.getAndSet(aSource) != null) {
+            // the worker has not taken the earlier text yet
+            return;
+        }
+        mWorker.execute(new Runnable()
+        {
+            public void run()
+            {
+                final Source source = mPending.getAndSet(null);
+                if (source != null) {
+                    audit(source);
+                }
+            }
+        });
+    }
+
+    /**
+     * Audits a text and merges the results into the view.
+     * @param aSource the file and its text.
+     */
+    private void audit(Source aSource)
+    {
+        final BlueJManager manager = BlueJManager.getInstance();
+        final String settings = manager.getConfigFileName() + "\n"
+            + manager.getPropsFileName() + "\n"
+            + manager.getBaselineFileName();
+        if (mChecker == null || !settings.equals(mCheckerSettings)) {
+            mChecker = new BlueJChecker();
+            mChecker.setTrigger("editor");
+            mChecker.setFastTier(true);
+            mCheckerSettings = settings;
+        }
+        if (isStale(aSource)) {
+            return;
+        }
+        final Auditor auditor;
+        try {
+            auditor = mChecker.processSources(
+                Collections.singletonMap(aSource.mFile, aSource.mText));
+        }
+        catch (CheckstyleException e) {
+            // the next audit of the saved file reports the error
+            return;
+        }
+        if (!isStale(aSource)) {
+            CheckstyleExtension.getInstance().viewLive(
+                mChecker.getProfileName(), auditor, aSource.mToken);
+        }
+    }
+
+    /**
+     * Determines whether the text of a live audit has changed since it was
+     * read, or the file has been saved and compiled since.
+     * @param aSource the file and its text.
+     * @return true if the results of the text are not to be shown.
+     */
+    private boolean isStale(Source aSource)
+    {
+        return aSource.mEdit != mEdits || aSource.mToken.isSuperseded();
+    }
+
+    /**
+     * Releases the worker thread.
+     */
+    public void shutdown()
+    {
+        mWorker.shutdownNow();
+    }
+
+    /**
+     * A file and the text of its editor.
+     */
+    private static final class Source
+    {
+        /** the file */
+        private final File mFile;
+
+        /** the text */
+        private final String mText;
+
+        /** number of changes of the text seen when the text was read */
+        private final long mEdit;
+
+        /** token of the audit of the text, superseded by a saved file */
+        private final AuditToken mToken = new AuditToken();
+
+        /**
+         * Constructs a <code>Source</code>.
+         * @param aFile the file.
+         * @param aText the text.
+         * @param aEdit number of changes of the text seen.
+         */
+        Source(File aFile, String aText, long aEdit)
+        {
+            mFile = aFile;
+            mText = aText;
+            mEdit = aEdit;
+            mToken.fileStarted(aFile);
+        }
+    }
+}
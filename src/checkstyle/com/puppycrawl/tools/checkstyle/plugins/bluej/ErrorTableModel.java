@@ -20,26 +20,76 @@
 
 package com.puppycrawl.tools.checkstyle.plugins.bluej;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import javax.swing.table.AbstractTableModel;
 
 import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
 
 /**
- * Model for error table of AuditFrame.
+ * Model for error table of AuditFrame. The rows can be sorted by any
+ * column; rows with equal values stay in line and column order, so that
+ * sorting by severity, check or message groups the events. The sort keys
+ * of the events of a file are computed once, as primitive ranks, and the
+ * sorted orders of the most recently shown files are cached.
  * @author Rick Giles
  * @version $Id: ErrorTableModel.java,v 1.5 2007/08/19 03:13:52 stedwar2 Exp $
  */
 public class ErrorTableModel extends AbstractTableModel
 {
+    /** index of the line column */
+    public static final int LINE_COLUMN = 0;
+
+    /** index of the column column */
+    public static final int COLUMN_COLUMN = 1;
+
+    /** index of the severity column */
+    public static final int SEVERITY_COLUMN = 2;
 
+    /** index of the check column */
+    public static final int CHECK_COLUMN = 3;
+
+    /** index of the message column */
+    public static final int MESSAGE_COLUMN = 4;
 
     /** names for column headers */
     private static final String[] COLUMN_NAMES =
-        {"Line", "Column", "Error"};
+        {"Line", "Column", "Severity", "Check", "Error"};
+
+    /** classes of the column values */
+    private static final Class<?>[] COLUMN_CLASSES =
+        {Integer.class, Integer.class, String.class, String.class,
+         String.class};
+
+    /** number of files whose sort orders are cached */
+    private static final int CACHE_SIZE = 16;
+
+    /** indexes of the most recently shown files, by key */
+    private final Map<Object, EventIndex> mIndexes =
+        new LinkedHashMap<Object, EventIndex>(CACHE_SIZE, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(
+                Map.Entry<Object, EventIndex> aEldest)
+            {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    /** index of the events reported by the model */
+    private EventIndex mIndex = new EventIndex(new AuditEvent[0]);
+
+    /** indexes of the events in row order */
+    private int[] mOrder = new int[0];
 
+    /** column the rows are sorted by */
+    private int mSortColumn = LINE_COLUMN;
 
-    /** events reported by the model */
-    private AuditEvent[] mEvents = new AuditEvent[0];
+    /** true if the rows are sorted in ascending order */
+    private boolean mAscending = true;
 
     /**
      * Sets the events for the model.
@@ -47,15 +97,81 @@ public class ErrorTableModel extends AbstractTableModel
      */
     public void setEvents(AuditEvent[] aEvents)
     {
-        mEvents = aEvents;
+        setEvents(null, aEvents);
+    }
+
+    /**
+     * Sets the events of a file for the model. The sort keys and orders
+     * of the events are reused if the same events of the file were shown
+     * recently.
+     * @param aKey key of the file, such as its FileAuditor, or null.
+     * @param aEvents events for the model.
+     */
+    public void setEvents(Object aKey, AuditEvent[] aEvents)
+    {
+        EventIndex index = (aKey == null) ? null : mIndexes.get(aKey);
+        if (index == null || !index.isFor(aEvents)) {
+            index = new EventIndex(aEvents);
+            if (aKey != null) {
+                mIndexes.put(aKey, index);
+            }
+        }
+        mIndex = index;
+        mOrder = index.getOrder(mSortColumn, mAscending);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Sorts the rows by a column. Sorting again by the same column
+     * reverses the order.
+     * @param aColumn the column.
+     */
+    public void sortBy(int aColumn)
+    {
+        if (aColumn == mSortColumn) {
+            mAscending = !mAscending;
+        }
+        else {
+            mSortColumn = aColumn;
+            mAscending = true;
+        }
+        mOrder = mIndex.getOrder(mSortColumn, mAscending);
         fireTableDataChanged();
     }
 
+    /**
+     * Returns the column the rows are sorted by.
+     * @return the index of the column.
+     */
+    public int getSortColumn()
+    {
+        return mSortColumn;
+    }
+
+    /**
+     * Tells whether the rows are sorted in ascending order. Ascending
+     * order of severities puts the most severe events first.
+     * @return true if the order is ascending.
+     */
+    public boolean isAscending()
+    {
+        return mAscending;
+    }
+
+    /**
+     * Returns the event shown in a row.
+     * @param aRow the row.
+     * @return the event.
+     */
+    public AuditEvent getEvent(int aRow)
+    {
+        return mIndex.mEvents[mOrder[aRow]];
+    }
 
     /** @see javax.swing.table.TableModel#getRowCount() */
     public int getRowCount()
     {
-        return mEvents.length;
+        return mOrder.length;
     }
 
     /** @see javax.swing.table.TableModel#getColumnCount() */
@@ -70,20 +186,268 @@ public class ErrorTableModel extends AbstractTableModel
         return COLUMN_NAMES[aCol];
     }
 
+    /** @see javax.swing.table.TableModel#getColumnClass(int) */
+    public Class<?> getColumnClass(int aCol)
+    {
+        return COLUMN_CLASSES[aCol];
+    }
 
     /** @see javax.swing.table.TableModel#getValueAt(int, int) */
     public Object getValueAt(int aRow, int aCol)
     {
+        final int event = mOrder[aRow];
         switch (aCol) {
-        case 0:
-            return ("" + mEvents[aRow].getLine());
-        case 1:
-            return "" + mEvents[aRow].getColumn();
-        case 2:
-            return mEvents[aRow].getMessage();
+        case LINE_COLUMN:
+            return Integer.valueOf(mIndex.mLines[event]);
+        case COLUMN_COLUMN:
+            return Integer.valueOf(mIndex.mColumns[event]);
+        case SEVERITY_COLUMN:
+            return mIndex.mSeverityNames[event];
+        case CHECK_COLUMN:
+            return mIndex.mChecks[event];
+        case MESSAGE_COLUMN:
+            return mIndex.mMessages[event];
         default:
             return null;
         }
     }
 
+    /**
+     * The events of a file with their column values, primitive sort keys
+     * and cached sort orders.
+     */
+    private static final class EventIndex
+    {
+        /** the events */
+        private final AuditEvent[] mEvents;
+
+        /** line of each event */
+        private final int[] mLines;
+
+        /** column of each event */
+        private final int[] mColumns;
+
+        /** severity of each event, most severe lowest */
+        private final int[] mSeverities;
+
+        /** severity name of each event */
+        private final String[] mSeverityNames;
+
+        /** check name of each event */
+        private final String[] mChecks;
+
+        /** rank of the check name of each event */
+        private final int[] mCheckRanks;
+
+        /** message of each event */
+        private final String[] mMessages;
+
+        /** rank of the message of each event */
+        private final int[] mMessageRanks;
+
+        /** position of each event in line and column order */
+        private final int[] mPositions;
+
+        /** sorted orders, by column and ascending (0) or descending (1) */
+        private final int[][][] mOrders =
+            new int[COLUMN_NAMES.length][2][];
+
+        /**
+         * Constructs the <code>EventIndex</code> of some events.
+         * @param aEvents the events.
+         */
+        EventIndex(AuditEvent[] aEvents)
+        {
+            mEvents = aEvents;
+            final int count = aEvents.length;
+            mLines = new int[count];
+            mColumns = new int[count];
+            mSeverities = new int[count];
+            mSeverityNames = new String[count];
+            mChecks = new String[count];
+            mMessages = new String[count];
+            final SeverityLevel[] levels = SeverityLevel.values();
+            final Map<String, String> checkNames =
+                new HashMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                final AuditEvent event = aEvents[i];
+                mLines[i] = event.getLine();
+                mColumns[i] = event.getColumn();
+                final SeverityLevel level = event.getSeverityLevel();
+                mSeverities[i] = levels.length - 1 - level.ordinal();
+                mSeverityNames[i] = level.getName();
+                mChecks[i] = getCheckName(event, checkNames);
+                mMessages[i] = String.valueOf(event.getMessage());
+            }
+            mCheckRanks = rank(mChecks);
+            mMessageRanks = rank(mMessages);
+            final int[] byPosition = sort(mLines, mColumns, true);
+            mOrders[LINE_COLUMN][0] = byPosition;
+            mPositions = new int[count];
+            for (int i = 0; i < count; i++) {
+                mPositions[byPosition[i]] = i;
+            }
+        }
+
+        /**
+         * Tells whether this index is for given events.
+         * @param aEvents the events.
+         * @return true if the events are the events of this index.
+         */
+        boolean isFor(AuditEvent[] aEvents)
+        {
+            if (aEvents.length != mEvents.length) {
+                return false;
+            }
+            for (int i = 0; i < aEvents.length; i++) {
+                if (aEvents[i] != mEvents[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the order of the events sorted by a column.
+         * @param aColumn the column.
+         * @param aAscending true for ascending order.
+         * @return the indexes of the events in sorted order.
+         */
+        int[] getOrder(int aColumn, boolean aAscending)
+        {
+            final int direction = aAscending ? 0 : 1;
+            int[] result = mOrders[aColumn][direction];
+            if (result == null) {
+                switch (aColumn) {
+                case LINE_COLUMN:
+                    result = sort(mLines, mColumns, aAscending);
+                    break;
+                case COLUMN_COLUMN:
+                    result = sort(mColumns, mPositions, aAscending);
+                    break;
+                case SEVERITY_COLUMN:
+                    result = sort(mSeverities, mPositions, aAscending);
+                    break;
+                case CHECK_COLUMN:
+                    result = sort(mCheckRanks, mPositions, aAscending);
+                    break;
+                default:
+                    result = sort(mMessageRanks, mPositions, aAscending);
+                    break;
+                }
+                mOrders[aColumn][direction] = result;
+            }
+            return result;
+        }
+
+        /**
+         * Returns the name of the check of an event: its module id, or
+         * the name of its check class without package and suffix.
+         * @param aEvent the event.
+         * @param aNames check names already computed, by class name.
+         * @return the name.
+         */
+        private static String getCheckName(AuditEvent aEvent,
+            Map<String, String> aNames)
+        {
+            if (aEvent.getModuleId() != null) {
+                return aEvent.getModuleId();
+            }
+            final String source = aEvent.getSourceName();
+            if (source == null) {
+                return "";
+            }
+            String result = aNames.get(source);
+            if (result == null) {
+                result = source.substring(source.lastIndexOf('.') + 1);
+                if (result.endsWith("Check") && result.length() > 5) {
+                    result = result.substring(0, result.length() - 5);
+                }
+                aNames.put(source, result);
+            }
+            return result;
+        }
+
+        /**
+         * Ranks strings in their natural order.
+         * @param aValues the strings.
+         * @return the rank of each string; equal strings have equal ranks.
+         */
+        private static int[] rank(String[] aValues)
+        {
+            final String[] sorted = aValues.clone();
+            Arrays.sort(sorted);
+            final int[] result = new int[aValues.length];
+            for (int i = 0; i < aValues.length; i++) {
+                result[i] = Arrays.binarySearch(sorted, aValues[i]);
+            }
+            return result;
+        }
+
+        /**
+         * Sorts indexes by a primary key, ties broken by a secondary key
+         * in ascending order. The sort is a stable merge sort on primitive
+         * keys, so it allocates nothing per comparison.
+         * @param aPrimary the primary key of each index.
+         * @param aSecondary the secondary key of each index.
+         * @param aAscending true to sort the primary key in ascending
+         * order.
+         * @return the sorted indexes.
+         */
+        private static int[] sort(int[] aPrimary, int[] aSecondary,
+            boolean aAscending)
+        {
+            final int count = aPrimary.length;
+            int[] from = new int[count];
+            int[] to = new int[count];
+            for (int i = 0; i < count; i++) {
+                from[i] = i;
+            }
+            final int sign = aAscending ? 1 : -1;
+            for (int width = 1; width < count; width *= 2) {
+                for (int low = 0; low < count; low += 2 * width) {
+                    final int middle = Math.min(low + width, count);
+                    final int high = Math.min(low + 2 * width, count);
+                    int left = low;
+                    int right = middle;
+                    for (int k = low; k < high; k++) {
+                        if (right >= high || (left < middle
+                            && compare(from[left], from[right], aPrimary,
+                                aSecondary, sign) <= 0))
+                        {
+                            to[k] = from[left++];
+                        }
+                        else {
+                            to[k] = from[right++];
+                        }
+                    }
+                }
+                final int[] swap = from;
+                from = to;
+                to = swap;
+            }
+            return from;
+        }
+
+        /**
+         * Compares two indexes by their keys.
+         * @param aFirst the first index.
+         * @param aSecond the second index.
+         * @param aPrimary the primary key of each index.
+         * @param aSecondary the secondary key of each index.
+         * @param aSign 1 for ascending, -1 for descending primary order.
+         * @return a negative number, zero or a positive number as the
+         * first index sorts before, with or after the second.
+         */
+        private static int compare(int aFirst, int aSecond, int[] aPrimary,
+            int[] aSecondary, int aSign)
+        {
+            final int primary =
+                Integer.compare(aPrimary[aFirst], aPrimary[aSecond]);
+            if (primary != 0) {
+                return aSign * primary;
+            }
+            return Integer.compare(aSecondary[aFirst], aSecondary[aSecond]);
+        }
+    }
 }
@@ -0,0 +1,560 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+
+/**
+ * Store for the events of files that do not fit in the working set of an
+ * {@link Auditor}. Each event is written to a memory-mapped temporary file
+ * as a record of fixed width, and each write returns a {@link Record} of
+ * the location of its records, so that reading the events of a file back
+ * costs the decoding of its records. Records are never overwritten, so
+ * the events of a file auditor that has been published stay the same
+ * while a later audit of the file is stored. The heap holds only the
+ * names of the checks and a cache of recent messages. Messages are kept
+ * in a second mapped file and referred to by offset, so that a message
+ * repeated by many events is stored once while it is recent.
+ * <p>
+ * A record that is no longer referenced is dead. Once most records are
+ * dead, the next write first copies the live records and their messages
+ * to new files and moves their <code>Record</code>s there, and the old
+ * files are closed and deleted. {@link #close()} closes and deletes the
+ * files of a store that is no longer written; the mapped segments stay
+ * readable until they are collected.
+ * </p>
+ * <pre>
+ * record of an event, RECORD_SIZE bytes:
+ *   int line, int column, byte severity ordinal, 3 bytes unused,
+ *   int module id (index of the names, -1 if none),
+ *   int check class name (index of the names),
+ *   long message offset, int message length (bytes of UTF-8)
+ * </pre>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.3
+ */
+final class EventStore
+{
+    /** size of the record of an event (bytes) */
+    static final int RECORD_SIZE = 32;
+
+    /**
+     * size of a mapped segment of a file (bytes), a multiple of
+     * RECORD_SIZE so that no record spans two segments
+     */
+    private static final int SEGMENT_SIZE = 1 << 24;
+
+    /** number of recent messages whose offsets are remembered */
+    private static final int MESSAGE_CACHE_SIZE = 1024;
+
+    /** offset of the column in a record */
+    private static final int COLUMN = 4;
+
+    /** offset of the severity in a record */
+    private static final int SEVERITY = 8;
+
+    /** offset of the module id in a record */
+    private static final int MODULE_ID = 12;
+
+    /** offset of the check class name in a record */
+    private static final int SOURCE_NAME = 16;
+
+    /** offset of the message offset in a record */
+    private static final int MESSAGE = 20;
+
+    /** offset of the message length in a record */
+    private static final int MESSAGE_LENGTH = 28;
+
+    /** least number of dead records that are compacted */
+    private static final long MIN_COMPACT_RECORDS = 1 << 16;
+
+    /** the records of the events */
+    private Area mRecords;
+
+    /** the messages of the events */
+    private Area mMessages;
+
+    /** references to the records that have been written */
+    private final Set<RecordRef> mLiveRecords = new HashSet<RecordRef>();
+
+    /** queue of the references to records that are no longer referenced */
+    private final ReferenceQueue<Record> mDeadRecords =
+        new ReferenceQueue<Record>();
+
+    /** number of records in mRecords */
+    private long mRecordCount;
+
+    /** number of dead records in mRecords */
+    private long mDeadRecordCount;
+
+    /** true if the store has been closed */
+    private boolean mClosed;
+
+    /** module ids and check class names, by index */
+    private final List<String> mNames = new ArrayList<String>();
+
+    /** indexes of mNames, by name */
+    private final Map<String, Integer> mNameIndex =
+        new HashMap<String, Integer>();
+
+    /** offset and length of recently stored messages, by message */
+    private final Map<String, long[]> mRecentMessages =
+        new LinkedHashMap<String, long[]>(MESSAGE_CACHE_SIZE, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, long[]> aEldest)
+            {
+                return size() > MESSAGE_CACHE_SIZE;
+            }
+        };
+
+    /**
+     * Constructs an <code>EventStore</code> with new temporary files.
+     * @throws IOException if the files cannot be created.
+     */
+    EventStore()
+        throws IOException
+    {
+        mRecords = new Area("checkstyle-events");
+        mMessages = new Area("checkstyle-messages");
+    }
+
+    /**
+     * Stores the events of a file, compacting the store first if most of
+     * its records are dead.
+     * @param aEvents the events of the file.
+     * @return the location of the records, to read the events back with.
+     * @throws IOException if the events cannot be stored or the store has
+     * been closed.
+     */
+    synchronized Record write(List<AuditEvent> aEvents)
+        throws IOException
+    {
+        if (mClosed) {
+            throw new IOException("The event store is closed");
+        }
+        collectDeadRecords();
+        if (mDeadRecordCount >= MIN_COMPACT_RECORDS
+            && mDeadRecordCount * 2 > mRecordCount)
+        {
+            compact();
+        }
+        long first = -1;
+        for (int i = 0; i < aEvents.size(); i++) {
+            final AuditEvent event = aEvents.get(i);
+            final long[] message =
+                putMessage(String.valueOf(event.getMessage()));
+            final long offset = mRecords.allocate(RECORD_SIZE);
+            if (first < 0) {
+                first = offset;
+            }
+            final ByteBuffer buffer = mRecords.getSegment(offset);
+            final int position = Area.getPosition(offset);
+            buffer.putInt(position, event.getLine());
+            buffer.putInt(position + COLUMN, event.getColumn());
+            buffer.put(position + SEVERITY,
+                (byte) event.getSeverityLevel().ordinal());
+            buffer.putInt(position + MODULE_ID,
+                (event.getModuleId() == null)
+                    ? -1 : getNameIndex(event.getModuleId()));
+            buffer.putInt(position + SOURCE_NAME,
+                getNameIndex(String.valueOf(event.getSourceName())));
+            buffer.putLong(position + MESSAGE, message[0]);
+            buffer.putInt(position + MESSAGE_LENGTH, (int) message[1]);
+        }
+        final Record result = new Record(first, aEvents.size());
+        mLiveRecords.add(new RecordRef(result, mDeadRecords));
+        mRecordCount += aEvents.size();
+        return result;
+    }
+
+    /**
+     * Reads the stored events of a file.
+     * @param aRecord the location of the records, as returned by
+     * {@link #write(List)}.
+     * @param aFileName the name of the file.
+     * @param aSource source of the events.
+     * @return the events of the file.
+     */
+    synchronized List<AuditEvent> read(Record aRecord, String aFileName,
+        Object aSource)
+    {
+        final List<AuditEvent> result = new ArrayList<AuditEvent>();
+        // records of one write are contiguous, as SEGMENT_SIZE is a
+        // multiple of RECORD_SIZE
+        for (int i = 0; i < aRecord.mCount; i++) {
+            final long offset = aRecord.mFirst + (long) i * RECORD_SIZE;
+            final ByteBuffer buffer = mRecords.getSegment(offset);
+            final int position = Area.getPosition(offset);
+            final int moduleId = buffer.getInt(position + MODULE_ID);
+            result.add(AuditClient.newEvent(aSource, aFileName,
+                buffer.getInt(position),
+                buffer.getInt(position + COLUMN),
+                buffer.get(position + SEVERITY),
+                (moduleId < 0) ? null : mNames.get(moduleId),
+                mNames.get(buffer.getInt(position + SOURCE_NAME)),
+                getMessage(buffer.getLong(position + MESSAGE),
+                    buffer.getInt(position + MESSAGE_LENGTH))));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of records in this store. Dead records are
+     * counted until the store is compacted.
+     * @return the number of records.
+     */
+    synchronized long getRecordCount()
+    {
+        return mRecordCount;
+    }
+
+    /**
+     * Closes and deletes the files of this store. Events that have been
+     * stored can still be read, but no more can be written.
+     */
+    synchronized void close()
+    {
+        if (!mClosed) {
+            mClosed = true;
+            mLiveRecords.clear();
+            mRecentMessages.clear();
+            mRecords.close();
+            mMessages.close();
+        }
+    }
+
+    /**
+     * Counts the records that are no longer referenced as dead.
+     */
+    private void collectDeadRecords()
+    {
+        RecordRef ref = (RecordRef) mDeadRecords.poll();
+        while (ref != null) {
+            if (mLiveRecords.remove(ref)) {
+                mDeadRecordCount += ref.mCount;
+            }
+            ref = (RecordRef) mDeadRecords.poll();
+        }
+    }
+
+    /**
+     * Copies the live records and their messages to new files, moves
+     * their <code>Record</code>s there, and closes the old files.
+     * @throws IOException if the new files cannot be written.
+     */
+    private void compact()
+        throws IOException
+    {
+        final Area oldRecords = mRecords;
+        final Area oldMessages = mMessages;
+        final Area records = new Area("checkstyle-events");
+        final Area messages = new Area("checkstyle-messages");
+        // new offset and length of each copied message, by old offset
+        final Map<Long, long[]> copied = new HashMap<Long, long[]>();
+        final Map<Record, Long> moved = new HashMap<Record, Long>();
+        long count = 0;
+        try {
+            for (RecordRef ref : mLiveRecords) {
+                final Record record = ref.get();
+                if (record == null) {
+                    // collected since, counted by the next write
+                    continue;
+                }
+                long first = -1;
+                for (int i = 0; i < record.mCount; i++) {
+                    final long from = record.mFirst + (long) i * RECORD_SIZE;
+                    final ByteBuffer source = oldRecords.getSegment(from);
+                    final int fromPosition = Area.getPosition(from);
+                    final long to = records.allocate(RECORD_SIZE);
+                    if (first < 0) {
+                        first = to;
+                    }
+                    final ByteBuffer target = records.getSegment(to);
+                    final int toPosition = Area.getPosition(to);
+                    for (int j = 0; j < MESSAGE; j += 4) {
+                        target.putInt(toPosition + j,
+                            source.getInt(fromPosition + j));
+                    }
+                    final long message = source.getLong(fromPosition + MESSAGE);
+                    long[] location = copied.get(message);
+                    if (location == null) {
+                        final byte[] bytes = new byte[source.getInt(
+                            fromPosition + MESSAGE_LENGTH)];
+                        final ByteBuffer text =
+                            oldMessages.getSegment(message).duplicate();
+                        text.position(Area.getPosition(message));
+                        text.get(bytes);
+                        location = putBytes(messages, bytes);
+                        copied.put(message, location);
+                    }
+                    target.putLong(toPosition + MESSAGE, location[0]);
+                    target.putInt(toPosition + MESSAGE_LENGTH,
+                        (int) location[1]);
+                }
+                moved.put(record, first);
+                count += record.mCount;
+            }
+        }
+        catch (IOException e) {
+            records.close();
+            messages.close();
+            throw e;
+        }
+        for (Map.Entry<Record, Long> entry : moved.entrySet()) {
+            entry.getKey().mFirst = entry.getValue();
+        }
+        mRecords = records;
+        mMessages = messages;
+        mRecordCount = count;
+        mDeadRecordCount = 0;
+        mRecentMessages.clear();
+        oldRecords.close();
+        oldMessages.close();
+    }
+
+    /**
+     * Returns the index of a module id or check class name, adding it to
+     * the names if it is new.
+     * @param aName the name.
+     * @return the index of the name.
+     */
+    private int getNameIndex(String aName)
+    {
+        Integer result = mNameIndex.get(aName);
+        if (result == null) {
+            result = mNames.size();
+            mNames.add(aName);
+            mNameIndex.put(aName, result);
+        }
+        return result;
+    }
+
+    /**
+     * Stores a message in full unless it has been stored recently.
+     * @param aMessage the message.
+     * @return the offset and the length of the stored message.
+     * @throws IOException if the message cannot be stored, or is longer
+     * than a segment.
+     */
+    private long[] putMessage(String aMessage)
+        throws IOException
+    {
+        long[] result = mRecentMessages.get(aMessage);
+        if (result == null) {
+            final byte[] bytes = aMessage.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > SEGMENT_SIZE) {
+                throw new IOException("The message is too long to store");
+            }
+            result = putBytes(mMessages, bytes);
+            mRecentMessages.put(aMessage, result);
+        }
+        return result;
+    }
+
+    /**
+     * Stores the bytes of a message.
+     * @param aArea the messages.
+     * @param aBytes the bytes of the message.
+     * @return the offset and the length of the stored message.
+     * @throws IOException if the message cannot be stored.
+     */
+    private static long[] putBytes(Area aArea, byte[] aBytes)
+        throws IOException
+    {
+        final long offset = aArea.allocate(aBytes.length);
+        final ByteBuffer buffer = aArea.getSegment(offset).duplicate();
+        buffer.position(Area.getPosition(offset));
+        buffer.put(aBytes);
+        return new long[] {offset, aBytes.length};
+    }
+
+    /**
+     * Reads a stored message.
+     * @param aOffset the offset of the message.
+     * @param aLength the length of the message.
+     * @return the message.
+     */
+    private String getMessage(long aOffset, int aLength)
+    {
+        final byte[] bytes = new byte[aLength];
+        final ByteBuffer buffer = mMessages.getSegment(aOffset).duplicate();
+        buffer.position(Area.getPosition(aOffset));
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The location of the records of one write. The location changes when
+     * the store is compacted.
+     */
+    static final class Record
+    {
+        /** offset of the first record, guarded by the store */
+        private long mFirst;
+
+        /** number of records */
+        private final int mCount;
+
+        /**
+         * Constructs a <code>Record</code>.
+         * @param aFirst the offset of the first record.
+         * @param aCount the number of records.
+         */
+        private Record(long aFirst, int aCount)
+        {
+            mFirst = aFirst;
+            mCount = aCount;
+        }
+    }
+
+    /**
+     * A reference to a {@link Record} that is queued once the record is
+     * no longer referenced, and remembers its number of records.
+     */
+    private static final class RecordRef extends WeakReference<Record>
+    {
+        /** number of records */
+        private final int mCount;
+
+        /**
+         * Constructs a <code>RecordRef</code>.
+         * @param aRecord the record.
+         * @param aQueue the queue of dead records.
+         */
+        RecordRef(Record aRecord, ReferenceQueue<Record> aQueue)
+        {
+            super(aRecord, aQueue);
+            mCount = aRecord.mCount;
+        }
+    }
+
+    /**
+     * A temporary file that is mapped into memory one segment at a time,
+     * and filled from the start. Nothing that is allocated spans two
+     * segments.
+     */
+    private static final class Area
+    {
+        /** the mapped segments of the file */
+        private final List<MappedByteBuffer> mSegments =
+            new ArrayList<MappedByteBuffer>();
+
+        /** the file */
+        private final File mFile;
+
+        /** the channel of the file */
+        private final FileChannel mChannel;
+
+        /** number of bytes allocated, including the unused ends */
+        private long mSize;
+
+        /**
+         * Creates the temporary file of an <code>Area</code>.
+         * @param aPrefix the prefix of the name of the file.
+         * @throws IOException if the file cannot be created.
+         */
+        Area(String aPrefix)
+            throws IOException
+        {
+            mFile = File.createTempFile(aPrefix, ".tmp");
+            mFile.deleteOnExit();
+            mChannel = new RandomAccessFile(mFile, "rw").getChannel();
+        }
+
+        /**
+         * Closes and deletes the file. The mapped segments stay readable.
+         */
+        void close()
+        {
+            try {
+                mChannel.close();
+            }
+            catch (IOException e) {
+                // the file is deleted on exit
+            }
+            // fails while a segment is mapped on some systems, in which
+            // case the file is deleted on exit
+            mFile.delete();
+        }
+
+        /**
+         * Allocates bytes at the end of the file.
+         * @param aLength the number of bytes, at most SEGMENT_SIZE.
+         * @return the offset of the bytes in the file.
+         * @throws IOException if the file cannot grow.
+         */
+        long allocate(int aLength)
+            throws IOException
+        {
+            final int position = getPosition(mSize);
+            if (position + aLength > SEGMENT_SIZE) {
+                mSize += SEGMENT_SIZE - position;
+            }
+            final long result = mSize;
+            final int segment = (int) (result / SEGMENT_SIZE);
+            if (segment == mSegments.size()) {
+                mSegments.add(mChannel.map(FileChannel.MapMode.READ_WRITE,
+                    (long) segment * SEGMENT_SIZE, SEGMENT_SIZE));
+            }
+            mSize = result + aLength;
+            return result;
+        }
+
+        /**
+         * Returns the segment that holds an offset.
+         * @param aOffset the offset in the file.
+         * @return the segment.
+         */
+        ByteBuffer getSegment(long aOffset)
+        {
+            return mSegments.get((int) (aOffset / SEGMENT_SIZE));
+        }
+
+        /**
+         * Returns the position of an offset in its segment.
+         * @param aOffset the offset in the file.
+         * @return the position in the segment.
+         */
+        static int getPosition(long aOffset)
+        {
+            return (int) (aOffset % SEGMENT_SIZE);
+        }
+    }
+}
@@ -20,24 +20,71 @@
 
 package com.puppycrawl.tools.checkstyle.plugins.bluej;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
 
 /**
- * Holds audit events for one file.
+ * Holds audit events for one file. A file auditor is frozen once its file
+ * has been audited, see {@link #freeze()}: the results of a file are
+ * shared by the snapshots of the view, see {@link AuditSnapshot}, so later
+ * results of the file go to a new file auditor.
  * @author Rick Giles
  * @version $Id: FileAuditor.java,v 1.4 2007/08/19 03:13:52 stedwar2 Exp $
  */
 public class FileAuditor implements Comparable
 {
+    /** Outcome of the audit of one file. */
+    public enum Status
+    {
+        /** the file was audited completely */
+        AUDITED,
+        /** the audit of the file exceeded its time budget */
+        TIMED_OUT,
+        /** the file was deferred to the background pass for large files */
+        DEFERRED
+    }
+
     /** event that spawned this file auditor */
     private final AuditEvent mAuditEvent;
 
+    /** outcome of the audit of the file */
+    private Status mStatus = Status.AUDITED;
+
+
+    /** events for the file of this file auditor that are in the heap */
+    private final ArrayList<AuditEvent> mEvents = new ArrayList<AuditEvent>();
+
+    /** store of the events that have been spilled, or null */
+    private EventStore mStore;
+
+    /** location of the spilled events in mStore, see EventStore#write */
+    private EventStore.Record mStored;
+
+    /** number of events for the file, whether or not they are kept */
+    private int mEventCount;
 
-    /** events for the file of this file auditor */
-    private final List<AuditEvent> mEvents = new ArrayList<AuditEvent>();
+    /** number of events for the file by check, by severity ordinal */
+    private final Map<String, int[]> mCheckCounts =
+        new TreeMap<String, int[]>();
+
+    /** number of events for the file by severity ordinal */
+    private final int[] mSeverityCounts =
+        new int[SeverityLevel.values().length];
+
+    /** true if only the numbers of events are kept, not the events */
+    private boolean mSummary;
+
+    /** true once the results can no longer change */
+    private volatile boolean mFrozen;
 
     /**
      * Constructs a <code>FileAuditor</code> for a given file.
@@ -48,13 +95,287 @@ public class FileAuditor implements Comparable
         mAuditEvent = aEvt;
     }
 
+    /**
+     * Constructs a <code>FileAuditor</code> for a file that has no
+     * audit events yet, such as a file that timed out or was deferred.
+     * @param aFileName the name of the file.
+     */
+    public FileAuditor(String aFileName)
+    {
+        mAuditEvent = new AuditEvent(this, aFileName);
+    }
+
+    /**
+     * Constructs a <code>FileAuditor</code> that starts with the results
+     * of another file auditor of the same file, so that a further run of
+     * an audit adds to results that have been frozen. Spilled events are
+     * read back into the heap.
+     * @param aAuditor the file auditor.
+     */
+    FileAuditor(FileAuditor aAuditor)
+    {
+        mAuditEvent = new AuditEvent(this, aAuditor.toString());
+        mStatus = aAuditor.mStatus;
+        mSummary = aAuditor.mSummary;
+        mEvents.addAll(aAuditor.getEvents());
+        mEventCount = aAuditor.mEventCount;
+        addCheckCounts(aAuditor, null);
+        System.arraycopy(aAuditor.mSeverityCounts, 0, mSeverityCounts, 0,
+            mSeverityCounts.length);
+    }
+
+    /**
+     * Freezes the results of this file auditor: its events, numbers of
+     * events, status and storage do not change afterwards, and methods
+     * that would change them fail.
+     */
+    void freeze()
+    {
+        mFrozen = true;
+    }
+
+    /**
+     * Determines whether the results of this file auditor are frozen.
+     * @return true if the results are frozen.
+     */
+    boolean isFrozen()
+    {
+        return mFrozen;
+    }
+
+    /**
+     * Fails if the results of this file auditor are frozen.
+     * @throws IllegalStateException if they are.
+     */
+    private void checkNotFrozen()
+    {
+        if (mFrozen) {
+            throw new IllegalStateException(
+                "The results of " + this + " are frozen");
+        }
+    }
+
+    /**
+     * Returns the outcome of the audit of the file.
+     * @return the outcome of the audit of the file.
+     */
+    public Status getStatus()
+    {
+        return mStatus;
+    }
+
+    /**
+     * Sets the outcome of the audit of the file.
+     * @param aStatus the outcome of the audit of the file.
+     * @throws IllegalStateException if the results are frozen.
+     */
+    public void setStatus(Status aStatus)
+    {
+        checkNotFrozen();
+        mStatus = aStatus;
+    }
+
+    /**
+     * Determines whether this file auditor keeps only the numbers of
+     * events. The events of a summary are materialized on demand by
+     * {@link Auditor#getEvents(FileAuditor)}.
+     * @return true if only the numbers of events are kept.
+     */
+    public boolean isSummary()
+    {
+        return mSummary;
+    }
+
+    /**
+     * Sets whether this file auditor keeps only the numbers of events.
+     * @param aSummary true if only the numbers of events should be kept.
+     * @throws IllegalStateException if the results are frozen.
+     */
+    public void setSummary(boolean aSummary)
+    {
+        checkNotFrozen();
+        mSummary = aSummary;
+    }
+
     /**
      * Notify that an audit error was discovered on a specific file.
      * @param aEvt the event details.
+     * @throws IllegalStateException if the results are frozen.
      */
     public void addError(AuditEvent aEvt)
     {
-        mEvents.add(aEvt);
+        checkNotFrozen();
+        countEvent(aEvt);
+        if (!mSummary) {
+            mEvents.add(aEvt);
+        }
+    }
+
+    /**
+     * Counts an event for the file without keeping it.
+     * @param aEvt the event details.
+     */
+    private void countEvent(AuditEvent aEvt)
+    {
+        mEventCount++;
+        final String check = getCheckName(aEvt);
+        int[] counts = mCheckCounts.get(check);
+        if (counts == null) {
+            counts = new int[mSeverityCounts.length];
+            mCheckCounts.put(check, counts);
+        }
+        counts[aEvt.getSeverityLevel().ordinal()]++;
+        mSeverityCounts[aEvt.getSeverityLevel().ordinal()]++;
+    }
+
+    /**
+     * Adds the numbers of events of another file auditor of the file to
+     * the numbers of this file auditor, without adding the events, for
+     * example to combine summaries.
+     * @param aAuditor the other file auditor.
+     * @param aKeys keys of the modules whose events are not added, see
+     * {@link AuditTiers#getKey(AuditEvent)}, or null to add all events.
+     * @throws IllegalStateException if the results are frozen.
+     */
+    void addCounts(FileAuditor aAuditor, Set<String> aKeys)
+    {
+        checkNotFrozen();
+        final int[] added = addCheckCounts(aAuditor, aKeys);
+        for (int i = 0; i < added.length; i++) {
+            mEventCount += added[i];
+            mSeverityCounts[i] += added[i];
+        }
+    }
+
+    /**
+     * Adds the numbers of events by check of another file auditor to the
+     * numbers of this file auditor.
+     * @param aAuditor the other file auditor.
+     * @param aKeys keys of the modules whose events are not added, or
+     * null to add all events.
+     * @return the numbers of events added, by severity ordinal.
+     */
+    private int[] addCheckCounts(FileAuditor aAuditor, Set<String> aKeys)
+    {
+        final int[] result = new int[mSeverityCounts.length];
+        final Iterator<Map.Entry<String, int[]>> it =
+            aAuditor.mCheckCounts.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, int[]> entry = it.next();
+            if (aKeys != null
+                && AuditTiers.containsCheck(aKeys, entry.getKey()))
+            {
+                continue;
+            }
+            int[] counts = mCheckCounts.get(entry.getKey());
+            if (counts == null) {
+                counts = new int[result.length];
+                mCheckCounts.put(entry.getKey(), counts);
+            }
+            for (int i = 0; i < result.length; i++) {
+                counts[i] += entry.getValue()[i];
+                result[i] += entry.getValue()[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name under which an event is counted: the module id of
+     * the check if it has one, else the class name of the check without
+     * package qualifiers.
+     * @param aEvt the event.
+     * @return the name of the check of the event.
+     */
+    static String getCheckName(AuditEvent aEvt)
+    {
+        if (aEvt.getLocalizedMessage() == null) {
+            return "";
+        }
+        if (aEvt.getModuleId() != null) {
+            return aEvt.getModuleId();
+        }
+        final String source = aEvt.getSourceName();
+        return source.substring(source.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Moves the events of this file auditor from the heap to a store.
+     * {@link #getEvents()} reads them back from the store.
+     * @param aStore the store.
+     * @throws IOException if the events cannot be stored.
+     * @throws IllegalStateException if the results are frozen.
+     */
+    void spill(EventStore aStore)
+        throws IOException
+    {
+        checkNotFrozen();
+        mStored = aStore.write(mEvents);
+        mStore = aStore;
+        mEvents.clear();
+        mEvents.trimToSize();
+    }
+
+    /**
+     * Determines whether the events of this file auditor have been moved
+     * to a store.
+     * @return true if the events have been moved to a store.
+     */
+    boolean isSpilled()
+    {
+        return mStore != null;
+    }
+
+    /**
+     * Returns the number of events of this file auditor that are in the
+     * heap.
+     * @return the number of events in the heap.
+     */
+    int getHeapEventCount()
+    {
+        return mEvents.size();
+    }
+
+    /**
+     * Returns the number of events for the file, whether or not the
+     * events are kept.
+     * @return the number of events.
+     */
+    public int getEventCount()
+    {
+        return mEventCount;
+    }
+
+    /**
+     * Returns the number of events for the file by check, see
+     * {@link #getCheckName(AuditEvent)}.
+     * @return the numbers of events, sorted by check name.
+     */
+    public Map<String, Integer> getCheckCounts()
+    {
+        final Map<String, Integer> result = new TreeMap<String, Integer>();
+        final Iterator<Map.Entry<String, int[]>> it =
+            mCheckCounts.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, int[]> entry = it.next();
+            int count = 0;
+            for (int i = 0; i < entry.getValue().length; i++) {
+                count += entry.getValue()[i];
+            }
+            result.put(entry.getKey(), count);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the number of events for the file of a severity level,
+     * whether or not the events are kept.
+     * @param aLevel the severity level.
+     * @return the number of events.
+     */
+    public int getSeverityCount(SeverityLevel aLevel)
+    {
+        return mSeverityCounts[aLevel.ordinal()];
     }
 
     /**
@@ -66,16 +387,26 @@ public class FileAuditor implements Comparable
         AuditEvent aEvt,
         @SuppressWarnings("unused") Throwable aThrowable)
     {
-        mEvents.add(aEvt);
+        addError(aEvt);
     }
 
     /**
-     * Return the audit events for this file auditor.
+     * Return the audit events for this file auditor. The list is empty
+     * for a summary. Events that have been spilled to a store are read
+     * back from it. The list cannot be changed; it is a view of the events
+     * once they are frozen, else a copy.
      * @return the audit events for this file auditor.
      */
     public List<AuditEvent> getEvents()
     {
-        return mEvents;
+        if (mStore == null) {
+            return Collections.unmodifiableList(mFrozen
+                ? mEvents : new ArrayList<AuditEvent>(mEvents));
+        }
+        final List<AuditEvent> result = new ArrayList<AuditEvent>(
+            mStore.read(mStored, toString(), this));
+        result.addAll(mEvents);
+        return Collections.unmodifiableList(result);
     }
 
     /**
@@ -0,0 +1,132 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe generation numbers of source files. The generation of a
+ * file advances each time the file is known to have changed, for example
+ * when BlueJ starts compiling it. Audit tokens record the generation of
+ * each file they audit, and an audit that has seen an older generation
+ * of a changed file is superseded, see {@link AuditToken#isSuperseded()}.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public final class FileGenerations
+{
+    /** the single instance */
+    private static final FileGenerations INSTANCE = new FileGenerations();
+
+    /** source of generation numbers, increasing over all files */
+    private final AtomicLong mCounter = new AtomicLong();
+
+    /** current generation of each changed file, by absolute file */
+    private final Map<File, Long> mGenerations =
+        new ConcurrentHashMap<File, Long>();
+
+    /** tokens of audits that may be in progress */
+    private final Map<AuditToken, Boolean> mTokens =
+        Collections.synchronizedMap(new WeakHashMap<AuditToken, Boolean>());
+
+    /**
+     * Constructs the <code>FileGenerations</code>.
+     */
+    private FileGenerations()
+    {
+    }
+
+    /**
+     * Returns the single instance.
+     * @return the instance.
+     */
+    public static FileGenerations getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the current generation of a file.
+     * @param aFile the file.
+     * @return the generation, 0 if the file has not changed.
+     */
+    public long get(File aFile)
+    {
+        final Long result = mGenerations.get(aFile.getAbsoluteFile());
+        return (result == null) ? 0 : result;
+    }
+
+    /**
+     * Records that a file has changed, superseding the audits that have
+     * seen an older generation of it.
+     * @param aFile the file.
+     * @return the new generation of the file.
+     */
+    public long advance(File aFile)
+    {
+        final File file = aFile.getAbsoluteFile();
+        final long result = mCounter.incrementAndGet();
+        mGenerations.put(file, result);
+        final List<AuditToken> tokens;
+        synchronized (mTokens) {
+            tokens = new ArrayList<AuditToken>(mTokens.keySet());
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            tokens.get(i).fileChanged(file, result);
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the generations of the files of a directory, for example of
+     * a package that has been closed.
+     * @param aDir the directory.
+     */
+    public void evict(File aDir)
+    {
+        final File dir = aDir.getAbsoluteFile();
+        final Iterator<File> it = mGenerations.keySet().iterator();
+        while (it.hasNext()) {
+            if (dir.equals(it.next().getParentFile())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Registers the token of an audit to be told of changed files. Tokens
+     * are held weakly.
+     * @param aToken the token.
+     */
+    void register(AuditToken aToken)
+    {
+        mTokens.put(aToken, Boolean.TRUE);
+    }
+}
@@ -0,0 +1,127 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * The published results of one file, as handed to
+ * {@link AuditResultListener}s in {@link AuditDelta}s. A result is
+ * immutable: it reads the frozen file auditor of the file, see
+ * {@link FileAuditor#freeze()}, and offers none of its methods that
+ * record events.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public final class FileResult
+{
+    /** the frozen file auditor of the file */
+    private final FileAuditor mAuditor;
+
+    /**
+     * Constructs the <code>FileResult</code> of a file auditor, freezing
+     * it if it is not yet frozen.
+     * @param aAuditor the file auditor.
+     */
+    FileResult(FileAuditor aAuditor)
+    {
+        aAuditor.freeze();
+        mAuditor = aAuditor;
+    }
+
+    /**
+     * Returns the name of the file.
+     * @return the name of the file.
+     */
+    public String getFileName()
+    {
+        return mAuditor.toString();
+    }
+
+    /**
+     * Returns the outcome of the audit of the file.
+     * @return the outcome of the audit of the file.
+     */
+    public FileAuditor.Status getStatus()
+    {
+        return mAuditor.getStatus();
+    }
+
+    /**
+     * Determines whether only the numbers of events of the file are kept,
+     * in which case {@link #getEvents()} is empty.
+     * @return true if only the numbers of events are kept.
+     */
+    public boolean isSummary()
+    {
+        return mAuditor.isSummary();
+    }
+
+    /**
+     * Returns the number of events of the file.
+     * @return the number of events.
+     */
+    public int getEventCount()
+    {
+        return mAuditor.getEventCount();
+    }
+
+    /**
+     * Returns the number of events of the file of a severity level.
+     * @param aLevel the severity level.
+     * @return the number of events.
+     */
+    public int getSeverityCount(SeverityLevel aLevel)
+    {
+        return mAuditor.getSeverityCount(aLevel);
+    }
+
+    /**
+     * Returns the number of events of the file by check, see
+     * {@link FileAuditor#getCheckName(AuditEvent)}.
+     * @return the numbers of events, sorted by check name.
+     */
+    public Map<String, Integer> getCheckCounts()
+    {
+        return mAuditor.getCheckCounts();
+    }
+
+    /**
+     * Returns the events of the file.
+     * @return the events, a list that cannot be changed, empty for a
+     * summary.
+     */
+    public List<AuditEvent> getEvents()
+    {
+        return mAuditor.getEvents();
+    }
+
+    /** @see java.lang.Object#toString() */
+    public String toString()
+    {
+        return getFileName();
+    }
+}
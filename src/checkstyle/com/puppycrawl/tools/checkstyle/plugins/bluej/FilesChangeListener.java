@@ -23,6 +23,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -35,6 +37,9 @@ public class FilesChangeListener implements ActionListener
     /** most recent set of files */
     private Set<File> mFiles = new HashSet<File>();
 
+    /** true if a file changed during the last audit, which is then rerun */
+    private boolean mRetry = false;
+
     /** @see java.awt.event.ActionListener */
     public void actionPerformed(ActionEvent aEvent)
     {
@@ -42,12 +47,22 @@ public class FilesChangeListener implements ActionListener
         {
 //          files changed?
             final Set<File> openFiles = BlueJManager.getInstance().getFiles();
-            if (!mFiles.equals(openFiles))
+            if (mRetry || !mFiles.equals(openFiles))
             {
+                advanceChanged(mFiles, openFiles);
                 mFiles = openFiles;
+                mRetry = false;
+                final CheckstyleExtension extension =
+                    CheckstyleExtension.getInstance();
+                final AuditToken token = extension.newAuditToken();
                 final BlueJChecker checker = new BlueJChecker();
-                final Auditor auditor = checker.process(openFiles);
-                CheckstyleExtension.getInstance().viewAudit(auditor);
+                checker.setTrigger("timer");
+                checker.setFastTier(true);
+                final Map<String, Auditor> auditors =
+                    checker.processProfiles(openFiles, token);
+                extension.viewAudit(auditors, token);
+                // a file changed during the audit, audit again
+                mRetry = token.isSuperseded();
             }
         }
         catch (Exception ex)
@@ -56,4 +71,30 @@ public class FilesChangeListener implements ActionListener
         }
     }
 
+    /**
+     * Advances the generations of the files that were opened or closed,
+     * superseding the audits that have seen them, see
+     * {@link FileGenerations}.
+     * @param aOld the previous set of files.
+     * @param aNew the current set of files.
+     */
+    private static void advanceChanged(Set<File> aOld, Set<File> aNew)
+    {
+        final FileGenerations generations = FileGenerations.getInstance();
+        final Iterator<File> closed = aOld.iterator();
+        while (closed.hasNext()) {
+            final File file = closed.next();
+            if (!aNew.contains(file)) {
+                generations.advance(file);
+            }
+        }
+        final Iterator<File> opened = aNew.iterator();
+        while (opened.hasNext()) {
+            final File file = opened.next();
+            if (!aOld.contains(file)) {
+                generations.advance(file);
+            }
+        }
+    }
+
 }
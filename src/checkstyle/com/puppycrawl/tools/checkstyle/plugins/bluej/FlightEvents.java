@@ -0,0 +1,371 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Java Flight Recorder events of the audit pipeline. The events are
+ * defined at run time through <code>jdk.jfr.EventFactory</code>, so the
+ * extension still compiles for and runs on Java 8; where the recorder is
+ * not available, no events are emitted. An event costs little more than a
+ * check of whether a recording has enabled it. Events about files carry
+ * the project of the file, the topmost directory of its BlueJ package
+ * directories, so that recordings can be filtered per project.
+ * <pre>
+ * java -XX:StartFlightRecording=filename=audit.jfr ...
+ * jfr print --categories Checkstyle audit.jfr
+ * </pre>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.2
+ */
+final class FlightEvents
+{
+    /** prefix of the event names */
+    private static final String PREFIX = "checkstyle4bluej.";
+
+    /** category of the events */
+    private static final String[] CATEGORY = {"Checkstyle"};
+
+    /** file that marks a BlueJ package directory */
+    private static final String PACKAGE_FILE = "package.bluej";
+
+    /** jdk.jfr.EventFactory.newEvent, or null without the recorder */
+    private static final Method NEW_EVENT;
+
+    /** jdk.jfr.EventFactory.getEventType */
+    private static final Method GET_EVENT_TYPE;
+
+    /** jdk.jfr.EventType.isEnabled */
+    private static final Method IS_ENABLED;
+
+    /** jdk.jfr.Event.begin */
+    private static final Method BEGIN;
+
+    /** jdk.jfr.Event.end */
+    private static final Method END;
+
+    /** jdk.jfr.Event.set */
+    private static final Method SET;
+
+    /** jdk.jfr.Event.commit */
+    private static final Method COMMIT;
+
+    static {
+        Method newEvent = null;
+        Method getEventType = null;
+        Method isEnabled = null;
+        Method begin = null;
+        Method end = null;
+        Method set = null;
+        Method commit = null;
+        if (!"false".equals(System.getProperty("checkstyle.jfr"))) {
+            try {
+                final Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+                final Class<?> event = Class.forName("jdk.jfr.Event");
+                newEvent = factory.getMethod("newEvent");
+                getEventType = factory.getMethod("getEventType");
+                isEnabled = Class.forName("jdk.jfr.EventType")
+                    .getMethod("isEnabled");
+                begin = event.getMethod("begin");
+                end = event.getMethod("end");
+                set = event.getMethod("set", int.class, Object.class);
+                commit = event.getMethod("commit");
+            }
+            catch (ClassNotFoundException e) {
+                newEvent = null;
+            }
+            catch (NoSuchMethodException e) {
+                newEvent = null;
+            }
+            catch (LinkageError e) {
+                newEvent = null;
+            }
+        }
+        NEW_EVENT = newEvent;
+        GET_EVENT_TYPE = getEventType;
+        IS_ENABLED = isEnabled;
+        BEGIN = begin;
+        END = end;
+        SET = set;
+        COMMIT = commit;
+    }
+
+    /** an audit of a set of files, from start to end */
+    static final Type AUDIT = new Type("Audit", "Audit",
+        "Audit of a set of files",
+        new String[] {
+            "project", "trigger", "fileCount", "profileCount", "cancelled",
+        },
+        new Class<?>[] {
+            String.class, String.class, int.class, int.class, boolean.class,
+        });
+
+    /** loading of a configuration file */
+    static final Type CONFIG_LOAD = new Type("ConfigLoad",
+        "Configuration Load", "Loading of a Checkstyle configuration",
+        new String[] {"location"},
+        new Class<?>[] {String.class});
+
+    /** local resolution of the DTD of a configuration or suppressions file */
+    static final Type DTD_RESOLVE = new Type("DtdResolve",
+        "DTD Resolution",
+        "Resolution of a DTD without the network: bundled, cache or fallback",
+        new String[] {"publicId", "systemId", "source"},
+        new Class<?>[] {String.class, String.class, String.class});
+
+    /** lookup of a file in the syntax tree cache */
+    static final Type CACHE_LOOKUP = new Type("AstCacheLookup",
+        "Syntax Tree Cache Lookup",
+        "Lookup of the syntax tree of a file in the AstCache",
+        new String[] {"project", "file", "hit"},
+        new Class<?>[] {String.class, String.class, boolean.class});
+
+    /** parsing of a file */
+    static final Type PARSE = new Type("Parse", "File Parse",
+        "Lexing and parsing of a file",
+        new String[] {"project", "file", "lineCount"},
+        new Class<?>[] {String.class, String.class, int.class});
+
+    /** running of the checks of a syntax tree on a file */
+    static final Type CHECK = new Type("Check", "File Check",
+        "Walk of the checks over the syntax tree of a file",
+        new String[] {"project", "file", "messageCount"},
+        new Class<?>[] {String.class, String.class, int.class});
+
+    /** pause of a background audit, see AuditThrottle */
+    static final Type THROTTLE = new Type("Throttle", "Audit Throttle",
+        "Pause of a background audit for its CPU budget, the load of the"
+            + " machine or a compilation",
+        new String[] {"reason", "cpuBudget"},
+        new Class<?>[] {String.class, int.class});
+
+    /** handoff of audit results to the event-dispatch thread */
+    static final Type VIEW_HANDOFF = new Type("ViewHandoff",
+        "Audit View Handoff",
+        "Wait of audit results for the event-dispatch thread",
+        new String[] {"auditSequence", "dropped"},
+        new Class<?>[] {long.class, boolean.class});
+
+    /** update of the audit window with the results of a profile */
+    static final Type FRAME_UPDATE = new Type("FrameUpdate",
+        "Audit Window Update",
+        "Update of the audit window with the results of a profile",
+        new String[] {"fileCount", "eventCount"},
+        new Class<?>[] {int.class, int.class});
+
+    /** project of each directory, by directory */
+    private static final Map<File, String> PROJECTS =
+        new ConcurrentHashMap<File, String>();
+
+    /**
+     * Prevent users from constructing FlightEvents objects.
+     */
+    private FlightEvents()
+    {
+    }
+
+    /**
+     * Returns the project of a file: the topmost of the BlueJ package
+     * directories that contain it, or its directory if it is not in a
+     * BlueJ package.
+     * @param aFile the file.
+     * @return the project directory.
+     */
+    static String getProject(File aFile)
+    {
+        final File dir = aFile.getAbsoluteFile().getParentFile();
+        if (dir == null) {
+            return "";
+        }
+        String result = PROJECTS.get(dir);
+        if (result == null) {
+            File project = dir;
+            File parent = dir.getParentFile();
+            while (parent != null
+                && new File(parent, PACKAGE_FILE).isFile())
+            {
+                project = parent;
+                parent = parent.getParentFile();
+            }
+            result = project.getPath();
+            PROJECTS.put(dir, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the project of a set of files.
+     * @param aFiles the files.
+     * @return the project of all the files, or the empty string if they
+     * are not all in the same project.
+     */
+    static String getProject(Collection<File> aFiles)
+    {
+        String result = null;
+        final Iterator<File> it = aFiles.iterator();
+        while (it.hasNext()) {
+            final String project = getProject(it.next());
+            if (result == null) {
+                result = project;
+            }
+            else if (!result.equals(project)) {
+                return "";
+            }
+        }
+        return (result == null) ? "" : result;
+    }
+
+    /**
+     * A type of event.
+     */
+    static final class Type
+    {
+        /** the event factory, or null if there is no recorder */
+        private final Object mFactory;
+
+        /** the event type of the factory */
+        private final Object mEventType;
+
+        /**
+         * Defines a type of event.
+         * @param aName name of the type, without prefix.
+         * @param aLabel label of the type.
+         * @param aDescription description of the type.
+         * @param aFields names of the fields.
+         * @param aTypes types of the fields.
+         */
+        Type(String aName, String aLabel, String aDescription,
+            String[] aFields, Class<?>[] aTypes)
+        {
+            Object factory = null;
+            Object eventType = null;
+            if (NEW_EVENT != null) {
+                try {
+                    final Class<?> element =
+                        Class.forName("jdk.jfr.AnnotationElement");
+                    final Constructor<?> annotation =
+                        element.getConstructor(Class.class, Object.class);
+                    final List<Object> annotations = new ArrayList<Object>();
+                    annotations.add(annotation.newInstance(
+                        Class.forName("jdk.jfr.Name"), PREFIX + aName));
+                    annotations.add(annotation.newInstance(
+                        Class.forName("jdk.jfr.Label"), aLabel));
+                    annotations.add(annotation.newInstance(
+                        Class.forName("jdk.jfr.Description"), aDescription));
+                    annotations.add(annotation.newInstance(
+                        Class.forName("jdk.jfr.Category"), CATEGORY));
+                    annotations.add(annotation.newInstance(
+                        Class.forName("jdk.jfr.StackTrace"), Boolean.FALSE));
+                    final Constructor<?> value =
+                        Class.forName("jdk.jfr.ValueDescriptor")
+                            .getConstructor(Class.class, String.class);
+                    final List<Object> fields = new ArrayList<Object>();
+                    for (int i = 0; i < aFields.length; i++) {
+                        fields.add(value.newInstance(aTypes[i], aFields[i]));
+                    }
+                    factory = Class.forName("jdk.jfr.EventFactory")
+                        .getMethod("create", List.class, List.class)
+                        .invoke(null, annotations, fields);
+                    eventType = GET_EVENT_TYPE.invoke(factory);
+                }
+                catch (Exception e) {
+                    // the recorder refused the type, no events
+                    factory = null;
+                }
+                catch (LinkageError e) {
+                    factory = null;
+                }
+            }
+            mFactory = factory;
+            mEventType = eventType;
+        }
+
+        /**
+         * Starts an event of this type, if a recording has enabled the
+         * type.
+         * @return the started event, or null if no event is recorded.
+         */
+        Event begin()
+        {
+            if (mFactory == null) {
+                return null;
+            }
+            try {
+                if (!((Boolean) IS_ENABLED.invoke(mEventType))) {
+                    return null;
+                }
+                final Object event = NEW_EVENT.invoke(mFactory);
+                BEGIN.invoke(event);
+                return new Event(event);
+            }
+            catch (Exception e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * An event that has been started.
+     */
+    static final class Event
+    {
+        /** the jdk.jfr.Event */
+        private final Object mEvent;
+
+        /**
+         * Constructs an <code>Event</code>.
+         * @param aEvent the jdk.jfr.Event.
+         */
+        Event(Object aEvent)
+        {
+            mEvent = aEvent;
+        }
+
+        /**
+         * Ends the event and writes it to the recordings.
+         * @param aValues values of the fields, in the order of the type.
+         */
+        void commit(Object... aValues)
+        {
+            try {
+                END.invoke(mEvent);
+                for (int i = 0; i < aValues.length; i++) {
+                    SET.invoke(mEvent, i, aValues[i]);
+                }
+                COMMIT.invoke(mEvent);
+            }
+            catch (Exception e) {
+                // the event is lost, the audit goes on
+                return;
+            }
+        }
+    }
+}
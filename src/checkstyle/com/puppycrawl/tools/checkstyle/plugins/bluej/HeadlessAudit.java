@@ -0,0 +1,670 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+/**
+ * Audits files outside of BlueJ, streaming the results to a file or to
+ * standard output.
+ * <pre>
+ * java com.puppycrawl.tools.checkstyle.plugins.bluej.HeadlessAudit
+ *     -c config.xml [-p checkstyle.properties] [-f xml|jsonl|sarif]
+ *     [-o output] [-t milliseconds] [-b baseline] [-B new-baseline]
+ *     [-S results] [-g git-ref] file-or-directory...
+ * </pre>
+ * <p>
+ * With <code>-S</code>, the results of the audit are also stored in the
+ * given file, with a hash of the content of each file and, with
+ * <code>-g</code>, the commit checked out. With <code>-g</code>, only the
+ * files that git reports as changed against the given ref, or as
+ * untracked, are audited; the results of the other files are taken from
+ * the stored results of the last run. The ref must therefore resolve to
+ * the commit at which the stored results were made, and a file's stored
+ * results are only taken if its content has the stored hash. Git is run
+ * in the repository of the first file or directory to audit and only
+ * reads the local repository. Files without stored results, and all files
+ * if the configuration, properties, baseline or commit differ, are
+ * audited as well.
+ * </p>
+ * The exit status is 0 if no events of severity error were reported,
+ * 1 if some were, and 2 if the audit could not be run.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.2
+ */
+public final class HeadlessAudit
+{
+    /** exit status for an audit with events of severity error */
+    private static final int STATUS_ERRORS = 1;
+
+    /** exit status for an audit that could not be run */
+    private static final int STATUS_FAILURE = 2;
+
+    /** size of the buffer of the stored results (bytes) */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** usage message */
+    private static final String USAGE =
+        "Usage: HeadlessAudit -c config.xml [-p checkstyle.properties]"
+        + " [-f xml|jsonl|sarif] [-o output] [-t milliseconds]"
+        + " [-b baseline] [-B new-baseline] [-S results] [-g git-ref]"
+        + " file-or-directory...";
+
+    /** location of the configuration file */
+    private String mConfigLocation;
+
+    /** location of the properties file */
+    private String mPropsLocation;
+
+    /** output format, or null to derive it from the output file */
+    private ResultSink.Format mFormat;
+
+    /** output file, or null for standard output */
+    private File mOutputFile;
+
+    /** time budget per file (milliseconds), or -1 for the default */
+    private long mFileTimeBudget = -1;
+
+    /** baseline file, or null for none */
+    private File mBaselineFile;
+
+    /** file to record a new baseline in, or null for none */
+    private File mNewBaselineFile;
+
+    /** file of stored results, or null for none */
+    private File mStoreFile;
+
+    /** git ref to audit the changes against, or null to audit all */
+    private String mGitRef;
+
+    /** directory to run git in, that of the first file to audit */
+    private File mGitDir;
+
+    /** files to audit */
+    private final Set<File> mFiles = new TreeSet<File>();
+
+    /**
+     * Prevent users from constructing HeadlessAudit objects outside main.
+     */
+    private HeadlessAudit()
+    {
+        // options are set by parseArguments
+    }
+
+    /**
+     * Runs a headless audit.
+     * @param aArgs the command line arguments.
+     */
+    public static void main(String[] aArgs)
+    {
+        final HeadlessAudit audit = new HeadlessAudit();
+        int status;
+        try {
+            audit.parseArguments(aArgs);
+            status = audit.run();
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            status = STATUS_FAILURE;
+        }
+        catch (CheckstyleException e) {
+            System.err.println(e.getMessage());
+            status = STATUS_FAILURE;
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
+            status = STATUS_FAILURE;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Parses the command line arguments.
+     * @param aArgs the command line arguments.
+     */
+    private void parseArguments(String[] aArgs)
+    {
+        for (int i = 0; i < aArgs.length; i++) {
+            final String arg = aArgs[i];
+            if (arg.startsWith("-") && arg.length() == 2) {
+                if (i + 1 >= aArgs.length) {
+                    throw new IllegalArgumentException(
+                        "Missing value for " + arg);
+                }
+                final String value = aArgs[++i];
+                parseOption(arg.charAt(1), value);
+            }
+            else {
+                final File file = new File(arg).getAbsoluteFile();
+                if (mGitDir == null) {
+                    mGitDir = file.isDirectory() ? file : file.getParentFile();
+                }
+                addFiles(file);
+            }
+        }
+        if (mConfigLocation == null) {
+            throw new IllegalArgumentException("Missing -c option");
+        }
+        if (mGitRef != null && mStoreFile == null) {
+            throw new IllegalArgumentException("Option -g requires -S");
+        }
+        if (mGitDir == null) {
+            mGitDir = new File("").getAbsoluteFile();
+        }
+    }
+
+    /**
+     * Parses one command line option.
+     * @param aOption the option letter.
+     * @param aValue the value of the option.
+     */
+    private void parseOption(char aOption, String aValue)
+    {
+        switch (aOption) {
+        case 'c':
+            mConfigLocation = aValue;
+            break;
+        case 'p':
+            mPropsLocation = aValue;
+            break;
+        case 'f':
+            try {
+                mFormat = ResultSink.Format.valueOf(aValue.toUpperCase());
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    "Unknown format: " + aValue);
+            }
+            break;
+        case 'o':
+            mOutputFile = new File(aValue);
+            break;
+        case 'b':
+            mBaselineFile = new File(aValue);
+            break;
+        case 'B':
+            mNewBaselineFile = new File(aValue).getAbsoluteFile();
+            break;
+        case 'S':
+            mStoreFile = new File(aValue).getAbsoluteFile();
+            break;
+        case 'g':
+            mGitRef = aValue;
+            break;
+        case 't':
+            try {
+                mFileTimeBudget = Long.parseLong(aValue);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                    "Invalid time budget: " + aValue);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown option -" + aOption);
+        }
+    }
+
+    /**
+     * Adds a Java source file, or the Java source files of a directory
+     * tree, to the files to audit.
+     * @param aFile the file or directory.
+     */
+    private void addFiles(File aFile)
+    {
+        if (aFile.isDirectory()) {
+            final File[] children = aFile.listFiles();
+            if (children != null) {
+                for (int i = 0; i < children.length; i++) {
+                    addFiles(children[i]);
+                }
+            }
+        }
+        else if (aFile.getName().endsWith(".java")) {
+            mFiles.add(aFile.getAbsoluteFile());
+        }
+    }
+
+    /**
+     * Audits the files.
+     * @return the exit status.
+     * @throws CheckstyleException if the audit fails.
+     * @throws IOException if the output cannot be written.
+     */
+    private int run()
+        throws CheckstyleException, IOException
+    {
+        final BlueJChecker checker =
+            new BlueJChecker(mConfigLocation, mPropsLocation);
+        checker.setMaxFileSize(0);
+        checker.setRetainEvents(false);
+        checker.setTrigger("headless");
+        if (mFileTimeBudget >= 0) {
+            checker.setFileTimeBudget(mFileTimeBudget);
+        }
+        Baseline baseline = null;
+        if (mBaselineFile != null) {
+            baseline = Baseline.load(mBaselineFile);
+            checker.setBaseline(baseline);
+        }
+
+        final ResultSink.Format format;
+        if (mFormat != null) {
+            format = mFormat;
+        }
+        else if (mOutputFile != null) {
+            format = ResultSink.Format.forFileName(mOutputFile.getName());
+        }
+        else {
+            format = ResultSink.Format.XML;
+        }
+        final ResultSink sink;
+        if (mOutputFile != null) {
+            sink = ResultSink.open(mOutputFile, format);
+        }
+        else {
+            sink = new ResultSink(
+                Channels.newChannel(new FileOutputStream(FileDescriptor.out)),
+                format);
+        }
+        final List<AuditListener> targets = new ArrayList<AuditListener>();
+        targets.add(sink);
+        Baseline newBaseline = null;
+        if (mNewBaselineFile != null) {
+            newBaseline = new Baseline(mNewBaselineFile.getParentFile());
+            if (baseline != null) {
+                newBaseline.include(baseline);
+            }
+            targets.add(new Baseline.Recorder(newBaseline));
+        }
+
+        final File gitTop = (mGitRef == null) ? null : new File(
+            git(mGitDir, "rev-parse", "--show-toplevel").trim());
+        final Map<String, String> hashes = (mStoreFile == null)
+            ? Collections.<String, String>emptyMap() : hashContents();
+        Set<File> audited = mFiles;
+        final Set<String> reused = new HashSet<String>();
+        if (mGitRef != null) {
+            final Set<File> changed = getChangedFiles(gitTop);
+            final Map<String, String> stored = getStoredFiles(getStoreHeader(
+                resolve(gitTop, mGitRef + "^{commit}")));
+            audited = new TreeSet<File>();
+            for (File file : mFiles) {
+                final String name = file.getAbsolutePath();
+                if (hashes.get(name).equals(stored.get(name))
+                    && !changed.contains(file.getCanonicalFile()))
+                {
+                    reused.add(name);
+                }
+                else {
+                    audited.add(file);
+                }
+            }
+            System.err.println("Auditing " + audited.size() + " of "
+                + mFiles.size() + " files, " + reused.size()
+                + " unchanged since " + mGitRef);
+        }
+        File spool = null;
+        ResultRecords.Writer records = null;
+        DataOutputStream out = null;
+        if (mStoreFile != null) {
+            spool = File.createTempFile(
+                "checkstyle", ".tmp", mStoreFile.getParentFile());
+            out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(spool), BUFFER_SIZE));
+            records = new ResultRecords.Writer(out);
+            records.writeHeader(getStoreHeader((gitTop == null)
+                ? "" : resolve(gitTop, "HEAD")));
+            for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                records.writeContentHash(entry.getKey(), entry.getValue());
+            }
+            targets.add(records);
+        }
+
+        final Merger merger = new Merger(
+            targets, reused.isEmpty() ? null : mStoreFile, reused);
+        checker.addListener(merger);
+        try {
+            checker.process(audited);
+            merger.checkError();
+            if (records != null) {
+                records.finish();
+                out.close();
+                out = null;
+                Files.move(spool.toPath(), mStoreFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+                spool = null;
+            }
+        }
+        finally {
+            sink.close();
+            if (out != null) {
+                out.close();
+            }
+            if (spool != null && !spool.delete()) {
+                spool.deleteOnExit();
+            }
+        }
+        if (newBaseline != null) {
+            newBaseline.save(mNewBaselineFile);
+        }
+        return (sink.getErrorCount() > 0) ? STATUS_ERRORS : 0;
+    }
+
+    /**
+     * Describes the settings and the commit that the stored results
+     * depend on.
+     * @param aCommit the commit, empty if not known.
+     * @return the description.
+     */
+    private String getStoreHeader(String aCommit)
+    {
+        return describe(mConfigLocation) + "\n" + describe(mPropsLocation)
+            + "\n" + describe((mBaselineFile == null) ? null
+                : mBaselineFile.getAbsolutePath())
+            + "\n" + aCommit;
+    }
+
+    /**
+     * Hashes the contents of the files to audit.
+     * @return the SHA-256 hashes in hexadecimal digits, by file name.
+     * @throws IOException if a file cannot be read.
+     */
+    private Map<String, String> hashContents()
+        throws IOException
+    {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final Map<String, String> result = new HashMap<String, String>();
+        for (File file : mFiles) {
+            final byte[] hash =
+                digest.digest(Files.readAllBytes(file.toPath()));
+            final StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (int i = 0; i < hash.length; i++) {
+                hex.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            result.put(file.getAbsolutePath(), hex.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Describes a settings file by its location and modification time.
+     * @param aLocation the location, or null for none.
+     * @return the description.
+     */
+    private static String describe(String aLocation)
+    {
+        if (aLocation == null) {
+            return "";
+        }
+        final File file = new File(aLocation);
+        return file.getAbsolutePath() + " " + file.lastModified();
+    }
+
+    /**
+     * Returns the hashes of the contents of the files in the stored
+     * results, if these were made with the same settings at the same
+     * commit.
+     * @param aHeader description of the current settings and commit.
+     * @return the hashes, by file name, empty if there are no usable
+     * results.
+     * @throws IOException if the stored results cannot be read.
+     */
+    private Map<String, String> getStoredFiles(String aHeader)
+        throws IOException
+    {
+        if (!mStoreFile.isFile() || !ResultRecords.isComplete(mStoreFile)) {
+            System.err.println("No stored results in " + mStoreFile);
+            return Collections.emptyMap();
+        }
+        if (!aHeader.equals(ResultRecords.readHeader(mStoreFile))) {
+            System.err.println("Settings or commit changed since "
+                + mStoreFile);
+            return Collections.emptyMap();
+        }
+        final Map<String, String> result =
+            ResultRecords.readContentHashes(mStoreFile);
+        result.keySet().retainAll(ResultRecords.readFileNames(mStoreFile));
+        return result;
+    }
+
+    /**
+     * Returns the Java source files that git reports as changed against
+     * the ref, including uncommitted changes, or as untracked.
+     * @param aTop the top directory of the repository.
+     * @return the canonical files.
+     * @throws IOException if git cannot be run or fails.
+     */
+    private Set<File> getChangedFiles(File aTop)
+        throws IOException
+    {
+        final List<String> names = new ArrayList<String>();
+        names.addAll(Arrays.asList(git(aTop, "diff", "--name-only", "-z",
+            "--no-renames", mGitRef, "--").split("\0")));
+        names.addAll(Arrays.asList(git(aTop, "ls-files", "--others",
+            "--exclude-standard", "--full-name", "-z").split("\0")));
+        final Set<File> result = new HashSet<File>();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).endsWith(".java")) {
+                result.add(new File(aTop, names.get(i)).getCanonicalFile());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolves a git revision to a commit.
+     * @param aTop the top directory of the repository.
+     * @param aRevision the revision.
+     * @return the name of the commit.
+     * @throws IOException if git cannot be run or the revision is not
+     * known.
+     */
+    private static String resolve(File aTop, String aRevision)
+        throws IOException
+    {
+        return git(aTop, "rev-parse", "--verify", aRevision).trim();
+    }
+
+    /**
+     * Runs git in the repository of a directory.
+     * @param aDir the directory.
+     * @param aArgs the arguments of git.
+     * @return the standard output of git.
+     * @throws IOException if git cannot be run or fails.
+     */
+    private static String git(File aDir, String... aArgs)
+        throws IOException
+    {
+        final List<String> command = new ArrayList<String>();
+        command.add("git");
+        command.add("-C");
+        command.add(aDir.getPath());
+        command.addAll(Arrays.asList(aArgs));
+        final ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        final Process process = builder.start();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final InputStream in = process.getInputStream();
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        }
+        finally {
+            in.close();
+        }
+        final int status;
+        try {
+            status = process.waitFor();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running git", e);
+        }
+        if (status != 0) {
+            throw new IOException("git " + aArgs[0]
+                + " failed with exit status " + status);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Passes the events of an audit on to several listeners. When the
+     * audit starts, the stored results of the unchanged files are passed
+     * on first.
+     */
+    private static final class Merger implements AuditListener
+    {
+        /** the listeners */
+        private final List<AuditListener> mTargets;
+
+        /** file of stored results to pass on, or null for none */
+        private final File mStoreFile;
+
+        /** names of the files to take from the stored results */
+        private final Set<String> mStoredFiles;
+
+        /** failure to read the stored results, if any */
+        private IOException mFailure;
+
+        /**
+         * Constructs a <code>Merger</code>.
+         * @param aTargets the listeners.
+         * @param aStoreFile file of stored results, or null for none.
+         * @param aStoredFiles names of the files to take from the stored
+         * results.
+         */
+        Merger(List<AuditListener> aTargets, File aStoreFile,
+            Set<String> aStoredFiles)
+        {
+            mTargets = aTargets;
+            mStoreFile = aStoreFile;
+            mStoredFiles = aStoredFiles;
+        }
+
+        /**
+         * Throws the failure to read the stored results, if any.
+         * @throws IOException if the stored results could not be read.
+         */
+        void checkError()
+            throws IOException
+        {
+            if (mFailure != null) {
+                throw mFailure;
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditStarted(AuditEvent aEvt)
+        {
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).auditStarted(aEvt);
+            }
+            if (mStoreFile != null) {
+                try {
+                    ResultRecords.replay(
+                        mStoreFile, this, aEvt.getSource(), mStoredFiles);
+                }
+                catch (IOException e) {
+                    mFailure = e;
+                }
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditFinished(AuditEvent aEvt)
+        {
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).auditFinished(aEvt);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileStarted(AuditEvent aEvt)
+        {
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).fileStarted(aEvt);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void fileFinished(AuditEvent aEvt)
+        {
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).fileFinished(aEvt);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addError(AuditEvent aEvt)
+        {
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).addError(aEvt);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addException(AuditEvent aEvt, Throwable aThrowable)
+        {
+            for (int i = 0; i < mTargets.size(); i++) {
+                mTargets.get(i).addException(aEvt, aThrowable);
+            }
+        }
+    }
+}
@@ -0,0 +1,689 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AutomaticBean;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Filter;
+
+/**
+ * <p>
+ * Suppresses audit events listed in a suppressions file, like Checkstyle's
+ * SuppressionFilter, but indexes the <code>files</code> patterns of the
+ * file so that large generated suppression lists stay cheap. Patterns of
+ * the form <code>^literal$</code> are looked up in a hash map, patterns
+ * with a literal prefix (<code>^literal...</code>) or literal suffix
+ * (<code>...literal$</code>) in a trie, and only the remaining patterns
+ * are evaluated as regular expressions. The suppressions matching a file
+ * are resolved once per file rather than once per event, and the index of
+ * a suppressions file is shared until the file changes.
+ * </p>
+ * <p>
+ * An example of how to configure the filter is:
+ * </p>
+ * <pre>
+ * &lt;module name="com.puppycrawl.tools.checkstyle.plugins.bluej.IndexedSuppressionFilter"&gt;
+ *     &lt;property name="file" value="suppressions.xml"/&gt;
+ * &lt;/module&gt;
+ * </pre>
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class IndexedSuppressionFilter
+    extends AutomaticBean
+    implements Filter
+{
+    /** indexes of suppressions files, by location */
+    private static final Map<String, Index> INDEXES =
+        new HashMap<String, Index>();
+
+    /** regular expression metacharacters */
+    private static final String METACHARACTERS = "\\.[]{}()*+?^$|";
+
+    /** regular expression quantifiers */
+    private static final String QUANTIFIERS = "*+?{";
+
+    /** location of the suppressions file */
+    private String mFile;
+
+    /** true if a missing suppressions file is not an error */
+    private boolean mOptional = false;
+
+    /** index of the suppressions file */
+    private Index mIndex;
+
+    /** name of the file whose suppressions are cached */
+    private String mCachedFileName;
+
+    /** suppressions whose file pattern matches mCachedFileName */
+    private List<Suppression> mCachedSuppressions;
+
+    /**
+     * Sets the location of the suppressions file.
+     * @param aFile file name, resource name or URL of the file.
+     */
+    public void setFile(String aFile)
+    {
+        mFile = aFile;
+    }
+
+    /**
+     * Determines whether a missing suppressions file is an error.
+     * @param aOptional true if a missing file should be ignored.
+     */
+    public void setOptional(boolean aOptional)
+    {
+        mOptional = aOptional;
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AutomaticBean */
+    protected void finishLocalSetup()
+        throws CheckstyleException
+    {
+        if (mFile == null) {
+            throw new CheckstyleException(
+                "property 'file' is missing or invalid in module "
+                + getConfiguration().getName());
+        }
+        mIndex = getIndex(mFile, mOptional);
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.Filter */
+    public boolean accept(AuditEvent aEvent)
+    {
+        if (aEvent.getFileName() == null
+            || aEvent.getLocalizedMessage() == null)
+        {
+            return true;
+        }
+        if (!aEvent.getFileName().equals(mCachedFileName)) {
+            mCachedFileName = aEvent.getFileName();
+            mCachedSuppressions = mIndex.getSuppressions(mCachedFileName);
+        }
+        for (int i = 0; i < mCachedSuppressions.size(); i++) {
+            if (mCachedSuppressions.get(i).suppresses(aEvent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of a suppressions file, building it unless an
+     * index of the unchanged file is cached.
+     * @param aLocation location of the suppressions file.
+     * @param aOptional true if a missing file yields an empty index.
+     * @return the index.
+     * @throws CheckstyleException if the file cannot be read.
+     */
+    private static Index getIndex(String aLocation, boolean aOptional)
+        throws CheckstyleException
+    {
+        final File file = new File(aLocation);
+        final long modified = file.isFile() ? file.lastModified() : 0;
+        synchronized (INDEXES) {
+            final Index cached = INDEXES.get(aLocation);
+            if (cached != null && cached.mLastModified == modified) {
+                return cached;
+            }
+        }
+        final Index result = new Index(modified);
+        final InputStream stream =
+            BlueJManager.getInstance().openResource(aLocation);
+        if (stream == null) {
+            if (aOptional) {
+                return result;
+            }
+            throw new CheckstyleException(
+                "Unable to find suppressions file: " + aLocation);
+        }
+        try {
+            parse(stream, result);
+        }
+        finally {
+            try {
+                stream.close();
+            }
+            catch (IOException e) {
+                // nothing more to read
+            }
+        }
+        synchronized (INDEXES) {
+            INDEXES.put(aLocation, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the suppressions of a suppressions file into an index.
+     * The DTD is not fetched.
+     * @param aStream the contents of the suppressions file.
+     * @param aIndex the index receiving the suppressions.
+     * @throws CheckstyleException if the file is malformed.
+     */
+    private static void parse(InputStream aStream, final Index aIndex)
+        throws CheckstyleException
+    {
+        final DefaultHandler handler = new DefaultHandler()
+        {
+            public InputSource resolveEntity(String aPublicId, String aSystemId)
+            {
+                return new InputSource(new StringReader(""));
+            }
+
+            public void startElement(String aUri, String aLocalName,
+                String aQName, Attributes aAttributes)
+                throws SAXException
+            {
+                if (!"suppress".equals(aQName)) {
+                    return;
+                }
+                try {
+                    aIndex.add(new Suppression(
+                        aAttributes.getValue("files"),
+                        aAttributes.getValue("checks"),
+                        aAttributes.getValue("message"),
+                        aAttributes.getValue("id"),
+                        aAttributes.getValue("lines"),
+                        aAttributes.getValue("columns")));
+                }
+                catch (PatternSyntaxException e) {
+                    throw new SAXException("Invalid suppression pattern", e);
+                }
+                catch (NumberFormatException e) {
+                    throw new SAXException("Invalid suppression range", e);
+                }
+            }
+        };
+        try {
+            final SAXParser parser = SAXParserFactory.newInstance()
+                .newSAXParser();
+            parser.parse(aStream, handler);
+        }
+        catch (ParserConfigurationException e) {
+            throw new CheckstyleException("Unable to parse suppressions", e);
+        }
+        catch (SAXException e) {
+            throw new CheckstyleException(
+                "Unable to parse suppressions: " + e.getMessage(), e);
+        }
+        catch (IOException e) {
+            throw new CheckstyleException(
+                "Unable to read suppressions: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the literal text that every match of a pattern starts with,
+     * if the pattern is anchored at the start.
+     * @param aPattern the pattern.
+     * @return the literal prefix, or null if the pattern is not anchored
+     * or contains an alternation.
+     */
+    static String getLiteralPrefix(String aPattern)
+    {
+        if (!aPattern.startsWith("^") || hasAlternation(aPattern)) {
+            return null;
+        }
+        final StringBuilder result = new StringBuilder();
+        int i = 1;
+        while (i < aPattern.length()) {
+            final char c = aPattern.charAt(i);
+            if (c == '\\' && i + 1 < aPattern.length()
+                && !Character.isLetterOrDigit(aPattern.charAt(i + 1)))
+            {
+                result.append(aPattern.charAt(i + 1));
+                i += 2;
+            }
+            else if (METACHARACTERS.indexOf(c) < 0) {
+                result.append(c);
+                i++;
+            }
+            else {
+                if (QUANTIFIERS.indexOf(c) >= 0 && result.length() > 0) {
+                    // the quantifier applies to the last literal
+                    result.setLength(result.length() - 1);
+                }
+                break;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the literal text that every match of a pattern ends with,
+     * if the pattern is anchored at the end.
+     * @param aPattern the pattern.
+     * @return the literal suffix, or null if the pattern is not anchored
+     * or contains an alternation.
+     */
+    static String getLiteralSuffix(String aPattern)
+    {
+        final int end = aPattern.length() - 1;
+        if (end < 0 || aPattern.charAt(end) != '$' || isEscaped(aPattern, end)
+            || hasAlternation(aPattern))
+        {
+            return null;
+        }
+        final StringBuilder result = new StringBuilder();
+        int i = end - 1;
+        while (i >= 0) {
+            final char c = aPattern.charAt(i);
+            if (isEscaped(aPattern, i)) {
+                if (Character.isLetterOrDigit(c)) {
+                    break;
+                }
+                result.append(c);
+                i -= 2;
+            }
+            else if (METACHARACTERS.indexOf(c) < 0) {
+                result.append(c);
+                i--;
+            }
+            else {
+                break;
+            }
+        }
+        return result.reverse().toString();
+    }
+
+    /**
+     * Determines whether a pattern contains an unescaped '|'.
+     * @param aPattern the pattern.
+     * @return true if the pattern contains an alternation.
+     */
+    private static boolean hasAlternation(String aPattern)
+    {
+        for (int i = 0; i < aPattern.length(); i++) {
+            if (aPattern.charAt(i) == '|' && !isEscaped(aPattern, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether a character of a pattern is escaped by an odd
+     * number of preceding backslashes.
+     * @param aPattern the pattern.
+     * @param aIndex index of the character.
+     * @return true if the character is escaped.
+     */
+    private static boolean isEscaped(String aPattern, int aIndex)
+    {
+        int count = 0;
+        for (int i = aIndex - 1; i >= 0 && aPattern.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    /**
+     * Index of the suppressions of one suppressions file.
+     */
+    private static final class Index
+    {
+        /** modification time of the indexed file */
+        private final long mLastModified;
+
+        /** suppressions for all files */
+        private final List<Suppression> mGlobal = new ArrayList<Suppression>();
+
+        /** suppressions with a fully literal pattern, by file name */
+        private final Map<String, List<Suppression>> mExact =
+            new HashMap<String, List<Suppression>>();
+
+        /** suppressions with a literal prefix */
+        private final TrieNode mPrefixes = new TrieNode();
+
+        /** suppressions with a literal suffix, keyed by reversed suffix */
+        private final TrieNode mSuffixes = new TrieNode();
+
+        /** suppressions whose patterns must be evaluated for every file */
+        private final List<Suppression> mRegexps =
+            new ArrayList<Suppression>();
+
+        /**
+         * Constructs an empty <code>Index</code>.
+         * @param aLastModified modification time of the indexed file.
+         */
+        Index(long aLastModified)
+        {
+            mLastModified = aLastModified;
+        }
+
+        /**
+         * Adds a suppression to this index.
+         * @param aSuppression the suppression.
+         */
+        void add(Suppression aSuppression)
+        {
+            final String files = aSuppression.getFilesPattern();
+            if (files == null) {
+                mGlobal.add(aSuppression);
+                return;
+            }
+            final String prefix = getLiteralPrefix(files);
+            final String suffix = getLiteralSuffix(files);
+            if (prefix != null && suffix != null
+                && prefix.equals(suffix) && isLiteral(files))
+            {
+                addExact(prefix, aSuppression);
+            }
+            else if (prefix != null && prefix.length() > 0) {
+                mPrefixes.add(prefix, 0, 1, aSuppression);
+            }
+            else if (suffix != null && suffix.length() > 0) {
+                mSuffixes.add(suffix, suffix.length() - 1, -1, aSuppression);
+            }
+            else {
+                mRegexps.add(aSuppression);
+            }
+        }
+
+        /**
+         * Adds a suppression for one exact file name.
+         * @param aFileName the file name.
+         * @param aSuppression the suppression.
+         */
+        private void addExact(String aFileName, Suppression aSuppression)
+        {
+            List<Suppression> list = mExact.get(aFileName);
+            if (list == null) {
+                list = new ArrayList<Suppression>();
+                mExact.put(aFileName, list);
+            }
+            list.add(aSuppression);
+        }
+
+        /**
+         * Returns the suppressions whose file pattern matches a file name.
+         * @param aFileName the file name.
+         * @return the matching suppressions.
+         */
+        List<Suppression> getSuppressions(String aFileName)
+        {
+            final List<Suppression> result =
+                new ArrayList<Suppression>(mGlobal);
+            final List<Suppression> exact = mExact.get(aFileName);
+            if (exact != null) {
+                result.addAll(exact);
+            }
+            final List<Suppression> candidates = new ArrayList<Suppression>();
+            mPrefixes.collect(aFileName, 0, 1, candidates);
+            mSuffixes.collect(aFileName, aFileName.length() - 1, -1,
+                candidates);
+            candidates.addAll(mRegexps);
+            for (int i = 0; i < candidates.size(); i++) {
+                final Suppression candidate = candidates.get(i);
+                if (candidate.matchesFile(aFileName)) {
+                    result.add(candidate);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Determines whether an anchored pattern matches exactly its
+         * literal text, that is <code>^literal$</code>.
+         * @param aPattern the pattern.
+         * @return true if the pattern is fully literal.
+         */
+        private static boolean isLiteral(String aPattern)
+        {
+            for (int i = 1; i < aPattern.length() - 1; i++) {
+                final char c = aPattern.charAt(i);
+                if (c == '\\') {
+                    if (i + 1 < aPattern.length() - 1
+                        && !Character.isLetterOrDigit(aPattern.charAt(i + 1)))
+                    {
+                        i++;
+                        continue;
+                    }
+                    return false;
+                }
+                if (METACHARACTERS.indexOf(c) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Node of a character trie of suppressions.
+     */
+    private static final class TrieNode
+    {
+        /** children by character */
+        private Map<Character, TrieNode> mChildren;
+
+        /** suppressions whose key ends at this node */
+        private List<Suppression> mSuppressions;
+
+        /**
+         * Adds a suppression under a key, walking the key from an index in
+         * a direction.
+         * @param aKey the key.
+         * @param aIndex index of the next character of the key.
+         * @param aStep 1 to walk forwards, -1 to walk backwards.
+         * @param aSuppression the suppression.
+         */
+        void add(String aKey, int aIndex, int aStep, Suppression aSuppression)
+        {
+            TrieNode node = this;
+            for (int i = aIndex; i >= 0 && i < aKey.length(); i += aStep) {
+                if (node.mChildren == null) {
+                    node.mChildren = new HashMap<Character, TrieNode>();
+                }
+                TrieNode child = node.mChildren.get(aKey.charAt(i));
+                if (child == null) {
+                    child = new TrieNode();
+                    node.mChildren.put(aKey.charAt(i), child);
+                }
+                node = child;
+            }
+            if (node.mSuppressions == null) {
+                node.mSuppressions = new ArrayList<Suppression>();
+            }
+            node.mSuppressions.add(aSuppression);
+        }
+
+        /**
+         * Collects the suppressions of all keys that are a prefix (or
+         * suffix, walking backwards) of a string.
+         * @param aText the string.
+         * @param aIndex index of the first character to walk.
+         * @param aStep 1 to walk forwards, -1 to walk backwards.
+         * @param aResult list receiving the suppressions.
+         */
+        void collect(String aText, int aIndex, int aStep,
+            List<Suppression> aResult)
+        {
+            TrieNode node = this;
+            int i = aIndex;
+            while (node != null) {
+                if (node.mSuppressions != null) {
+                    aResult.addAll(node.mSuppressions);
+                }
+                if (node.mChildren == null || i < 0 || i >= aText.length()) {
+                    break;
+                }
+                node = node.mChildren.get(aText.charAt(i));
+                i += aStep;
+            }
+        }
+    }
+
+    /**
+     * One suppression of a suppressions file.
+     */
+    private static final class Suppression
+    {
+        /** pattern for file names, or null for all files */
+        private final Pattern mFiles;
+
+        /** pattern for check names, or null for all checks */
+        private final Pattern mChecks;
+
+        /** pattern for messages, or null for all messages */
+        private final Pattern mMessage;
+
+        /** module id, or null for all modules */
+        private final String mId;
+
+        /** suppressed lines, or null */
+        private final BitSet mLines;
+
+        /** suppressed columns, or null */
+        private final BitSet mColumns;
+
+        /**
+         * Constructs a <code>Suppression</code> from the attributes of a
+         * suppress element.
+         * @param aFiles files pattern, or null.
+         * @param aChecks checks pattern, or null.
+         * @param aMessage message pattern, or null.
+         * @param aId module id, or null.
+         * @param aLines comma separated lines and line ranges, or null.
+         * @param aColumns comma separated columns and column ranges, or null.
+         */
+        Suppression(String aFiles, String aChecks, String aMessage,
+            String aId, String aLines, String aColumns)
+        {
+            mFiles = compile(aFiles);
+            mChecks = compile(aChecks);
+            mMessage = compile(aMessage);
+            mId = aId;
+            mLines = parseRanges(aLines);
+            mColumns = parseRanges(aColumns);
+        }
+
+        /**
+         * Returns the files pattern of this suppression.
+         * @return the files pattern, or null.
+         */
+        String getFilesPattern()
+        {
+            return (mFiles == null) ? null : mFiles.pattern();
+        }
+
+        /**
+         * Determines whether the files pattern matches a file name.
+         * @param aFileName the file name.
+         * @return true if the pattern matches.
+         */
+        boolean matchesFile(String aFileName)
+        {
+            return mFiles == null || mFiles.matcher(aFileName).find();
+        }
+
+        /**
+         * Determines whether this suppression suppresses an event whose
+         * file name is known to match.
+         * @param aEvent the event.
+         * @return true if the event is suppressed.
+         */
+        boolean suppresses(AuditEvent aEvent)
+        {
+            if (mId != null && !mId.equals(aEvent.getModuleId())) {
+                return false;
+            }
+            if (mChecks != null
+                && !mChecks.matcher(aEvent.getSourceName()).find())
+            {
+                return false;
+            }
+            if (mMessage != null
+                && !mMessage.matcher(aEvent.getMessage()).find())
+            {
+                return false;
+            }
+            if (mLines == null && mColumns == null) {
+                return true;
+            }
+            return mLines != null && aEvent.getLine() >= 0
+                    && mLines.get(aEvent.getLine())
+                || mColumns != null && aEvent.getColumn() >= 0
+                    && mColumns.get(aEvent.getColumn());
+        }
+
+        /**
+         * Compiles an optional pattern.
+         * @param aPattern the pattern, or null.
+         * @return the compiled pattern, or null.
+         */
+        private static Pattern compile(String aPattern)
+        {
+            return (aPattern == null) ? null : Pattern.compile(aPattern);
+        }
+
+        /**
+         * Parses a comma separated list of numbers and ranges such as
+         * <code>1,10-20</code>.
+         * @param aRanges the list, or null.
+         * @return the set of numbers, or null.
+         */
+        private static BitSet parseRanges(String aRanges)
+        {
+            if (aRanges == null) {
+                return null;
+            }
+            final BitSet result = new BitSet();
+            final String[] parts = aRanges.split(",");
+            for (int i = 0; i < parts.length; i++) {
+                final String part = parts[i].trim();
+                final int dash = part.indexOf('-');
+                if (dash < 0) {
+                    result.set(Integer.parseInt(part));
+                }
+                else {
+                    result.set(Integer.parseInt(part.substring(0, dash).trim()),
+                        Integer.parseInt(part.substring(dash + 1).trim()) + 1);
+                }
+            }
+            return result;
+        }
+    }
+}
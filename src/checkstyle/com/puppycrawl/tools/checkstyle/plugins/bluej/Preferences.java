@@ -61,8 +61,50 @@ public class Preferences implements PreferenceGenerator
     /** selection of properties file */
     private JButton mPropsFileButton;
 
+    /** baseline file name when Preferences opens */
+    private String mBeforeBaselineFileName;
+
+    /** contains name of baseline file */
+    private JTextField mBaselineFileTextField;
+
+    /** selection of baseline file */
+    private JButton mBaselineFileButton;
+
+    /** per-file time budget when Preferences opens */
+    private String mBeforeTimeBudget;
+
+    /** large file threshold when Preferences opens */
+    private String mBeforeMaxFileSize;
+
+    /** contains the per-file time budget */
+    private JTextField mTimeBudgetTextField;
+
+    /** contains the large file threshold */
+    private JTextField mMaxFileSizeTextField;
+
+    /** summary threshold when Preferences opens */
+    private String mBeforeSummaryThreshold;
+
+    /** contains the summary threshold */
+    private JTextField mSummaryThresholdTextField;
+
+    /** spill threshold when Preferences opens */
+    private String mBeforeSpillThreshold;
+
+    /** contains the spill threshold */
+    private JTextField mSpillThresholdTextField;
+
+    /** contains the CPU budget of background audits */
+    private JTextField mCpuBudgetTextField;
+
+    /** additional profiles when Preferences opens */
+    private String mBeforeProfiles;
+
+    /** contains the configuration files of the additional profiles */
+    private JTextField mProfilesTextField;
+
     /** number of panel grid rows */
-    private static final int ROWS = 2;
+    private static final int ROWS = 9;
 
     /** width of text fields */
     private static final int FIELD_WIDTH = 40;
@@ -92,6 +134,9 @@ public class Preferences implements PreferenceGenerator
             if (aEvent.getSource() == mConfigFileButton) {
                 mConfigFileTextField.setText(fileName);
             }
+            else if (aEvent.getSource() == mBaselineFileButton) {
+                mBaselineFileTextField.setText(fileName);
+            }
             else {
                 mPropsFileTextField.setText(fileName);
             }
@@ -114,6 +159,13 @@ public class Preferences implements PreferenceGenerator
         labelPanel.setLayout(new GridLayout(ROWS, 1));
         labelPanel.add(new JLabel("Configuration File"));
         labelPanel.add(new JLabel("Properties File"));
+        labelPanel.add(new JLabel("Additional Profiles (comma-separated)"));
+        labelPanel.add(new JLabel("Baseline File"));
+        labelPanel.add(new JLabel("Time Budget per File (ms)"));
+        labelPanel.add(new JLabel("Defer Files Larger Than (KB)"));
+        labelPanel.add(new JLabel("Summarize Audits of More Files Than"));
+        labelPanel.add(new JLabel("Spill to Disk Above (events)"));
+        labelPanel.add(new JLabel("Background Audit CPU Budget (%)"));
         mPanel.add(labelPanel);
 
         final JPanel fieldPanel = new JPanel();
@@ -122,6 +174,20 @@ public class Preferences implements PreferenceGenerator
         fieldPanel.add(mConfigFileTextField);
         mPropsFileTextField = new JTextField(FIELD_WIDTH);
         fieldPanel.add(mPropsFileTextField);
+        mProfilesTextField = new JTextField(FIELD_WIDTH);
+        fieldPanel.add(mProfilesTextField);
+        mBaselineFileTextField = new JTextField(FIELD_WIDTH);
+        fieldPanel.add(mBaselineFileTextField);
+        mTimeBudgetTextField = new JTextField(FIELD_WIDTH);
+        fieldPanel.add(mTimeBudgetTextField);
+        mMaxFileSizeTextField = new JTextField(FIELD_WIDTH);
+        fieldPanel.add(mMaxFileSizeTextField);
+        mSummaryThresholdTextField = new JTextField(FIELD_WIDTH);
+        fieldPanel.add(mSummaryThresholdTextField);
+        mSpillThresholdTextField = new JTextField(FIELD_WIDTH);
+        fieldPanel.add(mSpillThresholdTextField);
+        mCpuBudgetTextField = new JTextField(FIELD_WIDTH);
+        fieldPanel.add(mCpuBudgetTextField);
         mPanel.add(fieldPanel);
 
         final JPanel buttonPanel = new JPanel();
@@ -132,6 +198,15 @@ public class Preferences implements PreferenceGenerator
         mPropsFileButton = new JButton("Select");
         mPropsFileButton.addActionListener(new ButtonListener());
         buttonPanel.add(mPropsFileButton);
+        buttonPanel.add(new JLabel());
+        mBaselineFileButton = new JButton("Select");
+        mBaselineFileButton.addActionListener(new ButtonListener());
+        buttonPanel.add(mBaselineFileButton);
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
+        buttonPanel.add(new JLabel());
         mPanel.add(buttonPanel);
 
         // Load the default value
@@ -148,12 +223,34 @@ public class Preferences implements PreferenceGenerator
         manager.saveConfigFileName(afterConfigFileName);
         final String afterPropsFileName = mPropsFileTextField.getText();
         manager.savePropsFileName(afterPropsFileName);
+        final String afterProfiles = mProfilesTextField.getText();
+        manager.saveProfiles(afterProfiles);
+        final String afterBaselineFileName = mBaselineFileTextField.getText();
+        manager.saveBaselineFileName(afterBaselineFileName);
+        final String afterTimeBudget = mTimeBudgetTextField.getText();
+        manager.saveFileTimeBudget(afterTimeBudget);
+        final String afterMaxFileSize = mMaxFileSizeTextField.getText();
+        manager.saveMaxFileSize(afterMaxFileSize);
+        final String afterSummaryThreshold =
+            mSummaryThresholdTextField.getText();
+        manager.saveSummaryThreshold(afterSummaryThreshold);
+        final String afterSpillThreshold = mSpillThresholdTextField.getText();
+        manager.saveSpillThreshold(afterSpillThreshold);
+        // the budget does not change the results, no audit is needed
+        manager.saveCpuBudget(mCpuBudgetTextField.getText());
+        manager.invalidateProperties();
 
         // changes?
         if (!(mBeforeConfigFileName.equals(afterConfigFileName))
-            || !(mBeforePropsFileName.equals(afterPropsFileName)))
+            || !(mBeforePropsFileName.equals(afterPropsFileName))
+            || !(mBeforeProfiles.equals(afterProfiles))
+            || !(mBeforeBaselineFileName.equals(afterBaselineFileName))
+            || !(mBeforeTimeBudget.equals(afterTimeBudget))
+            || !(mBeforeMaxFileSize.equals(afterMaxFileSize))
+            || !(mBeforeSummaryThreshold.equals(afterSummaryThreshold))
+            || !(mBeforeSpillThreshold.equals(afterSpillThreshold)))
         {
-            CheckstyleExtension.getInstance().refreshView();
+            CheckstyleExtension.getInstance().refreshView("preferences");
         }
     }
 
@@ -167,6 +264,22 @@ public class Preferences implements PreferenceGenerator
         mBeforePropsFileName = manager.getPropsFileName();
         mConfigFileTextField.setText(mBeforeConfigFileName);
         mPropsFileTextField.setText(mBeforePropsFileName);
+        mBeforeProfiles = manager.getProfiles();
+        mProfilesTextField.setText(mBeforeProfiles);
+        mBeforeBaselineFileName = manager.getBaselineFileName();
+        if (mBeforeBaselineFileName == null) {
+            mBeforeBaselineFileName = "";
+        }
+        mBaselineFileTextField.setText(mBeforeBaselineFileName);
+        mBeforeTimeBudget = "" + manager.getFileTimeBudget();
+        mBeforeMaxFileSize = "" + manager.getMaxFileSize();
+        mTimeBudgetTextField.setText(mBeforeTimeBudget);
+        mMaxFileSizeTextField.setText(mBeforeMaxFileSize);
+        mBeforeSummaryThreshold = "" + manager.getSummaryThreshold();
+        mSummaryThresholdTextField.setText(mBeforeSummaryThreshold);
+        mBeforeSpillThreshold = "" + manager.getSpillThreshold();
+        mSpillThresholdTextField.setText(mBeforeSpillThreshold);
+        mCpuBudgetTextField.setText("" + manager.getCpuBudget());
     }
 
     /** @see bluej.extensions.PreferenceGenerator#getPanel() */
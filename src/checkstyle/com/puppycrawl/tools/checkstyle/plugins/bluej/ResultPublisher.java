@@ -0,0 +1,551 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+
+/**
+ * Publishes the changes of the results shown by the view to the
+ * {@link AuditResultListener}s. A publisher thread compares each
+ * {@link AuditSnapshot} with the previous one and hands the deltas to a
+ * bounded queue per listener, which a thread of the listener drains. A
+ * file whose file auditor is the same object as before is unchanged
+ * without further work; otherwise its outcome and events are compared by
+ * fingerprint. File auditors of snapshots are frozen, so they are read
+ * without locks, and listeners receive them as immutable
+ * {@link FileResult}s.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+final class ResultPublisher
+{
+    /** number of deltas a listener may fall behind before it is reset */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /** thread that computes the deltas */
+    private final ExecutorService mPublisher =
+        Executors.newSingleThreadExecutor(new DaemonFactory(
+            "Checkstyle result publisher"));
+
+    /** the registered listeners */
+    private final List<Subscription> mSubscriptions =
+        new CopyOnWriteArrayList<Subscription>();
+
+    /**
+     * results of the last update, by profile name and file name, used on
+     * the publisher thread only
+     */
+    private Map<String, Map<String, Shown>> mShown =
+        Collections.emptyMap();
+
+    /**
+     * version of the snapshot of the last update, used on the publisher
+     * thread only
+     */
+    private long mVersion = -1;
+
+    /**
+     * Publishes a new snapshot of the results shown. Snapshots that reach
+     * the publisher thread after a later snapshot are skipped.
+     * @param aSnapshot the snapshot.
+     */
+    void publish(final AuditSnapshot aSnapshot)
+    {
+        execute(new Runnable()
+        {
+            public void run()
+            {
+                if (aSnapshot.getVersion() > mVersion) {
+                    mVersion = aSnapshot.getVersion();
+                    try {
+                        update(aSnapshot);
+                    }
+                    catch (RuntimeException e) {
+                        // keep publishing later snapshots
+                        System.err.println(
+                            "Checkstyle result publisher failed: " + e);
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers a listener, which first receives a reset delta for each
+     * profile shown.
+     * @param aListener the listener.
+     */
+    void addListener(AuditResultListener aListener)
+    {
+        final Subscription subscription = new Subscription(aListener);
+        execute(new Runnable()
+        {
+            public void run()
+            {
+                mSubscriptions.add(subscription);
+                subscription.reset(mShown);
+            }
+        });
+    }
+
+    /**
+     * Removes a listener. Deltas that it has not received yet are
+     * dropped.
+     * @param aListener the listener.
+     */
+    void removeListener(AuditResultListener aListener)
+    {
+        final Iterator<Subscription> it = mSubscriptions.iterator();
+        while (it.hasNext()) {
+            final Subscription subscription = it.next();
+            if (subscription.mListener == aListener) {
+                mSubscriptions.remove(subscription);
+                subscription.mWorker.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Stops the publisher and the threads of the listeners.
+     */
+    void shutdown()
+    {
+        mPublisher.shutdownNow();
+        final Iterator<Subscription> it = mSubscriptions.iterator();
+        while (it.hasNext()) {
+            it.next().mWorker.shutdownNow();
+        }
+        mSubscriptions.clear();
+    }
+
+    /**
+     * Runs a task on the publisher thread, unless it has been stopped.
+     * @param aTask the task.
+     */
+    private void execute(Runnable aTask)
+    {
+        try {
+            mPublisher.execute(aTask);
+        }
+        catch (RejectedExecutionException e) {
+            // BlueJ is terminating
+            return;
+        }
+    }
+
+    /**
+     * Compares a snapshot with the previous one and hands the changes to
+     * the listeners. Called on the publisher thread.
+     * @param aSnapshot the snapshot.
+     */
+    private void update(AuditSnapshot aSnapshot)
+    {
+        final boolean listened = !mSubscriptions.isEmpty();
+        final Map<String, Map<String, Shown>> shown =
+            new LinkedHashMap<String, Map<String, Shown>>();
+        final List<Change> changes = new ArrayList<Change>();
+        final Iterator<Map.Entry<String, AuditSnapshot.Profile>> it =
+            aSnapshot.getProfiles().entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, AuditSnapshot.Profile> entry = it.next();
+            Map<String, Shown> previous = mShown.get(entry.getKey());
+            if (previous == null) {
+                previous = Collections.emptyMap();
+            }
+            final Change change = new Change(entry.getKey());
+            final Map<String, Shown> files = new HashMap<String, Shown>();
+            final List<FileAuditor> auditors =
+                entry.getValue().getFileAuditors();
+            for (int i = 0; i < auditors.size(); i++) {
+                final FileAuditor auditor = auditors.get(i);
+                final String fileName = auditor.toString();
+                final Shown old = previous.get(fileName);
+                if (old != null && old.mAuditor == auditor) {
+                    files.put(fileName, old);
+                    continue;
+                }
+                final Shown file = new Shown(auditor);
+                files.put(fileName, file);
+                if (!listened) {
+                    continue;
+                }
+                if (old == null) {
+                    change.mAdded.add(file.mResult);
+                }
+                else if (old.getFingerprint() != file.getFingerprint()) {
+                    change.mChanged.add(file.mResult);
+                }
+                else {
+                    continue;
+                }
+                change.mGenerations.put(fileName, file.mGeneration);
+            }
+            if (listened) {
+                final Iterator<String> names = previous.keySet().iterator();
+                while (names.hasNext()) {
+                    final String fileName = names.next();
+                    if (!files.containsKey(fileName)) {
+                        change.mRemoved.add(fileName);
+                    }
+                }
+            }
+            shown.put(entry.getKey(), files);
+            if (!change.isEmpty()) {
+                changes.add(change);
+            }
+        }
+        if (listened) {
+            final Iterator<Map.Entry<String, Map<String, Shown>>> profiles =
+                mShown.entrySet().iterator();
+            while (profiles.hasNext()) {
+                final Map.Entry<String, Map<String, Shown>> entry =
+                    profiles.next();
+                if (!shown.containsKey(entry.getKey())) {
+                    final Change change = new Change(entry.getKey());
+                    change.mRemoved.addAll(entry.getValue().keySet());
+                    if (!change.isEmpty()) {
+                        changes.add(change);
+                    }
+                }
+            }
+        }
+        mShown = shown;
+        if (changes.isEmpty()) {
+            return;
+        }
+        final Iterator<Subscription> subscriptions = mSubscriptions.iterator();
+        while (subscriptions.hasNext()) {
+            subscriptions.next().offer(changes, shown);
+        }
+    }
+
+    /**
+     * Returns a fingerprint of the results of a file, which differs
+     * between results with a different outcome or different events.
+     * @param aAuditor the file auditor of the file.
+     * @return the fingerprint.
+     */
+    private static long fingerprint(FileAuditor aAuditor)
+    {
+        long result = aAuditor.getStatus().ordinal();
+        result = 31 * result + (aAuditor.isSummary() ? 1 : 0);
+        result = 31 * result + aAuditor.getEventCount();
+        if (aAuditor.isSummary()) {
+            // the events are not kept, only their numbers
+            return 31 * result + aAuditor.getCheckCounts().hashCode();
+        }
+        final Iterator<AuditEvent> it = aAuditor.getEvents().iterator();
+        while (it.hasNext()) {
+            final AuditEvent event = it.next();
+            result = 31 * result + event.getLine();
+            result = 31 * result + event.getColumn();
+            result = 31 * result + String.valueOf(event.getSeverityLevel())
+                .hashCode();
+            result = 31 * result + String.valueOf(event.getSourceName())
+                .hashCode();
+            result = 31 * result + String.valueOf(event.getModuleId())
+                .hashCode();
+            result = 31 * result + String.valueOf(event.getMessage())
+                .hashCode();
+        }
+        return result;
+    }
+
+    /**
+     * The results of a file as last published.
+     */
+    private static final class Shown
+    {
+        /** the file auditor of the file */
+        private final FileAuditor mAuditor;
+
+        /** the results of the file as handed to listeners */
+        private final FileResult mResult;
+
+        /** the generation of the file when its results were published */
+        private final long mGeneration;
+
+        /** the fingerprint of the results, computed when first needed */
+        private Long mFingerprint;
+
+        /**
+         * Constructs a <code>Shown</code>.
+         * @param aAuditor the file auditor of the file.
+         */
+        Shown(FileAuditor aAuditor)
+        {
+            mAuditor = aAuditor;
+            mResult = new FileResult(aAuditor);
+            mGeneration = FileGenerations.getInstance().get(
+                new File(aAuditor.toString()));
+        }
+
+        /**
+         * Returns the fingerprint of the results.
+         * @return the fingerprint.
+         */
+        long getFingerprint()
+        {
+            if (mFingerprint == null) {
+                mFingerprint = fingerprint(mAuditor);
+            }
+            return mFingerprint;
+        }
+    }
+
+    /**
+     * The changes of the results of one profile.
+     */
+    private static final class Change
+    {
+        /** name of the profile */
+        private final String mProfileName;
+
+        /** results of added files */
+        private final List<FileResult> mAdded = new ArrayList<FileResult>();
+
+        /** results of changed files */
+        private final List<FileResult> mChanged = new ArrayList<FileResult>();
+
+        /** names of removed files */
+        private final List<String> mRemoved = new ArrayList<String>();
+
+        /** generations of the added and changed files, by file name */
+        private final Map<String, Long> mGenerations =
+            new HashMap<String, Long>();
+
+        /**
+         * Constructs a <code>Change</code>.
+         * @param aProfileName name of the profile.
+         */
+        Change(String aProfileName)
+        {
+            mProfileName = aProfileName;
+        }
+
+        /**
+         * Determines whether no file changed.
+         * @return true if no file was added, changed or removed.
+         */
+        boolean isEmpty()
+        {
+            return mAdded.isEmpty() && mChanged.isEmpty()
+                && mRemoved.isEmpty();
+        }
+    }
+
+    /**
+     * A registered listener, with its queue of deltas and its thread.
+     */
+    private static final class Subscription
+    {
+        /** the listener */
+        private final AuditResultListener mListener;
+
+        /** deltas waiting for the listener */
+        private final BlockingQueue<AuditDelta> mQueue =
+            new ArrayBlockingQueue<AuditDelta>(QUEUE_CAPACITY);
+
+        /** thread of the listener */
+        private final ExecutorService mWorker;
+
+        /** true if a drain of the queue is scheduled */
+        private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+        /** number of the next delta, used on the publisher thread only */
+        private long mSequence;
+
+        /**
+         * profiles that deltas have ever been queued for, used on the
+         * publisher thread only
+         */
+        private final Set<String> mProfiles = new HashSet<String>();
+
+        /** drains the queue into the listener */
+        private final Runnable mDrain = new Runnable()
+        {
+            public void run()
+            {
+                mScheduled.set(false);
+                AuditDelta delta = mQueue.poll();
+                while (delta != null) {
+                    try {
+                        mListener.resultsChanged(delta);
+                    }
+                    catch (RuntimeException e) {
+                        // a failing listener does not lose later deltas
+                        delta = null;
+                    }
+                    delta = mQueue.poll();
+                }
+            }
+        };
+
+        /**
+         * Constructs a <code>Subscription</code>.
+         * @param aListener the listener.
+         */
+        Subscription(AuditResultListener aListener)
+        {
+            mListener = aListener;
+            mWorker = Executors.newSingleThreadExecutor(new DaemonFactory(
+                "Checkstyle result listener"));
+        }
+
+        /**
+         * Queues the deltas of some changes. If the listener has fallen
+         * too far behind, its queue is replaced by reset deltas.
+         * Called on the publisher thread.
+         * @param aChanges the changes.
+         * @param aShown the results after the changes.
+         */
+        void offer(List<Change> aChanges,
+            Map<String, Map<String, Shown>> aShown)
+        {
+            for (int i = 0; i < aChanges.size(); i++) {
+                final Change change = aChanges.get(i);
+                final AuditDelta delta = new AuditDelta(change.mProfileName,
+                    mSequence, false, change.mAdded, change.mChanged,
+                    change.mRemoved, change.mGenerations);
+                if (!mQueue.offer(delta)) {
+                    mQueue.clear();
+                    reset(aShown);
+                    return;
+                }
+                mProfiles.add(change.mProfileName);
+                mSequence++;
+            }
+            schedule();
+        }
+
+        /**
+         * Queues a reset delta with all results of each profile, and an
+         * empty one for each profile that is gone.
+         * @param aShown the results, by profile name and file name.
+         */
+        void reset(Map<String, Map<String, Shown>> aShown)
+        {
+            final Iterator<String> gone = mProfiles.iterator();
+            while (gone.hasNext()) {
+                final String profileName = gone.next();
+                if (!aShown.containsKey(profileName)) {
+                    // kept, as a later reset may clear this one from the
+                    // queue before the listener receives it
+                    queueReset(profileName,
+                        Collections.<String, Shown>emptyMap());
+                }
+            }
+            final Iterator<Map.Entry<String, Map<String, Shown>>> it =
+                aShown.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, Map<String, Shown>> entry = it.next();
+                mProfiles.add(entry.getKey());
+                queueReset(entry.getKey(), entry.getValue());
+            }
+            schedule();
+        }
+
+        /**
+         * Queues a reset delta of a profile.
+         * @param aProfileName name of the profile.
+         * @param aFiles the results of the profile, by file name.
+         */
+        private void queueReset(String aProfileName, Map<String, Shown> aFiles)
+        {
+            final List<FileResult> added = new ArrayList<FileResult>();
+            final Map<String, Long> generations = new HashMap<String, Long>();
+            final Iterator<Shown> files = aFiles.values().iterator();
+            while (files.hasNext()) {
+                final Shown file = files.next();
+                added.add(file.mResult);
+                generations.put(file.mAuditor.toString(), file.mGeneration);
+            }
+            // the queue was emptied and holds one delta per profile
+            mQueue.offer(new AuditDelta(aProfileName, mSequence, true, added,
+                Collections.<FileResult>emptyList(),
+                Collections.<String>emptyList(), generations));
+            mSequence++;
+        }
+
+        /**
+         * Schedules a drain of the queue unless one is pending.
+         */
+        private void schedule()
+        {
+            if (!mQueue.isEmpty() && mScheduled.compareAndSet(false, true)) {
+                try {
+                    mWorker.execute(mDrain);
+                }
+                catch (RejectedExecutionException e) {
+                    // the listener has been removed
+                    mQueue.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Factory of named daemon threads.
+     */
+    private static final class DaemonFactory implements ThreadFactory
+    {
+        /** name of the threads */
+        private final String mName;
+
+        /**
+         * Constructs a <code>DaemonFactory</code>.
+         * @param aName name of the threads.
+         */
+        DaemonFactory(String aName)
+        {
+            mName = aName;
+        }
+
+        /** @see java.util.concurrent.ThreadFactory */
+        public Thread newThread(Runnable aRunnable)
+        {
+            final Thread result = new Thread(aRunnable, mName);
+            result.setDaemon(true);
+            return result;
+        }
+    }
+}
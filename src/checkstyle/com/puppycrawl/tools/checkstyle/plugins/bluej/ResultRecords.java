@@ -0,0 +1,407 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+
+/**
+ * Audit results as a stream of compact binary records, as streamed by
+ * the workers of a {@link BatchAudit} and stored by incremental
+ * {@link HeadlessAudit} runs. A stream may start with a header record
+ * and content records with the hash of the content of each file; then
+ * each file is a file started record with the file name, its event
+ * records (encoded as by {@link AuditDaemon#writeEvent}) and a file
+ * finished record. A complete stream ends with a done record.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+final class ResultRecords
+{
+    /** record: header, followed by a string */
+    private static final byte HEADER = 'H';
+
+    /** record: hash of the content of a file, followed by name and hash */
+    private static final byte CONTENT = 'C';
+
+    /** record: a file has started, followed by its name */
+    private static final byte FILE_STARTED = 'F';
+
+    /** record: an event of the current file */
+    private static final byte EVENT = 'E';
+
+    /** record: the current file has finished */
+    private static final byte FILE_FINISHED = 'f';
+
+    /** record: the stream is complete */
+    private static final byte DONE = 'D';
+
+    /** size of the buffer for reading records (bytes) */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Prevent users from constructing ResultRecords objects.
+     */
+    private ResultRecords()
+    {
+    }
+
+    /**
+     * Tells whether a file of records ends with the done record.
+     * @param aFile the file.
+     * @return true if the stream is complete.
+     * @throws IOException if the file cannot be read.
+     */
+    static boolean isComplete(File aFile)
+        throws IOException
+    {
+        final RandomAccessFile file = new RandomAccessFile(aFile, "r");
+        try {
+            if (file.length() == 0) {
+                return false;
+            }
+            file.seek(file.length() - 1);
+            return file.readByte() == DONE;
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads the header of a file of records.
+     * @param aFile the file.
+     * @return the header, or null if the stream has none.
+     * @throws IOException if the file cannot be read.
+     */
+    static String readHeader(File aFile)
+        throws IOException
+    {
+        final DataInputStream in = open(aFile);
+        try {
+            return (in.readByte() == HEADER) ? in.readUTF() : null;
+        }
+        catch (EOFException e) {
+            return null;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the names of the files in a file of records.
+     * @param aFile the file of records.
+     * @return the file names.
+     * @throws IOException if the file cannot be read or is truncated.
+     */
+    static Set<String> readFileNames(File aFile)
+        throws IOException
+    {
+        final Set<String> result = new HashSet<String>();
+        final DataInputStream in = open(aFile);
+        try {
+            while (true) {
+                final byte record = in.readByte();
+                if (record == HEADER) {
+                    in.readUTF();
+                }
+                else if (record == CONTENT) {
+                    in.readUTF();
+                    in.readUTF();
+                }
+                else if (record == FILE_STARTED) {
+                    result.add(in.readUTF());
+                }
+                else if (record == EVENT) {
+                    AuditClient.readEvent(in, aFile, null);
+                }
+                else if (record == DONE) {
+                    return result;
+                }
+                else if (record != FILE_FINISHED) {
+                    throw new IOException("Invalid record in " + aFile);
+                }
+            }
+        }
+        catch (EOFException e) {
+            throw new IOException("Truncated results " + aFile, e);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the hashes of the contents of the files in a file of
+     * records, as written by {@link Writer#writeContentHash}.
+     * @param aFile the file of records.
+     * @return the hashes, by file name.
+     * @throws IOException if the file cannot be read or is truncated.
+     */
+    static Map<String, String> readContentHashes(File aFile)
+        throws IOException
+    {
+        final Map<String, String> result = new HashMap<String, String>();
+        final DataInputStream in = open(aFile);
+        try {
+            byte record = in.readByte();
+            if (record == HEADER) {
+                in.readUTF();
+                record = in.readByte();
+            }
+            while (record == CONTENT) {
+                final String fileName = in.readUTF();
+                result.put(fileName, in.readUTF());
+                record = in.readByte();
+            }
+            return result;
+        }
+        catch (EOFException e) {
+            throw new IOException("Truncated results " + aFile, e);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reports the files of a file of records to a listener, without the
+     * audit start and finish events.
+     * @param aFile the file of records.
+     * @param aListener the listener.
+     * @param aSource source of the reported events.
+     * @param aFileNames names of the files to report, or null for all.
+     * @throws IOException if the file cannot be read or is truncated.
+     */
+    static void replay(File aFile, AuditListener aListener, Object aSource,
+        Set<String> aFileNames)
+        throws IOException
+    {
+        final DataInputStream in = open(aFile);
+        try {
+            String fileName = null;
+            boolean reported = false;
+            while (true) {
+                final byte record = in.readByte();
+                if (record == HEADER) {
+                    in.readUTF();
+                }
+                else if (record == CONTENT) {
+                    in.readUTF();
+                    in.readUTF();
+                }
+                else if (record == FILE_STARTED) {
+                    fileName = in.readUTF();
+                    reported = aFileNames == null
+                        || aFileNames.contains(fileName);
+                    if (reported) {
+                        aListener.fileStarted(
+                            new AuditEvent(aSource, fileName));
+                    }
+                }
+                else if (record == EVENT) {
+                    final AuditEvent event =
+                        AuditClient.readEvent(in, aSource, fileName);
+                    if (reported) {
+                        aListener.addError(event);
+                    }
+                }
+                else if (record == FILE_FINISHED) {
+                    if (reported) {
+                        aListener.fileFinished(
+                            new AuditEvent(aSource, fileName));
+                    }
+                }
+                else if (record == DONE) {
+                    return;
+                }
+                else {
+                    throw new IOException("Invalid record in " + aFile);
+                }
+            }
+        }
+        catch (EOFException e) {
+            throw new IOException("Truncated results " + aFile, e);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens a file of records.
+     * @param aFile the file.
+     * @return the input.
+     * @throws IOException if the file cannot be opened.
+     */
+    private static DataInputStream open(File aFile)
+        throws IOException
+    {
+        return new DataInputStream(new BufferedInputStream(
+            Files.newInputStream(aFile.toPath()), BUFFER_SIZE));
+    }
+
+    /**
+     * Writes the file events of an audit as records. Write failures are
+     * kept until {@link #finish()}.
+     */
+    static final class Writer implements AuditListener
+    {
+        /** the output */
+        private final DataOutputStream mOut;
+
+        /** first write failure, if any */
+        private IOException mFailure;
+
+        /**
+         * Constructs a <code>Writer</code>.
+         * @param aOut the output.
+         */
+        Writer(DataOutputStream aOut)
+        {
+            mOut = aOut;
+        }
+
+        /**
+         * Writes a header record. A header must come before any file.
+         * @param aHeader the header.
+         */
+        synchronized void writeHeader(String aHeader)
+        {
+            try {
+                mOut.writeByte(HEADER);
+                mOut.writeUTF(aHeader);
+            }
+            catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        /**
+         * Writes a content record. Content records must come after the
+         * header and before any file.
+         * @param aFileName the name of the file.
+         * @param aHash the hash of the content of the file.
+         */
+        synchronized void writeContentHash(String aFileName, String aHash)
+        {
+            try {
+                mOut.writeByte(CONTENT);
+                mOut.writeUTF(aFileName);
+                mOut.writeUTF(aHash);
+            }
+            catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        /**
+         * Writes the done record and flushes the output.
+         * @throws IOException if a record could not be written.
+         */
+        synchronized void finish()
+            throws IOException
+        {
+            if (mFailure != null) {
+                throw mFailure;
+            }
+            mOut.writeByte(DONE);
+            mOut.flush();
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditStarted(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void auditFinished(AuditEvent aEvt)
+        {
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void fileStarted(AuditEvent aEvt)
+        {
+            try {
+                mOut.writeByte(FILE_STARTED);
+                mOut.writeUTF(aEvt.getFileName());
+            }
+            catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void fileFinished(AuditEvent aEvt)
+        {
+            try {
+                mOut.writeByte(FILE_FINISHED);
+            }
+            catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public synchronized void addError(AuditEvent aEvt)
+        {
+            try {
+                mOut.writeByte(EVENT);
+                AuditDaemon.writeEvent(mOut, aEvt);
+            }
+            catch (IOException e) {
+                failed(e);
+            }
+        }
+
+        /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+        public void addException(AuditEvent aEvt, Throwable aThrowable)
+        {
+            addError(aEvt);
+        }
+
+        /**
+         * Records a write failure.
+         * @param aException the failure.
+         */
+        private void failed(IOException aException)
+        {
+            if (mFailure == null) {
+                mFailure = aException;
+            }
+        }
+    }
+}
@@ -0,0 +1,499 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Audit listener that writes each audit event to a channel as soon as it
+ * is reported, so that memory use does not grow with the number of
+ * events. Output is encoded through a fixed size buffer.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+public class ResultSink implements AuditListener
+{
+    /** Output formats. */
+    public enum Format
+    {
+        /** Checkstyle XML report */
+        XML(".xml"),
+        /** one JSON object per line and event */
+        JSONL(".jsonl"),
+        /** SARIF 2.1.0 log */
+        SARIF(".sarif");
+
+        /** file name extension of the format */
+        private final String mExtension;
+
+        /**
+         * Constructs a <code>Format</code>.
+         * @param aExtension file name extension of the format.
+         */
+        Format(String aExtension)
+        {
+            mExtension = aExtension;
+        }
+
+        /**
+         * Returns the file name extension of this format.
+         * @return the file name extension of this format.
+         */
+        public String getExtension()
+        {
+            return mExtension;
+        }
+
+        /**
+         * Determines the format for a file name from its extension.
+         * @param aFileName the file name.
+         * @return the format for the file name, XML if unknown.
+         */
+        public static Format forFileName(String aFileName)
+        {
+            final String name = aFileName.toLowerCase();
+            if (name.endsWith(".jsonl") || name.endsWith(".json")) {
+                return name.endsWith(".sarif.json") ? SARIF : JSONL;
+            }
+            if (name.endsWith(SARIF.getExtension())) {
+                return SARIF;
+            }
+            return XML;
+        }
+    }
+
+    /** size of the output buffer (bytes) */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Checkstyle version reported in the output */
+    private static final String CHECKSTYLE_VERSION = "8.4";
+
+    /** replaces characters that XML does not allow */
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+    /** SARIF schema location */
+    private static final String SARIF_SCHEMA =
+        "https://json.schemastore.org/sarif-2.1.0.json";
+
+    /** channel receiving the output */
+    private final WritableByteChannel mChannel;
+
+    /** output format */
+    private final Format mFormat;
+
+    /** output buffer */
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** encoder for the output */
+    private final CharsetEncoder mEncoder = StandardCharsets.UTF_8
+        .newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /** text of the record being written */
+    private final StringBuilder mRecord = new StringBuilder();
+
+    /** true once a SARIF result has been written */
+    private boolean mFirstResultWritten = false;
+
+    /** number of events written */
+    private int mEventCount = 0;
+
+    /** number of events of severity error written */
+    private int mErrorCount = 0;
+
+    /** first write failure, if any */
+    private IOException mFailure;
+
+    /**
+     * Constructs a <code>ResultSink</code> that writes to a channel.
+     * @param aChannel channel receiving the output.
+     * @param aFormat output format.
+     */
+    public ResultSink(WritableByteChannel aChannel, Format aFormat)
+    {
+        mChannel = aChannel;
+        mFormat = aFormat;
+    }
+
+    /**
+     * Opens a <code>ResultSink</code> that writes to a file.
+     * @param aFile the file to write.
+     * @param aFormat output format.
+     * @return the sink.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static ResultSink open(File aFile, Format aFormat)
+        throws IOException
+    {
+        final FileChannel channel = FileChannel.open(aFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        return new ResultSink(channel, aFormat);
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+    public synchronized void auditStarted(AuditEvent aEvt)
+    {
+        if (mFormat == Format.XML) {
+            mRecord.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<checkstyle version=\"")
+                .append(CHECKSTYLE_VERSION)
+                .append("\">\n");
+        }
+        else if (mFormat == Format.SARIF) {
+            mRecord.append("{\"version\":\"2.1.0\",\"$schema\":");
+            appendJson(SARIF_SCHEMA);
+            mRecord.append(",\"runs\":[{\"tool\":{\"driver\":{\"name\":")
+                .append("\"Checkstyle\",\"version\":");
+            appendJson(CHECKSTYLE_VERSION);
+            mRecord.append(",\"informationUri\":");
+            appendJson("https://checkstyle.org/");
+            mRecord.append("}},\"results\":[\n");
+        }
+        writeRecord();
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+    public synchronized void auditFinished(AuditEvent aEvt)
+    {
+        if (mFormat == Format.XML) {
+            mRecord.append("</checkstyle>\n");
+        }
+        else if (mFormat == Format.SARIF) {
+            mRecord.append("\n]}]}\n");
+        }
+        writeRecord();
+        flush();
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+    public synchronized void fileStarted(AuditEvent aEvt)
+    {
+        if (mFormat == Format.XML) {
+            mRecord.append("<file name=\"");
+            appendXml(aEvt.getFileName());
+            mRecord.append("\">\n");
+            writeRecord();
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+    public synchronized void fileFinished(AuditEvent aEvt)
+    {
+        if (mFormat == Format.XML) {
+            mRecord.append("</file>\n");
+            writeRecord();
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+    public synchronized void addError(AuditEvent aEvt)
+    {
+        if (aEvt.getSeverityLevel() == SeverityLevel.IGNORE) {
+            return;
+        }
+        writeEvent(aEvt.getFileName(), aEvt.getLine(), aEvt.getColumn(),
+            aEvt.getSeverityLevel(), aEvt.getSourceName(), aEvt.getMessage());
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.api.AuditListener */
+    public synchronized void addException(AuditEvent aEvt, Throwable aThrowable)
+    {
+        writeEvent(aEvt.getFileName(), 0, 0, SeverityLevel.ERROR,
+            aThrowable.getClass().getName(), "" + aThrowable);
+    }
+
+    /**
+     * Writes one event in the output format.
+     * @param aFileName file of the event.
+     * @param aLine line of the event, 0 if none.
+     * @param aColumn column of the event, 0 if none.
+     * @param aSeverity severity of the event.
+     * @param aSource name of the check reporting the event.
+     * @param aMessage message of the event.
+     */
+    private void writeEvent(String aFileName, int aLine, int aColumn,
+        SeverityLevel aSeverity, String aSource, String aMessage)
+    {
+        mEventCount++;
+        if (aSeverity == SeverityLevel.ERROR) {
+            mErrorCount++;
+        }
+        switch (mFormat) {
+        case XML:
+            mRecord.append("<error line=\"").append(aLine).append('"');
+            if (aColumn > 0) {
+                mRecord.append(" column=\"").append(aColumn).append('"');
+            }
+            mRecord.append(" severity=\"").append(aSeverity.getName())
+                .append("\" message=\"");
+            appendXml(aMessage);
+            mRecord.append("\" source=\"");
+            appendXml(aSource);
+            mRecord.append("\"/>\n");
+            break;
+        case JSONL:
+            mRecord.append("{\"file\":");
+            appendJson(aFileName);
+            mRecord.append(",\"line\":").append(aLine)
+                .append(",\"column\":").append(aColumn)
+                .append(",\"severity\":");
+            appendJson(aSeverity.getName());
+            mRecord.append(",\"check\":");
+            appendJson(aSource);
+            mRecord.append(",\"message\":");
+            appendJson(aMessage);
+            mRecord.append("}\n");
+            break;
+        default:
+            if (mFirstResultWritten) {
+                mRecord.append(",\n");
+            }
+            mFirstResultWritten = true;
+            mRecord.append("{\"ruleId\":");
+            appendJson(aSource);
+            mRecord.append(",\"level\":");
+            appendJson(getSarifLevel(aSeverity));
+            mRecord.append(",\"message\":{\"text\":");
+            appendJson(aMessage);
+            mRecord.append("},\"locations\":[{\"physicalLocation\":")
+                .append("{\"artifactLocation\":{\"uri\":");
+            appendJson(new File(aFileName).toURI().toString());
+            mRecord.append('}');
+            if (aLine > 0) {
+                mRecord.append(",\"region\":{\"startLine\":").append(aLine);
+                if (aColumn > 0) {
+                    mRecord.append(",\"startColumn\":").append(aColumn);
+                }
+                mRecord.append('}');
+            }
+            mRecord.append("}}]}");
+            break;
+        }
+        writeRecord();
+    }
+
+    /**
+     * Maps a Checkstyle severity to a SARIF level.
+     * @param aSeverity the severity.
+     * @return the SARIF level.
+     */
+    private static String getSarifLevel(SeverityLevel aSeverity)
+    {
+        switch (aSeverity) {
+        case ERROR:
+            return "error";
+        case WARNING:
+            return "warning";
+        case INFO:
+            return "note";
+        default:
+            return "none";
+        }
+    }
+
+    /**
+     * Appends a string to the current record, escaped for XML attributes.
+     * Characters that XML 1.0 does not allow, even as character
+     * references, are replaced by U+FFFD.
+     * @param aText the string.
+     */
+    private void appendXml(String aText)
+    {
+        for (int i = 0; i < aText.length(); i++) {
+            final char c = aText.charAt(i);
+            switch (c) {
+            case '<':
+                mRecord.append("&lt;");
+                break;
+            case '>':
+                mRecord.append("&gt;");
+                break;
+            case '&':
+                mRecord.append("&amp;");
+                break;
+            case '"':
+                mRecord.append("&quot;");
+                break;
+            case '\'':
+                mRecord.append("&apos;");
+                break;
+            default:
+                if (Character.isHighSurrogate(c) && i + 1 < aText.length()
+                    && Character.isLowSurrogate(aText.charAt(i + 1)))
+                {
+                    mRecord.append(c).append(aText.charAt(++i));
+                }
+                else if ((c < ' ' && c != '\t' && c != '\n' && c != '\r')
+                    || Character.isSurrogate(c)
+                    || c == '\uFFFE' || c == '\uFFFF')
+                {
+                    mRecord.append(REPLACEMENT_CHARACTER);
+                }
+                else {
+                    mRecord.append(c);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Appends a string to the current record as a quoted JSON string.
+     * @param aText the string, or null.
+     */
+    private void appendJson(String aText)
+    {
+        if (aText == null) {
+            mRecord.append("null");
+            return;
+        }
+        mRecord.append('"');
+        for (int i = 0; i < aText.length(); i++) {
+            final char c = aText.charAt(i);
+            switch (c) {
+            case '"':
+                mRecord.append("\\\"");
+                break;
+            case '\\':
+                mRecord.append("\\\\");
+                break;
+            case '\n':
+                mRecord.append("\\n");
+                break;
+            case '\r':
+                mRecord.append("\\r");
+                break;
+            case '\t':
+                mRecord.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    mRecord.append(String.format("\\u%04x", (int) c));
+                }
+                else {
+                    mRecord.append(c);
+                }
+                break;
+            }
+        }
+        mRecord.append('"');
+    }
+
+    /**
+     * Encodes the current record into the output buffer, draining the
+     * buffer to the channel whenever it fills up.
+     */
+    private void writeRecord()
+    {
+        if (mFailure == null) {
+            final CharBuffer chars = CharBuffer.wrap(mRecord);
+            try {
+                CoderResult result = mEncoder.encode(chars, mBuffer, false);
+                while (result.isOverflow()) {
+                    drain();
+                    result = mEncoder.encode(chars, mBuffer, false);
+                }
+            }
+            catch (IOException e) {
+                mFailure = e;
+            }
+        }
+        mRecord.setLength(0);
+    }
+
+    /**
+     * Writes the contents of the output buffer to the channel.
+     * @throws IOException if the channel cannot be written.
+     */
+    private void drain()
+        throws IOException
+    {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    /**
+     * Writes all buffered output to the channel.
+     */
+    public synchronized void flush()
+    {
+        if (mFailure == null) {
+            try {
+                drain();
+            }
+            catch (IOException e) {
+                mFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the channel.
+     * @throws IOException if any output could not be written.
+     */
+    public synchronized void close()
+        throws IOException
+    {
+        flush();
+        mChannel.close();
+        if (mFailure != null) {
+            throw mFailure;
+        }
+    }
+
+    /**
+     * Returns the number of events written.
+     * @return the number of events written.
+     */
+    public synchronized int getEventCount()
+    {
+        return mEventCount;
+    }
+
+    /**
+     * Returns the number of events of severity error written.
+     * @return the number of events of severity error written.
+     */
+    public synchronized int getErrorCount()
+    {
+        return mErrorCount;
+    }
+}
@@ -0,0 +1,346 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable table of the results of the files of a profile, in the order
+ * the files were audited, with the auditor that each file's results came
+ * from. The files are held in chunks of {@link #CHUNK_SIZE} and indexed
+ * by name in buckets, so that an {@link Edit} copies only the chunks and
+ * buckets of the files it changes, and the arrays of references to them;
+ * the other chunks and buckets are shared with the original table. Only
+ * removing files rebuilds the table.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+final class ResultTable
+{
+    /** number of files in a chunk */
+    static final int CHUNK_SIZE = 64;
+
+    /** average number of files in a bucket above which the index grows */
+    private static final int BUCKET_LOAD = 16;
+
+    /** the table without files */
+    static final ResultTable EMPTY = new ResultTable(
+        new FileAuditor[0][], new Auditor[0][], 0, newBuckets(1));
+
+    /** the file auditors, by chunk */
+    private final FileAuditor[][] mAuditors;
+
+    /** the auditor of each file's results, by chunk */
+    private final Auditor[][] mSources;
+
+    /** number of files */
+    private final int mSize;
+
+    /** position of each file, by file name, in buckets by hash code */
+    private final Map<String, Integer>[] mBuckets;
+
+    /** the file auditors as a list */
+    private final List<FileAuditor> mList = new AbstractList<FileAuditor>()
+    {
+        public FileAuditor get(int aIndex)
+        {
+            if (aIndex < 0 || aIndex >= mSize) {
+                throw new IndexOutOfBoundsException("" + aIndex);
+            }
+            return mAuditors[aIndex / CHUNK_SIZE][aIndex % CHUNK_SIZE];
+        }
+
+        public int size()
+        {
+            return mSize;
+        }
+    };
+
+    /**
+     * Constructs a <code>ResultTable</code>.
+     * @param aAuditors the file auditors, by chunk, not changed later.
+     * @param aSources the auditors of the results, by chunk, not changed
+     * later.
+     * @param aSize the number of files.
+     * @param aBuckets the index, not changed later.
+     */
+    private ResultTable(FileAuditor[][] aAuditors, Auditor[][] aSources,
+        int aSize, Map<String, Integer>[] aBuckets)
+    {
+        mAuditors = aAuditors;
+        mSources = aSources;
+        mSize = aSize;
+        mBuckets = aBuckets;
+    }
+
+    /**
+     * Creates an empty index.
+     * @param aCount the number of buckets, a power of two.
+     * @return the buckets.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer>[] newBuckets(int aCount)
+    {
+        final Map<String, Integer>[] result = new Map[aCount];
+        for (int i = 0; i < aCount; i++) {
+            result[i] = new HashMap<String, Integer>();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bucket of a file name.
+     * @param aFileName the file name.
+     * @param aCount the number of buckets, a power of two.
+     * @return the index of the bucket.
+     */
+    private static int bucketOf(String aFileName, int aCount)
+    {
+        final int hash = aFileName.hashCode();
+        return (hash ^ (hash >>> 16)) & (aCount - 1);
+    }
+
+    /**
+     * Returns the file auditors, in the order the files were audited.
+     * @return the file auditors, a list that cannot be changed.
+     */
+    List<FileAuditor> getFileAuditors()
+    {
+        return mList;
+    }
+
+    /**
+     * Returns the file auditor of a file.
+     * @param aFileName the name of the file.
+     * @return the file auditor, or null if the file has no results.
+     */
+    FileAuditor get(String aFileName)
+    {
+        final Integer position =
+            mBuckets[bucketOf(aFileName, mBuckets.length)].get(aFileName);
+        return (position == null) ? null
+            : mAuditors[position / CHUNK_SIZE][position % CHUNK_SIZE];
+    }
+
+    /**
+     * Returns the auditor that the results of a file came from.
+     * @param aFileName the name of the file.
+     * @return the auditor, or null if the file has no results.
+     */
+    Auditor getSource(String aFileName)
+    {
+        final Integer position =
+            mBuckets[bucketOf(aFileName, mBuckets.length)].get(aFileName);
+        return (position == null) ? null
+            : mSources[position / CHUNK_SIZE][position % CHUNK_SIZE];
+    }
+
+    /**
+     * A change of a table into a new table. Chunks and buckets are copied
+     * the first time the edit changes them.
+     */
+    static final class Edit
+    {
+        /** the file auditors, by chunk */
+        private FileAuditor[][] mAuditors;
+
+        /** the auditor of each file's results, by chunk */
+        private Auditor[][] mSources;
+
+        /** number of positions used, including those of removed files */
+        private int mSize;
+
+        /** position of each file, by file name, in buckets */
+        private final Map<String, Integer>[] mBuckets;
+
+        /** chunks that this edit has copied */
+        private final BitSet mOwnedChunks = new BitSet();
+
+        /** buckets that this edit has copied */
+        private final BitSet mOwnedBuckets = new BitSet();
+
+        /** true if files have been removed */
+        private boolean mRemoved;
+
+        /**
+         * Constructs an <code>Edit</code> of a table.
+         * @param aTable the table.
+         */
+        Edit(ResultTable aTable)
+        {
+            mAuditors = aTable.mAuditors.clone();
+            mSources = aTable.mSources.clone();
+            mSize = aTable.mSize;
+            mBuckets = aTable.mBuckets.clone();
+        }
+
+        /**
+         * Returns the file auditor of a file.
+         * @param aFileName the name of the file.
+         * @return the file auditor, or null if the file has no results.
+         */
+        FileAuditor get(String aFileName)
+        {
+            final Integer position =
+                mBuckets[bucketOf(aFileName, mBuckets.length)].get(aFileName);
+            return (position == null) ? null
+                : mAuditors[position / CHUNK_SIZE][position % CHUNK_SIZE];
+        }
+
+        /**
+         * Returns the auditor that the results of a file came from.
+         * @param aFileName the name of the file.
+         * @return the auditor, or null if the file has no results.
+         */
+        Auditor getSource(String aFileName)
+        {
+            final Integer position =
+                mBuckets[bucketOf(aFileName, mBuckets.length)].get(aFileName);
+            return (position == null) ? null
+                : mSources[position / CHUNK_SIZE][position % CHUNK_SIZE];
+        }
+
+        /**
+         * Puts the results of a file in place of any earlier results of
+         * the file, or after the other files.
+         * @param aFileAuditor the file auditor of the file.
+         * @param aSource the auditor of the results.
+         * @return the earlier file auditor of the file, or null.
+         */
+        FileAuditor put(FileAuditor aFileAuditor, Auditor aSource)
+        {
+            final String fileName = aFileAuditor.toString();
+            final int bucket = bucketOf(fileName, mBuckets.length);
+            final Integer position = mBuckets[bucket].get(fileName);
+            if (position != null) {
+                final int chunk = ownChunk(position / CHUNK_SIZE);
+                final FileAuditor result =
+                    mAuditors[chunk][position % CHUNK_SIZE];
+                mAuditors[chunk][position % CHUNK_SIZE] = aFileAuditor;
+                mSources[chunk][position % CHUNK_SIZE] = aSource;
+                return result;
+            }
+            if (mSize % CHUNK_SIZE == 0) {
+                final int chunk = mSize / CHUNK_SIZE;
+                mAuditors = Arrays.copyOf(mAuditors, chunk + 1);
+                mSources = Arrays.copyOf(mSources, chunk + 1);
+                mAuditors[chunk] = new FileAuditor[CHUNK_SIZE];
+                mSources[chunk] = new Auditor[CHUNK_SIZE];
+                mOwnedChunks.set(chunk);
+            }
+            final int chunk = ownChunk(mSize / CHUNK_SIZE);
+            mAuditors[chunk][mSize % CHUNK_SIZE] = aFileAuditor;
+            mSources[chunk][mSize % CHUNK_SIZE] = aSource;
+            ownBucket(bucket).put(fileName, mSize);
+            mSize++;
+            return null;
+        }
+
+        /**
+         * Removes the results of a file.
+         * @param aFileName the name of the file.
+         * @return the removed file auditor, or null if the file has no
+         * results.
+         */
+        FileAuditor remove(String aFileName)
+        {
+            final int bucket = bucketOf(aFileName, mBuckets.length);
+            final Integer position = mBuckets[bucket].get(aFileName);
+            if (position == null) {
+                return null;
+            }
+            ownBucket(bucket).remove(aFileName);
+            final int chunk = ownChunk(position / CHUNK_SIZE);
+            final FileAuditor result =
+                mAuditors[chunk][position % CHUNK_SIZE];
+            mAuditors[chunk][position % CHUNK_SIZE] = null;
+            mSources[chunk][position % CHUNK_SIZE] = null;
+            mRemoved = true;
+            return result;
+        }
+
+        /**
+         * Returns a chunk that this edit may change, copying it first if
+         * it is shared.
+         * @param aChunk the index of the chunk.
+         * @return aChunk.
+         */
+        private int ownChunk(int aChunk)
+        {
+            if (!mOwnedChunks.get(aChunk)) {
+                mAuditors[aChunk] = mAuditors[aChunk].clone();
+                mSources[aChunk] = mSources[aChunk].clone();
+                mOwnedChunks.set(aChunk);
+            }
+            return aChunk;
+        }
+
+        /**
+         * Returns a bucket that this edit may change, copying it first if
+         * it is shared.
+         * @param aBucket the index of the bucket.
+         * @return the bucket.
+         */
+        private Map<String, Integer> ownBucket(int aBucket)
+        {
+            if (!mOwnedBuckets.get(aBucket)) {
+                mBuckets[aBucket] =
+                    new HashMap<String, Integer>(mBuckets[aBucket]);
+                mOwnedBuckets.set(aBucket);
+            }
+            return mBuckets[aBucket];
+        }
+
+        /**
+         * Returns the table after the edit. The table is rebuilt if files
+         * have been removed or the index has become too full.
+         * @return the new table.
+         */
+        ResultTable build()
+        {
+            if (!mRemoved && mSize <= mBuckets.length * BUCKET_LOAD) {
+                return new ResultTable(mAuditors, mSources, mSize, mBuckets);
+            }
+            int count = 1;
+            while (count * BUCKET_LOAD < mSize) {
+                count *= 2;
+            }
+            final Edit result = new Edit(new ResultTable(new FileAuditor[0][],
+                new Auditor[0][], 0, newBuckets(count)));
+            for (int i = 0; i < mSize; i++) {
+                final FileAuditor auditor =
+                    mAuditors[i / CHUNK_SIZE][i % CHUNK_SIZE];
+                if (auditor != null) {
+                    result.put(auditor,
+                        mSources[i / CHUNK_SIZE][i % CHUNK_SIZE]);
+                }
+            }
+            return new ResultTable(result.mAuditors, result.mSources,
+                result.mSize, result.mBuckets);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.Definitions;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.FileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+/**
+ * Checker that audits sources held in memory instead of files on disk.
+ * The file set checks of the configuration are run on the text of each
+ * source as Checker would run them on the contents of a file, and the
+ * messages are filtered and reported to the listeners as usual. Unlike
+ * Checker, a <code>SourceChecker</code> keeps its checks between audits.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.1
+ */
+final class SourceChecker extends Checker
+{
+    /** default charset of the files, as in Checker */
+    private static final String CHARSET =
+        System.getProperty("file.encoding", StandardCharsets.UTF_8.name());
+
+    /** the file set checks of the configuration */
+    private final List<FileSetCheck> mFileSetChecks =
+        new ArrayList<FileSetCheck>();
+
+    /** charset of the files, as configured */
+    private String mCharset = CHARSET;
+
+    /** filter of the baseline, or null for none */
+    private final BaselineFilter mBaselineFilter;
+
+    /**
+     * Constructs and configures a <code>SourceChecker</code>.
+     * @param aConfig the configuration.
+     * @param aBaseline baseline of events not to report, or null.
+     * @throws CheckstyleException if the configuration is invalid.
+     */
+    SourceChecker(Configuration aConfig, Baseline aBaseline)
+        throws CheckstyleException
+    {
+        setModuleClassLoader(BlueJChecker.class.getClassLoader());
+        configure(aConfig);
+        if (aBaseline != null) {
+            mBaselineFilter = new BaselineFilter(aBaseline);
+            addFilter(mBaselineFilter);
+        }
+        else {
+            mBaselineFilter = null;
+        }
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.Checker */
+    public void setCharset(String aCharset)
+        throws UnsupportedEncodingException
+    {
+        super.setCharset(aCharset);
+        mCharset = aCharset;
+    }
+
+    /**
+     * Returns the charset of the files, in which sources read as bytes
+     * should be decoded.
+     * @return the name of the charset.
+     */
+    String getCharset()
+    {
+        return mCharset;
+    }
+
+    /** @see com.puppycrawl.tools.checkstyle.Checker */
+    public void addFileSetCheck(FileSetCheck aFileSetCheck)
+    {
+        super.addFileSetCheck(aFileSetCheck);
+        mFileSetChecks.add(aFileSetCheck);
+    }
+
+    /**
+     * Audits sources, reporting the events to the listeners.
+     * @param aSources the contents of the files, by file.
+     */
+    void process(Map<File, ? extends CharSequence> aSources)
+    {
+        for (int i = 0; i < mFileSetChecks.size(); i++) {
+            mFileSetChecks.get(i).beginProcessing(mCharset);
+        }
+        try {
+            final Iterator<? extends Map.Entry<File, ? extends CharSequence>>
+                it = aSources.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<File, ? extends CharSequence> entry =
+                    it.next();
+                process(entry.getKey().getAbsoluteFile(), entry.getValue());
+            }
+        }
+        finally {
+            for (int i = 0; i < mFileSetChecks.size(); i++) {
+                mFileSetChecks.get(i).finishProcessing();
+            }
+        }
+    }
+
+    /**
+     * Audits one source. As in Checker, an exception of a check is
+     * reported as an event of the file.
+     * @param aFile the absolute file.
+     * @param aText the contents of the file.
+     */
+    private void process(File aFile, CharSequence aText)
+    {
+        final String fileName = aFile.getPath();
+        final List<String> lines = toLines(aText);
+        fireFileStarted(fileName);
+        final SortedSet<LocalizedMessage> messages =
+            new TreeSet<LocalizedMessage>();
+        try {
+            final FileText text = new FileText(aFile, lines);
+            for (int i = 0; i < mFileSetChecks.size(); i++) {
+                messages.addAll(mFileSetChecks.get(i).process(aFile, text));
+            }
+        }
+        catch (CheckstyleException e) {
+            messages.add(exceptionMessage(e));
+        }
+        catch (RuntimeException e) {
+            messages.add(exceptionMessage(e));
+        }
+        if (mBaselineFilter != null) {
+            mBaselineFilter.setLines(
+                fileName, lines.toArray(new String[lines.size()]));
+        }
+        fireErrors(fileName, messages);
+        fireFileFinished(fileName);
+    }
+
+    /**
+     * Creates the message that Checker reports for an exception.
+     * @param aException the exception.
+     * @return the message.
+     */
+    private LocalizedMessage exceptionMessage(Exception aException)
+    {
+        return new LocalizedMessage(0, Definitions.CHECKSTYLE_BUNDLE,
+            EXCEPTION_MSG, new String[] {
+                aException.getClass().getName() + ": "
+                    + aException.getMessage(),
+                "",
+            },
+            null, Checker.class, null);
+    }
+
+    /**
+     * Splits text into lines at the line terminators that FileText
+     * recognizes.
+     * @param aText the text.
+     * @return the lines, without terminators.
+     */
+    private static List<String> toLines(CharSequence aText)
+    {
+        final List<String> result = new ArrayList<String>();
+        final int length = aText.length();
+        int start = 0;
+        int i = 0;
+        while (i < length) {
+            final char c = aText.charAt(i);
+            i++;
+            if (c == '\n' || c == '\r') {
+                result.add(aText.subSequence(start, i - 1).toString());
+                if (c == '\r' && i < length && aText.charAt(i) == '\n') {
+                    i++;
+                }
+                start = i;
+            }
+        }
+        if (start < length) {
+            result.add(aText.subSequence(start, length).toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * Tests the keys that the audit daemon caches configurations and checkers
+ * by, see {@link AuditDaemon}.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class AuditDaemonTest
+{
+    /** bytes of a configuration */
+    private static final byte[] CONFIG =
+        "<module name=\"Checker\"/>".getBytes(StandardCharsets.UTF_8);
+
+    /** working directory of a client */
+    private static final File WORK_DIR = new File("work").getAbsoluteFile();
+
+    /**
+     * Returns properties.
+     * @param aPairs the names and values of the properties.
+     * @return the properties.
+     */
+    private static Properties properties(String... aPairs)
+    {
+        final Properties result = new Properties();
+        for (int i = 0; i < aPairs.length; i += 2) {
+            result.setProperty(aPairs[i], aPairs[i + 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Equal requests have the same key, whatever the order of the
+     * properties.
+     */
+    @Test
+    public void testSameRequest()
+    {
+        assertEquals(
+            AuditDaemon.getRequestKey(CONFIG,
+                properties("a", "1", "b", "2"), WORK_DIR),
+            AuditDaemon.getRequestKey(CONFIG.clone(),
+                properties("b", "2", "a", "1"), new File("work")));
+    }
+
+    /**
+     * Requests that differ in the configuration, a property or the working
+     * directory have different keys.
+     */
+    @Test
+    public void testDifferentRequest()
+    {
+        final String key = AuditDaemon.getRequestKey(CONFIG,
+            properties("a", "1"), WORK_DIR);
+        assertFalse(key.equals(AuditDaemon.getRequestKey(
+            "<module name=\"Other\"/>".getBytes(StandardCharsets.UTF_8),
+            properties("a", "1"), WORK_DIR)));
+        assertFalse(key.equals(AuditDaemon.getRequestKey(CONFIG,
+            properties("a", "2"), WORK_DIR)));
+        assertFalse(key.equals(AuditDaemon.getRequestKey(CONFIG,
+            properties("a", "1", "b", "2"), WORK_DIR)));
+        assertFalse(key.equals(AuditDaemon.getRequestKey(CONFIG,
+            properties("a", "1"), new File(WORK_DIR, "sub"))));
+    }
+
+    /** A configuration without files adds nothing to the key. */
+    @Test
+    public void testNoFiles()
+    {
+        assertEquals("",
+            AuditDaemon.getFilesKey(Collections.<File>emptyList()));
+    }
+
+    /**
+     * The key of the files changes when a file changes, and not
+     * otherwise.
+     * @throws IOException if the files cannot be written.
+     */
+    @Test
+    public void testFilesKey()
+        throws IOException
+    {
+        final File file = File.createTempFile("AuditDaemonTest", ".xml");
+        final File other = File.createTempFile("AuditDaemonTest", ".xml");
+        try {
+            final List<File> files = new ArrayList<File>();
+            files.add(file);
+            final String key = AuditDaemon.getFilesKey(files);
+            assertTrue(key.startsWith("-"));
+            assertEquals(key, AuditDaemon.getFilesKey(
+                Collections.singletonList(new File(file.getPath()))));
+            assertFalse(key.equals(AuditDaemon.getFilesKey(
+                Collections.singletonList(other))));
+            files.add(other);
+            assertFalse(key.equals(AuditDaemon.getFilesKey(files)));
+            files.remove(other);
+
+            Files.write(file.toPath(),
+                "<suppressions/>".getBytes(StandardCharsets.UTF_8));
+            final long modified = file.lastModified();
+            final String written = AuditDaemon.getFilesKey(files);
+            assertFalse(key.equals(written));
+            assertTrue(file.setLastModified(modified - 10000));
+            assertFalse(written.equals(AuditDaemon.getFilesKey(files)));
+        }
+        finally {
+            file.delete();
+            other.delete();
+        }
+    }
+}
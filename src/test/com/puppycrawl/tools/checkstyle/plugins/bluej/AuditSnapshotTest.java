@@ -0,0 +1,264 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+/**
+ * Tests that the totals of the profiles of an {@link AuditSnapshot} follow
+ * the files that are replaced, merged, restored and evicted.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class AuditSnapshotTest
+{
+    /** name of the profile */
+    private static final String PROFILE = "profile";
+
+    /** class name of the check of the events */
+    private static final String CHECK =
+        "com.puppycrawl.tools.checkstyle.checks.coding.MagicNumberCheck";
+
+    /** name of the check of the events, see FileAuditor#getCheckName */
+    private static final String CHECK_NAME = "MagicNumberCheck";
+
+    /** directory of the files */
+    private static final File DIR = new File(
+        System.getProperty("java.io.tmpdir"), "AuditSnapshotTest")
+            .getAbsoluteFile();
+
+    /** name of the first file */
+    private static final String A = new File(DIR, "A.java").getPath();
+
+    /** name of the second file */
+    private static final String B = new File(DIR, "B.java").getPath();
+
+    /** name of the third file */
+    private static final String C = new File(DIR, "C.java").getPath();
+
+    /** name of a file of a subdirectory */
+    private static final String D =
+        new File(DIR, "sub" + File.separator + "D.java").getPath();
+
+    /** no stale files */
+    private static final Set<String> NONE = Collections.<String>emptySet();
+
+    /**
+     * Audits a file with warnings of one check and errors of another.
+     * @param aAuditor the auditor.
+     * @param aFileName the name of the file.
+     * @param aWarnings the number of warnings.
+     * @param aErrors the number of errors.
+     */
+    private static void audit(Auditor aAuditor, String aFileName,
+        int aWarnings, int aErrors)
+    {
+        aAuditor.fileStarted(new AuditEvent(aFileName, aFileName));
+        for (int i = 0; i < aWarnings; i++) {
+            aAuditor.addError(AuditClient.newEvent(aFileName, aFileName,
+                i + 1, 1, SeverityLevel.WARNING.ordinal(), null, CHECK,
+                "Warning."));
+        }
+        for (int i = 0; i < aErrors; i++) {
+            aAuditor.addError(AuditClient.newEvent(aFileName, aFileName,
+                i + 1, 1, SeverityLevel.ERROR.ordinal(), "errors", CHECK,
+                "Error."));
+        }
+        aAuditor.fileFinished(new AuditEvent(aFileName, aFileName));
+    }
+
+    /**
+     * Returns the auditors of a profile.
+     * @param aAuditor the auditor of the profile.
+     * @return the auditors, by profile name.
+     */
+    private static Map<String, Auditor> profile(Auditor aAuditor)
+    {
+        return Collections.singletonMap(PROFILE, aAuditor);
+    }
+
+    /**
+     * Checks the totals of the results of a profile.
+     * @param aProfile the results.
+     * @param aWarnings the expected number of warnings.
+     * @param aErrors the expected number of errors.
+     */
+    private static void assertTotals(AuditSnapshot.Profile aProfile,
+        int aWarnings, int aErrors)
+    {
+        assertEquals(aWarnings + aErrors, aProfile.getEventTotal());
+        assertEquals(aWarnings,
+            aProfile.getSeverityTotal(SeverityLevel.WARNING));
+        assertEquals(aErrors, aProfile.getSeverityTotal(SeverityLevel.ERROR));
+        final Integer warnings = aProfile.getCheckTotals().get(CHECK_NAME);
+        assertEquals(aWarnings, (warnings == null) ? 0 : warnings);
+        final Integer errors = aProfile.getCheckTotals().get("errors");
+        assertEquals(aErrors, (errors == null) ? 0 : errors);
+    }
+
+    /**
+     * Returns a snapshot of a first audit of A and B.
+     * @return the snapshot.
+     */
+    private static AuditSnapshot first()
+    {
+        final Auditor auditor = new Auditor(true);
+        audit(auditor, A, 3, 1);
+        audit(auditor, B, 2, 0);
+        return AuditSnapshot.EMPTY.replace(profile(auditor), 1, NONE);
+    }
+
+    /** The results of an audit have the totals of the auditor. */
+    @Test
+    public void testReplace()
+    {
+        final AuditSnapshot snapshot = first();
+        assertEquals(AuditSnapshot.EMPTY.getVersion() + 1,
+            snapshot.getVersion());
+        assertEquals(1, snapshot.getSequence());
+        final AuditSnapshot.Profile profile = snapshot.getProfile(PROFILE);
+        assertEquals(2, profile.getFileAuditors().size());
+        assertTotals(profile, 5, 1);
+        assertTrue(profile.getFileAuditor(A).isFrozen());
+        assertEquals(1, snapshot.getSources().size());
+    }
+
+    /**
+     * Merging replaces the results of the same files and adds new files,
+     * and leaves the earlier snapshot as it was.
+     */
+    @Test
+    public void testMerge()
+    {
+        final AuditSnapshot snapshot = first();
+        final Auditor auditor = new Auditor(true);
+        audit(auditor, B, 0, 4);
+        audit(auditor, C, 1, 0);
+        final AuditSnapshot merged = snapshot.merge(profile(auditor), NONE);
+        assertEquals(snapshot.getVersion() + 1, merged.getVersion());
+        assertEquals(snapshot.getSequence(), merged.getSequence());
+        final AuditSnapshot.Profile profile = merged.getProfile(PROFILE);
+        assertEquals(3, profile.getFileAuditors().size());
+        assertEquals(4, profile.getFileAuditor(B).getEventCount());
+        assertTotals(profile, 4, 5);
+        assertEquals(2, merged.getSources().size());
+        assertTotals(snapshot.getProfile(PROFILE), 5, 1);
+        assertEquals(2, snapshot.getProfile(PROFILE).getFileAuditor(B)
+            .getEventCount());
+    }
+
+    /** Stale files are not merged. */
+    @Test
+    public void testMergeStale()
+    {
+        final AuditSnapshot snapshot = first();
+        final Auditor auditor = new Auditor(true);
+        audit(auditor, A, 0, 0);
+        audit(auditor, B, 7, 0);
+        final AuditSnapshot merged = snapshot.merge(profile(auditor),
+            Collections.singleton(B));
+        final AuditSnapshot.Profile profile = merged.getProfile(PROFILE);
+        assertEquals(0, profile.getFileAuditor(A).getEventCount());
+        assertEquals(2, profile.getFileAuditor(B).getEventCount());
+        assertTotals(profile, 2, 0);
+    }
+
+    /** Merging only stale files or unknown profiles changes nothing. */
+    @Test
+    public void testMergeNothing()
+    {
+        final AuditSnapshot snapshot = first();
+        final Auditor auditor = new Auditor(true);
+        audit(auditor, A, 1, 1);
+        assertSame(snapshot, snapshot.merge(profile(auditor),
+            Collections.singleton(A)));
+        assertSame(snapshot, snapshot.merge(
+            Collections.singletonMap("other", auditor), NONE));
+    }
+
+    /**
+     * A new audit keeps the earlier results of stale files, and drops the
+     * results of stale files that had none.
+     */
+    @Test
+    public void testReplaceStale()
+    {
+        final AuditSnapshot snapshot = first();
+        final Auditor auditor = new Auditor(true);
+        audit(auditor, A, 1, 0);
+        audit(auditor, B, 9, 9);
+        audit(auditor, C, 9, 9);
+        final Set<String> stale = new HashSet<String>();
+        stale.add(B);
+        stale.add(C);
+        final AuditSnapshot replaced =
+            snapshot.replace(profile(auditor), 2, stale);
+        assertEquals(2, replaced.getSequence());
+        final AuditSnapshot.Profile profile = replaced.getProfile(PROFILE);
+        assertEquals(1, profile.getFileAuditor(A).getEventCount());
+        assertSame(snapshot.getProfile(PROFILE).getFileAuditor(B),
+            profile.getFileAuditor(B));
+        assertNull(profile.getFileAuditor(C));
+        assertTotals(profile, 3, 0);
+        assertEquals(2, replaced.getSources().size());
+    }
+
+    /**
+     * Evicting a directory drops its files, but not those of its
+     * subdirectories, and the auditors that no file came from.
+     */
+    @Test
+    public void testEvict()
+    {
+        final AuditSnapshot snapshot = first();
+        final Auditor auditor = new Auditor(true);
+        audit(auditor, D, 1, 2);
+        final AuditSnapshot merged = snapshot.merge(profile(auditor), NONE);
+        assertEquals(2, merged.getSources().size());
+        final AuditSnapshot evicted = merged.evict(DIR);
+        final AuditSnapshot.Profile profile = evicted.getProfile(PROFILE);
+        assertEquals(1, profile.getFileAuditors().size());
+        assertNotNull(profile.getFileAuditor(D));
+        assertTotals(profile, 1, 2);
+        assertEquals(Collections.singleton(auditor), evicted.getSources());
+        assertSame(evicted, evicted.evict(DIR));
+        assertFalse(evicted.evict(new File(DIR, "sub"))
+            .getProfile(PROFILE).getFileAuditors().contains(
+                profile.getFileAuditor(D)));
+    }
+}
@@ -0,0 +1,174 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests the supersession rules of {@link AuditToken} and
+ * {@link FileGenerations}. The generations are shared by all tests, so
+ * each test uses files of its own.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class AuditTokenTest
+{
+    /** the generations of the files */
+    private final FileGenerations mGenerations =
+        FileGenerations.getInstance();
+
+    /**
+     * Returns an absolute file of a test.
+     * @param aName the name of the file.
+     * @return the file.
+     */
+    private static File file(String aName)
+    {
+        return new File(System.getProperty("java.io.tmpdir"),
+            "AuditTokenTest" + File.separator + aName).getAbsoluteFile();
+    }
+
+    /** A new token is neither cancelled nor superseded. */
+    @Test
+    public void testNew()
+    {
+        final AuditToken token = new AuditToken();
+        assertFalse(token.isCancelled());
+        assertFalse(token.isSuperseded());
+        assertEquals(Collections.<String>emptySet(), token.getStaleFiles());
+    }
+
+    /** Later tokens have larger sequence numbers. */
+    @Test
+    public void testSequence()
+    {
+        final AuditToken first = new AuditToken();
+        final AuditToken second = new AuditToken();
+        assertTrue(first.getSequence() < second.getSequence());
+    }
+
+    /** Cancelling a token does not supersede it. */
+    @Test
+    public void testCancel()
+    {
+        final AuditToken token = new AuditToken();
+        token.cancel();
+        assertTrue(token.isCancelled());
+        assertFalse(token.isSuperseded());
+    }
+
+    /** The generation of a file advances each time it changes. */
+    @Test
+    public void testAdvance()
+    {
+        final File file = file("Advance.java");
+        assertEquals(0, mGenerations.get(file));
+        final long first = mGenerations.advance(file);
+        assertEquals(first, mGenerations.get(file));
+        final long second = mGenerations.advance(file);
+        assertTrue(second > first);
+        assertEquals(second, mGenerations.get(file));
+    }
+
+    /**
+     * A change of a started file supersedes the audit without cancelling
+     * it, and makes only that file stale.
+     */
+    @Test
+    public void testChangeOfStartedFile()
+    {
+        final File changed = file("Changed.java");
+        final File kept = file("Kept.java");
+        final AuditToken token = new AuditToken();
+        token.fileStarted(changed);
+        token.fileStarted(kept);
+        mGenerations.advance(changed);
+        assertTrue(token.isSuperseded());
+        assertFalse(token.isCancelled());
+        assertEquals(Collections.singleton(changed.getPath()),
+            token.getStaleFiles());
+    }
+
+    /** A change of a file the audit has not started does not matter. */
+    @Test
+    public void testChangeOfOtherFile()
+    {
+        final AuditToken token = new AuditToken();
+        token.fileStarted(file("Started.java"));
+        mGenerations.advance(file("Other.java"));
+        assertFalse(token.isSuperseded());
+        assertTrue(token.getStaleFiles().isEmpty());
+    }
+
+    /** A change before the audit starts a file does not make it stale. */
+    @Test
+    public void testChangeBeforeStart()
+    {
+        final File file = file("Before.java");
+        final AuditToken token = new AuditToken();
+        mGenerations.advance(file);
+        token.fileStarted(file);
+        assertFalse(token.isSuperseded());
+        assertTrue(token.getStaleFiles().isEmpty());
+        mGenerations.advance(file);
+        assertTrue(token.isSuperseded());
+        assertEquals(Collections.singleton(file.getPath()),
+            token.getStaleFiles());
+    }
+
+    /** Relative names of a file are the same file. */
+    @Test
+    public void testRelativeFile()
+    {
+        final File file = new File("AuditTokenTest-Relative.java");
+        final AuditToken token = new AuditToken();
+        token.fileStarted(file);
+        mGenerations.advance(file.getAbsoluteFile());
+        assertTrue(token.isSuperseded());
+        assertEquals(Collections.singleton(file.getAbsolutePath()),
+            token.getStaleFiles());
+    }
+
+    /**
+     * Evicting a directory forgets the generations of its files but not
+     * of its subdirectories.
+     */
+    @Test
+    public void testEvict()
+    {
+        final File file = file("Evicted.java");
+        final File nested = new File(file.getParentFile(),
+            "sub" + File.separator + "Nested.java");
+        mGenerations.advance(file);
+        mGenerations.advance(nested);
+        mGenerations.evict(file.getParentFile());
+        assertEquals(0, mGenerations.get(file));
+        assertTrue(mGenerations.get(nested) > 0);
+    }
+}
@@ -0,0 +1,238 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the endpoint file and the challenge-response handshake of the
+ * audit daemon, see {@link DaemonEndpoint}.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class DaemonEndpointTest
+{
+    /** port of the endpoints */
+    private static final int PORT = 4711;
+
+    /** private directory of the test */
+    private File mDir;
+
+    /** endpoint file of the test */
+    private File mFile;
+
+    /**
+     * Creates the directory of the test.
+     * @throws IOException if the directory cannot be created.
+     */
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        mDir = Files.createTempDirectory("DaemonEndpointTest").toFile();
+        mFile = new File(mDir, "daemon" + File.separator
+            + DaemonEndpoint.FILE_NAME);
+    }
+
+    /**
+     * Deletes the directory of the test.
+     */
+    @After
+    public void tearDown()
+    {
+        mFile.delete();
+        mFile.getParentFile().delete();
+        mDir.delete();
+    }
+
+    /**
+     * Answers challenges with an endpoint and checks the answer with
+     * another.
+     * @param aProver the endpoint that answers.
+     * @param aProverRole the role the prover answers as.
+     * @param aVerifier the endpoint that checks the answer.
+     * @param aVerifierRole the role the verifier expects.
+     * @throws IOException if the answer is wrong.
+     */
+    private static void handshake(DaemonEndpoint aProver, String aProverRole,
+        DaemonEndpoint aVerifier, String aVerifierRole)
+        throws IOException
+    {
+        final byte[] clientNonce = DaemonEndpoint.newNonce();
+        final byte[] daemonNonce = DaemonEndpoint.newNonce();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        aProver.prove(new DataOutputStream(bytes), aProverRole,
+            clientNonce, daemonNonce);
+        assertEquals(DaemonEndpoint.MAC_LENGTH, bytes.size());
+        aVerifier.verify(new DataInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())), aVerifierRole,
+            clientNonce, daemonNonce);
+    }
+
+    /**
+     * A client that reads the endpoint file and the daemon that wrote it
+     * prove the secret to each other.
+     * @throws IOException if the handshake fails.
+     */
+    @Test
+    public void testHandshake()
+        throws IOException
+    {
+        final DaemonEndpoint daemon = DaemonEndpoint.create(PORT);
+        daemon.write(mFile, null);
+        final DaemonEndpoint client = DaemonEndpoint.read(mFile, null);
+        assertEquals(PORT, client.getPort());
+        handshake(client, DaemonEndpoint.CLIENT,
+            daemon, DaemonEndpoint.CLIENT);
+        handshake(daemon, DaemonEndpoint.DAEMON,
+            client, DaemonEndpoint.DAEMON);
+    }
+
+    /**
+     * An endpoint with another secret fails authentication.
+     * @throws IOException if the handshake fails otherwise.
+     */
+    @Test
+    public void testWrongSecret()
+        throws IOException
+    {
+        final DaemonEndpoint daemon = DaemonEndpoint.create(PORT);
+        final DaemonEndpoint other = DaemonEndpoint.create(PORT);
+        try {
+            handshake(other, DaemonEndpoint.CLIENT,
+                daemon, DaemonEndpoint.CLIENT);
+            fail("authenticated another secret");
+        }
+        catch (IOException e) {
+            assertEquals("The client failed authentication", e.getMessage());
+        }
+    }
+
+    /**
+     * The answer of one side cannot be reflected as the answer of the
+     * other.
+     * @throws IOException if the handshake fails otherwise.
+     */
+    @Test
+    public void testReflectedAnswer()
+        throws IOException
+    {
+        final DaemonEndpoint daemon = DaemonEndpoint.create(PORT);
+        try {
+            handshake(daemon, DaemonEndpoint.DAEMON,
+                daemon, DaemonEndpoint.CLIENT);
+            fail("authenticated a reflected answer");
+        }
+        catch (IOException e) {
+            assertEquals("The client failed authentication", e.getMessage());
+        }
+    }
+
+    /**
+     * The endpoint file and its directory are private to the user.
+     * @throws IOException if the file cannot be written.
+     */
+    @Test
+    public void testPrivateFile()
+        throws IOException
+    {
+        Assume.assumeTrue(Files.getFileAttributeView(mDir.toPath(),
+            PosixFileAttributeView.class) != null);
+        DaemonEndpoint.create(PORT).write(mFile, null);
+        assertEquals("rwx------", PosixFilePermissions.toString(
+            Files.getPosixFilePermissions(mFile.getParentFile().toPath())));
+        assertEquals("rw-------", PosixFilePermissions.toString(
+            Files.getPosixFilePermissions(mFile.toPath())));
+    }
+
+    /**
+     * An endpoint file that others can read is refused.
+     * @throws IOException if the file cannot be written.
+     */
+    @Test
+    public void testPublicFile()
+        throws IOException
+    {
+        Assume.assumeTrue(Files.getFileAttributeView(mDir.toPath(),
+            PosixFileAttributeView.class) != null);
+        DaemonEndpoint.create(PORT).write(mFile, null);
+        Files.setPosixFilePermissions(mFile.toPath(),
+            PosixFilePermissions.fromString("rw-r--r--"));
+        try {
+            DaemonEndpoint.read(mFile, null);
+            fail("read a public endpoint file");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage().endsWith("is accessible by others"));
+        }
+    }
+
+    /**
+     * A malformed endpoint file is refused.
+     * @throws IOException if the file cannot be written.
+     */
+    @Test
+    public void testMalformedFile()
+        throws IOException
+    {
+        DaemonEndpoint.create(PORT).write(mFile, null);
+        Files.write(mFile.toPath(),
+            (PORT + " 0123").getBytes(StandardCharsets.UTF_8));
+        try {
+            DaemonEndpoint.read(mFile, null);
+            fail("read a malformed endpoint file");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Malformed endpoint file"));
+        }
+    }
+
+    /** The endpoint file of a group is shared, that of a user is not. */
+    @Test
+    public void testDefaultFile()
+    {
+        assertEquals(new File(System.getProperty("java.io.tmpdir"),
+            "checkstyle4bluej-staff" + File.separator
+                + DaemonEndpoint.FILE_NAME),
+            DaemonEndpoint.getDefaultFile("staff"));
+        assertTrue(DaemonEndpoint.getDefaultFile(null).getPath()
+            .startsWith(System.getProperty("user.home")));
+    }
+}
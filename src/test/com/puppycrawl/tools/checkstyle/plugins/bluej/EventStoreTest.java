@@ -0,0 +1,272 @@
+////////////////////////////////////////////////////////////////////////////////
+// BlueJ Checkstyle extension:
+//    Checks Java source code for adherence to a set of rules.
+// Copyright (C) 2003-2004  Rick Giles
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+////////////////////////////////////////////////////////////////////////////////
+
+package com.puppycrawl.tools.checkstyle.plugins.bluej;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+
+/**
+ * Tests that events read back from an {@link EventStore} are those that
+ * were written, before and after the store is compacted.
+ * @author Rick Giles
+ * @author CS4250 Students (MSU Denver)
+ * @version 1.0
+ */
+public class EventStoreTest
+{
+    /** name of the file of the events */
+    private static final String FILE_NAME = "Test.java";
+
+    /** class name of the check of the events */
+    private static final String CHECK =
+        "com.puppycrawl.tools.checkstyle.checks.coding.MagicNumberCheck";
+
+    /** least number of dead records that are compacted, see EventStore */
+    private static final int COMPACT_RECORDS = 1 << 16;
+
+    /** number of attempts to have dead records collected */
+    private static final int GC_ATTEMPTS = 50;
+
+    /** the store */
+    private EventStore mStore;
+
+    /**
+     * Creates the store.
+     * @throws IOException if the store cannot be created.
+     */
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        mStore = new EventStore();
+    }
+
+    /**
+     * Closes the store.
+     */
+    @After
+    public void tearDown()
+    {
+        mStore.close();
+    }
+
+    /**
+     * Creates an event.
+     * @param aLine the line of the event.
+     * @param aModuleId the module id of the check, or null.
+     * @param aMessage the message.
+     * @return the event.
+     */
+    private static AuditEvent event(int aLine, String aModuleId,
+        String aMessage)
+    {
+        return AuditClient.newEvent(FILE_NAME, FILE_NAME, aLine, aLine + 1,
+            aLine % 4, aModuleId, CHECK, aMessage);
+    }
+
+    /**
+     * Checks that events are the same, apart from their source.
+     * @param aExpected the expected events.
+     * @param aActual the events read back.
+     */
+    private static void assertEvents(List<AuditEvent> aExpected,
+        List<AuditEvent> aActual)
+    {
+        assertEquals(aExpected.size(), aActual.size());
+        for (int i = 0; i < aExpected.size(); i++) {
+            final AuditEvent expected = aExpected.get(i);
+            final AuditEvent actual = aActual.get(i);
+            assertEquals(expected.getFileName(), actual.getFileName());
+            assertEquals(expected.getLine(), actual.getLine());
+            assertEquals(expected.getColumn(), actual.getColumn());
+            assertEquals(expected.getSeverityLevel(),
+                actual.getSeverityLevel());
+            assertEquals(expected.getModuleId(), actual.getModuleId());
+            assertEquals(expected.getSourceName(), actual.getSourceName());
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+    }
+
+    /**
+     * Events are read back as they were written.
+     * @throws IOException if the events cannot be stored.
+     */
+    @Test
+    public void testRoundTrip()
+        throws IOException
+    {
+        final List<AuditEvent> events = Arrays.asList(
+            event(1, "first", "Magic number 42."),
+            event(2, "second", "It's \u00fcber {0} \u2013 quoted."),
+            event(3, "first", "Magic number 42."));
+        final EventStore.Record record = mStore.write(events);
+        assertEvents(events, mStore.read(record, FILE_NAME, FILE_NAME));
+        assertEquals(events.size(), mStore.getRecordCount());
+    }
+
+    /**
+     * A write without events reads back no events.
+     * @throws IOException if the events cannot be stored.
+     */
+    @Test
+    public void testNoEvents()
+        throws IOException
+    {
+        final EventStore.Record record =
+            mStore.write(Collections.<AuditEvent>emptyList());
+        assertTrue(mStore.read(record, FILE_NAME, FILE_NAME).isEmpty());
+    }
+
+    /**
+     * Long messages are stored in full.
+     * @throws IOException if the events cannot be stored.
+     */
+    @Test
+    public void testLongMessage()
+        throws IOException
+    {
+        final StringBuilder message = new StringBuilder();
+        while (message.length() < 100000) {
+            message.append("long message \u00e9 ");
+        }
+        final List<AuditEvent> events =
+            Collections.singletonList(event(1, null, message.toString()));
+        final EventStore.Record record = mStore.write(events);
+        assertEvents(events, mStore.read(record, FILE_NAME, FILE_NAME));
+    }
+
+    /**
+     * An event without a module id is read back without one, so that it
+     * is counted under its check, see {@link AuditTiers#getKey}.
+     * @throws IOException if the events cannot be stored.
+     */
+    @Test
+    public void testNullModuleId()
+        throws IOException
+    {
+        final AuditEvent event = event(1, null, "No id.");
+        final EventStore.Record record =
+            mStore.write(Collections.singletonList(event));
+        final AuditEvent read =
+            mStore.read(record, FILE_NAME, FILE_NAME).get(0);
+        assertNull(read.getModuleId());
+        assertEquals(AuditTiers.getKey(event), AuditTiers.getKey(read));
+    }
+
+    /**
+     * Once most records are dead, a write compacts the store, and the
+     * live records read back as they were written.
+     * @throws IOException if the events cannot be stored.
+     */
+    @Test
+    public void testCompaction()
+        throws IOException
+    {
+        final List<AuditEvent> live = Arrays.asList(
+            event(1, "live", "Kept."), event(2, null, "Also kept."));
+        final EventStore.Record liveRecord = mStore.write(live);
+        EventStore.Record dead = mStore.write(Collections.nCopies(
+            COMPACT_RECORDS + 1, event(3, "dead", "Dropped.")));
+        assertEquals(COMPACT_RECORDS + 3, mStore.getRecordCount());
+        dead = null;
+        final List<AuditEvent> probe =
+            Collections.singletonList(event(4, "probe", "Probe."));
+        final List<EventStore.Record> probes =
+            new ArrayList<EventStore.Record>();
+        for (int i = 0; i < GC_ATTEMPTS
+            && mStore.getRecordCount() > COMPACT_RECORDS; i++)
+        {
+            System.gc();
+            probes.add(mStore.write(probe));
+        }
+        assertTrue("not compacted", mStore.getRecordCount() < COMPACT_RECORDS);
+        assertEvents(live, mStore.read(liveRecord, FILE_NAME, FILE_NAME));
+        for (int i = 0; i < probes.size(); i++) {
+            assertEvents(probe,
+                mStore.read(probes.get(i), FILE_NAME, FILE_NAME));
+        }
+    }
+
+    /**
+     * A closed store keeps its events readable and refuses new ones.
+     * @throws IOException if the events cannot be stored.
+     */
+    @Test
+    public void testClose()
+        throws IOException
+    {
+        final List<AuditEvent> events =
+            Collections.singletonList(event(1, "closed", "Closed."));
+        final EventStore.Record record = mStore.write(events);
+        mStore.close();
+        assertEvents(events, mStore.read(record, FILE_NAME, FILE_NAME));
+        try {
+            mStore.write(events);
+            fail("wrote to a closed store");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * The events of a spilled file auditor read back as they were added,
+     * and cannot be changed.
+     */
+    @Test
+    public void testSpilledFileAuditor()
+    {
+        final Auditor auditor = new Auditor(true);
+        auditor.setSpillThreshold(1);
+        final List<AuditEvent> events = Arrays.asList(
+            event(1, null, "One."), event(2, "two", "Two."));
+        auditor.fileStarted(new AuditEvent(FILE_NAME, FILE_NAME));
+        for (int i = 0; i < events.size(); i++) {
+            auditor.addError(events.get(i));
+        }
+        auditor.fileFinished(new AuditEvent(FILE_NAME, FILE_NAME));
+        final FileAuditor fileAuditor = auditor.getFileAuditors().get(0);
+        assertTrue(fileAuditor.isSpilled());
+        final List<AuditEvent> read = fileAuditor.getEvents();
+        assertEvents(events, read);
+        try {
+            read.clear();
+            fail("changed the events of a spilled file");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}